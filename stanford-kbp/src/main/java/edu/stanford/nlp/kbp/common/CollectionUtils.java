@@ -10,8 +10,6 @@ import java.util.*;
 import java.util.PriorityQueue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.Function;
 
 import static edu.stanford.nlp.util.logging.Redwood.Util.*;
@@ -155,201 +153,23 @@ public class CollectionUtils {
   /**
    * Map from one iterator to another in parallel, ignoring null entries.
    * The output is guaranteed to be in the same order as the input.
-   * Note, however, that the overhead for starting every task is relatively large for this
-   * method, and thus it should be used primarily for long methods.
+   * This runs on the {@link ParallelMapper#shared()} pool.
    *
    * @see edu.stanford.nlp.kbp.common.CollectionUtils#mapIgnoreNull(java.util.Iterator, java.util.function.Function)
+   * @deprecated Use {@link ParallelMapper#mapIgnoreNull(Iterator, Function)} directly.
    */
+  @Deprecated
   public static <T1,T2> IterableIterator<T2> parMapIgnoreNull(  Iterator<T1> lst, final Function<T1,T2> mapper) {
-    final BlockingQueue<Maybe<T1>> workQueue = new ArrayBlockingQueue<>(3 * Execution.threads);
-    final BlockingQueue<Maybe<T2>> resultQueue = new ArrayBlockingQueue<>(3 * Execution.threads);
-    final Iterator<T1> iter = mapIgnoreNull(lst, in -> in);
-    // Worker thread
-    Thread worker = new Thread() {
-      ExecutorService exec = Executors.newFixedThreadPool(Execution.threads);
-      @Override
-      public void run() {
-        // Run jobs
-        try {
-          Maybe<T1> task;
-          SimpleLock mutableLastTaskDone = new SimpleLock();
-          while ( (task = workQueue.take()).isDefined() ) {
-            // Ensure synchronous writes
-            final SimpleLock lastTaskDone = mutableLastTaskDone;
-            final SimpleLock thisTaskDone = new SimpleLock();
-            thisTaskDone.acquire();
-            mutableLastTaskDone = thisTaskDone;
-            // Get the task
-            final T1 input = task.get();
-            // Run the mapper
-            exec.submit(() -> {
-              try {
-                // Run the computation
-                final T2 result = mapper.apply(input);
-                // Free this thread, and add the elements in a new thread
-                Thread adder = new Thread() {
-                  @Override
-                  public void run() {
-                    lastTaskDone.acquire();  // make sure the last task has finished
-                    try {
-                      resultQueue.put(Maybe.Just(result));
-                    } catch (InterruptedException e) {
-                      e.printStackTrace();
-                    } finally {
-                      lastTaskDone.release();  // (release last task, just so everything ends unlocked)
-                      thisTaskDone.release();  // release this task
-                    }
-                  }
-                };
-                adder.setDaemon(true);
-                adder.start();
-              } catch (Throwable t) {
-                t.printStackTrace();
-              }
-            });
-          }
-          // Signal end-of-jobs
-          mutableLastTaskDone.acquire();
-          mutableLastTaskDone.release();
-          resultQueue.put(Maybe.<T2>Nothing());
-        } catch (InterruptedException ignored) { }
-      }
-    };
-    worker.setDaemon(true);  // Kill on program termination
-    worker.start();
-
-    // The iterator interface returned
-    return new IterableIterator<>(new Iterator<T2>(){
-      // Nothing means no cached element; null means no more elements ever
-      private Maybe<T2> next = Maybe.Nothing();
-
-      @Override
-      public boolean hasNext() {
-        if (next == null) { return false; }
-        if (next.isDefined()) { return true; }
-
-        // Fill up the work queue
-        while (workQueue.remainingCapacity() > 0) {
-          if (iter.hasNext()) {
-            workQueue.add(Maybe.Just(iter.next()));
-          } else {
-            workQueue.add(Maybe.<T1>Nothing());
-            break;
-          }
-        }
-
-        // Poll from the queue
-        try {
-          Maybe<T2> result = resultQueue.take();
-          if (result.isDefined()) {
-            next = result;
-          } else {
-            next = null;
-          }
-        } catch (InterruptedException ignored) { }
-        return next != null;
-      }
-      @Override
-      public T2 next() {
-        if (!hasNext()) { throw new NoSuchElementException(); }
-        T2 rtn = next.orCrash();
-        assert rtn != null;
-        next = Maybe.Nothing();
-        return rtn;
-      }
-      @Override
-      public void remove() {
-        throw new UnsupportedOperationException();
-      }
-    });
+    return ParallelMapper.shared().mapIgnoreNull(lst, mapper);
   }
 
-  /** @see CollectionUtils#parMapIgnoreNull(java.util.Iterator, java.util.function.Function) */
+  /**
+   * @see CollectionUtils#parMapIgnoreNull(java.util.Iterator, java.util.function.Function)
+   * @deprecated Use {@link ParallelMapper#mapIgnoreNullUnordered(Iterator, Function)} directly.
+   */
+  @Deprecated
   public static <T1,T2> IterableIterator<T2> parMapIgnoreNullUnordered(  Iterator<T1> lst, final Function<T1,T2> mapper) {
-    final BlockingQueue<Maybe<T1>> workQueue = new ArrayBlockingQueue<>(3 * Execution.threads);
-    final BlockingQueue<Maybe<T2>> resultQueue = new ArrayBlockingQueue<>(3 * Execution.threads);
-    final Iterator<T1> iter = mapIgnoreNull(lst, in -> in);
-    // Worker thread
-    Thread worker = new Thread() {
-      ExecutorService exec = Executors.newFixedThreadPool(Execution.threads);
-      @Override
-      public void run() {
-        // Run jobs
-        try {
-          Maybe<T1> task;
-          while ( (task = workQueue.take()).isDefined() ) {
-            // Get the task
-            final T1 input = task.get();
-            // Run the mapper
-            exec.submit(() -> {
-              try {
-                // Run the computation
-                final T2 result = mapper.apply(input);
-                resultQueue.put(Maybe.Just(result));
-              } catch (Throwable t) {
-                t.printStackTrace();
-              }
-            });
-          }
-          // Signal end-of-jobs
-          resultQueue.put(Maybe.<T2>Nothing());
-        } catch (InterruptedException ignored) { }
-      }
-    };
-    worker.setDaemon(true);  // Kill on program termination
-    worker.start();
-
-    // The iterator interface returned
-    for(int i=0; i< Execution.threads*3; i++) {
-      if (iter.hasNext()) {
-        workQueue.add(Maybe.Just(iter.next()));
-      } else {
-        workQueue.add(Maybe.<T1>Nothing());
-        break;
-      }
-    }
-    return new IterableIterator<>(new Iterator<T2>(){
-      // Nothing means no cached element; null means no more elements ever
-      private Maybe<T2> next = Maybe.Nothing();
-
-      @Override
-      public boolean hasNext() {
-        if (next == null) { return false; }
-        if (next.isDefined()) { return true; }
-
-        // Fill up the work queue
-
-        if (iter.hasNext()) {
-          workQueue.add(Maybe.Just(iter.next()));
-        } else {
-          workQueue.add(Maybe.<T1>Nothing());
-        }
-
-
-        // Poll from the queue
-        try {
-          Maybe<T2> result = resultQueue.take();
-          if (result.isDefined()) {
-            next = result;
-          } else {
-            next = null;
-          }
-        } catch (InterruptedException ignored) { }
-        return next != null;
-      }
-      @Override
-      public T2 next() {
-        if (!hasNext()) { throw new NoSuchElementException(); }
-        T2 rtn = next.orCrash();
-        assert rtn != null;
-        next = Maybe.Nothing();
-        return rtn;
-      }
-      @Override
-      public void remove() {
-        throw new UnsupportedOperationException();
-      }
-    });
+    return ParallelMapper.shared().mapIgnoreNullUnordered(lst, mapper);
   }
 
   public static <T1,T2> IterableIterator<T2> flatMapIgnoreNull( final Iterator<T1> input, final Function<T1,Iterator<T2>> mapper) {
@@ -510,23 +510,21 @@ public class CoreMapUtils {
 
   /* Beware of changing me! You may invalidate the sentencegloss cache */
   public static String getSentenceGlossKey(String[] sentencegloss, Span entitySpan, Span valueSpan) {
-    return getHexKeyString(StringUtils.join(sentencegloss, "~#~")) + ":" +
-        entitySpan.start() + "-" + entitySpan.end() + ":" +
-        valueSpan.start() + "-" + valueSpan.end();
+    return SentenceGlossKeys.key(sentencegloss, entitySpan, valueSpan);
   }
 
   /* Beware of changing me! You may invalidate the sentencegloss cache */
   public static String getSentenceGlossKey(List<CoreLabel> sentencegloss, Span entitySpan, Span valueSpan) {
-    String[] tokens = new String[sentencegloss.size()];
-    for (int i = 0; i < sentencegloss.size(); ++i) {
-      CoreLabel token = sentencegloss.get(i);
-      if (token.containsKey(CoreAnnotations.OriginalTextAnnotation.class)) {
-        tokens[i] = token.originalText();
-      } else {
-        tokens[i] = token.word();
-      }
-    }
-    return getSentenceGlossKey(tokens, entitySpan, valueSpan);
+    return SentenceGlossKeys.key(sentencegloss, entitySpan, valueSpan);
+  }
+
+  /**
+   * The sentence gloss key of a pair of spans in a sentence; the hash of the sentence is computed only once,
+   * and reused for every other pair of spans in it.
+   * @see SentenceGlossKeys#key(CoreMap, Span, Span)
+   */
+  public static String getSentenceGlossKey(CoreMap sentence, Span entitySpan, Span valueSpan) {
+    return SentenceGlossKeys.key(sentence, entitySpan, valueSpan);
   }
 
 
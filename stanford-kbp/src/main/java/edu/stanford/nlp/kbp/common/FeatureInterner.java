@@ -0,0 +1,51 @@
+package edu.stanford.nlp.kbp.common;
+
+import edu.stanford.nlp.util.Interner;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * A process-wide canonicalization of feature strings.
+ *
+ * <p>Every feature string seen by the featurizer (or read back from a cache) is replaced by one canonical instance,
+ * so that datums share their feature strings rather than each holding a copy.
+ * The canonical strings are held weakly: a feature is forgotten once no datum (or cache) refers to it any more,
+ * so this never grows beyond the features which are actually live.</p>
+ *
+ * <p>There are no feature ids here; {@link PackedFeatures} numbers the features of each group on its own.</p>
+ *
+ * <p>This class is thread-safe. The strings are split over several independently locked interners,
+ * so that featurizer threads rarely wait on each other.</p>
+ */
+public class FeatureInterner {
+
+  /** The number of independently locked interners; a power of two */
+  private static final int STRIPES = 64;
+  /** The interners, each for the features whose (spread) hash code falls in its stripe */
+  private static final Interner<String>[] interners;
+
+  static {
+    @SuppressWarnings("unchecked") Interner<String>[] stripes = new Interner[STRIPES];
+    for (int i = 0; i < STRIPES; ++i) { stripes[i] = new Interner<>(); }
+    interners = stripes;
+  }
+
+  private FeatureInterner() { }
+
+  /** Get the canonical instance of a feature string */
+  public static String canonical(String feature) {
+    int hash = feature.hashCode();
+    Interner<String> interner = interners[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    synchronized (interner) {
+      return interner.intern(feature);
+    }
+  }
+
+  /** Copy a collection of features into a compact list of their canonical strings */
+  public static ArrayList<String> canonical(Collection<String> features) {
+    ArrayList<String> rtn = new ArrayList<>(features.size());
+    for (String feature : features) { rtn.add(canonical(feature)); }
+    return rtn;
+  }
+}
@@ -114,6 +114,15 @@ public class KBPAnnotations {
     public Class<Pair<Integer, Span>> getType() { return ErasureUtils.uncheckedCast(Pair.class); }
   }
   
+  /**
+   * The hash of the tokens of a sentence, computed once and reused for every sentence gloss key made from it;
+   * see {@link SentenceGlossKeys#key(edu.stanford.nlp.util.CoreMap, Span, Span)}.
+   */
+  // Attaches to sentences
+  public static class SentenceGlossHashAnnotation implements CoreAnnotation<String> {
+    public Class<String> getType() { return String.class; }
+  }
+
   /** An annotation that gets set in a pattern matching system that says whether a token is an entity */
   public static class IsEntity implements CoreAnnotation<Boolean>{
     @Override
@@ -0,0 +1,40 @@
+package edu.stanford.nlp.kbp.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * A store of binary values, keyed by strings.
+ * This is the storage behind the key/value caches in {@link PostgresUtils} when they do not live in Postgres;
+ * see {@link Props#CACHE_BACKEND}.
+ * Implementations must allow any number of threads to read at once.
+ *
+ * @see LogStructuredStore
+ */
+public interface KeyValueStore extends Closeable {
+
+  /** Get the value for a key, if it is in the store */
+  public Maybe<byte[]> get(String key) throws IOException;
+
+  /** Returns whether the store has a value for the given key */
+  public boolean containsKey(String key);
+
+  /** Set the value for a key, overwriting any value already there */
+  public void put(String key, byte[] value) throws IOException;
+
+  /**
+   * Remove a key from the store.
+   * @return True if the key was in the store.
+   */
+  public boolean remove(String key) throws IOException;
+
+  /** A snapshot of the keys in the store, in sorted order */
+  public Iterator<String> keys();
+
+  /** The number of keys in the store */
+  public int size();
+
+  /** Make sure everything written so far is on disk */
+  public void flush() throws IOException;
+}
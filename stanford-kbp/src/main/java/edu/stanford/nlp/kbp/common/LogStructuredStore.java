@@ -0,0 +1,112 @@
+package edu.stanford.nlp.kbp.common;
+
+import edu.stanford.nlp.util.MappedSegmentStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * An embedded, log-structured key/value store on local disk.
+ *
+ * <p>Records are only ever appended, to a sequence of memory-mapped segment files in a directory.
+ * An in-memory index maps every live key to the location of its latest value, so that a read is a hash lookup and
+ * a copy out of the mapped segment. Any number of threads may read at once; writes are serialized.
+ * Once most of what is on disk is dead (overwritten or removed values), the live records are compacted into fresh
+ * segments in the background, and the old segments are deleted.</p>
+ *
+ * <p>This is a thin, String-keyed wrapper around {@link MappedSegmentStore}; see there for the format on disk.
+ * Only one process may have a store open at a time.</p>
+ *
+ * @see PostgresUtils
+ */
+public class LogStructuredStore implements KeyValueStore {
+
+  /** The directory the segments live in */
+  public final File directory;
+
+  private final MappedSegmentStore<String> store;
+
+  /**
+   * Open a store, creating it if it does not exist.
+   * @param directory The directory holding the segment files of the store.
+   * @param segmentBytes The size of a segment file. A single record larger than this gets a segment of its own.
+   * @throws IOException If the store could not be opened, or is already open in another process.
+   */
+  public LogStructuredStore(File directory, int segmentBytes) throws IOException {
+    this.directory = directory;
+    this.store = new MappedSegmentStore<>(directory, segmentBytes, MappedSegmentStore.UTF8);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Maybe<byte[]> get(String key) throws IOException {
+    byte[] value = store.get(key);
+    return value == null ? Maybe.<byte[]>Nothing() : Maybe.Just(value);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean containsKey(String key) {
+    return store.containsKey(key);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void put(String key, byte[] value) throws IOException {
+    store.put(key, value);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean remove(String key) throws IOException {
+    return store.remove(key);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Iterator<String> keys() {
+    List<String> keys = new ArrayList<>(store.keySet());
+    Collections.sort(keys);
+    return keys.iterator();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int size() {
+    return store.size();
+  }
+
+  /** The number of bytes of records on disk, live or dead */
+  public long totalBytes() { return store.totalBytes(); }
+
+  /** The number of bytes of records on disk which hold the latest value of some key */
+  public long liveBytes() { return store.liveBytes(); }
+
+  /**
+   * Copy every live record into fresh segments, and delete the old segments.
+   * This otherwise happens in the background, once most of the store is dead.
+   */
+  public void compact() throws IOException {
+    store.compact();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void flush() throws IOException {
+    store.flush();
+  }
+
+  /**
+   * Flush and close the store. The mapped segments are released once they are garbage collected.
+   */
+  @Override
+  public void close() throws IOException {
+    store.close();
+  }
+
+  @Override
+  public String toString() {
+    return "LogStructuredStore{" + store + '}';
+  }
+}
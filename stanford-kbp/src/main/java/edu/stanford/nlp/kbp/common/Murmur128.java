@@ -0,0 +1,114 @@
+package edu.stanford.nlp.kbp.common;
+
+/**
+ * A streaming MurmurHash3 (x64, 128 bit) over a sequence of strings (and numbers).
+ * Every string is prefixed by its length, so that no two different sequences of strings hash the same characters.
+ *
+ * <p>This is used for content-addressed keys -- e.g., {@link SentenceGlossKeys} -- and so must never change:
+ * the same sequence must always hash to the same value, across runs and versions.</p>
+ */
+public class Murmur128 {
+  /** The length of the hex string of a hash */
+  public static final int HEX_LENGTH = 32;
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  private long h1 = 0x9368e53c2f6af274L;
+  private long h2 = 0x586dcd208f7cd3fdL;
+  /** The block being filled: 8 characters, 4 in each half */
+  private long k1 = 0, k2 = 0;
+  private int inBlock = 0;
+  private long length = 0;
+
+  /** Add a string to the hash; null is hashed as the empty string */
+  public Murmur128 add(String token) {
+    if (token == null) { token = ""; }
+    int n = token.length();
+    add((char) (n >>> 16));
+    add((char) n);
+    for (int i = 0; i < n; ++i) { add(token.charAt(i)); }
+    return this;
+  }
+
+  /** Add an integer to the hash */
+  public Murmur128 add(int value) {
+    add((char) (value >>> 16));
+    add((char) value);
+    return this;
+  }
+
+  private void add(char c) {
+    if (inBlock < 4) {
+      k1 |= ((long) c) << (16 * inBlock);
+    } else {
+      k2 |= ((long) c) << (16 * (inBlock - 4));
+    }
+    inBlock += 1;
+    length += 2;
+    if (inBlock == 8) {
+      mixBlock();
+      k1 = 0;
+      k2 = 0;
+      inBlock = 0;
+    }
+  }
+
+  private void mixBlock() {
+    h1 ^= mixK1(k1);
+    h1 = Long.rotateLeft(h1, 27);
+    h1 += h2;
+    h1 = h1 * 5 + 0x52dce729;
+    h2 ^= mixK2(k2);
+    h2 = Long.rotateLeft(h2, 31);
+    h2 += h1;
+    h2 = h2 * 5 + 0x38495ab5;
+  }
+
+  private static long mixK1(long k1) {
+    k1 *= C1;
+    k1 = Long.rotateLeft(k1, 31);
+    k1 *= C2;
+    return k1;
+  }
+
+  private static long mixK2(long k2) {
+    k2 *= C2;
+    k2 = Long.rotateLeft(k2, 33);
+    k2 *= C1;
+    return k2;
+  }
+
+  private static long fmix(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+  /** The hash of everything added so far, as 32 hex characters */
+  public String hex() {
+    long h1 = this.h1, h2 = this.h2;
+    if (inBlock > 0) {
+      h1 ^= mixK1(k1);
+      h2 ^= mixK2(k2);
+    }
+    h1 ^= length;
+    h2 ^= length;
+    h1 += h2;
+    h2 += h1;
+    h1 = fmix(h1);
+    h2 = fmix(h2);
+    h1 += h2;
+    h2 += h1;
+    char[] hex = new char[HEX_LENGTH];
+    for (int i = 0; i < 16; ++i) {
+      hex[i] = HEX[(int) (h1 >>> (60 - 4 * i)) & 0xf];
+      hex[16 + i] = HEX[(int) (h2 >>> (60 - 4 * i)) & 0xf];
+    }
+    return new String(hex);
+  }
+}
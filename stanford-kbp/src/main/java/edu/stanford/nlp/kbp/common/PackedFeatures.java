@@ -0,0 +1,217 @@
+package edu.stanford.nlp.kbp.common;
+
+import edu.stanford.nlp.ling.Datum;
+import edu.stanford.nlp.util.Index;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The features of a group of datums (e.g., a {@link SentenceGroup}), packed into flat primitive arrays.
+ *
+ * <p>The features of datum <code>i</code> are the ids <code>ids[offsets[i]] ... ids[offsets[i+1] - 1]</code>,
+ * sorted and without duplicates. An id is an index into the packed datums' own vocabulary: the distinct features
+ * of just these datums. So the ids are only meaningful within one packing, and are dropped along with it.
+ * A feature which occurs more than once in a datum is stored once, with its count in a parallel
+ * <code>values</code> array; if no feature of any datum repeats (the usual case), there is no values array,
+ * and every value is implicitly 1.</p>
+ *
+ * <p>Classifiers score a packed group through a {@link Translation} from its ids to the ids of their own
+ * feature index (see {@link PackedFeatures#translation(Index)}). This looks up each distinct feature of the group
+ * in the model's index once, however many of the datums have it, and however many times the group is scored;
+ * rather than looking up every feature string of every datum on every call.</p>
+ */
+public class PackedFeatures {
+
+  /** The distinct features of the datums, by id */
+  private final String[] vocabulary;
+  /** The start of the features of each datum in ids; offsets[size()] == ids.length */
+  private final int[] offsets;
+  /** The ids of the features of all the datums, back to back */
+  private final int[] ids;
+  /** The value of each feature in ids, or null if all the values are 1 */
+  private final float[] values;
+  /** The translations onto the models which have scored these datums; replaced (never modified) as it grows */
+  private volatile Translation[] translations = new Translation[0];
+
+  private PackedFeatures(String[] vocabulary, int[] offsets, int[] ids, float[] values) {
+    this.vocabulary = vocabulary;
+    this.offsets = offsets;
+    this.ids = ids;
+    this.values = values;
+  }
+
+  /** Pack the features of a list of datums */
+  public static PackedFeatures pack(List<? extends Datum<?, String>> datums) {
+    Builder builder = new Builder(datums.size());
+    for (Datum<?, String> datum : datums) { builder.add(datum.asFeatures()); }
+    return builder.build();
+  }
+
+  /** Pack a list of feature collections, one per datum */
+  public static PackedFeatures packFeatures(List<? extends Collection<String>> datums) {
+    Builder builder = new Builder(datums.size());
+    for (Collection<String> features : datums) { builder.add(features); }
+    return builder.build();
+  }
+
+  /** The number of datums */
+  public int size() { return offsets.length - 1; }
+
+  /** The index into {@link #feature(int)} of the first feature of a datum */
+  public int start(int datum) { return offsets[datum]; }
+
+  /** The index into {@link #feature(int)} one past the last feature of a datum */
+  public int end(int datum) { return offsets[datum + 1]; }
+
+  /** The id of the feature at the given index */
+  public int feature(int index) { return ids[index]; }
+
+  /** The feature string of an id */
+  public String name(int id) { return vocabulary[id]; }
+
+  /** The number of distinct features over all the datums */
+  public int vocabularySize() { return vocabulary.length; }
+
+  /** The value of the feature at the given index */
+  public float value(int index) { return values == null ? 1.0f : values[index]; }
+
+  /** The total number of (distinct, per datum) features over all the datums */
+  public int numFeatures() { return ids.length; }
+
+  /**
+   * The dot product of a datum with a weight vector indexed by a model's features.
+   * Features the model does not know carry no weight.
+   */
+  public double dot(int datum, Translation translation, double[] weights) {
+    double sum = 0.0;
+    for (int i = offsets[datum]; i < offsets[datum + 1]; ++i) {
+      int feature = translation.toModel(ids[i]);
+      if (feature >= 0) { sum += weights[feature] * (values == null ? 1.0 : values[i]); }
+    }
+    return sum;
+  }
+
+  /**
+   * The features of a datum as a model's feature ids, as a linear classifier takes them
+   * (a feature with a count of n is repeated n times). Features the model does not know are dropped.
+   */
+  public int[] toModel(int datum, Translation translation) {
+    int length = 0;
+    int[] rtn = new int[offsets[datum + 1] - offsets[datum]];
+    for (int i = offsets[datum]; i < offsets[datum + 1]; ++i) {
+      int feature = translation.toModel(ids[i]);
+      if (feature < 0) { continue; }
+      int count = values == null ? 1 : Math.max(1, Math.round(values[i]));
+      if (length + count > rtn.length) { rtn = Arrays.copyOf(rtn, Math.max(rtn.length * 2, length + count)); }
+      for (int k = 0; k < count; ++k) { rtn[length++] = feature; }
+    }
+    return length == rtn.length ? rtn : Arrays.copyOf(rtn, length);
+  }
+
+  /**
+   * The translation of these datums' features onto a model's feature index.
+   * This is built the first time the datums are scored by the model, and kept for as long as the datums are.
+   */
+  public Translation translation(Index<String> modelIndex) {
+    for (Translation translation : translations) {
+      if (translation.isFor(modelIndex)) { return translation; }
+    }
+    synchronized (this) {
+      Translation[] translations = this.translations;
+      for (Translation translation : translations) {
+        if (translation.isFor(modelIndex)) { return translation; }
+      }
+      Translation translation = new Translation(vocabulary, modelIndex);
+      Translation[] grown = Arrays.copyOf(translations, translations.length + 1);
+      grown[translations.length] = translation;
+      this.translations = grown;
+      return translation;
+    }
+  }
+
+  /** Incrementally packs datums */
+  private static class Builder {
+    private final HashMap<String, Integer> vocabulary = new HashMap<>();
+    private final int[] offsets;
+    private int[] ids = new int[64];
+    private float[] values = null;
+    private int numDatums = 0;
+    private int length = 0;
+
+    private Builder(int numDatums) {
+      this.offsets = new int[numDatums + 1];
+    }
+
+    private void add(Collection<String> features) {
+      // Number and sort this datum's features
+      int[] datum = new int[features.size()];
+      int k = 0;
+      for (String feature : features) {
+        Integer id = vocabulary.get(feature);
+        if (id == null) {
+          id = vocabulary.size();
+          vocabulary.put(feature, id);
+        }
+        datum[k++] = id;
+      }
+      Arrays.sort(datum);
+      // Append them, collapsing duplicates into counts
+      if (length + datum.length > ids.length) { ids = Arrays.copyOf(ids, Math.max(ids.length * 2, length + datum.length)); }
+      if (values != null && values.length < ids.length) { values = Arrays.copyOf(values, ids.length); }
+      int start = length;
+      for (int i = 0; i < datum.length; ++i) {
+        if (length > start && ids[length - 1] == datum[i]) {
+          if (values == null) {
+            values = new float[ids.length];
+            Arrays.fill(values, 0, length, 1.0f);
+          }
+          values[length - 1] += 1.0f;
+        } else {
+          ids[length] = datum[i];
+          if (values != null) { values[length] = 1.0f; }
+          length += 1;
+        }
+      }
+      numDatums += 1;
+      offsets[numDatums] = length;
+    }
+
+    private PackedFeatures build() {
+      assert numDatums == offsets.length - 1;
+      String[] names = new String[vocabulary.size()];
+      for (Map.Entry<String, Integer> entry : vocabulary.entrySet()) { names[entry.getValue()] = entry.getKey(); }
+      return new PackedFeatures(names, offsets, Arrays.copyOf(ids, length), values == null ? null : Arrays.copyOf(values, length));
+    }
+  }
+
+  /**
+   * A mapping from the feature ids of some packed datums onto the feature ids of a model;
+   * see {@link PackedFeatures#translation(Index)}.
+   * The model's feature index must not change after the translation is created.
+   */
+  public static class Translation {
+    private final Index<String> modelIndex;
+    /** The model id of every id of the packed datums, or -1 if the model does not have the feature */
+    private final int[] table;
+
+    private Translation(String[] vocabulary, Index<String> modelIndex) {
+      this.modelIndex = modelIndex;
+      this.table = new int[vocabulary.length];
+      for (int i = 0; i < vocabulary.length; ++i) { table[i] = modelIndex.indexOf(vocabulary[i]); }
+    }
+
+    /** Returns whether this is the translation for the given (identical) feature index */
+    public boolean isFor(Index<String> featureIndex) {
+      return modelIndex == featureIndex;
+    }
+
+    /** The model's id for a feature id of the packed datums, or -1 if the model does not have the feature */
+    public int toModel(int id) {
+      return table[id];
+    }
+  }
+}
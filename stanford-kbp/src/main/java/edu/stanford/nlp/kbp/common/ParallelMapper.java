@@ -0,0 +1,201 @@
+package edu.stanford.nlp.kbp.common;
+
+import edu.stanford.nlp.util.Execution;
+import edu.stanford.nlp.util.IterableIterator;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Map over an iterator in parallel, on a fixed pool of threads which is reused across calls.
+ *
+ * <p>Elements are read from the input lazily, as the output is consumed, and at most a fixed number of elements
+ * (the look-ahead) are being mapped or waiting to be consumed at any one time.
+ * For the ordered map, the pending results are kept in a reorder buffer in the order their inputs were read,
+ * so the output is in the same order as the input, without any extra threads or locks to enforce it.</p>
+ *
+ * <p>Null inputs, and null outputs of the mapper, are skipped.
+ * If the mapper throws an exception, it is rethrown (wrapped in a RuntimeException if it is checked)
+ * from the output iterator.</p>
+ *
+ * <p>The mapper runs on the threads of this pool, so it should not itself wait on a map from the same pool;
+ * if every thread of the pool does so, the map deadlocks.</p>
+ */
+public class ParallelMapper implements Closeable {
+
+  /** The shared mapper, with {@link Execution#threads} threads, created when first used */
+  private static ParallelMapper shared = null;
+
+  /** The number of threads in the pool */
+  public final int threads;
+  private final ExecutorService pool;
+
+  /**
+   * Create a new mapper, with its own pool of (daemon) threads.
+   * This should be closed when it is no longer needed.
+   * @param threads The number of threads to map on.
+   */
+  public ParallelMapper(int threads) {
+    if (threads < 1) { throw new IllegalArgumentException("Need at least one thread: " + threads); }
+    this.threads = threads;
+    final AtomicInteger threadIndex = new AtomicInteger(0);
+    this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "ParallelMapper-" + threadIndex.getAndIncrement());
+      thread.setDaemon(true);  // Kill on program termination
+      return thread;
+    });
+  }
+
+  /**
+   * The mapper shared across the program, with {@link Execution#threads} threads.
+   * If it has been closed, a new one is created.
+   */
+  public static synchronized ParallelMapper shared() {
+    if (shared == null || shared.pool.isShutdown()) {
+      shared = new ParallelMapper(Math.max(1, Execution.threads));
+    }
+    return shared;
+  }
+
+  /** The default look-ahead: a few elements per thread, so that no thread waits on the consumer */
+  public int defaultLookahead() {
+    return 3 * threads;
+  }
+
+  /**
+   * Map from one iterator to another in parallel, ignoring null entries.
+   * The output is in the same order as the input.
+   *
+   * @param input The elements to map.
+   * @param mapper The function to apply to every element. This must be safe to call from multiple threads.
+   * @param lookahead The maximum number of elements which may be mapped ahead of the consumer of the output.
+   */
+  public <T1,T2> IterableIterator<T2> mapIgnoreNull(final Iterator<T1> input, final Function<T1,T2> mapper, final int lookahead) {
+    if (lookahead < 1) { throw new IllegalArgumentException("Look-ahead must be positive: " + lookahead); }
+    return new IterableIterator<>(new Iterator<T2>() {
+      /** The reorder buffer: results pending, in the order of the input */
+      private final ArrayDeque<Future<T2>> pending = new ArrayDeque<>(lookahead);
+      private T2 next = null;
+
+      @Override
+      public boolean hasNext() {
+        while (next == null) {
+          fill(input, mapper, pending, lookahead);
+          if (pending.isEmpty()) { return false; }
+          next = await(pending.removeFirst());
+        }
+        return true;
+      }
+
+      @Override
+      public T2 next() {
+        if (!hasNext()) { throw new NoSuchElementException(); }
+        T2 rtn = next;
+        next = null;
+        return rtn;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    });
+  }
+
+  /** @see ParallelMapper#mapIgnoreNull(Iterator, Function, int) */
+  public <T1,T2> IterableIterator<T2> mapIgnoreNull(Iterator<T1> input, Function<T1,T2> mapper) {
+    return mapIgnoreNull(input, mapper, defaultLookahead());
+  }
+
+  /**
+   * Map from one iterator to another in parallel, ignoring null entries.
+   * The output is in the order the results are computed, rather than the order of the input.
+   *
+   * @see ParallelMapper#mapIgnoreNull(Iterator, Function, int)
+   */
+  public <T1,T2> IterableIterator<T2> mapIgnoreNullUnordered(final Iterator<T1> input, final Function<T1,T2> mapper, final int lookahead) {
+    if (lookahead < 1) { throw new IllegalArgumentException("Look-ahead must be positive: " + lookahead); }
+    return new IterableIterator<>(new Iterator<T2>() {
+      private final CompletionService<T2> completed = new ExecutorCompletionService<>(pool);
+      private int inFlight = 0;
+      private T2 next = null;
+
+      @Override
+      public boolean hasNext() {
+        while (next == null) {
+          // Fill up the look-ahead
+          while (inFlight < lookahead && input.hasNext()) {
+            final T1 elem = input.next();
+            if (elem != null) {
+              completed.submit(() -> mapper.apply(elem));
+              inFlight += 1;
+            }
+          }
+          if (inFlight == 0) { return false; }
+          // Take whichever finishes first
+          try {
+            Future<T2> done = completed.take();
+            inFlight -= 1;
+            next = await(done);
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+        }
+        return true;
+      }
+
+      @Override
+      public T2 next() {
+        if (!hasNext()) { throw new NoSuchElementException(); }
+        T2 rtn = next;
+        next = null;
+        return rtn;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    });
+  }
+
+  /** @see ParallelMapper#mapIgnoreNullUnordered(Iterator, Function, int) */
+  public <T1,T2> IterableIterator<T2> mapIgnoreNullUnordered(Iterator<T1> input, Function<T1,T2> mapper) {
+    return mapIgnoreNullUnordered(input, mapper, defaultLookahead());
+  }
+
+  /**
+   * Stop the threads of this mapper. Maps which are still running are interrupted.
+   */
+  @Override
+  public void close() {
+    pool.shutdownNow();
+  }
+
+  /** Submit elements from the input until the reorder buffer holds the look-ahead, or the input is exhausted */
+  private <T1,T2> void fill(Iterator<T1> input, final Function<T1,T2> mapper, ArrayDeque<Future<T2>> pending, int lookahead) {
+    while (pending.size() < lookahead && input.hasNext()) {
+      final T1 elem = input.next();
+      if (elem != null) { pending.addLast(pool.submit(() -> mapper.apply(elem))); }
+    }
+  }
+
+  /** Wait on a result, rethrowing any exception thrown by the mapper */
+  private static <T2> T2 await(Future<T2> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) { throw (RuntimeException) cause; }
+      if (cause instanceof Error) { throw (Error) cause; }
+      throw new RuntimeException(cause);
+    }
+  }
+}
@@ -16,9 +16,16 @@ import static edu.stanford.nlp.util.logging.Redwood.Util.*;
 import java.io.*;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
@@ -32,11 +39,24 @@ import java.util.zip.GZIPOutputStream;
 public class PostgresUtils {
 
   /**
-   * A map saving named connections that can be re-used multiple times.
+   * A pool of named connections that can be re-used multiple times.
    * The primary motivation for this is to allow disabling auto-commit, which
    * provides a significant speedup for repeated insertions.
+   * Up to {@link Props#PSQL_POOLSIZE} connections are opened for any given name.
    */
-  private static final Map<String, Connection> namedConnections = new ConcurrentHashMap<>();
+  private static final Map<String, BlockingQueue<Connection>> idleConnections = new ConcurrentHashMap<>();
+  /** The number of connections opened for each name; this is at most {@link Props#PSQL_POOLSIZE} */
+  private static final Map<String, AtomicInteger> numConnections = new ConcurrentHashMap<>();
+  /** Every connection ever opened by the pool, so that they can be closed on shutdown */
+  private static final Set<Connection> allConnections = Collections.newSetFromMap(new ConcurrentHashMap<>());
+  /** The connections checked out by the current thread, so that nested calls with the same name reuse the connection */
+  private static final ThreadLocal<Map<String, Connection>> heldConnections = ThreadLocal.withInitial(HashMap::new);
+  /** The embedded stores backing each table, if {@link Props#CACHE_BACKEND} is LOCAL */
+  private static final Map<String, KeyValueStore> localStores = new ConcurrentHashMap<>();
+  /** Locks to make read-modify-write operations on a local store atomic, by table */
+  private static final Map<String, Object> localStoreLocks = new ConcurrentHashMap<>();
+  /** Buffers of writes kept outside of this class, to flush at shutdown before the stores and connections are closed */
+  private static final List<Runnable> shutdownFlushes = new CopyOnWriteArrayList<>();
 
   /** The logger for Postgres messages */
   private static final Redwood.RedwoodChannels logger = Redwood.channels("PSQL");
@@ -52,6 +72,28 @@ public class PostgresUtils {
     Runtime.getRuntime().addShutdownHook(new Thread() {
       @Override
       public void run() {
+        // Flush external write buffers
+        for (Runnable flush : shutdownFlushes) {
+          try {
+            flush.run();
+          } catch (Throwable t) {
+            logger.err(t);
+          }
+        }
+        // Close local stores
+        for (KeyValueStore store : localStores.values()) {
+          try {
+            store.close();
+          } catch (Throwable t) {
+            logger.err(t);
+          }
+        }
+        // Flush write-behind queue
+        try {
+          WriteBehind.drainAll();
+        } catch (Throwable t) {
+          logger.err(t);
+        }
         // Flush batch
         for (final Map.Entry<Pair<String, Connection>, StatementBundle> entry : KeyValueCallback.stmts.entrySet()) {
           new Thread() {
@@ -66,7 +108,7 @@ public class PostgresUtils {
           }.start();
         }
         // Close connections
-        for (final Connection conn : namedConnections.values()) {
+        for (final Connection conn : allConnections) {
           new Thread() {
             @Override
             public void run() {
@@ -85,17 +127,209 @@ public class PostgresUtils {
             }
           }.start();
         }
+        // Report latencies
+        for (Map.Entry<String, LatencyHistogram> entry : latencies().entrySet()) {
+          logger.log(entry.getKey() + ": " + entry.getValue());
+        }
+      }
+    });
+  }
+
+  /**
+   * Get the local store backing a table, if the caches live on local disk rather than in Postgres.
+   * @param table The table to get the store for; this is opened if it is not already.
+   * @return The store for this table, or null if {@link Props#CACHE_BACKEND} is not LOCAL.
+   */
+  static KeyValueStore localStore(String table) {
+    if (Props.CACHE_BACKEND != Props.CacheBackend.LOCAL) { return null; }
+    return localStores.computeIfAbsent(table, name -> {
+      try {
+        return new LogStructuredStore(new File(Props.CACHE_LOCAL_DIR, name), Props.CACHE_LOCAL_SEGMENTMB * 1024 * 1024);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
       }
     });
   }
 
+  /**
+   * A simple, thread-safe histogram of operation latencies, bucketed by powers of two microseconds.
+   */
+  public static class LatencyHistogram {
+    /** Bucket i counts operations which took [2^i, 2^(i+1)) microseconds */
+    private final AtomicLongArray buckets = new AtomicLongArray(40);
+    private final AtomicLong count = new AtomicLong(0);
+    private final AtomicLong totalMicros = new AtomicLong(0);
+
+    /** Record an operation which started at the given time, as given by {@link System#nanoTime()} */
+    public void record(long startNanos) {
+      long micros = Math.max(0, (System.nanoTime() - startNanos) / 1000);
+      int bucket = micros == 0 ? 0 : Math.min(buckets.length() - 1, 63 - Long.numberOfLeadingZeros(micros));
+      buckets.incrementAndGet(bucket);
+      count.incrementAndGet();
+      totalMicros.addAndGet(micros);
+    }
+
+    public long count() { return count.get(); }
+
+    public double meanMillis() {
+      long count = this.count.get();
+      return count == 0 ? 0.0 : ((double) totalMicros.get()) / ((double) count) / 1000.0;
+    }
+
+    /** An upper bound on the given percentile (between 0 and 1) of the latency, in milliseconds */
+    public double percentileMillis(double percentile) {
+      long target = (long) Math.ceil(percentile * count.get());
+      long seen = 0;
+      for (int i = 0; i < buckets.length(); ++i) {
+        seen += buckets.get(i);
+        if (seen >= target) { return ((double) (1L << (i + 1))) / 1000.0; }
+      }
+      return Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("n=%d mean=%.2fms p50<=%.2fms p90<=%.2fms p99<=%.2fms",
+          count(), meanMillis(), percentileMillis(0.50), percentileMillis(0.90), percentileMillis(0.99));
+    }
+  }
+
+  /** The latencies of cache operations, keyed by table.operation */
+  private static final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+  /** Get the latency histogram for a given operation on a given table */
+  public static LatencyHistogram latency(String table, String operation) {
+    return latencies.computeIfAbsent(table + "." + operation, x -> new LatencyHistogram());
+  }
+
+  /** All latency histograms recorded so far, keyed by table.operation */
+  public static Map<String, LatencyHistogram> latencies() {
+    return Collections.unmodifiableMap(new TreeMap<>(latencies));
+  }
+
+  /**
+   * Cache writes which have been accepted but not yet written to Postgres; see {@link Props#PSQL_WRITEBEHIND_MS}.
+   * Reads through a {@link KeyValueCallback} see these pending writes, so a caller can always read its own writes.
+   * The queue is written out in batches by a background thread, on its own connection, and committed after every batch.
+   */
+  private static class WriteBehind {
+    /**
+     * A pending write. This is compared by identity, so that a write is only dropped from the queue
+     * once that very write has been written, and never because an equal (or since changed) value has been.
+     */
+    private static final class Pending {
+      public final KeyValueCallback callback;
+      public final Object value;
+      private Pending(KeyValueCallback callback, Object value) {
+        this.callback = callback;
+        this.value = value;
+      }
+    }
+
+    /** table -&gt; key -&gt; the pending write for that key */
+    private static final Map<String, ConcurrentHashMap<String, Pending>> pending = new ConcurrentHashMap<>();
+    private static Thread writer = null;
+
+    private static synchronized void ensureStarted() {
+      if (writer == null) {
+        writer = new Thread("psql-writebehind") {
+          @Override
+          public void run() {
+            while (true) {
+              try {
+                Thread.sleep(Math.max(1, Props.PSQL_WRITEBEHIND_MS));
+              } catch (InterruptedException e) {
+                return;
+              }
+              try {
+                drainAll();
+              } catch (Throwable t) {
+                logger.err(t);
+              }
+            }
+          }
+        };
+        writer.setDaemon(true);
+        writer.start();
+      }
+    }
+
+    private static void enqueue(KeyValueCallback callback, String table, String key, Object value) {
+      ensureStarted();
+      pending.computeIfAbsent(table, x -> new ConcurrentHashMap<>()).put(key, new Pending(callback, value));
+    }
+
+    /** Return the pending write for a key, or null if there is none */
+    private static Pending lookup(String table, String key) {
+      Map<String, Pending> queue = pending.get(table);
+      return queue == null ? null : queue.get(key);
+    }
+
+    private static void drainAll() {
+      for (String table : new ArrayList<>(pending.keySet())) {
+        drain(table);
+      }
+    }
+
+    /**
+     * Write every pending write for a table to Postgres, blocking until it is written.
+     * This must not be called while holding the lock on a {@link KeyValueCallback}, as serializing a pending value
+     * may need to acquire that lock.
+     */
+    private static void drain(final String table) {
+      final ConcurrentHashMap<String, Pending> queue = pending.get(table);
+      if (queue == null || queue.isEmpty()) { return; }  // (don't lock if there's nothing to do)
+      drainImpl(table, queue);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static synchronized void drainImpl(final String table, final ConcurrentHashMap<String, Pending> queue) {
+      final List<Map.Entry<String, Pending>> snapshot = new ArrayList<>(queue.entrySet());
+      withConnection(table + "_writebehind", psql -> {
+        if (psql == null) { return; }  // couldn't connect; try again next time
+        long start = System.nanoTime();
+        CallableStatement insert = psql.prepareCall("SELECT _jdbc_set_" + table.toLowerCase() + "(?, ?);");
+        try {
+          for (Map.Entry<String, Pending> entry : snapshot) {
+            insert.setString(1, entry.getKey());
+            try {
+              entry.getValue().callback.setValue(insert, entry.getValue().value);
+            } catch (IOException e) {
+              throw new RuntimeException(e);
+            }
+            insert.addBatch();
+          }
+          insert.executeBatch();
+        } finally {
+          insert.close();
+        }
+        if (!psql.getAutoCommit()) { psql.commit(); }
+        for (Map.Entry<String, Pending> entry : snapshot) {
+          queue.remove(entry.getKey(), entry.getValue());  // unless it's been overwritten in the meantime (by identity)
+        }
+        latency(table, "writebehind").record(start);
+      });
+    }
+  }
+
+  /**
+   * Register a function which flushes writes buffered outside of this class -- e.g., the
+   * {@link edu.stanford.nlp.kbp.slotfilling.process.SentenceGlossSink} -- so that they are written at shutdown,
+   * before the local stores and connections are closed.
+   */
+  public static void flushOnShutdown(Runnable flush) {
+    shutdownFlushes.add(flush);
+  }
+
   public static interface Callback {
     public void apply(Connection psql) throws SQLException;
   }
 
   private static class StatementBundle {
+    public final String table;
     public final Connection psql;
     public final PreparedStatement query;
+    public final PreparedStatement queryMany;
     public final PreparedStatement queryKey;
     public PreparedStatement insert;
     public final PreparedStatement delete;
@@ -104,10 +338,23 @@ public class PostgresUtils {
     private int numWritesQueued = 0;
     private Set<String> queued = new HashSet<>();
 
-    private StatementBundle(Connection psql, PreparedStatement query, PreparedStatement queryKey, CallableStatement insert,
+    /**
+     * Whether to batch writes. Batches are per connection, and a read only flushes the batch of its own connection;
+     * so with more than one pooled connection, a write batched on one would be invisible to a read on another
+     * (e.g., losing datums in {@link KeyDatumCallback#append(Connection, String, String, SentenceGroup)}).
+     * Writes are therefore never batched if {@link Props#PSQL_POOLSIZE} is more than 1.
+     */
+    static boolean batching() {
+      return Props.PSQL_BATCH && Props.PSQL_POOLSIZE <= 1;
+    }
+
+    private StatementBundle(String table, Connection psql, PreparedStatement query, PreparedStatement queryMany,
+                            PreparedStatement queryKey, CallableStatement insert,
                             PreparedStatement delete, CallableStatement increment) throws SQLException {
+      this.table = table;
       this.psql = psql;
       this.query = query;
+      this.queryMany = queryMany;
       this.queryKey = queryKey;
       this.insert = insert;
       this.delete = delete;
@@ -122,7 +369,7 @@ public class PostgresUtils {
         flush();
       }
       // update operation
-      if (Props.PSQL_BATCH) {
+      if (batching()) {
         insert.addBatch();
         queued.add(toInsert);
         return true;
@@ -139,7 +386,7 @@ public class PostgresUtils {
         flush();
       }
       // update operation
-      if (Props.PSQL_BATCH) {
+      if (batching()) {
         increment.addBatch();
         queued.add(toIncrement);
         return true;
@@ -151,16 +398,18 @@ public class PostgresUtils {
     /** Flush to disk -- in part for efficiency and in part for consistency on reads */
     public void flush() throws SQLException {
       if (queued.size() > 0) {
+        long start = System.nanoTime();
         insert.executeBatch();
         insert.clearBatch();
         increment.executeBatch();
         increment.clearBatch();
         queued.clear();
+        latency(table, "flush").record(start);
       }
     }
 
     public void ensureWritable(String key) throws SQLException {
-      if (Props.PSQL_BATCH && queued.contains(key)) { flush(); }
+      if (batching() && queued.contains(key)) { flush(); }
     }
   }
 
@@ -211,8 +460,9 @@ public class PostgresUtils {
 
     synchronized void ensureStatements(Connection psql, String table) throws SQLException {
       if (!stmts.containsKey(Pair.makePair(table, psql))) {
-        stmts.put(Pair.makePair(table, psql), new StatementBundle(psql,
+        stmts.put(Pair.makePair(table, psql), new StatementBundle(table, psql,
             psql.prepareStatement("SELECT value FROM " + table + " WHERE key = ?"),
+            psql.prepareStatement("SELECT key, value FROM " + table + " WHERE key = ANY(?)"),
             psql.prepareStatement("SELECT key FROM " + table + " WHERE key = ?"),
             psql.prepareCall("SELECT _jdbc_set_" + table.toLowerCase() + "(?, ?);"),
             psql.prepareStatement("DELETE FROM " + table + " WHERE key = ?"),
@@ -222,6 +472,11 @@ public class PostgresUtils {
     }
 
     public synchronized boolean containsKey(Connection psql, String table, String key) throws SQLException {
+      // Check local store
+      KeyValueStore local = localStore(table);
+      if (local != null) { return local.containsKey(key); }
+      // Check pending writes
+      if (WriteBehind.lookup(table, key) != null) { return true; }
       // Ensure cached statement
       ensureStatements(psql, table);
       PreparedStatement queryKey = stmts.get(Pair.makePair(table, psql)).queryKey;
@@ -231,7 +486,24 @@ public class PostgresUtils {
       return results.next();
     }
 
+    @SuppressWarnings("unchecked")
     public synchronized Maybe<E> get(Connection psql, String table, String key) throws SQLException {
+      long start = System.nanoTime();
+      // Check local store
+      KeyValueStore local = localStore(table);
+      if (local != null) {
+        try {
+          Maybe<byte[]> data = local.get(key);
+          return data.isDefined() ? Maybe.Just(fromBytes(data.get())) : Maybe.<E>Nothing();
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        } finally {
+          latency(table, "get").record(start);
+        }
+      }
+      // Check pending writes
+      WriteBehind.Pending pending = WriteBehind.lookup(table, key);
+      if (pending != null) { return Maybe.Just((E) pending.value); }
       // Ensure cached statement
       ensureStatements(psql, table);
       assert(stmts!=null);
@@ -249,9 +521,93 @@ public class PostgresUtils {
         return Maybe.Just(getValue(results));
       } catch (IOException e) {
         throw new RuntimeException(e);
+      } finally {
+        latency(table, "get").record(start);
       }
     }
+
+    /**
+     * Get the values for a number of keys in a single round trip.
+     *
+     * @param psql The connection to used; generally gotten from {@link Callback#apply(java.sql.Connection)}.
+     * @param table The table to read from.
+     * @param keys The keys to look up.
+     * @return A map from each key which was found to its value. Keys which are not in the table are not in the map.
+     * @throws SQLException
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized Map<String, E> getAll(Connection psql, String table, Collection<String> keys) throws SQLException {
+      Map<String, E> found = new HashMap<>();
+      // Check local store
+      if (localStore(table) != null) {
+        for (String key : keys) {
+          for (E value : get(psql, table, key)) { found.put(key, value); }
+        }
+        return found;
+      }
+      // Check pending writes
+      List<String> toQuery = new ArrayList<>(keys.size());
+      for (String key : keys) {
+        WriteBehind.Pending pending = WriteBehind.lookup(table, key);
+        if (pending != null) {
+          found.put(key, (E) pending.value);
+        } else {
+          toQuery.add(key);
+        }
+      }
+      if (toQuery.isEmpty()) { return found; }
+      long start = System.nanoTime();
+      // Ensure cached statement
+      ensureStatements(psql, table);
+      PreparedStatement query = stmts.get(Pair.makePair(table, psql)).queryMany;
+      // Ensure inserts are pushed
+      stmts.get(Pair.makePair(table, psql)).flush();
+      // Run query
+      Array keyArray = psql.createArrayOf("text", toQuery.toArray());
+      query.setArray(1, keyArray);
+      ResultSet results = query.executeQuery();
+      try {
+        while (results.next()) {
+          found.put(results.getString("key"), getValue(results));
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      } finally {
+        results.close();
+        keyArray.free();
+        latency(table, "getAll").record(start);
+      }
+      return found;
+    }
+
     public synchronized boolean put(Connection psql, String table, String key, E value) throws SQLException {
+      // Write to local store
+      KeyValueStore local = localStore(table);
+      if (local != null) {
+        if (key.length() > 255) {
+          logger.warn("String is too long to be a key [truncating]: " + key);
+          key = key.substring(0, 255);
+        }
+        long start = System.nanoTime();
+        try {
+          local.put(key, toBytes(value));
+          return true;
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        } finally {
+          latency(table, "put").record(start);
+        }
+      }
+      // Queue write, if writing behind
+      if (Props.PSQL_WRITEBEHIND_MS > 0) {
+        if (key.length() > 255) {
+          logger.warn("String is too long to be a key [truncating]: " + key);
+          key = key.substring(0, 255);
+        }
+        WriteBehind.enqueue(this, table, key, value);
+        return true;
+      }
+      long start = System.nanoTime();
       // Ensure cached statement
       ensureStatements(psql, table);
       // Flush anything that may get overwritten
@@ -269,13 +625,35 @@ public class PostgresUtils {
       } catch (IOException e) {
         throw new RuntimeException(e);
       }
-      return stmts.get(Pair.makePair(table, psql)).doInsert(key);
+      try {
+        return stmts.get(Pair.makePair(table, psql)).doInsert(key);
+      } finally {
+        latency(table, "put").record(start);
+      }
+    }
+
+    /**
+     * Put a number of values at once. These are sent to Postgres as a single batch
+     * (or queued, if {@link Props#PSQL_WRITEBEHIND_MS} is set).
+     *
+     * @param psql The connection to used; generally gotten from {@link Callback#apply(java.sql.Connection)}.
+     * @param table The table to write to.
+     * @param values The key/value pairs to write.
+     * @throws SQLException
+     */
+    public synchronized void putAll(Connection psql, String table, Map<String, E> values) throws SQLException {
+      for (Map.Entry<String, E> entry : values.entrySet()) {
+        put(psql, table, entry.getKey(), entry.getValue());
+      }
+      if (Props.PSQL_WRITEBEHIND_MS <= 0) {
+        flush(psql, table);
+      }
     }
 
     /**
      *  @see KeyValueCallback#keys(java.sql.Connection, String, int)
      */
-    public synchronized IterableIterator<String> keys(final Connection psql, final String table) {
+    public IterableIterator<String> keys(final Connection psql, final String table) {
       return keys(psql, table, 1000);
     }
 
@@ -288,7 +666,15 @@ public class PostgresUtils {
      *                  magnitude is usually reasonable.
      * @return An iterator lazily iterating over the values in this table.
      */
-    public synchronized IterableIterator<String> keys(final Connection psql, final String table, int fetchSize) {
+    public IterableIterator<String> keys(final Connection psql, final String table, int fetchSize) {
+      KeyValueStore local = localStore(table);
+      if (local != null) { return new IterableIterator<>(local.keys()); }
+      // (drain pending writes before locking this callback, as the writer may need to lock it to serialize a value)
+      WriteBehind.drain(table);
+      return keysImpl(psql, table, fetchSize);
+    }
+
+    private synchronized IterableIterator<String> keysImpl(final Connection psql, final String table, int fetchSize) {
       try {
         Statement stmt = psql.createStatement();
         final boolean savedAutoCommit = psql.getAutoCommit();
@@ -314,7 +700,7 @@ public class PostgresUtils {
     /**
      *  @see KeyValueCallback#values(java.sql.Connection, String, int)
      */
-    public synchronized IterableIterator<E> values(final Connection psql, final String table) {
+    public IterableIterator<E> values(final Connection psql, final String table) {
       return values(psql, table, 100);
     }
 
@@ -328,7 +714,18 @@ public class PostgresUtils {
      *                  A default here is 100.
      * @return An iterator lazily iterating over the values in this table.
      */
-    public synchronized IterableIterator<E> values(final Connection psql, final String table, int fetchSize) {
+    public IterableIterator<E> values(final Connection psql, final String table, int fetchSize) {
+      KeyValueStore local = localStore(table);
+      if (local != null) {
+        final Iterator<Map.Entry<String, E>> entries = localEntries(local);
+        return new IterableIterator<>(CollectionUtils.iteratorFromMaybeFactory(() ->
+            entries.hasNext() ? Maybe.Just(entries.next().getValue()) : null));
+      }
+      WriteBehind.drain(table);
+      return valuesImpl(psql, table, fetchSize);
+    }
+
+    private synchronized IterableIterator<E> valuesImpl(final Connection psql, final String table, int fetchSize) {
       try {
         final boolean savedAutoCommit = psql.getAutoCommit();
         psql.setAutoCommit(false);
@@ -352,14 +749,36 @@ public class PostgresUtils {
       }
     }
 
-    public synchronized IterableIterator<Map.Entry<String, E>> entries(final Connection psql, final String table) {
+    public IterableIterator<Map.Entry<String, E>> entries(final Connection psql, final String table) {
+      KeyValueStore local = localStore(table);
+      if (local != null) { return new IterableIterator<>(localEntries(local)); }
+      WriteBehind.drain(table);
       return entries(psql, table, true);
     }
 
-    public synchronized IterableIterator<Map.Entry<String, E>> unorderedEntries(final Connection psql, final String table) {
+    public IterableIterator<Map.Entry<String, E>> unorderedEntries(final Connection psql, final String table) {
+      KeyValueStore local = localStore(table);
+      if (local != null) { return new IterableIterator<>(localEntries(local)); }
+      WriteBehind.drain(table);
       return entries(psql, table, false);
     }
 
+    /** Iterate over the entries of a local store, in key order, skipping any key removed since the iterator was created */
+    private Iterator<Map.Entry<String, E>> localEntries(final KeyValueStore local) {
+      final Iterator<String> keys = local.keys();
+      return CollectionUtils.iteratorFromMaybeFactory(() -> {
+        if (!keys.hasNext()) { return null; }
+        String key = keys.next();
+        try {
+          Maybe<byte[]> data = local.get(key);
+          if (!data.isDefined()) { return Maybe.Nothing(); }
+          return Maybe.Just((Map.Entry<String, E>) new AbstractMap.SimpleEntry<>(key, fromBytes(data.get())));
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      });
+    }
+
     private synchronized IterableIterator<Map.Entry<String, E>> entries(final Connection psql, final String table,
                                                                         boolean order) {
       try {
@@ -394,6 +813,18 @@ public class PostgresUtils {
      * @throws SQLException
      */
     public void flush(Connection psql, String table) throws SQLException {
+      // Sync local store
+      KeyValueStore local = localStore(table);
+      if (local != null) {
+        try {
+          local.flush();
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+        return;
+      }
+      // Write anything queued to write behind
+      WriteBehind.drain(table);
       // Ensure cached statement
       ensureStatements(psql, table);
       // Flush anything that may get overwritten
@@ -402,6 +833,10 @@ public class PostgresUtils {
 
     protected abstract void setValue(PreparedStatement stmt, E value) throws SQLException, IOException;
     protected abstract E getValue(ResultSet sresults) throws SQLException, IOException;
+    /** Serialize a value, for storing in a {@link KeyValueStore} */
+    protected abstract byte[] toBytes(E value) throws IOException;
+    /** Deserialize a value, as written by {@link KeyValueCallback#toBytes(Object)} */
+    protected abstract E fromBytes(byte[] data) throws IOException;
   }
 
   /**
@@ -417,6 +852,16 @@ public class PostgresUtils {
     protected synchronized String getValue(ResultSet results) throws SQLException, IOException {
       return results.getString("value");
     }
+
+    @Override
+    protected byte[] toBytes(String value) throws IOException {
+      return value.getBytes("UTF-8");
+    }
+
+    @Override
+    protected String fromBytes(byte[] data) throws IOException {
+      return new String(data, "UTF-8");
+    }
   }
 
   /**
@@ -447,6 +892,17 @@ public class PostgresUtils {
 
     @Override
     protected synchronized void setValue(PreparedStatement stmt, List<Annotation> value) throws SQLException, IOException {
+      byte[] data = toBytes(value);
+      stmt.setBinaryStream(2, new ByteArrayInputStream(data), data.length);
+    }
+
+    @Override
+    protected synchronized List<Annotation> getValue(ResultSet results) throws SQLException, IOException {
+      return fromBytes(results.getBytes("value"));
+    }
+
+    @Override
+    protected synchronized byte[] toBytes(List<Annotation> value) throws IOException {
       // Create streams
       ByteArrayOutputStream out = new ByteArrayOutputStream();
       GZIPOutputStream gzipOut = new GZIPOutputStream(out);
@@ -459,16 +915,14 @@ public class PostgresUtils {
       }
       // Clean up
       if (streamImpl != null) { streamImpl.close(); } else { gzipOut.close(); }
-      // Write to Postgres
-      byte[] data = out.toByteArray();
-      stmt.setBinaryStream(2, new ByteArrayInputStream(data), data.length);
+      return out.toByteArray();
     }
 
     @Override
-    protected synchronized List<Annotation> getValue(ResultSet results) throws SQLException, IOException {
+    protected synchronized List<Annotation> fromBytes(byte[] data) throws IOException {
       try {
-        // Create streams (read from postgres)
-        ByteArrayInputStream input = new ByteArrayInputStream(results.getBytes("value"));
+        // Create streams
+        ByteArrayInputStream input = new ByteArrayInputStream(data);
         GZIPInputStream gzipIn = new GZIPInputStream(input);
         InputStream streamImpl = null;
         // Read length
@@ -499,15 +953,18 @@ public class PostgresUtils {
     public synchronized boolean append(Connection psql, String table, String key, SentenceGroup value) throws SQLException {
       assert key.equals(keyToString(value.key));
       // Flush before we try to retrieve
-      ensureStatements(psql, table);
-      stmts.get(Pair.makePair(table, psql)).ensureWritable(key);
+      if (localStore(table) == null) {
+        ensureStatements(psql, table);
+        stmts.get(Pair.makePair(table, psql)).ensureWritable(key);
+      }
       // Get any datums already keyed
       Maybe<SentenceGroup> existingDatums = get(psql, table, key);
       if (existingDatums.isDefined()) {
         // Add the merged datums
-        // We merge in this order to avoid mutating 'value'
-        existingDatums.get().merge(value);
-        return put(psql, table, key, existingDatums.get().removeDuplicateDatums());
+        // We merge into a copy, as the existing datums may be a pending write which is being written out right now
+        SentenceGroup merged = existingDatums.get().copy();
+        merged.merge(value);
+        return put(psql, table, key, merged.removeDuplicateDatums());
       } else {
         // Add the original datums
         return put(psql, table, key, value.removeDuplicateDatums());
@@ -516,16 +973,26 @@ public class PostgresUtils {
 
     @Override
     protected synchronized void setValue(PreparedStatement stmt, SentenceGroup value) throws SQLException, IOException {
-      ByteArrayOutputStream out = new ByteArrayOutputStream();
-      KryoDatumCache.save(value, out);
-      byte[] data = out.toByteArray();
+      byte[] data = toBytes(value);
       stmt.setBinaryStream(2, new ByteArrayInputStream(data), data.length);
     }
 
     @Override
     protected synchronized SentenceGroup getValue(ResultSet results) throws SQLException, IOException {
+      return fromBytes(results.getBytes("value"));
+    }
+
+    @Override
+    protected synchronized byte[] toBytes(SentenceGroup value) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      KryoDatumCache.save(value, out);
+      return out.toByteArray();
+    }
+
+    @Override
+    protected synchronized SentenceGroup fromBytes(byte[] data) throws IOException {
       try {
-        return KryoDatumCache.load( new ByteArrayInputStream(results.getBytes("value")) );
+        return KryoDatumCache.load( new ByteArrayInputStream(data) );
       } catch (ClassNotFoundException e) {
         throw new IOException(e);
       }
@@ -540,18 +1007,28 @@ public class PostgresUtils {
 
     @Override
     protected synchronized void setValue(PreparedStatement stmt, KBPRelationProvenance value) throws SQLException, IOException {
+      byte[] data = toBytes(value);
+      stmt.setBinaryStream(2, new ByteArrayInputStream(data), data.length);
+    }
+
+    @Override
+    protected synchronized KBPRelationProvenance getValue(ResultSet results) throws SQLException, IOException {
+      return fromBytes(results.getBytes("value"));
+    }
+
+    @Override
+    protected synchronized byte[] toBytes(KBPRelationProvenance value) throws IOException {
       ByteArrayOutputStream out = new ByteArrayOutputStream();
       ObjectOutputStream oos = new ObjectOutputStream(new GZIPOutputStream(out));
       oos.writeObject(value);
       oos.close();
-      byte[] data = out.toByteArray();
-      stmt.setBinaryStream(2, new ByteArrayInputStream(data), data.length);
+      return out.toByteArray();
     }
 
     @Override
-    protected synchronized KBPRelationProvenance getValue(ResultSet results) throws SQLException, IOException {
+    protected synchronized KBPRelationProvenance fromBytes(byte[] data) throws IOException {
       try {
-        ObjectInputStream ois = new ObjectInputStream(new GZIPInputStream(new ByteArrayInputStream(results.getBytes("value"))));
+        ObjectInputStream ois = new ObjectInputStream(new GZIPInputStream(new ByteArrayInputStream(data)));
         KBPRelationProvenance rtn = (KBPRelationProvenance) ois.readObject();
         ois.close();
         return rtn;
@@ -568,18 +1045,28 @@ public class PostgresUtils {
 
     @Override
     protected synchronized void setValue(PreparedStatement stmt, EntityGraph value) throws SQLException, IOException {
+      byte[] data = toBytes(value);
+      stmt.setBinaryStream(2, new ByteArrayInputStream(data), data.length);
+    }
+
+    @Override
+    protected synchronized EntityGraph getValue(ResultSet results) throws SQLException, IOException {
+      return fromBytes(results.getBytes("value"));
+    }
+
+    @Override
+    protected synchronized byte[] toBytes(EntityGraph value) throws IOException {
       ByteArrayOutputStream out = new ByteArrayOutputStream();
       ObjectOutputStream oos = new ObjectOutputStream(new GZIPOutputStream(out));
       oos.writeObject(value);
       oos.close();
-      byte[] data = out.toByteArray();
-      stmt.setBinaryStream(2, new ByteArrayInputStream(data), data.length);
+      return out.toByteArray();
     }
 
     @Override
-    protected synchronized EntityGraph getValue(ResultSet results) throws SQLException, IOException {
+    protected synchronized EntityGraph fromBytes(byte[] data) throws IOException {
       try {
-        ObjectInputStream ois = new ObjectInputStream(new GZIPInputStream(new ByteArrayInputStream(results.getBytes("value"))));
+        ObjectInputStream ois = new ObjectInputStream(new GZIPInputStream(new ByteArrayInputStream(data)));
         EntityGraph rtn = (EntityGraph) ois.readObject();
         ois.close();
         return rtn;
@@ -592,18 +1079,28 @@ public class PostgresUtils {
   public static abstract class KeyEntityContextCallback extends KeyValueCallback<LinkedHashSet<EntityContext>> {
     @Override
     protected void setValue(PreparedStatement stmt, LinkedHashSet<EntityContext> value) throws SQLException, IOException {
+      byte[] data = toBytes(value);
+      stmt.setBinaryStream(2, new ByteArrayInputStream(data), data.length);
+    }
+
+    @Override
+    protected LinkedHashSet<EntityContext> getValue(ResultSet results) throws SQLException, IOException {
+      return fromBytes(results.getBytes("value"));
+    }
+
+    @Override
+    protected byte[] toBytes(LinkedHashSet<EntityContext> value) throws IOException {
       ByteArrayOutputStream os = new ByteArrayOutputStream();
       for (EntityContext context : value) {
         context.toProto().writeDelimitedTo(os);
       }
       os.close();
-      byte[] data = os.toByteArray();
-      stmt.setBinaryStream(2, new ByteArrayInputStream(data), data.length);
+      return os.toByteArray();
     }
 
     @Override
-    protected LinkedHashSet<EntityContext> getValue(ResultSet results) throws SQLException, IOException {
-      ByteArrayInputStream is = new ByteArrayInputStream(results.getBytes("value"));
+    protected LinkedHashSet<EntityContext> fromBytes(byte[] data) throws IOException {
+      ByteArrayInputStream is = new ByteArrayInputStream(data);
       LinkedHashSet<EntityContext> rtn = new LinkedHashSet<>();
       while (is.available() > 0) {
         rtn.add(EntityContext.fromProto(KBPProtos.EntityContext.parseDelimitedFrom(is)));
@@ -640,6 +1137,13 @@ public class PostgresUtils {
      */
     protected void incrementCount(Connection psql, String table, KEY keyAsObject, double value) throws SQLException {
       String key = key2string(keyAsObject);
+      // Case: local store (read, then write)
+      if (localStore(table) != null) {
+        synchronized (localStoreLocks.computeIfAbsent(table, x -> new Object())) {
+          put(psql, table, key, get(psql, table, key).getOrElse(0.0) + value);
+        }
+        return;
+      }
       // Ensure cached statement
       ensureStatements(psql, table);
       // Flush anything that may get overwritten
@@ -684,6 +1188,16 @@ public class PostgresUtils {
     protected Double getValue(ResultSet results) throws SQLException, IOException {
       return results.getDouble("value");
     }
+
+    @Override
+    protected byte[] toBytes(Double value) throws IOException {
+      return ByteBuffer.allocate(8).putDouble(value).array();
+    }
+
+    @Override
+    protected Double fromBytes(byte[] data) throws IOException {
+      return ByteBuffer.wrap(data).getDouble();
+    }
   }
 
   /**
@@ -763,6 +1277,10 @@ public class PostgresUtils {
     protected synchronized Boolean getValue(ResultSet results) throws SQLException, IOException {
       return results.getBoolean("value");
     }
+    @Override
+    protected synchronized byte[] toBytes(Boolean value) throws IOException { return new byte[]{ (byte) (value ? 1 : 0) }; }
+    @Override
+    protected synchronized Boolean fromBytes(byte[] data) throws IOException { return data[0] != 0; }
     protected boolean contains(Connection psql, String table, String key) throws SQLException { return get(psql, table, key).getOrElse(false); }
     public synchronized boolean add(Connection psql, String table, String key) throws SQLException { return put(psql, table, key, true); }
   }
@@ -802,21 +1320,56 @@ public class PostgresUtils {
     }
   }
 
+  /**
+   * Check out a connection from the pool for the given name, opening a new one if fewer than
+   * {@link Props#PSQL_POOLSIZE} are open, and otherwise waiting for one to be returned.
+   */
+  private static Connection checkoutConnection(String connectionName) throws SQLException {
+    BlockingQueue<Connection> idle = idleConnections.computeIfAbsent(connectionName, x -> new LinkedBlockingQueue<>());
+    Connection psql = idle.poll();
+    if (psql != null) { return psql; }
+    AtomicInteger numOpen = numConnections.computeIfAbsent(connectionName, x -> new AtomicInteger(0));
+    int opened = numOpen.incrementAndGet();
+    if (opened <= Math.max(1, Props.PSQL_POOLSIZE)) {
+      if (opened == 2 && Props.PSQL_BATCH) {
+        logger.warn("psql.poolsize is more than 1: not batching writes to " + connectionName);
+      }
+      try {
+        psql = DriverManager.getConnection(PostgresUtils.uri(), Props.PSQL_USERNAME, Props.PSQL_PASSWORD);
+        psql.setAutoCommit(true);
+        allConnections.add(psql);
+        return psql;
+      } catch (SQLException e) {
+        numOpen.decrementAndGet();
+        throw e;
+      }
+    }
+    numOpen.decrementAndGet();
+    try {
+      return idle.take();
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   public static void withConnection(String connectionName, Callback callback) {
     try {
       // Get (or create) connection
-      Connection psql;
-      if (!namedConnections.containsKey(connectionName)) {
-        psql = DriverManager.getConnection(PostgresUtils.uri(), Props.PSQL_USERNAME, Props.PSQL_PASSWORD);
-        psql.setAutoCommit(true);
-        namedConnections.put(connectionName, psql);
-      } else {
-        psql = namedConnections.get(connectionName);
+      Map<String, Connection> held = heldConnections.get();
+      Connection psql = held.get(connectionName);
+      if (psql != null) {
+        // Case: a nested call on the same thread -- reuse the connection
+        callback.apply(psql);
+        return;
       }
+      psql = checkoutConnection(connectionName);
       // Run callback
-      //noinspection SynchronizationOnLocalVariableOrMethodParameter
-      synchronized (psql) {
+      held.put(connectionName, psql);
+      try {
         callback.apply(psql);
+      } finally {
+        held.remove(connectionName);
+        idleConnections.get(connectionName).add(psql);
       }
     } catch (SQLException e) {
       if (e instanceof BatchUpdateException) {
@@ -925,6 +1478,16 @@ public class PostgresUtils {
   public static void withTable(String tableName, final Callback callback, String createStatement) { withTable(tableName, callback, Maybe.Just(createStatement)); }
 
   public static void withKeyValueTable(String tableName, final Callback callback, String keyType, String valueType) {
+    // Case: the table lives on local disk; there is no connection
+    if (localStore(tableName) != null) {
+      try {
+        callback.apply(null);
+      } catch (SQLException e) {
+        throw new RuntimeException(e);
+      }
+      return;
+    }
+    // Case: the table lives in Postgres
     withTable(tableName, callback, Maybe.Just(
         "CREATE TABLE IF NOT EXISTS \"" + tableName + "\"( key " + keyType + " PRIMARY KEY, value " + valueType +" );" +
         "DROP FUNCTION IF EXISTS \"_jdbc_set_" + tableName.toLowerCase() + "\"(" + keyType + ", " + valueType + ");" +
@@ -1011,6 +1574,21 @@ public class PostgresUtils {
 
   /** Drops a table from the database. USE WITH CARE (this is mostly just for tests)! */
   public static boolean dropTable(final String tableName, boolean force) {
+    if (Props.CACHE_BACKEND == Props.CacheBackend.LOCAL) {
+      File directory = new File(Props.CACHE_LOCAL_DIR, tableName);
+      if (!force && !directory.exists()) { return false; }
+      try {
+        KeyValueStore store = localStores.remove(tableName);
+        if (store != null) { store.close(); }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      File[] files = directory.listFiles();
+      for (File file : files == null ? new File[0] : files) {
+        if (!file.delete()) { logger.warn("could not delete " + file); }
+      }
+      return directory.delete();
+    }
     if (!force && !haveTable(tableName)) { return false; }
     withConnection(tableName, psql -> {
       // Create table
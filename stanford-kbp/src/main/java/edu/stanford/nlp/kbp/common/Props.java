@@ -26,6 +26,7 @@ import edu.stanford.nlp.kbp.slotfilling.process.RelationFilter;
 import edu.stanford.nlp.kbp.slotfilling.train.KBPTrainer;
 import edu.stanford.nlp.sequences.SeqClassifierFlags;
 import edu.stanford.nlp.util.Execution.Option;
+import edu.stanford.nlp.util.FileBackedCache;
 import edu.stanford.nlp.util.MetaClass;
 
 import static edu.stanford.nlp.util.logging.Redwood.Util.*;
@@ -173,6 +174,8 @@ public class Props {
   public static int INDEX_TERMINDEXDIVISOR = 1;  // see http://blog.mikemccandless.com/2010/07/lucenes-ram-usage-for-searching.html
   @Option(name="index.fastbackoff", gloss="If true, backoff to less entries -- this is likely faster, but less efficient")
   public static boolean INDEX_FASTBACKOFF = false;
+  @Option(name="index.backoff.speculative", gloss="Run up to this many backoff queries at once, discarding the looser ones if the stricter ones return enough results. 1 runs them one at a time")
+  public static int INDEX_BACKOFF_SPECULATIVE = 1;
   @Option(name="index.relationtriggers", gloss="File of keywords for each relation")
   public static File INDEX_RELATIONTRIGGERS = new File("edu/stanford/nlp/kbp/keywords_no_ml");
   @Option(name="index.reannotate", gloss="Annotators to use for re-annotating documents retrieved from the index (would normally be empty, but can be used to fix up annotations)")
@@ -186,6 +189,10 @@ public class Props {
   public static boolean INDEX_COREF_DO = true;
   @Option(name="index.postirannotator.do", gloss="Use the new PostIRAnnotator when possible")
   public static boolean INDEX_POSTIRANNOTATOR_DO = true;
+  @Option(name="index.postirannotator.prefilter", gloss="Only parse the sentences of a retrieved document which match the entity (and slot value) lexically, or through a stored coref chain; skip the rest. Ignored if the parse cache is on.")
+  public static boolean INDEX_POSTIRANNOTATOR_PREFILTER = false;
+  @Option(name="index.postirannotator.prefilter.context", gloss="For documents without stored coref chains, also keep this many sentences on either side of a sentence the prefilter matches, for pronominal and nominal mentions")
+  public static int INDEX_POSTIRANNOTATOR_PREFILTER_CONTEXT = 1;
   @Option(name="index.postirannotator.approxname", gloss="Do approximate name matching on a first or last name if no full name exists in the article")
   public static boolean INDEX_POSTIRANNOTATOR_APPROXNAME = false;
   @Option(name="index.postirannotator.minlinkpercent", gloss="At least this percentage of links must be linked to the query entity for the query entity to be considered representative")
@@ -198,6 +205,11 @@ public class Props {
   @Option(name="index.websnippets.dir", gloss="The directory with annotated webqueries")
   public static File INDEX_WEBSNIPPETS_DIR = new File("/scr/nlp/data/tac-kbp/common-data/annotated_docs/websnippets");
 
+  @Option(name="index.fanout.do", gloss="If true, query every index backend in parallel, merging results by score and stopping once enough unique sentences are found")
+  public static boolean INDEX_FANOUT_DO = false;
+  @Option(name="index.batch.size", gloss="Run up to this many queries known ahead of time (e.g., when harvesting training datums) in a single pass over the index. 0 runs every query on its own")
+  public static int INDEX_BATCH_SIZE = 0;
+
   @Option(name="index.lucene.timeoutms", gloss="Lucene query timeout, in miliseconds. Avoid setting too big (or, set to Integer.MAX_VALUE outright)")
   public static int INDEX_LUCENE_TIMEOUTMS = Integer.MAX_VALUE;
   @Option(name="index.lucene.skippingbackoff", gloss="Skip documents if no results are found early. This is a useful tweak for speeding up datum caching")
@@ -220,6 +232,10 @@ public class Props {
   public static String[] TRAIN_TUPLES_FILES = new String[]{};
   @Option(name="train.tuples.aux", gloss="Additional tuples stored in TSV files")
   public static String[] TRAIN_TUPLES_AUX = new String[]{};
+  @Option(name="train.harvest.threads", gloss="The number of threads querying and featurizing tuples which miss the datum cache when collecting training data. 1 collects serially.")
+  public static int TRAIN_HARVEST_THREADS = 1;
+  @Option(name="train.harvest.checkpoint", gloss="If set, a directory to checkpoint the progress of collecting training data in; an interrupted run over the same tuples resumes from it")
+  public static File TRAIN_HARVEST_CHECKPOINT = null;
 
   @Option(name="train.model", gloss="Model to train from")
   public static ModelType TRAIN_MODEL = ModelType.LR_INC;
@@ -470,6 +486,20 @@ public class Props {
   public static int TEST_NQUERIES = Integer.MAX_VALUE;
   @Option(name="test.querystart", gloss="Index of first test query to process.  This property is ignored if test.nqueries is null.")
   public static int TEST_QUERYSTART = 0;
+  @Option(name="test.parallel.threads", gloss="The number of query entities to fill slots for concurrently. 1 runs the entities serially.")
+  public static int TEST_PARALLEL_THREADS = 1;
+  @Option(name="test.parallel.timeoutms", gloss="The time budget for filling slots for a single query entity, in miliseconds. Integer.MAX_VALUE disables the timeout.")
+  public static int TEST_PARALLEL_TIMEOUTMS = Integer.MAX_VALUE;
+  @Option(name="test.pipeline.do", gloss="Run IR, annotation, featurization and classification for an entity as a staged pipeline, with bounded queues between the stages")
+  public static boolean TEST_PIPELINE_DO = false;
+  @Option(name="test.pipeline.threads.annotate", gloss="The number of threads annotating entity and slot mentions in the staged pipeline")
+  public static int TEST_PIPELINE_THREADS_ANNOTATE = 1;
+  @Option(name="test.pipeline.threads.featurize", gloss="The number of threads featurizing sentences in the staged pipeline")
+  public static int TEST_PIPELINE_THREADS_FEATURIZE = 2;
+  @Option(name="test.pipeline.threads.classify", gloss="The number of threads classifying sentence groups in the staged pipeline")
+  public static int TEST_PIPELINE_THREADS_CLASSIFY = 2;
+  @Option(name="test.pipeline.queue", gloss="The capacity of the queue in front of every stage of the staged pipeline")
+  public static int TEST_PIPELINE_QUEUE = 16;
   
   public static enum TUNE_MODE {NONE, FIXED, GLOBAL, FIXED_PER_RELATION, PER_RELATION }
   @Option(name="test.threshold.tune", gloss="Tune the threshold for the minimum confidence for slots")
@@ -484,6 +514,10 @@ public class Props {
   @SuppressWarnings("MismatchedQueryAndUpdateOfCollection")
   @Option(name="test.threshold.jointbayes.perrelation", gloss="The threshold above which to classify a default relation type as /true/, tuned per relation")
   private static Map<String, String> TEST_THRESHOLD_JOINTBAYES_PERRELATION_IMPL = new HashMap<>();
+  @Option(name="test.jointbayes.compiled", gloss="Classify with the MIML-RE model compiled into flat arrays, rather than through its classifiers")
+  public static boolean TEST_JOINTBAYES_COMPILED = true;
+  @Option(name="test.model.binary", gloss="Load the trained model from its binary (memory mapped) export, if one exists next to it and was exported from the model as it is now; see ExportBinaryModel")
+  public static boolean TEST_MODEL_BINARY = true;
 
   @Option(name="test.list.output")
   public static KBPEvaluator.ListOutput TEST_LIST_OUTPUT = KBPEvaluator.ListOutput.ALL;
@@ -493,6 +527,8 @@ public class Props {
   public static enum EnsembleCombinationMethod {AGREE_ANY, AGREE_ALL, AGREE_MOST, AGREE_TWO, AGREE_FIRST}
   @Option(name="test.ensemble.combination")
   public static EnsembleCombinationMethod TEST_ENSEMBLE_COMBINATION = EnsembleCombinationMethod.AGREE_MOST;
+  @Option(name="test.ensemble.threads", gloss="The number of threads to score the members of an ensemble on, for each sentence group. 1 scores them serially.")
+  public static int TEST_ENSEMBLE_THREADS = TRAIN_ENSEMBLE_NUMCOMPONENTS;
 
   //
   // DEEP DIVE
@@ -538,6 +574,8 @@ public class Props {
   //
   @Option(name="cache.lock", gloss="If true, try to lock files whenever possible for caching")
   public static boolean CACHE_LOCK = false;
+  @Option(name="cache.storage", gloss="The storage engine of new caches on disk: BLOCKS (a serialized file per hash bucket) or SEGMENTS (append-only, memory-mapped segment files). A cache which already exists keeps its engine.")
+  public static FileBackedCache.Storage CACHE_STORAGE = FileBackedCache.Storage.BLOCKS;
   @Option(name="cache.sentences.do", gloss="Cache directory for sentence IR extractions")
   public static boolean CACHE_SENTENCES_DO = false;
   @Option(name="cache.sentences.redo", gloss="Overwrite the sentence cache with a new IR retrieval")
@@ -556,10 +594,42 @@ public class Props {
   public static boolean CACHE_PROVENANCE_REDO = false;
   @Option(name="cache.sentencegloss.do", gloss="Cache sentence gloss of a datum")
   public static boolean CACHE_SENTENCEGLOSS_DO = false;
+  @Option(name="cache.sentencegloss.writebehind", gloss="Save sentence glosses through an in-memory buffer, which drops duplicate keys and is written to the cache in batches in the background")
+  public static boolean CACHE_SENTENCEGLOSS_WRITEBEHIND = false;
+  @Option(name="cache.sentencegloss.flushms", gloss="How often, in milliseconds, to write out the sentence gloss buffer")
+  public static int CACHE_SENTENCEGLOSS_FLUSHMS = 1000;
+  @Option(name="cache.sentencegloss.batch", gloss="The number of sentence glosses to write to the cache in a single batch")
+  public static int CACHE_SENTENCEGLOSS_BATCH = 500;
+  @Option(name="cache.sentencegloss.maxpending", gloss="If positive, bound the memory of the sentence gloss buffer: at most this many glosses are pending, or remembered as written (e.g., for long training runs). 0 is unbounded.")
+  public static int CACHE_SENTENCEGLOSS_MAXPENDING = 0;
+  public static enum GlossKeyScheme { SHA256, MURMUR128 }
+  @Option(name="cache.sentencegloss.keys", gloss="How to hash sentences into sentence gloss keys: SHA256 (the original keys), or MURMUR128 (a cheaper 128 bit hash; this changes the keys of every datum and gloss)")
+  public static GlossKeyScheme CACHE_SENTENCEGLOSS_KEYS = GlossKeyScheme.SHA256;
+  @Option(name="cache.sentencegloss.keys.legacy", gloss="If the gloss keys are not SHA256, translate SHA256 keys read from existing annotations to the current scheme, through the sentence gloss cache")
+  public static boolean CACHE_SENTENCEGLOSS_KEYS_LEGACY = true;
   @Option(name="cache.graph.do", gloss="Cache the raw extracted graphs for a given entity to fill slots for")
   public static boolean CACHE_GRAPH_DO = false;
   @Option(name="cache.graph.redo", gloss="Overwrite the graph cache with newly computed graphs")
   public static boolean CACHE_GRAPH_REDO = false;
+  @Option(name="cache.documents.mb", gloss="The approximate memory budget, in megabytes, for documents fetched by docid from the index. The documents are softly held, so they may be reclaimed before this is reached.")
+  public static int CACHE_DOCUMENTS_MB = 128;
+  public static enum CacheBackend { POSTGRES, LOCAL }
+  @Option(name="cache.backend", gloss="Where to store the key/value caches (sentences, datums, glosses, etc.): POSTGRES, or LOCAL for an embedded store on local disk")
+  public static CacheBackend CACHE_BACKEND = CacheBackend.POSTGRES;
+  @Option(name="cache.local.dir", gloss="The directory to keep the LOCAL cache backend in; each table is a subdirectory")
+  public static File CACHE_LOCAL_DIR = new File("kbp_cache");
+  @Option(name="cache.local.segmentmb", gloss="The size, in megabytes, of a single segment file of the LOCAL cache backend")
+  public static int CACHE_LOCAL_SEGMENTMB = 256;
+  @Option(name="cache.parses.do", gloss="Cache the parses (and NER tweaks) of retrieved documents by docid, so that the PostIRAnnotator parses each document only once")
+  public static boolean CACHE_PARSES_DO = false;
+  @Option(name="cache.parses.dir", gloss="The directory to keep the parse cache in; by default, the 'parses' subdirectory of cache.local.dir")
+  public static File CACHE_PARSES_DIR = null;
+  @Option(name="cache.features.do", gloss="Cache the features of relation mentions, keyed by the content of their sentence, so that an already seen corpus is featurized by lookup")
+  public static boolean CACHE_FEATURES_DO = false;
+  @Option(name="cache.features.dir", gloss="The directory to keep the feature cache in; by default, the 'features' subdirectory of cache.local.dir")
+  public static File CACHE_FEATURES_DIR = null;
+  @Option(name="cache.features.memory", gloss="The number of relation mentions to keep the features of in memory, in front of the on-disk feature cache")
+  public static int CACHE_FEATURES_MEMORY = 100000;
 
   //
   // POSTGRES
@@ -576,8 +646,14 @@ public class Props {
   public static String PSQL_USERNAME = "kbp";
   @Option(name="psql.password", gloss="The password for the postgres session")
   public static String PSQL_PASSWORD = "kbp";
-  @Option(name="psql.batch", gloss="If true, batch writes to PSQL.")
+  @Option(name="psql.batch", gloss="If true, batch writes to PSQL. Ignored (writes are not batched) if psql.poolsize is more than 1.")
   public static boolean PSQL_BATCH = true;
+  @Option(name="psql.poolsize", gloss="The maximum number of connections to open for a single table (or named connection)")
+  public static int PSQL_POOLSIZE = 1;
+  @Option(name="psql.writebehind.ms", gloss="If positive, queue cache writes in memory and write them to PSQL in the background every this many milliseconds")
+  public static int PSQL_WRITEBEHIND_MS = 0;
+  @Option(name="psql.prefetch", gloss="The number of keys to fetch from a cache in a single round trip, where the caller supports it")
+  public static int PSQL_PREFETCH = 100;
 
   @Option(name="psql.tuffy.db", gloss="The database to store Tuffy data in")
   public static String PSQL_TUFFY_DB = "tuffy_kbp";
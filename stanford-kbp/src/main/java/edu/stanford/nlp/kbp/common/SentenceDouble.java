@@ -7,6 +7,12 @@ public class SentenceDouble {
 	public String sentence;
 	public KBPRelationProvenance provenance;
 	
+	/** A copy of a sentence, with its own copy of the provenance */
+	public SentenceDouble(SentenceDouble other){
+		sentence=other.sentence;
+		provenance=other.provenance.copy();
+	}
+
 	public SentenceDouble(String sent, String p){
 		sentence=sent;
 		
@@ -0,0 +1,156 @@
+package edu.stanford.nlp.kbp.common;
+
+import edu.stanford.nlp.ie.machinereading.structure.Span;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.StringUtils;
+
+import java.util.List;
+
+/**
+ * Sentence gloss keys: a short string identifying a datum's sentence, and the entity and slot value spans within it.
+ * A key is the hash of the tokens of the sentence, followed by the spans: <code>[hash]:[entity start]-[entity end]:[slot start]-[slot end]</code>.
+ *
+ * <p>The hash is determined by {@link Props#CACHE_SENTENCEGLOSS_KEYS}. The original scheme (SHA256) hashes the tokens
+ * joined into a single string, and is a 64 character hex string; MURMUR128 hashes the tokens directly, with
+ * 128 bit MurmurHash3 (see {@link Murmur128}), and is a 32 character hex string. The two can always be told apart by the length of the hash;
+ * see {@link SentenceGlossKeys#isLegacy(String)}.</p>
+ *
+ * <p>Every relation mention in a sentence gets a key, so the hash of a sentence is computed once, and saved on the
+ * sentence (see {@link KBPAnnotations.SentenceGlossHashAnnotation}); the key for every further pair of spans only
+ * appends the spans to it.</p>
+ *
+ * <p>Beware of changing me! You may invalidate the sentencegloss cache.</p>
+ */
+public class SentenceGlossKeys {
+
+  private SentenceGlossKeys() {} // only static members
+
+  /** The length of the hash part of a SHA256 key */
+  private static final int SHA256_HEX_LENGTH = 64;
+  /** The length of the hash part of a MURMUR128 key */
+  private static final int MURMUR128_HEX_LENGTH = Murmur128.HEX_LENGTH;
+
+  /**
+   * The key for a pair of spans in a sentence, using the hash saved on the sentence if there is one.
+   * This saves the hash on the sentence, so the sentence's tokens should not be changed afterwards.
+   */
+  public static String key(CoreMap sentence, Span entitySpan, Span valueSpan) {
+    String hash = sentence.get(KBPAnnotations.SentenceGlossHashAnnotation.class);
+    if (hash == null || hash.length() != hashLength(Props.CACHE_SENTENCEGLOSS_KEYS)) {
+      hash = hash(sentence.get(CoreAnnotations.TokensAnnotation.class), Props.CACHE_SENTENCEGLOSS_KEYS);
+      sentence.set(KBPAnnotations.SentenceGlossHashAnnotation.class, hash);
+    }
+    return compose(hash, entitySpan, valueSpan);
+  }
+
+  /** The key for a pair of spans in a sentence, given as tokens */
+  public static String key(List<CoreLabel> tokens, Span entitySpan, Span valueSpan) {
+    return compose(hash(tokens, Props.CACHE_SENTENCEGLOSS_KEYS), entitySpan, valueSpan);
+  }
+
+  /** The key for a pair of spans in a sentence, given as the text of its tokens */
+  public static String key(String[] tokens, Span entitySpan, Span valueSpan) {
+    return compose(hash(tokens, Props.CACHE_SENTENCEGLOSS_KEYS), entitySpan, valueSpan);
+  }
+
+  /** The key for a pair of spans in a sentence under the original (SHA256) scheme, whatever the current scheme is */
+  public static String legacyKey(List<CoreLabel> tokens, Span entitySpan, Span valueSpan) {
+    return compose(hash(tokens, Props.GlossKeyScheme.SHA256), entitySpan, valueSpan);
+  }
+
+  /** Whether a key was made with the original (SHA256) scheme */
+  public static boolean isLegacy(String key) {
+    int end = key.indexOf(':');
+    return (end < 0 ? key.length() : end) == SHA256_HEX_LENGTH;
+  }
+
+  /**
+   * The key for a sentence recovered from the sentence gloss cache, under the current scheme.
+   * This is how keys made with another scheme are translated.
+   * @param gloss The sentence, as returned by {@link edu.stanford.nlp.kbp.slotfilling.process.KBPProcess#recoverSentenceGloss(String)}.
+   * @return The key, if the sentence carries its entity and slot value spans.
+   */
+  public static Maybe<String> rekey(CoreMap gloss) {
+    Span entitySpan = gloss.get(KBPAnnotations.EntitySpanAnnotation.class);
+    Span valueSpan = gloss.get(KBPAnnotations.SlotValueSpanAnnotation.class);
+    if (entitySpan == null || valueSpan == null || gloss.get(CoreAnnotations.TokensAnnotation.class) == null) { return Maybe.Nothing(); }
+    return Maybe.Just(compose(hash(gloss.get(CoreAnnotations.TokensAnnotation.class), Props.CACHE_SENTENCEGLOSS_KEYS), entitySpan, valueSpan));
+  }
+
+  private static int hashLength(Props.GlossKeyScheme scheme) {
+    return scheme == Props.GlossKeyScheme.SHA256 ? SHA256_HEX_LENGTH : MURMUR128_HEX_LENGTH;
+  }
+
+  /** The text of a token, as it is hashed */
+  private static String text(CoreLabel token) {
+    return token.containsKey(CoreAnnotations.OriginalTextAnnotation.class) ? token.originalText() : token.word();
+  }
+
+  private static String hash(List<CoreLabel> tokens, Props.GlossKeyScheme scheme) {
+    switch (scheme) {
+      case SHA256:
+        String[] text = new String[tokens.size()];
+        for (int i = 0; i < text.length; ++i) { text[i] = text(tokens.get(i)); }
+        return hash(text, scheme);
+      case MURMUR128:
+        Murmur128 hash = new Murmur128();
+        for (CoreLabel token : tokens) { hash.add(text(token)); }
+        return hash.hex();
+      default:
+        throw new IllegalStateException("Unknown gloss key scheme: " + scheme);
+    }
+  }
+
+  private static String hash(String[] tokens, Props.GlossKeyScheme scheme) {
+    switch (scheme) {
+      case SHA256:
+        return CoreMapUtils.getHexKeyString(StringUtils.join(tokens, "~#~"));
+      case MURMUR128:
+        Murmur128 hash = new Murmur128();
+        for (String token : tokens) { hash.add(token); }
+        return hash.hex();
+      default:
+        throw new IllegalStateException("Unknown gloss key scheme: " + scheme);
+    }
+  }
+
+  /** Append the spans to a hash, writing straight into a buffer of the right size */
+  private static String compose(String hash, Span entitySpan, Span valueSpan) {
+    int es = entitySpan.start(), ee = entitySpan.end(), vs = valueSpan.start(), ve = valueSpan.end();
+    char[] key = new char[hash.length() + 4 + digits(es) + digits(ee) + digits(vs) + digits(ve)];
+    hash.getChars(0, hash.length(), key, 0);
+    int pos = hash.length();
+    key[pos++] = ':';
+    pos = writeInt(key, pos, es);
+    key[pos++] = '-';
+    pos = writeInt(key, pos, ee);
+    key[pos++] = ':';
+    pos = writeInt(key, pos, vs);
+    key[pos++] = '-';
+    writeInt(key, pos, ve);
+    return new String(key);
+  }
+
+  /** The number of characters in the decimal representation of an integer */
+  private static int digits(int value) {
+    long abs = Math.abs((long) value);
+    int digits = value < 0 ? 2 : 1;
+    while (abs >= 10) { abs /= 10; digits += 1; }
+    return digits;
+  }
+
+  /** Write the decimal representation of an integer into a buffer, returning the position after it */
+  private static int writeInt(char[] buffer, int pos, int value) {
+    int end = pos + digits(value);
+    long abs = Math.abs((long) value);
+    int i = end;
+    do {
+      buffer[--i] = (char) ('0' + (abs % 10));
+      abs /= 10;
+    } while (abs > 0);
+    if (value < 0) { buffer[pos] = '-'; }
+    return end;
+  }
+}
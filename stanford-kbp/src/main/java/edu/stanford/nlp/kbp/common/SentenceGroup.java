@@ -36,6 +36,12 @@ public class SentenceGroup extends AbstractList<Datum<String,String>> implements
 
   public final Maybe<? extends List<String>> sentenceGlossKeys;
 
+  /**
+   * The features of the datums, packed for classification; built on demand, and dropped whenever the datums change.
+   * This is never serialized, as the feature ids are only meaningful within this JVM.
+   */
+  private transient volatile PackedFeatures packedFeatures = null;
+
   /** For reflection only! */
   @SuppressWarnings("UnusedDeclaration")
   private SentenceGroup() {
@@ -103,9 +109,23 @@ public class SentenceGroup extends AbstractList<Datum<String,String>> implements
   }
   @Override
   public Datum<String,String> set( int idx, Datum<String,String> datum ) {
+    packedFeatures = null;
     return datums.set( idx, datum );
   }
 
+  /**
+   * The features of every datum in this group, packed into primitive arrays.
+   * This is computed once, and cached until the group is modified.
+   */
+  public PackedFeatures packedFeatures() {
+    PackedFeatures packed = this.packedFeatures;
+    if (packed == null || packed.size() != datums.size()) {
+      packed = PackedFeatures.pack(datums);
+      this.packedFeatures = packed;
+    }
+    return packed;
+  }
+
   @Override
   public int size() {
     return datums.size();
@@ -113,12 +133,14 @@ public class SentenceGroup extends AbstractList<Datum<String,String>> implements
   @Override
   public void add( int idx, Datum<String,String> datum ) {
     assert !sentenceGlossKeys.isDefined();
+    packedFeatures = null;
     datums.add(idx, datum);
     assert !sentenceGlossKeys.isDefined() || datums.size() == sentenceGlossKeys.get().size();
   }
 
   public void add(Datum<String, String> datum, KBPRelationProvenance provenance, String hexKey) {
     assert (this.sentenceGlossKeys.isDefined());
+    packedFeatures = null;
     datums.add(datum);
     provenances.add(provenance);
     sentenceGlossKeys.get().add(hexKey);
@@ -127,6 +149,7 @@ public class SentenceGroup extends AbstractList<Datum<String,String>> implements
 
   public void add(Datum<String, String> datum, KBPRelationProvenance provenance) {
     assert (this.sentenceGlossKeys.isDefined());
+    packedFeatures = null;
     datums.add(datum);
     provenances.add(provenance);
     if (sentenceGlossKeys.isDefined()) {
@@ -137,6 +160,7 @@ public class SentenceGroup extends AbstractList<Datum<String,String>> implements
 
   @Override
   public Datum<String,String> remove( int idx ) {
+    packedFeatures = null;
     if (this.sentenceGlossKeys.isDefined()) {
       sentenceGlossKeys.get().remove(idx);
     }
@@ -150,6 +174,18 @@ public class SentenceGroup extends AbstractList<Datum<String,String>> implements
     return provenances.get( idx );
   }
 
+  /**
+   * A copy of this group, which can be merged into without changing this group.
+   * The datums and provenances themselves are shared.
+   */
+  public SentenceGroup copy() {
+    if (sentenceGlossKeys.isDefined()) {
+      return new SentenceGroup(key, new ArrayList<>(datums), new ArrayList<>(provenances), new ArrayList<String>(sentenceGlossKeys.get()));
+    } else {
+      return new SentenceGroup(key, new ArrayList<>(datums), new ArrayList<>(provenances));
+    }
+  }
+
   public void merge( SentenceGroup other ) {
     assert this.key.equals(other.key);
     //assert other.key.equals( this.key );
@@ -160,6 +196,7 @@ public class SentenceGroup extends AbstractList<Datum<String,String>> implements
       throw new IllegalStateException("Sentence gloss key size doesn't match datums size (for argument)!");
     }
 
+    this.packedFeatures = null;
     this.datums.addAll( other.datums );
     this.provenances.addAll( other.provenances );
 
@@ -0,0 +1,352 @@
+package edu.stanford.nlp.kbp.common;
+
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.text.DecimalFormat;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * A chain of processing stages, connected by bounded queues, where every stage runs on its own threads.
+ *
+ * <p>Each stage takes elements from the queue before it, and puts its outputs onto the queue after it.
+ * Since the queues are bounded, a slow stage blocks the stages upstream of it (back-pressure), rather than
+ * letting work pile up in memory; and since every stage has its own thread budget, an expensive stage
+ * (e.g., parsing) can be given more threads than a cheap one, without the cheap stages waiting on it.</p>
+ *
+ * <p>The outputs of {@link StagedPipeline#run()} come back in the order a serial run would produce them,
+ * regardless of how many threads each stage has.
+ * Every stage keeps {@link StageStats}: how many elements passed through it, how long it was busy,
+ * how long it stalled waiting on a full queue downstream, how long it starved waiting on an empty queue upstream,
+ * and how deep its input queue got.</p>
+ *
+ * <p>Usage:</p>
+ * <pre>
+ *   List&lt;Datum&gt; datums = StagedPipeline.from("sentences", sentences.iterator(), 16)
+ *       .then("parse", 4, 16, sentence -&gt; Collections.singletonList(parse(sentence)))
+ *       .then("featurize", 2, 16, parsed -&gt; featurize(parsed))
+ *       .run();
+ * </pre>
+ *
+ * @param <O> The type of element produced by the last stage of the pipeline.
+ */
+public class StagedPipeline<O> {
+  private static final Redwood.RedwoodChannels logger = Redwood.channels("Pipeline");
+
+  /** The name of the pipeline, for logging */
+  public final String name;
+  /** The source of elements into the pipeline */
+  private final Iterator<?> source;
+  /** The capacity of the queue between the source and the first stage */
+  private final int sourceCapacity;
+  /** The stages of the pipeline, in order */
+  private final List<Stage<?, ?>> stages;
+
+  private StagedPipeline(String name, Iterator<?> source, int sourceCapacity, List<Stage<?, ?>> stages) {
+    this.name = name;
+    this.source = source;
+    this.sourceCapacity = sourceCapacity;
+    this.stages = stages;
+  }
+
+  /**
+   * Start a pipeline from a source of elements.
+   * The source is read from a single thread of its own.
+   * @param name The name of the pipeline, for logging.
+   * @param source The elements to process.
+   * @param capacity The number of elements the source may read ahead of the first stage.
+   * @param <I> The type of element coming out of the source.
+   * @return A pipeline with no stages, which simply returns the elements of the source.
+   */
+  public static <I> StagedPipeline<I> from(String name, Iterator<I> source, int capacity) {
+    if (capacity < 1) { throw new IllegalArgumentException("Queue capacity must be positive: " + capacity); }
+    return new StagedPipeline<>(name, source, capacity, Collections.<Stage<?, ?>>emptyList());
+  }
+
+  /**
+   * Add a stage to the end of this pipeline.
+   * @param stageName The name of the stage, for logging and statistics.
+   * @param threads The number of threads this stage may use.
+   * @param capacity The number of outputs of this stage which may be queued, waiting on the next stage.
+   * @param fn The function run on every element; it may produce any number of outputs.
+   *           Null outputs are dropped. This function must be safe to call from multiple threads, if threads &gt; 1.
+   * @param <N> The type of element produced by the new stage.
+   * @return A new pipeline, with the new stage added. This pipeline should not be used again.
+   */
+  public <N> StagedPipeline<N> then(String stageName, int threads, int capacity, Function<? super O, ? extends Iterable<N>> fn) {
+    if (threads < 1) { throw new IllegalArgumentException("Stage " + stageName + " needs at least one thread: " + threads); }
+    if (capacity < 1) { throw new IllegalArgumentException("Queue capacity must be positive: " + capacity); }
+    List<Stage<?, ?>> newStages = new ArrayList<>(stages);
+    newStages.add(new Stage<>(stageName, threads, capacity, fn));
+    return new StagedPipeline<>(name, source, sourceCapacity, newStages);
+  }
+
+  /**
+   * Add a stage to the end of this pipeline, producing exactly one output per input (or none, if the output is null).
+   * @see StagedPipeline#then(String, int, int, Function)
+   */
+  public <N> StagedPipeline<N> thenMap(String stageName, int threads, int capacity, final Function<? super O, N> fn) {
+    return then(stageName, threads, capacity, in -> {
+      N out = fn.apply(in);
+      return out == null ? Collections.<N>emptyList() : Collections.singletonList(out);
+    });
+  }
+
+  /** The statistics of every stage of this pipeline, in order. These are updated live while the pipeline runs. */
+  public List<StageStats> stats() {
+    List<StageStats> rtn = new ArrayList<>(stages.size());
+    for (Stage<?, ?> stage : stages) { rtn.add(stage.stats); }
+    return rtn;
+  }
+
+  /** Log the statistics of every stage of this pipeline */
+  public void logStats() {
+    for (Stage<?, ?> stage : stages) { logger.log(name + "." + stage.stats); }
+  }
+
+  /**
+   * Run the pipeline to completion.
+   * If any stage throws an exception, the rest of the pipeline is stopped, and the exception is rethrown here.
+   * @return The outputs of the last stage, in the order a serial run of the pipeline would produce them.
+   */
+  @SuppressWarnings("unchecked")
+  public List<O> run() {
+    // Set up queues
+    List<BlockingQueue<Maybe<Ordered<?>>>> queues = new ArrayList<>(stages.size() + 1);
+    queues.add(new ArrayBlockingQueue<>(sourceCapacity));
+    for (Stage<?, ?> stage : stages) { queues.add(new ArrayBlockingQueue<>(stage.capacity)); }
+    final AtomicReference<Throwable> failure = new AtomicReference<>(null);
+    List<ExecutorService> pools = new ArrayList<>();
+
+    try {
+      // Start the source
+      ExecutorService sourcePool = daemonPool(name + ".source", 1);
+      pools.add(sourcePool);
+      final BlockingQueue<Maybe<Ordered<?>>> sourceQueue = queues.get(0);
+      final int numConsumers = stages.isEmpty() ? 1 : stages.get(0).threads;
+      sourcePool.submit(() -> {
+        try {
+          int index = 0;
+          while (source.hasNext()) {
+            Object elem = source.next();
+            if (elem != null) { sourceQueue.put(Maybe.<Ordered<?>>Just(new Ordered<>(new int[]{ index++ }, elem))); }
+          }
+        } catch (Throwable t) {
+          failure.compareAndSet(null, t);
+        } finally {
+          endOfStream(sourceQueue, numConsumers);
+        }
+      });
+
+      // Start the stages
+      for (int s = 0; s < stages.size(); ++s) {
+        Stage<Object, Object> stage = (Stage<Object, Object>) stages.get(s);
+        int downstreamConsumers = s + 1 < stages.size() ? stages.get(s + 1).threads : 1;
+        ExecutorService pool = daemonPool(name + "." + stage.stats.name, stage.threads);
+        pools.add(pool);
+        stage.start(pool, queues.get(s), queues.get(s + 1), downstreamConsumers, failure);
+      }
+
+      // Collect
+      BlockingQueue<Maybe<Ordered<?>>> sink = queues.get(queues.size() - 1);
+      List<Ordered<O>> results = new ArrayList<>();
+      while (true) {
+        Maybe<Ordered<?>> next = sink.poll(100, TimeUnit.MILLISECONDS);
+        if (failure.get() != null) { break; }
+        if (next == null) { continue; }
+        if (!next.isDefined()) { break; }
+        results.add((Ordered<O>) next.get());
+      }
+      Throwable t = failure.get();
+      if (t != null) {
+        if (t instanceof RuntimeException) { throw (RuntimeException) t; }
+        if (t instanceof Error) { throw (Error) t; }
+        throw new RuntimeException(t);
+      }
+
+      // Reorder
+      Collections.sort(results);
+      List<O> rtn = new ArrayList<>(results.size());
+      for (Ordered<O> result : results) { rtn.add(result.value); }
+      return rtn;
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } finally {
+      for (ExecutorService pool : pools) { pool.shutdownNow(); }
+    }
+  }
+
+  /** Signal the end of the stream to each of the consumers of a queue */
+  private static void endOfStream(BlockingQueue<Maybe<Ordered<?>>> queue, int numConsumers) {
+    try {
+      for (int i = 0; i < numConsumers; ++i) { queue.put(Maybe.<Ordered<?>>Nothing()); }
+    } catch (InterruptedException ignored) { }  // we're being shut down
+  }
+
+  private static ExecutorService daemonPool(final String name, int threads) {
+    final AtomicInteger threadIndex = new AtomicInteger(0);
+    return Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, name + "-" + threadIndex.getAndIncrement());
+      thread.setDaemon(true);  // Kill on program termination
+      return thread;
+    });
+  }
+
+  /**
+   * An element in the pipeline, tagged with its position in a serial run:
+   * the index of the source element it came from, followed by the index of the output at every stage.
+   */
+  private static class Ordered<E> implements Comparable<Ordered<?>> {
+    private final int[] position;
+    private final E value;
+
+    private Ordered(int[] position, E value) {
+      this.position = position;
+      this.value = value;
+    }
+
+    private <F> Ordered<F> child(int index, F childValue) {
+      int[] childPosition = Arrays.copyOf(position, position.length + 1);
+      childPosition[position.length] = index;
+      return new Ordered<>(childPosition, childValue);
+    }
+
+    @Override
+    public int compareTo(Ordered<?> o) {
+      for (int i = 0; i < Math.min(position.length, o.position.length); ++i) {
+        if (position[i] != o.position[i]) { return position[i] < o.position[i] ? -1 : 1; }
+      }
+      return position.length - o.position.length;
+    }
+  }
+
+  /** A single stage of the pipeline */
+  private static class Stage<I, N> {
+    private final int threads;
+    private final int capacity;
+    private final Function<? super I, ? extends Iterable<N>> fn;
+    private final StageStats stats;
+
+    private Stage(String name, int threads, int capacity, Function<? super I, ? extends Iterable<N>> fn) {
+      this.threads = threads;
+      this.capacity = capacity;
+      this.fn = fn;
+      this.stats = new StageStats(name, threads);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void start(ExecutorService pool, final BlockingQueue<Maybe<Ordered<?>>> in, final BlockingQueue<Maybe<Ordered<?>>> out,
+                       final int downstreamConsumers, final AtomicReference<Throwable> failure) {
+      final AtomicInteger liveWorkers = new AtomicInteger(threads);
+      stats.input = in;
+      stats.startNanos = System.nanoTime();
+      for (int i = 0; i < threads; ++i) {
+        pool.submit(() -> {
+          try {
+            while (failure.get() == null) {
+              // Take
+              long start = System.nanoTime();
+              Maybe<Ordered<?>> next = in.take();
+              long taken = System.nanoTime();
+              stats.starveNanos.addAndGet(taken - start);
+              if (!next.isDefined()) { break; }
+              stats.observeDepth(in.size() + 1);
+              Ordered<I> input = (Ordered<I>) next.get();
+              // Process
+              Iterable<N> outputs = fn.apply(input.value);
+              long processed = System.nanoTime();
+              stats.busyNanos.addAndGet(processed - taken);
+              stats.itemsIn.incrementAndGet();
+              // Put
+              if (outputs != null) {
+                int index = 0;
+                for (N output : outputs) {
+                  if (output == null) { continue; }
+                  out.put(Maybe.<Ordered<?>>Just(input.child(index++, output)));
+                  stats.itemsOut.incrementAndGet();
+                }
+              }
+              stats.stallNanos.addAndGet(System.nanoTime() - processed);
+            }
+          } catch (InterruptedException ignored) {
+            // we're being shut down
+          } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+          } finally {
+            if (liveWorkers.decrementAndGet() == 0) {
+              stats.endNanos = System.nanoTime();
+              endOfStream(out, downstreamConsumers);
+            }
+          }
+        });
+      }
+    }
+  }
+
+  /**
+   * The statistics of a single stage of a pipeline.
+   * All times are summed over the threads of the stage.
+   */
+  public static class StageStats {
+    /** The name of the stage */
+    public final String name;
+    /** The number of threads the stage runs on */
+    public final int threads;
+    /** The number of elements taken from the stage's input queue */
+    public final AtomicLong itemsIn = new AtomicLong(0);
+    /** The number of elements put on the stage's output queue */
+    public final AtomicLong itemsOut = new AtomicLong(0);
+    /** The time spent running the stage's function */
+    public final AtomicLong busyNanos = new AtomicLong(0);
+    /** The time spent blocked on a full output queue -- i.e., waiting on the next stage */
+    public final AtomicLong stallNanos = new AtomicLong(0);
+    /** The time spent blocked on an empty input queue -- i.e., waiting on the previous stage */
+    public final AtomicLong starveNanos = new AtomicLong(0);
+    /** The deepest the input queue has been, when an element was taken from it */
+    public final AtomicInteger maxQueueDepth = new AtomicInteger(0);
+
+    private volatile BlockingQueue<?> input = null;
+    private volatile long startNanos = 0;
+    private volatile long endNanos = 0;
+
+    private StageStats(String name, int threads) {
+      this.name = name;
+      this.threads = threads;
+    }
+
+    private void observeDepth(int depth) {
+      int max;
+      while (depth > (max = maxQueueDepth.get())) {
+        if (maxQueueDepth.compareAndSet(max, depth)) { break; }
+      }
+    }
+
+    /** The current depth of the stage's input queue */
+    public int queueDepth() {
+      BlockingQueue<?> queue = input;
+      return queue == null ? 0 : queue.size();
+    }
+
+    /** The number of input elements processed per second of wall-clock time the stage has been running */
+    public double throughput() {
+      if (startNanos == 0) { return 0.0; }
+      long end = endNanos == 0 ? System.nanoTime() : endNanos;
+      return end <= startNanos ? 0.0 : ((double) itemsIn.get()) / (((double) (end - startNanos)) / 1e9);
+    }
+
+    @Override
+    public String toString() {
+      DecimalFormat df = new DecimalFormat("0.00");
+      return name + " [" + threads + " threads]: " + itemsIn.get() + " in, " + itemsOut.get() + " out; " +
+          df.format(throughput()) + " items/s; " +
+          "busy " + df.format(busyNanos.get() / 1e9) + "s, " +
+          "stalled " + df.format(stallNanos.get() / 1e9) + "s, " +
+          "starved " + df.format(starveNanos.get() / 1e9) + "s; " +
+          "queue depth " + queueDepth() + " (max " + maxQueueDepth.get() + ")";
+    }
+  }
+}
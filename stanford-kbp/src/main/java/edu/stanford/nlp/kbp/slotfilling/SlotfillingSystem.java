@@ -6,6 +6,7 @@ import com.typesafe.config.ConfigParseOptions;
 import com.typesafe.config.ConfigValue;
 import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.kbp.common.*;
+import edu.stanford.nlp.kbp.slotfilling.classify.BinaryModel;
 import edu.stanford.nlp.kbp.slotfilling.classify.HackyModelCombination;
 import edu.stanford.nlp.kbp.slotfilling.classify.RelationClassifier;
 import edu.stanford.nlp.kbp.slotfilling.evaluate.KBPEvaluator;
@@ -143,8 +144,22 @@ public class SlotfillingSystem {
 
   /** Create a new classifier */
   public Lazy<RelationClassifier> getNewClassifier() { return getClassifier(Maybe.<String>Nothing()); }
-  /** Load an existing classifier */
-  public Lazy<RelationClassifier> getTrainedClassifier() { return getClassifier(Maybe.Just(Props.KBP_MODEL_PATH)); }
+  /**
+   * Load an existing classifier.
+   * The binary export of the model is preferred (see {@link Props#TEST_MODEL_BINARY}), but only if it was exported
+   * from the serialized model as it is now, or if there is no serialized model to load instead.
+   */
+  public Lazy<RelationClassifier> getTrainedClassifier() {
+    String binaryPath = BinaryModel.pathFor(Props.KBP_MODEL_PATH);
+    if (Props.TEST_MODEL_BINARY && new File(binaryPath).isFile()) {
+      if (BinaryModel.isExportOf(binaryPath, Props.KBP_MODEL_PATH) || !new File(Props.KBP_MODEL_PATH).isFile()) {
+        return getClassifier(Maybe.Just(binaryPath));
+      }
+      logger.warn("binary model " + binaryPath + " is not an export of " + Props.KBP_MODEL_PATH +
+          " as it is now; loading the serialized model instead (re-run ExportBinaryModel to update it)");
+    }
+    return getClassifier(Maybe.Just(Props.KBP_MODEL_PATH));
+  }
 
   //
   // Training Component
@@ -0,0 +1,291 @@
+package edu.stanford.nlp.kbp.slotfilling.classify;
+
+import edu.stanford.nlp.kbp.common.Maybe;
+import edu.stanford.nlp.kbp.common.Props;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A binary format for trained relation classifiers, laid out to be memory mapped rather than deserialized.
+ *
+ * <p>A model saved with {@link RelationClassifier#save(ObjectOutputStream)} is a graph of Java objects, which
+ * every JVM has to deserialize onto its own heap before it can classify anything.
+ * A binary model is a flat file: a header naming the classifier it is a model for (and the serialized model it was
+ * exported from, if any), and then that classifier's own sections -- dictionaries of strings, small arrays, and
+ * large weight matrices.
+ * The file is mapped read only, so that the weight matrices can be read in place, off heap; several JVMs on
+ * the same machine loading the same model share its pages in the page cache.</p>
+ *
+ * <p>The layout of a file is:</p>
+ * <pre>
+ *   magic      8 bytes, "KBPMODEL"
+ *   version    int
+ *   source     long, long; the size and modification time of the serialized model this was exported from, or -1, -1
+ *   class      string; the name of the {@link RelationClassifier} class this is a model for
+ *   ...        the sections of the model, as written by that class
+ * </pre>
+ * <p>Numbers are little endian. A string is its length in bytes as an int, followed by its UTF-8 bytes.
+ * Float arrays are aligned to 8 bytes from the start of the file.
+ * A binary model is written with {@link RelationClassifier#saveBinary(String)}, and loaded through
+ * {@link RelationClassifier#load(String, java.util.Properties, Class)} like any other model.</p>
+ */
+public class BinaryModel {
+
+  /** The first bytes of every binary model */
+  private static final byte[] MAGIC = "KBPMODEL".getBytes(StandardCharsets.US_ASCII);
+  /** The version of the format; a model of any other version is refused */
+  public static final int VERSION = 2;
+  /** The extension of a binary model, in place of {@link Props#SER_EXT} */
+  public static final String EXTENSION = ".bin";
+
+  /** The largest file which can be mapped in one piece */
+  private static final long MAX_MAPPED_SIZE = Integer.MAX_VALUE;
+
+  private BinaryModel() { }
+
+  /** The path of the binary export of the serialized model at the given path */
+  public static String pathFor(String serializedPath) {
+    if (serializedPath.endsWith(Props.SER_EXT)) {
+      return serializedPath.substring(0, serializedPath.length() - Props.SER_EXT.length()) + EXTENSION;
+    }
+    return serializedPath + EXTENSION;
+  }
+
+  /** Whether the file at the given path is a binary model (of any version) */
+  public static boolean isBinaryModel(String path) {
+    File file = new File(path);
+    if (!file.isFile() || file.length() < MAGIC.length) { return false; }
+    try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+      byte[] magic = new byte[MAGIC.length];
+      in.readFully(magic);
+      return Arrays.equals(magic, MAGIC);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Whether the binary model at the given path was exported from the serialized model at the given path, as that
+   * model is now: that is, whether the source recorded in its header has the serialized model's size and
+   * modification time. A binary model of another version, or one not exported from a file, is not.
+   */
+  public static boolean isExportOf(String binaryPath, String serializedPath) {
+    File serialized = new File(serializedPath);
+    if (!serialized.isFile()) { return false; }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(binaryPath)))) {
+      byte[] magic = new byte[MAGIC.length];
+      in.readFully(magic);
+      // (DataInputStream is big endian)
+      if (!Arrays.equals(magic, MAGIC) || Integer.reverseBytes(in.readInt()) != VERSION) { return false; }
+      long sourceLength = Long.reverseBytes(in.readLong());
+      long sourceModified = Long.reverseBytes(in.readLong());
+      return sourceLength == serialized.length() && sourceModified == serialized.lastModified();
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Map a binary model, and read its header.
+   * @param path The path to the model.
+   * @param expectedClass The class the model is expected to be for.
+   * @return The mapped model, positioned at the first section after the header.
+   * @throws IOException If the file is not a binary model of the current version, or is not for the expected class.
+   */
+  public static ByteBuffer map(String path, Class<? extends RelationClassifier> expectedClass) throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = new RandomAccessFile(path, "r").getChannel()) {
+      if (channel.size() > MAX_MAPPED_SIZE) {
+        throw new IOException("Binary model is too large to map (" + channel.size() + " bytes): " + path);
+      }
+      // (the mapping outlives the channel)
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    byte[] magic = new byte[MAGIC.length];
+    if (buffer.remaining() < MAGIC.length) { throw new IOException("Not a binary model: " + path); }
+    buffer.get(magic);
+    if (!Arrays.equals(magic, MAGIC)) { throw new IOException("Not a binary model: " + path); }
+    int version = buffer.getInt();
+    if (version != VERSION) {
+      throw new IOException("Binary model is version " + version + "; can only read version " + VERSION + ": " + path);
+    }
+    buffer.getLong();  // source length; see isExportOf()
+    buffer.getLong();  // source modification time
+    String className = readString(buffer);
+    if (!className.equals(expectedClass.getName())) {
+      throw new IOException("Binary model is for " + className + ", not " + expectedClass.getName() + ": " + path);
+    }
+    return buffer;
+  }
+
+  /** Read a string, as written by {@link Writer#writeString(String)} */
+  public static String readString(ByteBuffer in) {
+    int length = in.getInt();
+    if (in.hasArray()) {
+      String str = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+      in.position(in.position() + length);
+      return str;
+    } else {
+      byte[] bytes = new byte[length];
+      in.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+
+  /** Read a list of strings, as written by {@link Writer#writeStrings(List)} */
+  public static List<String> readStrings(ByteBuffer in) {
+    int size = in.getInt();
+    List<String> strings = new ArrayList<>(size);
+    for (int i = 0; i < size; ++i) { strings.add(readString(in)); }
+    return strings;
+  }
+
+  /** Read an array of doubles, as written by {@link Writer#writeDoubles(double[])} */
+  public static double[] readDoubles(ByteBuffer in) {
+    double[] values = new double[in.getInt()];
+    for (int i = 0; i < values.length; ++i) { values[i] = in.getDouble(); }
+    return values;
+  }
+
+  /** Read an array of booleans, as written by {@link Writer#writeBooleans(boolean[])} */
+  public static boolean[] readBooleans(ByteBuffer in) {
+    boolean[] values = new boolean[in.getInt()];
+    for (int i = 0; i < values.length; ++i) { values[i] = in.get() != 0; }
+    return values;
+  }
+
+  /**
+   * A view of an array of floats, as written by {@link Writer#writeFloats(FloatBuffer)}, without copying it:
+   * for a mapped model, the floats are read from the file in place.
+   */
+  public static FloatBuffer viewFloats(ByteBuffer in) {
+    int length = in.getInt();
+    in.position(align(in.position()));
+    ByteBuffer slice = in.slice().order(in.order());
+    slice.limit(length * 4);
+    in.position(in.position() + length * 4);
+    return slice.asFloatBuffer();
+  }
+
+  /** The given position, rounded up to a multiple of 8 */
+  private static int align(int position) {
+    return (position + 7) & ~7;
+  }
+
+  /**
+   * Writes a binary model: its header, and then the sections of the model.
+   */
+  public static class Writer implements Closeable {
+    private final OutputStream out;
+    private final ByteBuffer scratch = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    private long position = 0;
+
+    /** Start writing a binary model for the given classifier to the given path */
+    public Writer(String path, Class<? extends RelationClassifier> modelClass) throws IOException {
+      this(path, modelClass, Maybe.<File>Nothing());
+    }
+
+    /**
+     * Start writing a binary model for the given classifier to the given path.
+     * @param source The serialized model this is an export of, if any; see {@link BinaryModel#isExportOf(String, String)}.
+     */
+    public Writer(String path, Class<? extends RelationClassifier> modelClass, Maybe<File> source) throws IOException {
+      File parent = new File(path).getAbsoluteFile().getParentFile();
+      if (parent != null && !parent.exists()) {
+        //noinspection ResultOfMethodCallIgnored
+        parent.mkdirs();
+      }
+      this.out = new BufferedOutputStream(new FileOutputStream(path), 1 << 16);
+      write(MAGIC);
+      writeInt(VERSION);
+      writeLong(source.isDefined() ? source.get().length() : -1L);
+      writeLong(source.isDefined() ? source.get().lastModified() : -1L);
+      writeString(modelClass.getName());
+    }
+
+    private void write(byte[] bytes) throws IOException {
+      out.write(bytes);
+      position += bytes.length;
+    }
+
+    private void flushScratch() throws IOException {
+      out.write(scratch.array(), 0, scratch.position());
+      position += scratch.position();
+      scratch.clear();
+    }
+
+    public void writeInt(int value) throws IOException {
+      scratch.putInt(value);
+      flushScratch();
+    }
+
+    public void writeLong(long value) throws IOException {
+      scratch.putLong(value);
+      flushScratch();
+    }
+
+    public void writeDouble(double value) throws IOException {
+      scratch.putDouble(value);
+      flushScratch();
+    }
+
+    public void writeString(String value) throws IOException {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      writeInt(bytes.length);
+      write(bytes);
+    }
+
+    public void writeStrings(List<String> values) throws IOException {
+      writeInt(values.size());
+      for (String value : values) { writeString(value); }
+    }
+
+    public void writeDoubles(double[] values) throws IOException {
+      writeInt(values.length);
+      for (double value : values) { writeDouble(value); }
+    }
+
+    public void writeBooleans(boolean[] values) throws IOException {
+      writeInt(values.length);
+      for (boolean value : values) { out.write(value ? 1 : 0); }
+      position += values.length;
+    }
+
+    /** Write an array of floats (from the buffer's position to its limit), aligned for {@link BinaryModel#viewFloats(ByteBuffer)} */
+    public void writeFloats(FloatBuffer values) throws IOException {
+      int length = values.remaining();
+      writeInt(length);
+      while (position % 8 != 0) {
+        out.write(0);
+        position += 1;
+      }
+      ByteBuffer chunk = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+      for (int i = values.position(); i < values.limit(); ++i) {
+        chunk.putFloat(values.get(i));
+        if (!chunk.hasRemaining()) {
+          out.write(chunk.array(), 0, chunk.position());
+          chunk.clear();
+        }
+      }
+      out.write(chunk.array(), 0, chunk.position());
+      position += ((long) length) * 4;
+      if (position > MAX_MAPPED_SIZE) {
+        throw new IOException("Binary model is too large to map (" + position + " bytes)");
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,471 @@
+package edu.stanford.nlp.kbp.slotfilling.classify;
+
+import edu.stanford.nlp.classify.LinearClassifier;
+import edu.stanford.nlp.ie.machinereading.structure.RelationMention;
+import edu.stanford.nlp.kbp.common.PackedFeatures;
+import edu.stanford.nlp.kbp.common.Props;
+import edu.stanford.nlp.kbp.slotfilling.ir.KBPRelationProvenance;
+import edu.stanford.nlp.ling.RVFDatum;
+import edu.stanford.nlp.stats.ClassicCounter;
+import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.*;
+
+/**
+ * A trained MIML-RE model ({@link JointBayesRelationExtractor}), compiled into flat primitive arrays for inference.
+ *
+ * <p>Classifying a sentence group with the model as trained scores every sentence once per fold through
+ * {@link LinearClassifier}, summing the per-fold distributions in {@link Counter}s; and then scores every Y classifier
+ * on a freshly built {@link RVFDatum} of string features.
+ * Here instead:</p>
+ * <ul>
+ *   <li>The weights of every fold's Z classifier are packed into a single dense matrix, with a row for each feature
+ *       holding its weight for every (fold, label) pair. Scoring a sentence is then a single pass over its features,
+ *       accumulating the scores of every fold at once; the per-fold distributions are computed and averaged
+ *       as before. Note that the folds' <i>probabilities</i> are averaged, not their weights -- averaging the weights
+ *       would be a different model.</li>
+ *   <li>Every Y classifier is only ever asked for the odds of its relation against NIL, which depend only on the
+ *       difference of the two labels' weights; the differences are precomputed for each of the (few) features a
+ *       Y classifier can see, indexed by the Z label (co-occurrence features) or the count (at-least-n features)
+ *       which would produce them.</li>
+ * </ul>
+ * <p>The weights are stored as floats; the scores are accumulated as doubles.
+ * The arrays this needs while classifying are kept per thread, and reused.</p>
+ *
+ * <p>This is also the binary format of a MIML-RE model ({@link BinaryModel}): see
+ * {@link CompiledJointBayes#write(BinaryModel.Writer)}. A model read from a mapped file reads its Z weights
+ * from the file in place.</p>
+ *
+ * <p>A compiled model is immutable, and threadsafe.
+ * It is a snapshot of the classifiers it was compiled from, which must be recompiled if they are retrained.</p>
+ */
+public class CompiledJointBayes {
+
+  /** The features of the Z classifiers, as the rows of {@link CompiledJointBayes#zWeights} */
+  public final Index<String> featureIndex;
+  /** The Z labels, including NIL; this is the label index of the model compiled */
+  public final Index<String> zLabelIndex;
+
+  private final int numFolds;
+  private final int numZLabels;
+  /** The length of a row of zWeights: numFolds * numZLabels */
+  private final int stride;
+  /** The weight of every feature for every fold and label, indexed [feature * stride + fold * numZLabels + label]; this may be mapped */
+  private final FloatBuffer zWeights;
+  /** The score of a datum with no features (i.e., the threshold), for every fold and label */
+  private final double[] zBias;
+  /** Whether each fold's classifier knows each label, indexed [fold * numZLabels + label] */
+  private final boolean[] zKnown;
+  /** Whether any fold knows each label */
+  private final boolean[] zAnyKnown;
+  /** The position of each label's name in sorted order, to break ties as {@link JointBayesRelationExtractor#sortPredictions(Counter)} */
+  private final int[] zLabelRank;
+  /** The index of the NIL label */
+  private final int nilLabel;
+
+  /** The relations with a Y classifier */
+  private final String[] yLabels;
+  /** The index of each Y label among the Z labels, or -1 if it has none */
+  private final int[] yLabelInZ;
+  /** For each Y classifier, the bias and the weight of each feature, as the positive label's minus the NIL label's */
+  private final double[] yBias;
+  private final double[] yNone;
+  private final double[] yAtLeastOnce;
+  private final double[] yUnique;
+  private final double[] ySigmoid;
+  /** The weight of the co-occurrence of the Y label with each Z label */
+  private final double[][] yCooc;
+  /** The weight of the Y label being predicted for exactly n sentences, for every n the classifier knows */
+  private final double[][] yAtLeastN;
+  /** Whether each Y classifier knows its positive label, and the NIL label */
+  private final boolean[] yHasPositive;
+  private final boolean[] yHasNegative;
+
+  /** The arrays used while classifying a group, one set per thread */
+  public static class Scratch {
+    /** The score of every fold and label for the current sentence */
+    private final double[] scores;
+    /** Marks the Z labels already seen, when computing Y features */
+    private final boolean[] zSeen;
+    /** P(z | x) for the current sentence, for every Z label */
+    public final double[] zProbs;
+    /** The greatest P(z | x) of any sentence predicted to be each Z label; see zPredicted */
+    public final double[] zMax;
+    /** The product of (1 - P(z | x)) over the sentences predicted to be each Z label */
+    public final double[] zNoisyOr;
+    /** Whether any sentence was predicted to be each Z label */
+    public final boolean[] zPredicted;
+    /** The provenance of the best sentence predicted to be each Z label */
+    public final KBPRelationProvenance[] zProvenance;
+    /** The Z label predicted for every sentence in the group; this is grown to the size of the group */
+    public int[] zLabels = new int[16];
+
+    private Scratch(int stride, int numZLabels) {
+      this.scores = new double[stride];
+      this.zSeen = new boolean[numZLabels];
+      this.zProbs = new double[numZLabels];
+      this.zMax = new double[numZLabels];
+      this.zNoisyOr = new double[numZLabels];
+      this.zPredicted = new boolean[numZLabels];
+      this.zProvenance = new KBPRelationProvenance[numZLabels];
+    }
+
+    /** Reset the per-group arrays, for a group of the given size */
+    private void reset(int groupSize) {
+      if (zLabels.length < groupSize) { zLabels = new int[Math.max(groupSize, zLabels.length * 2)]; }
+      Arrays.fill(zMax, 0.0);
+      Arrays.fill(zNoisyOr, 1.0);
+      Arrays.fill(zPredicted, false);
+      Arrays.fill(zProvenance, null);
+    }
+  }
+
+  private final ThreadLocal<Scratch> scratch;
+
+  private CompiledJointBayes(Index<String> featureIndex, Index<String> zLabelIndex, int numFolds,
+                             FloatBuffer zWeights, double[] zBias, boolean[] zKnown,
+                             String[] yLabels, double[] yBias, double[] yNone, double[] yAtLeastOnce, double[] yUnique,
+                             double[] ySigmoid, double[][] yCooc, double[][] yAtLeastN,
+                             boolean[] yHasPositive, boolean[] yHasNegative) {
+    this.featureIndex = featureIndex;
+    this.zLabelIndex = zLabelIndex;
+    this.numFolds = numFolds;
+    this.numZLabels = zLabelIndex.size();
+    this.stride = numFolds * numZLabels;
+    this.zWeights = zWeights;
+    this.zBias = zBias;
+    this.zKnown = zKnown;
+    this.zAnyKnown = new boolean[numZLabels];
+    for (int i = 0; i < zKnown.length; ++i) { zAnyKnown[i % numZLabels] |= zKnown[i]; }
+    List<String> sortedLabels = new ArrayList<>(zLabelIndex.objectsList());
+    Collections.sort(sortedLabels);
+    this.zLabelRank = new int[numZLabels];
+    for (int rank = 0; rank < sortedLabels.size(); ++rank) { zLabelRank[zLabelIndex.indexOf(sortedLabels.get(rank))] = rank; }
+    this.nilLabel = zLabelIndex.indexOf(RelationMention.UNRELATED);
+    this.yLabels = yLabels;
+    this.yLabelInZ = new int[yLabels.length];
+    for (int y = 0; y < yLabels.length; ++y) { yLabelInZ[y] = zLabelIndex.indexOf(yLabels[y]); }
+    this.yBias = yBias;
+    this.yNone = yNone;
+    this.yAtLeastOnce = yAtLeastOnce;
+    this.yUnique = yUnique;
+    this.ySigmoid = ySigmoid;
+    this.yCooc = yCooc;
+    this.yAtLeastN = yAtLeastN;
+    this.yHasPositive = yHasPositive;
+    this.yHasNegative = yHasNegative;
+    final int stride = this.stride;
+    final int numZLabels = this.numZLabels;
+    this.scratch = ThreadLocal.withInitial(() -> new Scratch(stride, numZLabels));
+  }
+
+  /**
+   * Compile a trained model.
+   * @param zClassifiers The Z classifier of each fold (or the single Z classifier, as the only fold).
+   * @param zLabelIndex The Z labels, including NIL.
+   * @param yClassifiers The Y classifier of each relation.
+   */
+  public static CompiledJointBayes compile(LinearClassifier<String, String>[] zClassifiers, Index<String> zLabelIndex,
+                                           Map<String, LinearClassifier<String, String>> yClassifiers) {
+    int numFolds = zClassifiers.length;
+    int numZLabels = zLabelIndex.size();
+    int stride = numFolds * numZLabels;
+
+    // -- Z Classifiers
+    // Use the classifiers' feature index, if they share one (as they do once trained); else, the union of them
+    Index<String> featureIndex = zClassifiers[0].featureIndex();
+    for (LinearClassifier<String, String> zClassifier : zClassifiers) {
+      if (zClassifier.featureIndex() != featureIndex) {
+        featureIndex = new HashIndex<>();
+        for (LinearClassifier<String, String> classifier : zClassifiers) { featureIndex.addAll(classifier.featureIndex().objectsList()); }
+        break;
+      }
+    }
+    if (((long) featureIndex.size()) * stride > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Model is too large to compile: " + featureIndex.size() + " features x " + stride + " weights");
+    }
+    float[] zWeights = new float[featureIndex.size() * stride];
+    double[] zBias = new double[stride];
+    boolean[] zKnown = new boolean[stride];
+    for (int fold = 0; fold < numFolds; ++fold) {
+      LinearClassifier<String, String> zClassifier = zClassifiers[fold];
+      Index<String> classifierFeatures = zClassifier.featureIndex();
+      Index<String> classifierLabels = zClassifier.labelIndex();
+      // (the labels of this fold, as Z labels)
+      int[] labelMap = new int[classifierLabels.size()];
+      for (int label = 0; label < labelMap.length; ++label) {
+        labelMap[label] = zLabelIndex.indexOf(classifierLabels.get(label));
+        if (labelMap[label] >= 0) { zKnown[fold * numZLabels + labelMap[label]] = true; }
+      }
+      double[][] weights = zClassifier.weights();
+      for (int feature = 0; feature < weights.length; ++feature) {
+        int row = (classifierFeatures == featureIndex ? feature : featureIndex.indexOf(classifierFeatures.get(feature))) * stride;
+        for (int label = 0; label < labelMap.length; ++label) {
+          if (labelMap[label] >= 0) { zWeights[row + fold * numZLabels + labelMap[label]] = (float) weights[feature][label]; }
+        }
+      }
+      // (the score with no features is the classifier's threshold for each label)
+      Counter<String> thresholds = zClassifier.scoresOf(new int[0]);
+      for (int label = 0; label < labelMap.length; ++label) {
+        if (labelMap[label] >= 0) { zBias[fold * numZLabels + labelMap[label]] = thresholds.getCount(classifierLabels.get(label)); }
+      }
+    }
+
+    // -- Y Classifiers
+    int numY = yClassifiers.size();
+    String[] yLabels = new String[numY];
+    double[] yBias = new double[numY];
+    double[] yNone = new double[numY];
+    double[] yAtLeastOnce = new double[numY];
+    double[] yUnique = new double[numY];
+    double[] ySigmoid = new double[numY];
+    double[][] yCooc = new double[numY][numZLabels];
+    double[][] yAtLeastN = new double[numY][];
+    boolean[] yHasPositive = new boolean[numY];
+    boolean[] yHasNegative = new boolean[numY];
+    int y = 0;
+    for (Map.Entry<String, LinearClassifier<String, String>> entry : yClassifiers.entrySet()) {
+      String yLabel = entry.getKey();
+      LinearClassifier<String, String> yClassifier = entry.getValue();
+      int positive = yClassifier.labelIndex().indexOf(yLabel);
+      int negative = yClassifier.labelIndex().indexOf(RelationMention.UNRELATED);
+      yLabels[y] = yLabel;
+      yHasPositive[y] = positive >= 0;
+      yHasNegative[y] = negative >= 0;
+      Counter<String> thresholds = yClassifier.scoresOf(new RVFDatum<String, String>(new ClassicCounter<String>(), ""));
+      yBias[y] = thresholds.getCount(yLabel) - thresholds.getCount(RelationMention.UNRELATED);
+      yNone[y] = yWeight(yClassifier, JointBayesRelationExtractor.NONE_FEAT, positive, negative);
+      yAtLeastOnce[y] = yWeight(yClassifier, JointBayesRelationExtractor.ATLEASTONCE_FEAT, positive, negative);
+      yUnique[y] = yWeight(yClassifier, JointBayesRelationExtractor.UNIQUE_FEAT, positive, negative);
+      ySigmoid[y] = yWeight(yClassifier, JointBayesRelationExtractor.SIGMOID_FEAT, positive, negative);
+      for (int z = 0; z < numZLabels; ++z) {
+        yCooc[y][z] = yWeight(yClassifier, JointBayesRelationExtractor.makeCoocurrenceFeature(yLabel, zLabelIndex.get(z)), positive, negative);
+      }
+      int maxN = 0;
+      for (String feature : yClassifier.featureIndex()) {
+        if (feature.startsWith(ATLEAST_N_PREFIX)) {
+          try {
+            maxN = Math.max(maxN, Integer.parseInt(feature.substring(ATLEAST_N_PREFIX.length())));
+          } catch (NumberFormatException ignored) { }
+        }
+      }
+      yAtLeastN[y] = new double[maxN + 1];
+      for (int n = 1; n <= maxN; ++n) {
+        yAtLeastN[y][n] = yWeight(yClassifier, ATLEAST_N_PREFIX + n, positive, negative);
+      }
+      y += 1;
+    }
+
+    return new CompiledJointBayes(featureIndex, zLabelIndex, numFolds, FloatBuffer.wrap(zWeights), zBias, zKnown,
+        yLabels, yBias, yNone, yAtLeastOnce, yUnique, ySigmoid, yCooc, yAtLeastN, yHasPositive, yHasNegative);
+  }
+
+  /** The prefix of the at-least-n Y features; see JointBayesRelationExtractor#extractYFeatures */
+  private static final String ATLEAST_N_PREFIX = "atleast_";
+
+  /** The weight of a Y feature for the positive label, minus its weight for the negative label; 0 for unknown features */
+  private static double yWeight(LinearClassifier<String, String> yClassifier, String feature, int positive, int negative) {
+    int index = yClassifier.featureIndex().indexOf(feature);
+    if (index < 0) { return 0.0; }
+    double[] weights = yClassifier.weights()[index];
+    return (positive >= 0 ? weights[positive] : 0.0) - (negative >= 0 ? weights[negative] : 0.0);
+  }
+
+  /** The scratch arrays of this thread, reset for classifying a group of the given size */
+  public Scratch scratch(int groupSize) {
+    Scratch scratch = this.scratch.get();
+    scratch.reset(groupSize);
+    return scratch;
+  }
+
+  /**
+   * Classify a single sentence: the average over the folds of P(z | x), as
+   * JointBayesRelationExtractor#classifyLocally(PackedFeatures, int).
+   * @param sentences The packed features of a sentence group.
+   * @param sentence The index of the sentence to classify.
+   * @param probs The array to write P(z | x) into, indexed by Z label; labels no fold knows have probability 0.
+   * @return The most probable Z label. Ties are broken by the labels' names.
+   */
+  public int classifyLocally(PackedFeatures sentences, int sentence, double[] probs) {
+    double[] scores = this.scratch.get().scores;
+    // -- Score
+    System.arraycopy(zBias, 0, scores, 0, stride);
+    // (the rows of zWeights are the features of featureIndex)
+    PackedFeatures.Translation translation = sentences.translation(featureIndex);
+    for (int i = sentences.start(sentence); i < sentences.end(sentence); ++i) {
+      int feature = translation.toModel(sentences.feature(i));
+      if (feature < 0) { continue; }
+      double value = sentences.value(i);
+      int row = feature * stride;
+      for (int k = 0; k < stride; ++k) {
+        scores[k] += zWeights.get(row + k) * value;
+      }
+    }
+    // -- Normalize, and average over folds
+    Arrays.fill(probs, 0, numZLabels, 0.0);
+    for (int fold = 0; fold < numFolds; ++fold) {
+      int offset = fold * numZLabels;
+      double max = Double.NEGATIVE_INFINITY;
+      for (int label = 0; label < numZLabels; ++label) {
+        if (zKnown[offset + label] && scores[offset + label] > max) { max = scores[offset + label]; }
+      }
+      double sum = 0.0;
+      for (int label = 0; label < numZLabels; ++label) {
+        if (zKnown[offset + label]) { sum += Math.exp(scores[offset + label] - max); }
+      }
+      for (int label = 0; label < numZLabels; ++label) {
+        if (zKnown[offset + label]) { probs[label] += Math.exp(scores[offset + label] - max) / sum; }
+      }
+    }
+    // -- Predict
+    int argmax = -1;
+    for (int label = 0; label < numZLabels; ++label) {
+      if (!zAnyKnown[label]) { continue; }
+      probs[label] /= numFolds;
+      if (argmax < 0 || probs[label] > probs[argmax] ||
+          (probs[label] == probs[argmax] && zLabelRank[label] < zLabelRank[argmax])) {
+        argmax = label;
+      }
+    }
+    return argmax;
+  }
+
+  /** The number of folds (Z classifiers) compiled */
+  public int numFolds() { return numFolds; }
+
+  /** The number of relations with a Y classifier */
+  public int numYLabels() { return yLabels.length; }
+
+  /** The relation of the given Y classifier */
+  public String yLabel(int y) { return yLabels[y]; }
+
+  /** The index of the given Y classifier's relation among the Z labels, or -1 if it has none */
+  public int yLabelInZ(int y) { return yLabelInZ[y]; }
+
+  /**
+   * P(y | z), for the given Y classifier: the probability of its relation, renormalized against NIL.
+   * This is the probability JointBayesRelationExtractor computes from the features of JointBayesRelationExtractor#extractYFeatures.
+   * @param y The Y classifier.
+   * @param zLabels The predicted Z label of every sentence in the group.
+   * @param numSentences The number of sentences in the group; zLabels may be longer.
+   */
+  public double probabilityOfY(int y, int[] zLabels, int numSentences) {
+    int yz = yLabelInZ[y];
+    int count = 0;
+    for (int s = 0; s < numSentences; ++s) {
+      if (zLabels[s] == yz) { count += 1; }
+    }
+    double score = yBias[y];
+    if (count == 0) {
+      // no Z proposed this label
+      score += yNone[y];
+    } else {
+      Set<Props.Y_FEATURE_CLASS> features = Props.TRAIN_JOINTBAYES_YFEATURES;
+      if (features.contains(Props.Y_FEATURE_CLASS.ATLEAST_ONCE)) { score += yAtLeastOnce[y]; }
+      // label dependencies (each co-occurring label counts once)
+      boolean unique = true;
+      boolean cooc = features.contains(Props.Y_FEATURE_CLASS.COOC);
+      boolean[] seen = this.scratch.get().zSeen;
+      for (int s = 0; s < numSentences; ++s) {
+        int z = zLabels[s];
+        if (z != yz && z != nilLabel) {
+          unique = false;
+          if (cooc && !seen[z]) {
+            seen[z] = true;
+            score += yCooc[y][z];
+          }
+        }
+      }
+      for (int s = 0; s < numSentences; ++s) { seen[zLabels[s]] = false; }
+      if (unique && features.contains(Props.Y_FEATURE_CLASS.UNIQUE)) { score += yUnique[y]; }
+      if (features.contains(Props.Y_FEATURE_CLASS.ATLEAST_N) && count < yAtLeastN[y].length) { score += yAtLeastN[y][count]; }
+      if (features.contains(Props.Y_FEATURE_CLASS.SIGMOID)) {
+        double percent = ((double) count) / ((double) numSentences);
+        double sigmoid = 1.0 / (1.0 + Math.exp(-10.0 * (percent - 1.0 / 3.0)));
+        score += ySigmoid[y] * sigmoid;
+      }
+    }
+    // P(pos) / (P(pos) + P(nil)), which is the logistic of the difference of their scores
+    if (!yHasPositive[y]) { return yHasNegative[y] ? 0.0 : Double.NaN; }
+    if (!yHasNegative[y]) { return 1.0; }
+    return 1.0 / (1.0 + Math.exp(-score));
+  }
+
+  /**
+   * Write this model in its binary format, after the header of a {@link BinaryModel}:
+   * the feature and label dictionaries, the Y classifiers, and then the Z weight matrix.
+   */
+  public void write(BinaryModel.Writer out) throws IOException {
+    out.writeStrings(featureIndex.objectsList());
+    out.writeStrings(zLabelIndex.objectsList());
+    out.writeInt(numFolds);
+    out.writeDoubles(zBias);
+    out.writeBooleans(zKnown);
+    out.writeInt(yLabels.length);
+    for (int y = 0; y < yLabels.length; ++y) {
+      out.writeString(yLabels[y]);
+      out.writeDouble(yBias[y]);
+      out.writeDouble(yNone[y]);
+      out.writeDouble(yAtLeastOnce[y]);
+      out.writeDouble(yUnique[y]);
+      out.writeDouble(ySigmoid[y]);
+      out.writeDoubles(yCooc[y]);
+      out.writeDoubles(yAtLeastN[y]);
+      out.writeBooleans(new boolean[]{ yHasPositive[y], yHasNegative[y] });
+    }
+    FloatBuffer weights = zWeights.duplicate();
+    weights.clear();
+    out.writeFloats(weights);
+  }
+
+  /**
+   * Read a model written by {@link CompiledJointBayes#write(BinaryModel.Writer)}.
+   * The Z weights are not copied: if the buffer is mapped, they are read from the file.
+   * @param in The buffer, positioned after the header of the {@link BinaryModel}.
+   */
+  public static CompiledJointBayes read(ByteBuffer in) throws IOException {
+    Index<String> featureIndex = new HashIndex<>(BinaryModel.readStrings(in));
+    Index<String> zLabelIndex = new HashIndex<>(BinaryModel.readStrings(in));
+    int numFolds = in.getInt();
+    double[] zBias = BinaryModel.readDoubles(in);
+    boolean[] zKnown = BinaryModel.readBooleans(in);
+    int numY = in.getInt();
+    String[] yLabels = new String[numY];
+    double[] yBias = new double[numY];
+    double[] yNone = new double[numY];
+    double[] yAtLeastOnce = new double[numY];
+    double[] yUnique = new double[numY];
+    double[] ySigmoid = new double[numY];
+    double[][] yCooc = new double[numY][];
+    double[][] yAtLeastN = new double[numY][];
+    boolean[] yHasPositive = new boolean[numY];
+    boolean[] yHasNegative = new boolean[numY];
+    for (int y = 0; y < numY; ++y) {
+      yLabels[y] = BinaryModel.readString(in);
+      yBias[y] = in.getDouble();
+      yNone[y] = in.getDouble();
+      yAtLeastOnce[y] = in.getDouble();
+      yUnique[y] = in.getDouble();
+      ySigmoid[y] = in.getDouble();
+      yCooc[y] = BinaryModel.readDoubles(in);
+      yAtLeastN[y] = BinaryModel.readDoubles(in);
+      boolean[] known = BinaryModel.readBooleans(in);
+      yHasPositive[y] = known[0];
+      yHasNegative[y] = known[1];
+    }
+    FloatBuffer zWeights = BinaryModel.viewFloats(in);
+    // Sanity check the shapes
+    int stride = numFolds * zLabelIndex.size();
+    if (zBias.length != stride || zKnown.length != stride || zWeights.capacity() != featureIndex.size() * stride) {
+      throw new IOException("Malformed binary MIML-RE model: " + featureIndex.size() + " features, " + zLabelIndex.size() +
+          " labels and " + numFolds + " folds, but " + zWeights.capacity() + " weights");
+    }
+    return new CompiledJointBayes(featureIndex, zLabelIndex, numFolds, zWeights, zBias, zKnown,
+        yLabels, yBias, yNone, yAtLeastOnce, yUnique, ySigmoid, yCooc, yAtLeastN, yHasPositive, yHasNegative);
+  }
+}
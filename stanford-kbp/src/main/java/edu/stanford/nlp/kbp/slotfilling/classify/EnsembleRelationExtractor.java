@@ -5,6 +5,12 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import edu.stanford.nlp.kbp.common.Maybe;
 import edu.stanford.nlp.kbp.common.Pointer;
@@ -48,6 +54,12 @@ public class EnsembleRelationExtractor extends RelationClassifier {
   private EnsembleMethod method;
   private List<ModelType> modelTypes;
 
+  /**
+   * The threads the members of an ensemble are scored on, shared by every ensemble; see {@link Props#TEST_ENSEMBLE_THREADS}.
+   * Created when first used.
+   */
+  private static ExecutorService scoringPool = null;
+
   /** Used by {@link edu.stanford.nlp.kbp.slotfilling.classify.ModelType} via reflection */
   @SuppressWarnings("UnusedDeclaration")
   public EnsembleRelationExtractor(Properties properties) {
@@ -262,9 +274,10 @@ public class EnsembleRelationExtractor extends RelationClassifier {
     List<Counter<String>> classifierPredictions = new ArrayList<Counter<String>>();
 
     // Collect Predictions And Statistics
-    for (RelationClassifier classifier : classifiers) {
+    // (in the order of the classifiers, however they were scored)
+    for (Counter<Pair<String, Maybe<KBPRelationProvenance>>> classifierOutput : classifyWithMembers(group, rawSentences)) {
       Counter<String> predictions = new ClassicCounter<String>();
-      for (Map.Entry<Pair<String, Maybe<KBPRelationProvenance>>, Double> entry : classifier.classifyRelations(group, rawSentences).entrySet()) {
+      for (Map.Entry<Pair<String, Maybe<KBPRelationProvenance>>, Double> entry : classifierOutput.entrySet()) {
         predictions.incrementCount(entry.getKey().first, entry.getValue());  // register prediction
         relationPredictions.add(entry.getKey().first);                       // add to key set
         if (entry.getKey().second.isDefined() &&                             // register provenance if highest weight so far
@@ -335,6 +348,76 @@ public class EnsembleRelationExtractor extends RelationClassifier {
     return result;
   }
 
+  private static synchronized ExecutorService scoringPool() {
+    if (scoringPool == null) {
+      final AtomicInteger threadIndex = new AtomicInteger(0);
+      scoringPool = Executors.newFixedThreadPool(Math.max(1, Props.TEST_ENSEMBLE_THREADS - 1), runnable -> {
+        Thread thread = new Thread(runnable, "ensemble-scoring-" + threadIndex.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return scoringPool;
+  }
+
+  /**
+   * Classify a sentence group with every classifier in the ensemble, concurrently (see {@link Props#TEST_ENSEMBLE_THREADS}).
+   * The calling thread scores classifiers too: the classifiers are claimed one at a time by the caller and the pooled
+   * threads alike, so the caller never waits on a classifier which has not started, and a saturated pool
+   * (e.g., under many concurrent calls from the classify stage of the pipeline) degrades to scoring serially.
+   *
+   * @return The predictions of each classifier, in the order of the classifiers.
+   */
+  private List<Counter<Pair<String, Maybe<KBPRelationProvenance>>>> classifyWithMembers(
+      final SentenceGroup group, final Maybe<CoreMap[]> rawSentences) {
+    final int numClassifiers = classifiers.size();
+    final Counter<Pair<String, Maybe<KBPRelationProvenance>>>[] predictions = ErasureUtils.uncheckedCast(new Counter[numClassifiers]);
+    int helpers = Math.min(Props.TEST_ENSEMBLE_THREADS, numClassifiers) - 1;
+    if (helpers <= 0) {
+      for (int i = 0; i < numClassifiers; ++i) {
+        predictions[i] = classifiers.get(i).classifyRelations(group, rawSentences);
+      }
+      return Arrays.asList(predictions);
+    }
+
+    // Pack the group's features once, rather than racing every classifier to do it
+    if (group != null) { group.packedFeatures(); }
+    final AtomicInteger nextClassifier = new AtomicInteger(0);
+    // Counted down as each classifier finishes (or fails), by whichever thread claimed it
+    final CountDownLatch finished = new CountDownLatch(numClassifiers);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    Runnable scorer = () -> {
+      int i;
+      while ((i = nextClassifier.getAndIncrement()) < numClassifiers) {
+        try {
+          predictions[i] = classifiers.get(i).classifyRelations(group, rawSentences);
+        } catch (RuntimeException | Error e) {
+          failure.compareAndSet(null, e);
+        } finally {
+          finished.countDown();
+        }
+      }
+    };
+    ExecutorService pool = scoringPool();
+    List<Future<?>> helping = new ArrayList<Future<?>>(helpers);
+    for (int h = 0; h < helpers; ++h) {
+      helping.add(pool.submit(scorer));
+    }
+    scorer.run();
+    // Every classifier has been claimed by now: helpers still queued have nothing left to do, and we wait only on
+    // the classifiers still being scored by helpers which did start
+    for (Future<?> future : helping) { future.cancel(false); }
+    try {
+      finished.await();
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+    Throwable cause = failure.get();
+    if (cause instanceof RuntimeException) { throw (RuntimeException) cause; }
+    if (cause instanceof Error) { throw (Error) cause; }
+    return Arrays.asList(predictions);
+  }
+
   @Override
   public void load(ObjectInputStream in) throws IOException, ClassNotFoundException {
     int numSamples = in.readInt();
@@ -87,14 +87,8 @@ public class HoffmannExtractor extends RelationClassifier {
       return dotProduct(vector, weights);
     }
 
-    double avgDotProduct(Collection<String> features, Index<String> featureIndex) {
-      Counter<Integer> vector = new ClassicCounter<Integer>();
-      for(String feat: features) {
-        int idx = featureIndex.indexOf(feat);
-        if(idx >= 0) vector.incrementCount(idx);
-      }
-
-      return dotProduct(vector, avgWeights);
+    double avgDotProduct(PackedFeatures features, int datum, PackedFeatures.Translation translation) {
+      return features.dot(datum, translation, avgWeights);
     }
 
     static double dotProduct(Counter<Integer> vector, double [] weights) {
@@ -471,17 +465,21 @@ public class HoffmannExtractor extends RelationClassifier {
   @Override
   public Counter<Pair<String, Maybe<KBPRelationProvenance>>> classifyRelations(SentenceGroup input, Maybe<CoreMap[]> rawSentences) {
     // TODO(gabor) A deeper rewrite than splicing in classifyMentions()
-    return RelationClassifier.firstProvenance(classifyMentions(RelationClassifier.tupleToFeatureList(input)), input);
+    return RelationClassifier.firstProvenance(classifyMentions(input.packedFeatures()), input);
   }
 
   public Counter<String> classifyMentions(List<Collection<String>> mentions) {
+    return classifyMentions(PackedFeatures.packFeatures(mentions));
+  }
+
+  public Counter<String> classifyMentions(PackedFeatures mentions) {
+    PackedFeatures.Translation translation = mentions.translation(zFeatureIndex);
     Counter<String> bestZScores = new ClassicCounter<String>();
 
     // traverse of all mention of this tuple
     for (int i = 0; i < mentions.size(); i++) {
       // get all scores for this mention
-      Collection<String> mentionFeatures = mentions.get(i);
-      Counter<String> mentionScores = classifyMention(mentionFeatures);
+      Counter<String> mentionScores = classifyMention(mentions, i, translation);
 
       Pair<String, Double> topPrediction = JointBayesRelationExtractor.sortPredictions(mentionScores).get(0);
       String l = topPrediction.first();
@@ -500,10 +498,10 @@ public class HoffmannExtractor extends RelationClassifier {
     return bestZScores;
   }
 
-  private Counter<String> classifyMention(Collection<String> testDatum) {
+  private Counter<String> classifyMention(PackedFeatures features, int datum, PackedFeatures.Translation translation) {
     Counter<String> scores = new ClassicCounter<String>();
     for(int labelIdx = 0; labelIdx < zWeights.length; labelIdx ++){
-      double score = zWeights[labelIdx].avgDotProduct(testDatum, zFeatureIndex);
+      double score = zWeights[labelIdx].avgDotProduct(features, datum, translation);
       scores.setCount(labelIndex.get(labelIdx), score);
     }
     return scores;
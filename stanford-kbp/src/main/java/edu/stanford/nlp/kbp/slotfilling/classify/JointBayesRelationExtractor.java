@@ -15,6 +15,7 @@ import edu.stanford.nlp.util.*;
 import edu.stanford.nlp.util.logging.Redwood;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
@@ -61,6 +62,11 @@ public class JointBayesRelationExtractor extends RelationClassifier {
   protected LinearClassifier<String, String> [] zClassifiers;
   /** this is created only if localClassificationMode == SINGLE_MODEL */
   LinearClassifier<String, String> zSingleClassifier;
+  /**
+   * The compiled form of the classifiers, for inference; built on first use, and dropped whenever they change.
+   * For a model loaded from a {@link BinaryModel}, this is the only form of the model there is.
+   */
+  private transient volatile CompiledJointBayes compiled;
   /** one two-class classifier for each top-level relation */
   protected Map<String, LinearClassifier<String, String>> yClassifiers;
 
@@ -68,10 +74,10 @@ public class JointBayesRelationExtractor extends RelationClassifier {
   private Index<String> yLabelIndex;
   protected Index<String> zLabelIndex;
 
-  private static String ATLEASTONCE_FEAT = "atleastonce";
-  private static String NONE_FEAT = "none";
-  private static String UNIQUE_FEAT = "unique";
-  private static String SIGMOID_FEAT = "sigmoid";
+  static final String ATLEASTONCE_FEAT = "atleastonce";
+  static final String NONE_FEAT = "none";
+  static final String UNIQUE_FEAT = "unique";
+  static final String SIGMOID_FEAT = "sigmoid";
   private static List<String> Y_FEATURES_FOR_INITIAL_MODEL;
 
   static {
@@ -260,7 +266,7 @@ public class JointBayesRelationExtractor extends RelationClassifier {
     }
   }
 
-  private static String makeCoocurrenceFeature(String src, String dst) {
+  static String makeCoocurrenceFeature(String src, String dst) {
     return "co:s|" + src + "|d|" + dst + "|";
   }
 
@@ -427,6 +433,7 @@ public class JointBayesRelationExtractor extends RelationClassifier {
 
   @Override
   public TrainingStatistics train(KBPDataset<String, String> data) {
+    compiled = null;
     if (numberOfThreads <= 0) numberOfThreads = Runtime.getRuntime().availableProcessors();
     logger.log("Number of threads is " + numberOfThreads);
     // filter some of the groups
@@ -869,6 +876,7 @@ public class JointBayesRelationExtractor extends RelationClassifier {
    * @return A triple (precision, recall, accuracy).
    */
   public Triple<Double, Double, Double> trainingAccuracy(KBPDataset<String, String> dataset) {
+    requireClassifiers("compute the training accuracy");
     int[][][] data = dataset.getDataArray();
     int[][] zLabels = new int[data.length][];
 
@@ -1943,9 +1951,35 @@ public class JointBayesRelationExtractor extends RelationClassifier {
     throw new RuntimeException("ERROR: classification mode " + localClassificationMode + " not supported!");
   }
 
+  /**
+   * As {@link JointBayesRelationExtractor#classifyLocally(Collection)}, but for a datum of a packed sentence group.
+   * @return Probabilities (NOT log probs!) for each known label
+   */
+  private Counter<String> classifyLocally(PackedFeatures sentences, int sentence) {
+    if(localClassificationMode == LOCAL_CLASSIFICATION_MODE.WEIGHTED_VOTE) {
+      Counter<String> sumProbs = new ClassicCounter<String>();
+
+      for(int fold = 0; fold < numberOfFolds; fold ++) {
+        LinearClassifier<String, String> zClassifier = zClassifiers[fold];
+        sumProbs.addAll(probabilityOf(zClassifier, sentences.toModel(sentence, sentences.translation(zClassifier.featureIndex()))));
+      }
+
+      for(String l: sumProbs.keySet())
+        sumProbs.setCount(l, sumProbs.getCount(l) / numberOfFolds);
+      return sumProbs;
+    }
+
+    if(localClassificationMode == LOCAL_CLASSIFICATION_MODE.SINGLE_MODEL) {
+      return probabilityOf(zSingleClassifier, sentences.toModel(sentence, sentences.translation(zSingleClassifier.featureIndex())));
+    }
+
+    throw new RuntimeException("ERROR: classification mode " + localClassificationMode + " not supported!");
+  }
+
   public Counter<String> classifyOracleMentions(
       List<Collection<String>> sentences,
       Set<String> goldLabels) {
+    requireClassifiers("classify oracle mentions");
     Counter<String> [] zProbs =
       ErasureUtils.uncheckedCast(new Counter[sentences.size()]);
 
@@ -2007,7 +2041,10 @@ public class JointBayesRelationExtractor extends RelationClassifier {
   }
 
   private Counter<Pair<String, Maybe<KBPRelationProvenance>>> classifyRelations(SentenceGroup input, Maybe<CoreMap[]> rawSentences, Props.TRAIN_JOINTBAYES_OUTDISTRIBUTION_TYPES outputType) {
-    List<Collection<String>> sentences = RelationClassifier.tupleToFeatureList(input);
+    if (Props.TEST_JOINTBAYES_COMPILED || zClassifiers == null) {
+      return classifyRelations(compiled(), input, outputType);
+    }
+    PackedFeatures sentences = input.packedFeatures();
     // Variables of interest (filled in below)
     String[]           zLabelsGivenX = new String[sentences.size()];
     Counter<String> [] pZGivenX      = ErasureUtils.uncheckedCast(new Counter[sentences.size()]);
@@ -2023,8 +2060,7 @@ public class JointBayesRelationExtractor extends RelationClassifier {
     Counter<String> noisyOrZGivenX = new ClassicCounter<String>();
     for (int i = 0; i < sentences.size(); i++) {
       // Classify P(zi | xi)
-      Collection<String> sentence = sentences.get(i);
-      Counter<String> pZGivenXi = classifyLocally(sentence);
+      Counter<String> pZGivenXi = classifyLocally(sentences, i);
       // Compute Log P(zi | xi)
       pZGivenX[i] = new ClassicCounter<String>();
       for(String l: pZGivenXi.keySet()) {
@@ -2129,8 +2165,122 @@ public class JointBayesRelationExtractor extends RelationClassifier {
     return joint;
   }
 
+  /** The compiled form of this model; see {@link CompiledJointBayes} */
+  private CompiledJointBayes compiled() {
+    CompiledJointBayes model = compiled;
+    if (model == null) {
+      synchronized (lock) {
+        model = compiled;
+        if (model == null) {
+          startTrack("Compiling MIML-RE model");
+          LinearClassifier<String, String>[] zModels = localClassificationMode == LOCAL_CLASSIFICATION_MODE.SINGLE_MODEL
+              ? ErasureUtils.<LinearClassifier<String, String>[]>uncheckedCast(new LinearClassifier[]{ zSingleClassifier })
+              : zClassifiers;
+          model = CompiledJointBayes.compile(zModels, zLabelIndex, yClassifiers);
+          compiled = model;
+          endTrack("Compiling MIML-RE model");
+        }
+      }
+    }
+    return model;
+  }
+
+  /**
+   * As {@link JointBayesRelationExtractor#classifyRelations(SentenceGroup, Maybe, Props.TRAIN_JOINTBAYES_OUTDISTRIBUTION_TYPES)},
+   * but through the compiled model: the same predictions (up to floating point error), without the per-sentence
+   * and per-relation Counters.
+   */
+  private Counter<Pair<String, Maybe<KBPRelationProvenance>>> classifyRelations(CompiledJointBayes model, SentenceGroup input, Props.TRAIN_JOINTBAYES_OUTDISTRIBUTION_TYPES outputType) {
+    PackedFeatures sentences = input.packedFeatures();
+    CompiledJointBayes.Scratch scratch = model.scratch(sentences.size());
+    int nilIndex = zLabelIndex.indexOf(RelationMention.UNRELATED);
+
+    //
+    // Z level predictions
+    //
+    for (int i = 0; i < sentences.size(); i++) {
+      // Classify P(zi | xi)
+      int predictedLabel = model.classifyLocally(sentences, i, scratch.zProbs);
+      if (predictedLabel < 0) { throw new IllegalStateException("No Z classifier knows any labels"); }
+      double predictionScore = scratch.zProbs[predictedLabel];
+      scratch.zLabels[i] = predictedLabel;
+
+      if (predictedLabel != nilIndex) { // we do not output NIL labels
+        KBPRelationProvenance provenance = input.getProvenance(i);
+        // Update the max z predictions
+        if (!scratch.zPredicted[predictedLabel] || predictionScore > scratch.zMax[predictedLabel]) {
+          scratch.zPredicted[predictedLabel] = true;
+          scratch.zMax[predictedLabel] = predictionScore;
+          if (provenance.isOfficial()) {
+            scratch.zProvenance[predictedLabel] = provenance.rewrite(predictionScore);
+          }
+        }
+        // Set provenance (if official index)
+        if (scratch.zProvenance[predictedLabel] == null && provenance.isOfficial()) {
+          scratch.zProvenance[predictedLabel] = provenance;
+        }
+        // Compute [product for] noisy or noisy_or( P(zi | xi) )
+        scratch.zNoisyOr[predictedLabel] *= (1.0 - predictionScore);
+      }
+    }
+
+    //
+    // Y level predictions, and the final prediction
+    //
+    Counter<Pair<String, Maybe<KBPRelationProvenance>>> joint = new ClassicCounter<Pair<String, Maybe<KBPRelationProvenance>>>();
+    for (int y = 0; y < model.numYLabels(); ++y) {
+      String l = model.yLabel(y);
+      int z = model.yLabelInZ(y);
+      // Compute P( y | z )
+      double prob = model.probabilityOfY(y, scratch.zLabels, sentences.size());
+      boolean aboveThreshold = (!Props.TEST_THRESHOLD_JOINTBAYES_PERRELATION.containsKey(l) && prob > Props.TEST_THRESHOLD_JOINTBAYES_DEFAULT) ||
+          (Props.TEST_THRESHOLD_JOINTBAYES_PERRELATION.containsKey(l) && prob > Props.TEST_THRESHOLD_JOINTBAYES_PERRELATION.get(l));
+      // Re-invert noisy or of z given x
+      double yProb = 1.0;
+      double zProb = (z >= 0 && scratch.zPredicted[z]) ? 1.0 - scratch.zNoisyOr[z] : 0.0;
+      Maybe<KBPRelationProvenance> provenance = Maybe.fromNull(z >= 0 ? scratch.zProvenance[z] : null);
+      switch (outputType) {
+        case Y_GIVEN_ZSTAR:
+          joint.setCount(Pair.makePair(l, provenance), prob);
+          break;
+        case NOISY_OR:
+          if ((!Props.TEST_THRESHOLD_JOINTBAYES_PERRELATION.containsKey(l) && yProb * zProb > Props.TEST_THRESHOLD_JOINTBAYES_DEFAULT) ||
+              (Props.TEST_THRESHOLD_JOINTBAYES_PERRELATION.containsKey(l) && yProb * zProb > Props.TEST_THRESHOLD_JOINTBAYES_PERRELATION.get(l))) {
+            joint.setCount(Pair.makePair(l, provenance), yProb * zProb);
+          }
+          break;
+        case Y_THEN_NOISY_OR:
+          if (aboveThreshold) {
+            joint.setCount(Pair.makePair(l, provenance), yProb * zProb);
+          }
+          break;
+        default:
+          throw new IllegalStateException("Unknown output type: " + Props.TRAIN_JOINTBAYES_OUTDISTRIBUTION);
+      }
+    }
+    // (don't hold on to the provenances)
+    Arrays.fill(scratch.zProvenance, null);
+
+    if (Props.TRAIN_JOINTBAYES_OUTDISTRIBUTION == Props.TRAIN_JOINTBAYES_OUTDISTRIBUTION_TYPES.Y_GIVEN_ZSTAR) {
+      Counters.normalize(joint);
+    }
+
+    return joint;
+  }
+
+  /**
+   * Fail if this model was loaded from a {@link BinaryModel}, which has only the compiled form of the model,
+   * and not the classifiers the given operation needs.
+   */
+  private void requireClassifiers(String operation) {
+    if (zClassifiers == null) {
+      throw new IllegalStateException("Cannot " + operation + " with a model loaded from a binary model; load the serialized model instead");
+    }
+  }
+
   @Override
   public void save(ObjectOutputStream out) throws IOException {
+    requireClassifiers("re-save");
     out.writeObject(knownDependencies);
     out.writeObject(zLabelIndex);
     out.writeInt(zClassifiers.length);
@@ -2147,6 +2297,7 @@ public class JointBayesRelationExtractor extends RelationClassifier {
   @Override
   public void load(ObjectInputStream in) throws IOException, ClassNotFoundException {
     forceTrack("Loading Joint Bayes relation extractor (from input stream)");
+    compiled = null;
     knownDependencies = ErasureUtils.uncheckedCast(in.readObject());
     zLabelIndex = ErasureUtils.uncheckedCast(in.readObject());
 
@@ -2173,6 +2324,35 @@ public class JointBayesRelationExtractor extends RelationClassifier {
     endTrack("Loading Joint Bayes relation extractor (from input stream)");
   }
 
+  /**
+   * Save the compiled form of this model (see {@link CompiledJointBayes}) as a {@link BinaryModel}.
+   * A model loaded from this file can classify, but not be trained further, or saved in the serialized format.
+   */
+  @Override
+  public void saveBinary(String path, Maybe<File> source) throws IOException {
+    forceTrack("Saving Joint Bayes relation extractor (binary) to " + path);
+    try (BinaryModel.Writer out = new BinaryModel.Writer(path, JointBayesRelationExtractor.class, source)) {
+      compiled().write(out);
+    }
+    endTrack("Saving Joint Bayes relation extractor (binary) to " + path);
+  }
+
+  @Override
+  protected void loadBinary(ByteBuffer in) throws IOException {
+    forceTrack("Loading Joint Bayes relation extractor (binary)");
+    CompiledJointBayes model = CompiledJointBayes.read(in);
+    knownDependencies = new HashSet<String>();
+    zLabelIndex = model.zLabelIndex;
+    numberOfFolds = model.numFolds();
+    zClassifiers = null;
+    zSingleClassifier = null;
+    yClassifiers = null;
+    compiled = model;
+    log("loaded " + model.featureIndex.size() + " features, " + zLabelIndex.size() + " Z labels, " +
+        numberOfFolds + " folds, and " + model.numYLabels() + " Y classifiers");
+    endTrack("Loading Joint Bayes relation extractor (binary)");
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
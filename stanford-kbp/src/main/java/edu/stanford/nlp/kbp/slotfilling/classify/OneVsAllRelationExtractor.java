@@ -76,16 +76,25 @@ public class OneVsAllRelationExtractor extends RelationClassifier {
   @Override
   public Counter<Pair<String, Maybe<KBPRelationProvenance>>> classifyRelations(SentenceGroup input, Maybe<CoreMap[]> rawSentence) {
     // TODO(gabor) A deeper rewrite than splicing in classifyMentions()
-    return RelationClassifier.firstProvenance(classifyMentions(RelationClassifier.tupleToFeatureList(input)), input);
+    // The one-vs-all classifiers are not (in general) linear classifiers, and so cannot score packed features;
+    // but, the group's datums can be scored as they are, without copying their features
+    return RelationClassifier.firstProvenance(classifyDatums(input), input);
   }
 
   public Counter<String> classifyMentions(List<Collection<String>> relation) {
+    List<Datum<String, String>> datums = new ArrayList<>(relation.size());
+    for(Collection<String> mention: relation) {
+      datums.add(new BasicDatum<>(mention));
+    }
+    return classifyDatums(datums);
+  }
+
+  private Counter<String> classifyDatums(List<? extends Datum<String, String>> relation) {
     assert(classifiers != null);
 
     Counter<String> labels = new ClassicCounter<>();
-    for(Collection<String> mention: relation) {
+    for(Datum<String, String> datum: relation) {
       // System.err.println("Classifying slot " + mention.mention().getArg(1).getExtentString());
-      Datum<String, String> datum = new BasicDatum<>(mention);
       Pair<String, Double> label = annotateDatum(datum);
       if(! label.first().equals(RelationMention.UNRELATED)) {
         // System.err.println("Classified slot " + mention.mention().getArg(1).getExtentString() + " with label " + label.first() + " with score " + label.second());
@@ -49,6 +49,14 @@ public class PerceptronExtractor extends RelationClassifier {
      * The weight for each vector is the number of iterations it survived 
      */
     double [] avgWeights;
+
+    /**
+     * The average vector is kept up to date lazily: this is the total number of iterations survived by every vector
+     * added to the average so far, and lastChanged is its value when each weight last changed.
+     * See {@link LabelWeights#addToAverage()}.
+     */
+    private transient int clock;
+    private transient int [] lastChanged;
     
     LabelWeights(int numFeatures) {
       weights = new double[numFeatures];
@@ -56,6 +64,7 @@ public class PerceptronExtractor extends RelationClassifier {
       survivalIterations = 0;
       avgWeights = new double[numFeatures];
       Arrays.fill(avgWeights, 0.0);
+      lastChanged = new int[numFeatures];
     }
     
     void clear() {
@@ -66,12 +75,28 @@ public class PerceptronExtractor extends RelationClassifier {
       survivalIterations ++;
     }
     
-    /** Adds the latest weight vector to the average vector */
+    /**
+     * Adds the latest weight vector to the average vector, weighted by the number of iterations it survived.
+     * This is lazy: it only advances the clock. A weight is added to the average -- for every iteration since it
+     * last changed -- just before it next changes (see {@link LabelWeights#flush(int)}), or when the average
+     * is finished (see {@link LabelWeights#finishAverage()}); so an update touches only the weights it changes.
+     */
     private void addToAverage() {
-      double confidenceInThisVector = survivalIterations;
+      clock += survivalIterations;
+    }
+
+    /** Add a weight to the average vector, for the iterations since it last changed */
+    private void flush(int i) {
+      avgWeights[i] += weights[i] * (clock - lastChanged[i]);
+      lastChanged[i] = clock;
+    }
+
+    /** Brings the average vector up to date with every weight; this must be called once training is done */
+    void finishAverage() {
       for(int i = 0; i < weights.length; i ++){
-        avgWeights[i] += weights[i] * confidenceInThisVector;
+        flush(i);
       }
+      lastChanged = null;
     }
     
     void update(int [] datum, double weight) {
@@ -81,6 +106,7 @@ public class PerceptronExtractor extends RelationClassifier {
       // actual update
       for(int d: datum){
         if(d > weights.length) expand();
+        flush(d);
         weights[d] += weight;
       }
       
@@ -92,8 +118,13 @@ public class PerceptronExtractor extends RelationClassifier {
       throw new RuntimeException("ERROR: LabelWeights.expand() not supported yet!");
     }
     
-    double dotProduct(Counter<Integer> vector) {
-      return dotProduct(vector, weights);
+    /** The dot product of a datum (as an array of feature ids, repeated for counts) with the current weights */
+    double dotProduct(int [] datum) {
+      double dotProd = 0;
+      for(int d: datum){
+        dotProd += weights[d];
+      }
+      return dotProd;
     }
     
     void normalize(double norm) {
@@ -103,27 +134,6 @@ public class PerceptronExtractor extends RelationClassifier {
       }
     }
     
-    double avgDotProduct(Collection<String> features, Index<String> featureIndex) {
-      Counter<Integer> vector = new ClassicCounter<Integer>();
-      for(String feat: features) {
-        int idx = featureIndex.indexOf(feat);
-        if(idx >= 0) vector.incrementCount(idx);
-      }
-      
-      return dotProduct(vector, avgWeights);
-    }
-    
-    static double dotProduct(Counter<Integer> vector, double [] weights) {
-      double dotProd = 0;
-      for (Map.Entry<Integer, Double> entry : vector.entrySet()) {
-        if(entry.getKey() == null) throw new RuntimeException("NULL key in " + entry.getKey() + "/" + entry.getValue());
-        if(entry.getValue() == null) throw new RuntimeException("NULL value in " + entry.getKey() + "/" + entry.getValue());
-        if(weights == null) throw new RuntimeException("NULL weights!");
-        if(entry.getKey() < 0 || entry.getKey() >= weights.length) throw new RuntimeException("Invalid key " + entry.getKey() + ". Should be >= 0 and < " + weights.length);
-        dotProd += entry.getValue() * weights[entry.getKey()];
-      }
-      return dotProd;
-    }
   }
   
   /** Stores weight information for each known Z label (including NIL) */
@@ -131,6 +141,10 @@ public class PerceptronExtractor extends RelationClassifier {
   
   Index<String> labelIndex;
   Index<String> zFeatureIndex;
+  /** The average weights of every label, as the rows of a (label-major) matrix; gathered from zWeights on first use */
+  private transient volatile double [][] avgWeightMatrix;
+  /** The position of each label's name in sorted order, to break ties as JointBayesRelationExtractor#sortPredictions */
+  private transient int [] labelRank;
   /** Index of the NIL label */
   int nilIndex;
   
@@ -190,6 +204,7 @@ public class PerceptronExtractor extends RelationClassifier {
     labelIndex = ErasureUtils.uncheckedCast(in.readObject());
     nilIndex = labelIndex.indexOf(RelationMention.UNRELATED);
     zFeatureIndex = ErasureUtils.uncheckedCast(in.readObject());
+    avgWeightMatrix = null;
   }
 
   @Override
@@ -207,6 +222,7 @@ public class PerceptronExtractor extends RelationClassifier {
     zWeights = new LabelWeights[labelIndex.size()];
     for(int i = 0; i < zWeights.length; i ++)
       zWeights[i] = new LabelWeights(dataset.featureIndex().size());
+    avgWeightMatrix = null;
 
     int iterations = 0;
     for(int t = 0; t < epochs; t ++){
@@ -260,6 +276,7 @@ public class PerceptronExtractor extends RelationClassifier {
     // normalize the avg vector by the total number of iterations
     // otherwise, the average weights are too large
     for(LabelWeights zw: zWeights) {
+      zw.finishAverage();
       zw.normalize((double) iterations);
     }
     printAvgVectors();
@@ -616,12 +633,9 @@ public class PerceptronExtractor extends RelationClassifier {
   }
   
   private Counter<Integer> estimateZ(int [] datum) {
-    Counter<Integer> vector = new ClassicCounter<Integer>();
-    for(int d: datum) vector.incrementCount(d);
-    
     Counter<Integer> scores = new ClassicCounter<Integer>();
     for(int label = 0; label < zWeights.length; label ++){
-      double score = zWeights[label].dotProduct(vector);
+      double score = zWeights[label].dotProduct(datum);
       if(score > 0) {
         // only store labels that received a non-zero score
         scores.setCount(label, score);
@@ -763,39 +777,27 @@ public class PerceptronExtractor extends RelationClassifier {
   }
 
   public Counter<String> classifyMentions(List<Collection<String>> sentences) {
-    String[] zLabels = new String[sentences.size()];
-    Counter<String> [] zLogProbs = 
-      ErasureUtils.uncheckedCast(new Counter[sentences.size()]);
+    return classifyMentions(PackedFeatures.packFeatures(sentences));
+  }
+
+  public Counter<String> classifyMentions(PackedFeatures sentences) {
+    PackedFeatures.Translation translation = sentences.translation(zFeatureIndex);
+    double [][] weights = avgWeightMatrix();
+    double [] probs = new double[weights.length];
       
     //
     // Z level predictions
     //
-    Counter<String> localNoisyOr = new ClassicCounter<String>();
-    Counter<String> localBest = new ClassicCounter<String>();
+    double [] localNoisyOr = new double[weights.length];
+    boolean [] predicted = new boolean[weights.length];
     for (int i = 0; i < sentences.size(); i++) {
-      Collection<String> sentence = sentences.get(i);
-      Counter<String> probs = classifyLocally(sentence);
-      
-      zLogProbs[i] = new ClassicCounter<String>();
-      for(String l: probs.keySet()) {
-        zLogProbs[i].setCount(l, Math.log(probs.getCount(l)));
-      }
-      
-      List<Pair<String, Double>> sortedProbs = JointBayesRelationExtractor.sortPredictions(probs);
-      Pair<String, Double> prediction = sortedProbs.get(0);
-      String l = prediction.first();
-      double s = prediction.second();
-      zLabels[i] = l;
+      int l = classifyLocally(sentences, i, translation, weights, probs);
+      double s = probs[l];
       // we do not output NIL labels
-      if(! zLabels[i].equals(RelationMention.UNRELATED)) {
-        double crt = (localNoisyOr.containsKey(l) ? localNoisyOr.getCount(l) : 1.0);
-        crt = crt * (1.0 - s);
-        localNoisyOr.setCount(l, crt);
-        
-        double prev = localBest.getCount(l);
-        if(s > prev) {
-          localBest.setCount(l, s);
-        }
+      if(l != nilIndex) {
+        double crt = (predicted[l] ? localNoisyOr[l] : 1.0);
+        localNoisyOr[l] = crt * (1.0 - s);
+        predicted[l] = true;
       }
     }
     
@@ -804,18 +806,19 @@ public class PerceptronExtractor extends RelationClassifier {
     // we assign to each predicted label a score equal to the noisy or of the local probabilities
     //
     Counter<String> joint = new ClassicCounter<String>();
-    for(String y: localNoisyOr.keySet()) {
-      double zProb = (1.0 - localNoisyOr.getCount(y)); 
-      joint.setCount(y, zProb);
+    for(int y = 0; y < weights.length; y ++) {
+      if(predicted[y]) {
+        double zProb = (1.0 - localNoisyOr[y]);
+        joint.setCount(labelIndex.get(y), zProb);
+      }
     }
     return joint;
-    // return localBest;
   }
 
   @Override
   public Counter<Pair<String, Maybe<KBPRelationProvenance>>> classifyRelations(SentenceGroup input, Maybe<CoreMap[]> rawSentence) {
     // TODO(gabor) A deeper rewrite than splicing in classifyMentions()
-    return RelationClassifier.firstProvenance( classifyMentions(RelationClassifier.tupleToFeatureList(input)), input );
+    return RelationClassifier.firstProvenance( classifyMentions(input.packedFeatures()), input );
   }
   
   private static List<Pair<Integer, Double>> sortPredictions(Counter<Integer> scores) {
@@ -840,26 +843,75 @@ public class PerceptronExtractor extends RelationClassifier {
     });
   }
   
-  private Counter<String> classifyLocally(Collection<String> testDatum) {
-    // fetch all scores 
-    Counter<Integer> allLabelScores = new ClassicCounter<Integer>();
-    // stores all scores also here; needed for the softmax normalization
-    List<Double> scores = new ArrayList<Double>();
+  /** The average weights of every label, as a matrix; see avgWeightMatrix */
+  private double [][] avgWeightMatrix() {
+    double [][] matrix = avgWeightMatrix;
+    if(matrix == null) {
+      List<String> sortedLabels = new ArrayList<String>(labelIndex.objectsList());
+      Collections.sort(sortedLabels);
+      int [] rank = new int[labelIndex.size()];
+      for(int r = 0; r < sortedLabels.size(); r ++) {
+        rank[labelIndex.indexOf(sortedLabels.get(r))] = r;
+      }
+      matrix = new double[zWeights.length][];
+      for(int label = 0; label < zWeights.length; label ++) {
+        matrix[label] = zWeights[label].avgWeights;
+      }
+      labelRank = rank;
+      avgWeightMatrix = matrix;  // (published after labelRank)
+    }
+    return matrix;
+  }
+
+  /**
+   * Computes P(z | x) for one datum: the softmax of the averaged perceptron's score for every label.
+   * The datum's features are translated into the model's feature ids once, and every label is scored over them.
+   * @param probs The array to write the probability of every label into.
+   * @return The most probable label, with ties broken by the labels' names as JointBayesRelationExtractor#sortPredictions
+   */
+  private int classifyLocally(PackedFeatures features, int datum, PackedFeatures.Translation translation,
+                              double [][] weights, double [] probs) {
+    // translate the features once
+    int length = 0;
+    int [] ids = new int[features.end(datum) - features.start(datum)];
+    float [] values = new float[ids.length];
+    for(int i = features.start(datum); i < features.end(datum); i ++){
+      int feature = translation.toModel(features.feature(i));
+      if(feature >= 0) {
+        ids[length] = feature;
+        values[length] = features.value(i);
+        length += 1;
+      }
+    }
+
     // scan all labels; this includes NIL, which is needed for proper softmax
-    for(int labelIdx = 0; labelIdx < zWeights.length; labelIdx ++){
-      double score = zWeights[labelIdx].avgDotProduct(testDatum, zFeatureIndex);
-      allLabelScores.setCount(labelIdx, score);
-      scores.add(score);
+    double max = Double.NEGATIVE_INFINITY;
+    for(int labelIdx = 0; labelIdx < weights.length; labelIdx ++){
+      double [] w = weights[labelIdx];
+      double score = 0.0;
+      for(int k = 0; k < length; k ++){
+        score += w[ids[k]] * values[k];
+      }
+      probs[labelIdx] = gamma * score;
+      if(probs[labelIdx] > max) max = probs[labelIdx];
     }
-    
+
     // convert scores to probabilities using softmax
-    Counter<String> result = new ClassicCounter<String>();
-    for(Integer z: allLabelScores.keySet()){
-      String l = labelIndex.get(z);
-      result.setCount(l, softmax(allLabelScores.getCount(z), scores, gamma));
+    double sum = 0.0;
+    for(int labelIdx = 0; labelIdx < weights.length; labelIdx ++){
+      probs[labelIdx] = Math.exp(probs[labelIdx] - max);
+      sum += probs[labelIdx];
     }
-
-    return result;
+    int [] rank = labelRank;
+    int argmax = 0;
+    for(int labelIdx = 0; labelIdx < weights.length; labelIdx ++){
+      probs[labelIdx] /= sum;
+      if(probs[labelIdx] > probs[argmax] ||
+          (probs[labelIdx] == probs[argmax] && rank[labelIdx] < rank[argmax])) {
+        argmax = labelIdx;
+      }
+    }
+    return argmax;
   }
 
   public static PerceptronExtractor load(String modelPath, Properties props) throws IOException, ClassNotFoundException {
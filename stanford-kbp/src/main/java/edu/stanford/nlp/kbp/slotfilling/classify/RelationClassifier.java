@@ -1,5 +1,6 @@
 package edu.stanford.nlp.kbp.slotfilling.classify;
 
+import edu.stanford.nlp.classify.LinearClassifier;
 import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.kbp.common.Maybe;
 import edu.stanford.nlp.kbp.common.RelationType;
@@ -14,6 +15,7 @@ import edu.stanford.nlp.util.MetaClass;
 import edu.stanford.nlp.util.Pair;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 import static edu.stanford.nlp.util.logging.Redwood.Util.*;
@@ -106,6 +108,32 @@ public abstract class RelationClassifier implements Serializable {
     out.close();
   }
   
+  /**
+   * Save this model as a {@link BinaryModel}, which can be memory mapped when it is loaded.
+   * Not every classifier has a binary format; by default, this throws an {@link UnsupportedOperationException}.
+   * @param path The path to save the model to.
+   */
+  public void saveBinary(String path) throws IOException {
+    saveBinary(path, Maybe.<File>Nothing());
+  }
+
+  /**
+   * Save this model as a {@link BinaryModel}, as an export of the serialized model it was loaded from.
+   * @param path The path to save the model to.
+   * @param source The serialized model this model was loaded from, if any; it is recorded in the binary model's header.
+   */
+  public void saveBinary(String path, Maybe<File> source) throws IOException {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " has no binary model format");
+  }
+
+  /**
+   * Load this model from a mapped {@link BinaryModel}, as written by {@link RelationClassifier#saveBinary(String)}.
+   * @param in The mapped model, positioned after its header.
+   */
+  protected void loadBinary(ByteBuffer in) throws IOException {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " has no binary model format");
+  }
+
   protected final double softmax(double score, List<Double> scores, double gamma) {
     double [] scoreArray = new double[scores.size()];
     for(int i = 0; i < scoreArray.length; i ++)
@@ -128,6 +156,19 @@ public abstract class RelationClassifier implements Serializable {
     return mentions;
   }
 
+  /**
+   * The same as {@link LinearClassifier#probabilityOf(edu.stanford.nlp.ling.Datum)},
+   * for a datum already translated into the classifier's feature ids.
+   */
+  protected static Counter<String> probabilityOf(LinearClassifier<String, String> classifier, int[] features) {
+    Counter<String> probs = classifier.scoresOf(features);
+    Counters.logNormalizeInPlace(probs);
+    for (String label : probs.keySet()) {
+      probs.setCount(label, Math.exp(probs.getCount(label)));
+    }
+    return probs;
+  }
+
   /**
    * Converts a Counter of relations as strings to a Counter of relations as RelationType objects.
    */
@@ -144,6 +185,14 @@ public abstract class RelationClassifier implements Serializable {
   static <E extends RelationClassifier> E load(String modelPath, Properties props, Class<E> extractor) throws IOException, ClassNotFoundException {
     if (NOOPClassifier.class.isAssignableFrom(extractor)) { return (E) new NOOPClassifier(); }
     startTrack("Loading model [" + extractor.getSimpleName() + "] from " + modelPath);
+    if (BinaryModel.isBinaryModel(modelPath)) {
+      log("mapping binary model...");
+      ByteBuffer mapped = BinaryModel.map(modelPath, extractor);
+      E ex = new MetaClass(extractor).createInstance(props);
+      ex.loadBinary(mapped);
+      endTrack("Loading model [" + extractor.getSimpleName() + "] from " + modelPath);
+      return ex;
+    }
     log("opening input streams...");
     InputStream is = null;
     ObjectInputStream in = null;
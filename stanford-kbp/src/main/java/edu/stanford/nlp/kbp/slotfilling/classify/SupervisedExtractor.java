@@ -3,6 +3,7 @@ package edu.stanford.nlp.kbp.slotfilling.classify;
 import edu.stanford.nlp.classify.*;
 import edu.stanford.nlp.ie.machinereading.structure.RelationMention;
 import edu.stanford.nlp.kbp.common.Maybe;
+import edu.stanford.nlp.kbp.common.PackedFeatures;
 import edu.stanford.nlp.kbp.common.Props;
 import edu.stanford.nlp.kbp.common.RelationType;
 import edu.stanford.nlp.kbp.common.SentenceGroup;
@@ -90,9 +91,11 @@ public class SupervisedExtractor extends RelationClassifier {
   @Override
   public Counter<Pair<String, Maybe<KBPRelationProvenance>>> classifyRelations(SentenceGroup input, Maybe<CoreMap[]> rawSentences) {
     Counter<Pair<String, Maybe<KBPRelationProvenance>>> predictions = new ClassicCounter<>();
+    PackedFeatures features = input.packedFeatures();
+    PackedFeatures.Translation translation = features.translation(classifier.featureIndex());
 
     for (int datumI = 0; datumI < input.size(); ++datumI) {
-      Counter<String> relations = classifier.probabilityOf(input.get(datumI));
+      Counter<String> relations = probabilityOf(classifier, features.toModel(datumI, translation));
       String prediction = Counters.argmax(relations);
       if (!prediction.equals(RelationMention.UNRELATED) && relations.getCount(prediction) > Props.TRAIN_SUPERVISED_THRESHOLD) {
         double probability = relations.getCount(prediction);
@@ -0,0 +1,130 @@
+package edu.stanford.nlp.kbp.slotfilling.evaluate;
+
+import edu.stanford.nlp.kbp.common.KBPOfficialEntity;
+import edu.stanford.nlp.kbp.common.KBPSlotFill;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static edu.stanford.nlp.util.logging.Redwood.Util.*;
+
+/**
+ * Runs a {@link SlotFiller} over a collection of query entities, potentially in parallel.
+ *
+ * <p>Entities are scheduled on a fixed pool of bounded size, so that a slow entity (e.g., one
+ * with many IR hits) does not hold up the remaining workers. Each entity may optionally be given a
+ * time budget; an entity which exceeds it is interrupted, logged, and treated as having no slot fills.
+ * (The pool is a plain thread pool rather than a fork/join pool: cancelling a fork/join task does not
+ * interrupt the thread running it.)</p>
+ *
+ * <p>The output is always in the same order as the input entities, regardless of the order
+ * in which the entities finished, so that downstream output (e.g., predictions.tab) is deterministic.</p>
+ */
+public class EntityScheduler {
+
+  protected static final Redwood.RedwoodChannels logger = Redwood.channels("Sched");
+
+  /** The maximum number of entities to process at once */
+  public final int parallelism;
+  /** The maximum time to spend on any single entity, in milliseconds */
+  public final long timeoutMillis;
+
+  /**
+   * @param parallelism The maximum number of entities to fill slots for at once. A value of 1 runs serially.
+   * @param timeoutMillis The time budget for a single entity, in milliseconds; Integer.MAX_VALUE or less than 1 disables the timeout.
+   */
+  public EntityScheduler(int parallelism, long timeoutMillis) {
+    this.parallelism = Math.max(1, parallelism);
+    this.timeoutMillis = (timeoutMillis <= 0 || timeoutMillis >= Integer.MAX_VALUE) ? Long.MAX_VALUE : timeoutMillis;
+  }
+
+  /**
+   * Fill slots for every entity given.
+   *
+   * @param entities The entities to fill slots for.
+   * @param slotFiller The slot filler to use. This must be safe to call from multiple threads if parallelism is greater than 1.
+   *                   An entity which times out is interrupted; the slot filler should stop work on it once it is.
+   * @return A map from entity to its slot fills, iterating in the same order as the input entities.
+   */
+  public Map<KBPOfficialEntity, Collection<KBPSlotFill>> fillSlots(List<KBPOfficialEntity> entities, final SlotFiller slotFiller) {
+    Map<KBPOfficialEntity, Collection<KBPSlotFill>> fillsByEntity = new LinkedHashMap<>();
+    if (entities.isEmpty()) { return fillsByEntity; }
+    // Case: serial (the old behavior); with a timeout, a single worker is used instead, so that it can be enforced
+    if (timeoutMillis == Long.MAX_VALUE && (parallelism == 1 || entities.size() < 2)) {
+      for (KBPOfficialEntity entity : entities) {
+        fillsByEntity.put(entity, slotFiller.fillSlots(entity));
+      }
+      return fillsByEntity;
+    }
+
+    // Case: parallel
+    final int numEntities = entities.size();
+    final AtomicLongArray startTimes = new AtomicLongArray(numEntities);
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, numEntities));
+    List<Future<List<KBPSlotFill>>> futures = new ArrayList<>(numEntities);
+    String title = "Filling slots [" + numEntities + " entities; " + parallelism + " threads]";
+    Redwood.startThreads(title);
+    try {
+      // Schedule
+      for (int i = 0; i < numEntities; ++i) {
+        final int index = i;
+        final KBPOfficialEntity entity = entities.get(i);
+        futures.add(pool.submit(() -> {
+          // (clear the interrupt of a timed out entity this worker ran before; a cancelled task's interrupt is
+          // always delivered before its worker moves on, and the pool clears it too, but don't rely on that)
+          Thread.interrupted();
+          startTimes.set(index, System.currentTimeMillis());
+          try {
+            return slotFiller.fillSlots(entity);
+          } finally {
+            Redwood.finishThread();
+          }
+        }));
+      }
+      // Collect, in order
+      for (int i = 0; i < numEntities; ++i) {
+        KBPOfficialEntity entity = entities.get(i);
+        fillsByEntity.put(entity, await(entity, futures.get(i), i, startTimes));
+      }
+    } finally {
+      pool.shutdownNow();
+      Redwood.endThreads(title);
+    }
+    return fillsByEntity;
+  }
+
+  /**
+   * Wait on a single entity, enforcing the timeout relative to when that entity actually started running
+   * (rather than when it was queued).
+   */
+  private List<KBPSlotFill> await(KBPOfficialEntity entity, Future<List<KBPSlotFill>> future, int index,
+                                  AtomicLongArray startTimes) {
+    try {
+      while (true) {
+        long started = startTimes.get(index);
+        long waitMillis = (started == 0 || timeoutMillis == Long.MAX_VALUE)
+            ? Math.min(timeoutMillis, 1000)
+            : started + timeoutMillis - System.currentTimeMillis();
+        if (waitMillis > 0) {
+          try {
+            return future.get(waitMillis, TimeUnit.MILLISECONDS);
+          } catch (TimeoutException ignored) { }
+        }
+        started = startTimes.get(index);
+        if (started != 0 && timeoutMillis != Long.MAX_VALUE && System.currentTimeMillis() - started >= timeoutMillis) {
+          // Case: timed out -- interrupt the entity (cancelling interrupts it only if it is still running), and move on
+          logger.err(RED, "timed out filling slots for " + entity + " after " + timeoutMillis + "ms");
+          future.cancel(true);
+          return Collections.emptyList();
+        }
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) { throw (RuntimeException) e.getCause(); }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+}
@@ -538,7 +538,7 @@ public class GoldResponseSet {
    * Get the set of provenances for any given slot fill.
    * @return A mapping from slot fills correct provenances for that fill.
    */
-  public Map<KBPSlotFill, Set<String>> correctProvenances() {
+  public synchronized Map<KBPSlotFill, Set<String>> correctProvenances() {
     if (correctProvenanceCached == null) {
       correctProvenanceCached = new HashMap<>();
       for (GoldResponse response : goldResponses.values()) {
@@ -611,7 +611,7 @@ public class GoldResponseSet {
    * will be tracked if this is called on every slot output by the slot filler.
    * @param fill The slot fill to register as guessed, before consistency is applied.
    */
-  public void registerResponse(KBPSlotFill fill) {
+  public synchronized void registerResponse(KBPSlotFill fill) {
     if (fill.key.tryKbpRelation().isDefined()) {
       GuessResponse response = new GuessResponse(fill);
       guessedResponses.remove(response);
@@ -625,7 +625,7 @@ public class GoldResponseSet {
    * @param fill The slot fill to discard.
    * @param cause The reason to discard this slot fill, e.g., no provenance or consistency failed.
    */
-  public void discardResponse(KBPSlotFill fill, ErrorType cause) {
+  public synchronized void discardResponse(KBPSlotFill fill, ErrorType cause) {
     if (fill.key.tryKbpRelation().isDefined()) {
       discardedResponses.add(Pair.makePair(new GuessResponse(fill), cause));
     }
@@ -639,7 +639,7 @@ public class GoldResponseSet {
    *              be re-added. For example, if a slot is discarded both from consistency and provenance, and the consistency
    *              discard is undone, it will still be registered as discarded from provenance.
    */
-  public void undoDiscardResponse(KBPSlotFill fill, ErrorType cause) {
+  public synchronized void undoDiscardResponse(KBPSlotFill fill, ErrorType cause) {
     if (fill.key.tryKbpRelation().isDefined()) {
       discardedResponses.remove(Pair.makePair(new GuessResponse(fill), cause));
     }
@@ -705,7 +705,7 @@ public class GoldResponseSet {
    * Wildcard undo :-/.
    * @param fill
    */
-  public void undoDiscard(KBPSlotFill fill) {
+  public synchronized void undoDiscard(KBPSlotFill fill) {
     if (fill.key.tryKbpRelation().isDefined()) {
       GuessResponse guess = new GuessResponse(fill);
       List<Pair<GuessResponse,ErrorType>> undos = new ArrayList<>();
@@ -724,6 +724,13 @@ public class GoldResponseSet {
       @SuppressWarnings("SuspiciousMethodCalls")  // this comes about from the strange equals() semantics of the Gold/Guess responses
       @Override
       public void prettyLog(Redwood.RedwoodChannels channels, String description) {
+        // Other entities may be registering responses concurrently; log from a snapshot
+        Set<GuessResponse> guessedResponses;
+        Set<Pair<GuessResponse,ErrorType>> discardedResponses;
+        synchronized (GoldResponseSet.this) {
+          guessedResponses = new HashSet<>(GoldResponseSet.this.guessedResponses);
+          discardedResponses = new HashSet<>(GoldResponseSet.this.discardedResponses);
+        }
 
         // Collect responses we should get
         Set<GoldResponse> missingGoldResponses = new HashSet<>();
@@ -894,7 +901,7 @@ public class GoldResponseSet {
     return new GoldResponseSet(new HashMap<GoldResponse, GoldResponse>());
   }
 
-  public void appendForEntity(KBPOfficialEntity entity, Maybe<KBPIR> irComponent) {
+  public synchronized void appendForEntity(KBPOfficialEntity entity, Maybe<KBPIR> irComponent) {
     String outputFileName = Props.WORK_DIR.getPath() + File.separator + "results.out";
     try(PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(outputFileName, true)))) {
       // Collect responses we should get
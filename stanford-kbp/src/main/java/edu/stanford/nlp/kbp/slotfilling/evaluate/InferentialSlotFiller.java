@@ -373,7 +373,9 @@ public class InferentialSlotFiller extends SimpleSlotFiller {
       Map<KBPair, CoreMap[]> sentences = new HashMap<>();
       for (Map.Entry<KBPair, Pair<SentenceGroup, List<CoreMap>>> datum : datums.entrySet()) {
         if (datum.getKey().getEntity().equals(pivot)) {
-          groups.add( Props.HACKS_DISALLOW_DUPLICATE_DATUMS ? datum.getValue().first.removeDuplicateDatums() : datum.getValue().first );
+          SentenceGroup group = Props.HACKS_DISALLOW_DUPLICATE_DATUMS ? datum.getValue().first.removeDuplicateDatums() : datum.getValue().first;
+          group.packedFeatures();  // (pack the complete group once, here, rather than in whichever classifier scores it first)
+          groups.add(group);
           sentences.put(datum.getKey(), datum.getValue().second.toArray(new CoreMap[datum.getValue().second.size()]));
         }
       }
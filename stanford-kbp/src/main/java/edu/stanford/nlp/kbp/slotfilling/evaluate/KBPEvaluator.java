@@ -38,7 +38,7 @@ public class KBPEvaluator implements Evaluator {
   protected final Lazy<KBPProcess> processComponent;
   protected final Lazy<RelationClassifier> classifier;
   public final SlotFiller slotFiller;
-  private final Set<String> allSlotFillsSeen = new HashSet<>();
+  private final Set<String> allSlotFillsSeen = Collections.synchronizedSet(new HashSet<>());
   protected final OfficialOutputWriter officialOutputWriter;
   protected final GoldResponseSet goldResponses;
 
@@ -165,10 +165,8 @@ public class KBPEvaluator implements Evaluator {
 
     // Fill slots
     startTrack("Processing Test Entities [" + entities.size() + "]");
-    Map<KBPOfficialEntity, Collection<KBPSlotFill>> fillsByEntity = new HashMap<>();
-    for (KBPOfficialEntity entity : entities) {
-      fillsByEntity.put(entity, slotFiller.fillSlots(entity));
-    }
+    Map<KBPOfficialEntity, Collection<KBPSlotFill>> fillsByEntity
+        = new EntityScheduler(Props.TEST_PARALLEL_THREADS, Props.TEST_PARALLEL_TIMEOUTMS).fillSlots(entities, slotFiller);
     // Save predictions in a machine readable format
     try {
       PrintWriter predictions = new PrintWriter(new FileWriter(new File(Props.WORK_DIR + File.separator + "predictions.tab")));
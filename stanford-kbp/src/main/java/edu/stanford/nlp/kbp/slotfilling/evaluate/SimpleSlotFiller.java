@@ -57,8 +57,13 @@ public class SimpleSlotFiller implements SlotFiller {
   /** Additional classifiers to use -- e.g., for rule-based additions */
   public final RelationClassifier[] additionalClassifiers;
   /** Members added for virtual IR **/
-  public List<SentenceTriple> sentenceRecords = new ArrayList<SentenceTriple>();
+  public final List<SentenceTriple> sentenceRecords = Collections.synchronizedList(new ArrayList<SentenceTriple>());
   StanfordCoreNLP IRpipeline = null;
+  /**
+   * Held while annotating retrieved sentences with the IR pipeline, when filling slots for several entities at once,
+   * as the pipeline is not threadsafe. (The PostIRAnnotator serializes its own annotation.)
+   */
+  private final Object irPipelineLock = new Object();
   List<CoreMap> rawSentences=null;
   HashMap<String,HashMap<String,ArrayList<SentenceDouble>>> sentencesContainer=null;
   /**
@@ -195,7 +200,7 @@ public class SimpleSlotFiller implements SlotFiller {
         }
       }
     } else {
-      tuplesWithRelation = CollectionUtils.map(datumsAndSentences.first, input -> {
+      Function<SentenceGroup, Counter<KBPSlotFill>> classify = input -> {
 
         // vvv RUN CLASSIFIER vvv
         Counter<Pair<String, Maybe<KBPRelationProvenance>>> relationsAsStrings = classifyComponent.classifyRelations(input, Maybe.fromNull(datumsAndSentences.second.get(input.key)));
@@ -218,7 +223,16 @@ public class SimpleSlotFiller implements SlotFiller {
 
         // output
         return countsForKBPair;
-      });
+      };
+      if (Props.TEST_PIPELINE_DO) {
+        StagedPipeline<Counter<KBPSlotFill>> pipeline
+            = StagedPipeline.from("classify", datumsAndSentences.first.iterator(), Props.TEST_PIPELINE_QUEUE)
+            .thenMap("classify", Props.TEST_PIPELINE_THREADS_CLASSIFY, Props.TEST_PIPELINE_QUEUE, classify);
+        tuplesWithRelation = pipeline.run();
+        pipeline.logStats();
+      } else {
+        tuplesWithRelation = CollectionUtils.map(datumsAndSentences.first, classify);
+      }
     }
     endTrack("Classifying Relations");
     // Display predictions
@@ -358,75 +372,112 @@ public class SimpleSlotFiller implements SlotFiller {
   }
 
  private List<CoreMap> querySentencesVirtualIR(KBPOfficialEntity entity,int sentLimit){
-	  List<CoreMap> resultSentences = new ArrayList<CoreMap>();
-	  System.out.println("querying sentences for "+entity.queryId);
-	  int counter=0;
-	  int processLimit=5;
-	  String sentCollection =null;
-	  if(sentencesContainer.containsKey(entity.queryId.get())){
-		  HashSet<String> sentSet = new HashSet<String>();
-		  HashMap<String,ArrayList<SentenceDouble>> entitySentMap=sentencesContainer.get(entity.queryId.get());
-		  
+	  Maybe<List<VirtualIRBatch>> batches = virtualIRBatches(entity, sentLimit);
+	  if(batches.isDefined()){
+		  List<CoreMap> resultSentences = new ArrayList<CoreMap>();
 		  PostIRAnnotator postirAnn=new PostIRAnnotator(entity, true);
-		  
-		  for(String key:entitySentMap.keySet()){
-			  ArrayList<SentenceDouble> entityRelSents=entitySentMap.get(key);
-			  for(SentenceDouble sd : entityRelSents){
-				  if(sentSet.contains(sd.sentence)){
-					  continue;
-				  }
-				  else{
-					  sentSet.add(sd.sentence);
-				  }
-				  if(counter>sentLimit)
-					  break;
-				 // System.out.println("processing  --  "+sd.sentence);
-				  counter++;
-				  
-				  
-				  if(sentCollection==null){
-					  sentCollection=new String(sd.sentence);
-				  }
-				  else{
-					  sentCollection+=" "+sd.sentence;
-				  }
-				  Annotation doc = new Annotation(sd.sentence);
-				  IRpipeline.annotate(doc);	
-				  List<CoreMap> tres  = doc.get(SentencesAnnotation.class);
-					 
-				  
-			  	  for(CoreMap t : tres){
-			  		  //	System.out.println("coremap: "+res);			  		  
-			  		  sd.provenance.containingSentenceLossy=Maybe.Just(t);
-			  	  }
-				  if(counter%processLimit == 0){
-					  System.out.println("Starting combined basic pipeline annotation");
-					  System.out.println("Number of sentences: "+counter);
-					  Annotation document = new Annotation(sentCollection);
-				  	  IRpipeline.annotate(document);				
-				  	  System.out.println("Ending combined basic pipeline annotation");
-				  	  postirAnn.annotate(document);
-				  	  System.out.println("Ending combined post ir pipeline annotation");
-				  	  List<CoreMap> tempResults  = document.get(SentencesAnnotation.class);
-				 
-				  
-				  	  for(CoreMap res : tempResults){
-				  		  //	System.out.println("coremap: "+res);
-				  		  resultSentences.add(res);				  		
-				  	  }
-				  	  //erase sentence collection
-				  	sentCollection=new String();
-				  }
-			  }
+		  for(VirtualIRBatch batch : batches.get()){
+			  resultSentences.addAll(annotateVirtualIRBatch(batch, postirAnn));
 		  }
-		  System.out.println("returning "+resultSentences.size()+"sentences for "+entity.queryId);
+		  logger.log("returning " + resultSentences.size() + " sentences for " + entity.queryId);
 		  return resultSentences;
 	  }
 	  else{
-		  System.out.println("returning null for "+entity.queryId);
+		  logger.log("returning null for " + entity.queryId);
 		  return null;
 	  }
   }
+
+  /** A batch of candidate sentences from the virtual IR, which are annotated together as a single document */
+  private static class VirtualIRBatch {
+	  /** The text of the document to annotate */
+	  public final String text;
+	  /** The sentences in the batch, for their provenances */
+	  public final List<SentenceDouble> sentences;
+	  /** The number of sentences retrieved so far, up to and including this batch */
+	  public final int counter;
+
+	  private VirtualIRBatch(String text, List<SentenceDouble> sentences, int counter) {
+		  this.text = text;
+		  this.sentences = sentences;
+		  this.counter = counter;
+	  }
+  }
+
+  /**
+   * Collect the candidate sentences for an entity from the virtual IR, in batches of five sentences.
+   * @return The batches to annotate, or Nothing if there are no candidate sentences for this entity at all.
+   */
+  private Maybe<List<VirtualIRBatch>> virtualIRBatches(KBPOfficialEntity entity, int sentLimit){
+	  logger.log("querying sentences for " + entity.queryId);
+	  if(!sentencesContainer.containsKey(entity.queryId.get())){
+		  return Maybe.Nothing();
+	  }
+	  List<VirtualIRBatch> batches = new ArrayList<VirtualIRBatch>();
+	  int counter=0;
+	  int processLimit=5;
+	  String sentCollection =null;
+	  List<SentenceDouble> batchSentences = new ArrayList<SentenceDouble>();
+	  HashSet<String> sentSet = new HashSet<String>();
+	  HashMap<String,ArrayList<SentenceDouble>> entitySentMap=sentencesContainer.get(entity.queryId.get());
+	  for(String key:entitySentMap.keySet()){
+		  ArrayList<SentenceDouble> entityRelSents=entitySentMap.get(key);
+		  for(SentenceDouble sd : entityRelSents){
+			  if(sentSet.contains(sd.sentence)){
+				  continue;
+			  }
+			  else{
+				  sentSet.add(sd.sentence);
+			  }
+			  if(counter>sentLimit)
+				  break;
+			  counter++;
+
+			  if(sentCollection==null){
+				  sentCollection=new String(sd.sentence);
+			  }
+			  else{
+				  sentCollection+=" "+sd.sentence;
+			  }
+			  // (a copy, as annotating the batch sets its provenance, and the container is shared by every entity)
+			  batchSentences.add(new SentenceDouble(sd));
+			  if(counter%processLimit == 0){
+				  batches.add(new VirtualIRBatch(sentCollection, batchSentences, counter));
+				  //erase sentence collection
+				  sentCollection=new String();
+				  batchSentences = new ArrayList<SentenceDouble>();
+			  }
+		  }
+	  }
+	  return Maybe.Just(batches);
+  }
+
+  /**
+   * Annotate a batch of sentences from the virtual IR: set the provenance sentence of each candidate sentence,
+   * and run the CoreNLP pipeline and the PostIRAnnotator over the batch as a whole.
+   * Batches are run through the CoreNLP pipeline one at a time, across every entity being filled, as it is not threadsafe.
+   * @return The annotated sentences of the batch.
+   */
+  private List<CoreMap> annotateVirtualIRBatch(VirtualIRBatch batch, PostIRAnnotator postirAnn){
+	  Annotation document = new Annotation(batch.text);
+    synchronized (irPipelineLock) {
+		  for(SentenceDouble sd : batch.sentences){
+			  Annotation doc = new Annotation(sd.sentence);
+			  IRpipeline.annotate(doc);
+			  for(CoreMap t : doc.get(SentencesAnnotation.class)){
+				  sd.provenance.containingSentenceLossy=Maybe.Just(t);
+			  }
+		  }
+		  logger.debug("Starting combined basic pipeline annotation");
+		  logger.debug("Number of sentences: " + batch.counter);
+		  IRpipeline.annotate(document);
+		  logger.debug("Ending combined basic pipeline annotation");
+    }
+	  postirAnn.annotate(document);
+	  logger.debug("Ending combined post ir pipeline annotation");
+	  return document.get(SentencesAnnotation.class);
+  }
+
   /**
    * Query and annotate a KBPOfficialEntity to get a featurized and annotated KBPTuple.
    *
@@ -437,32 +488,42 @@ public class SimpleSlotFiller implements SlotFiller {
   private Pair<List<SentenceGroup>, Map<KBPair, CoreMap[]>> queryAndProcessSentences(KBPOfficialEntity entity, int sentencesPerEntity) {
     startTrack("Processing " + entity + " [" + sentencesPerEntity + " sentences max]");
 
-    // -- IR
-    // Get supporting sentences
-    List<CoreMap> rawSentences=querySentencesVirtualIR(entity, sentencesPerEntity);
-    if(rawSentences==null){
-    	return null;
+    Map<KBPair, Pair<SentenceGroup, List<CoreMap>>> datums;
+    if (Props.TEST_PIPELINE_DO) {
+      // -- IR + Process, as a pipeline
+      Maybe<Map<KBPair, Pair<SentenceGroup, List<CoreMap>>>> pipelined = queryAndProcessSentencesPipelined(entity, sentencesPerEntity);
+      if (!pipelined.isDefined()) {
+        return null;
+      }
+      datums = pipelined.get();
+    } else {
+      // -- IR
+      // Get supporting sentences
+      List<CoreMap> rawSentences=querySentencesVirtualIR(entity, sentencesPerEntity);
+      if(rawSentences==null){
+      	return null;
+      }
+//      try {
+//        rawSentences = irComponent.querySentences(entity,
+//            entity.representativeDocumentId().isDefined() ? new HashSet<>(Arrays.asList(entity.queryId.get())) : new HashSet<String>(),
+//            sentencesPerEntity);
+//      } catch (Exception e) {
+//        e.printStackTrace();
+//        logger.err(RED, "Querying failed! Is Lucene set up at the paths:  " + Arrays.toString(Props.INDEX_PATHS) + "?");
+//        rawSentences = Collections.EMPTY_LIST;
+//      }
+      // Get datums from sentences.
+      Redwood.startTrack("Annotating " + rawSentences.size() + " sentences...");
+      List<CoreMap> supportingSentences = process.annotateSentenceFeatures(entity, rawSentences, AnnotateMode.ALL_PAIRS);
+      Redwood.endTrack("Annotating " + rawSentences.size() + " sentences...");
+
+      // -- Process
+      Annotation annotation = new Annotation("");
+      annotation.set(CoreAnnotations.SentencesAnnotation.class, supportingSentences);
+      Redwood.forceTrack("Featurizing " + annotation.get(CoreAnnotations.SentencesAnnotation.class).size() + " sentences...");
+      datums = process.featurizeWithSentences(annotation, relationFilterForFeaturizer);
+      Redwood.endTrack("Featurizing " + annotation.get(CoreAnnotations.SentencesAnnotation.class).size() + " sentences...");
     }
-//    try {
-//      rawSentences = irComponent.querySentences(entity,
-//          entity.representativeDocumentId().isDefined() ? new HashSet<>(Arrays.asList(entity.queryId.get())) : new HashSet<String>(),
-//          sentencesPerEntity);
-//    } catch (Exception e) {
-//      e.printStackTrace();
-//      logger.err(RED, "Querying failed! Is Lucene set up at the paths:  " + Arrays.toString(Props.INDEX_PATHS) + "?");
-//      rawSentences = Collections.EMPTY_LIST;
-//    }
-    // Get datums from sentences.
-    Redwood.startTrack("Annotating " + rawSentences.size() + " sentences...");
-    List<CoreMap> supportingSentences = process.annotateSentenceFeatures(entity, rawSentences, AnnotateMode.ALL_PAIRS);
-    Redwood.endTrack("Annotating " + rawSentences.size() + " sentences...");
-
-    // -- Process
-    Annotation annotation = new Annotation("");
-    annotation.set(CoreAnnotations.SentencesAnnotation.class, supportingSentences);
-    Redwood.forceTrack("Featurizing " + annotation.get(CoreAnnotations.SentencesAnnotation.class).size() + " sentences...");
-    Map<KBPair, Pair<SentenceGroup, List<CoreMap>>> datums = process.featurizeWithSentences(annotation, relationFilterForFeaturizer);
-    Redwood.endTrack("Featurizing " + annotation.get(CoreAnnotations.SentencesAnnotation.class).size() + " sentences...");
     // Register this as a datum we've seen
     logger.log("registering slot fills [" + datums.size() + " KBPairs]...");
     endTrack("Processing " + entity + " [" + sentencesPerEntity + " sentences max]");
@@ -472,13 +533,51 @@ public class SimpleSlotFiller implements SlotFiller {
     Map<KBPair, CoreMap[]> sentences = new HashMap<>();
     for (Map.Entry<KBPair, Pair<SentenceGroup, List<CoreMap>>> datum : datums.entrySet()) {
       if (datum.getKey().getEntity().equals(entity)) {
-        groups.add( Props.HACKS_DISALLOW_DUPLICATE_DATUMS ? datum.getValue().first.removeDuplicateDatums() : datum.getValue().first );
+        SentenceGroup group = Props.HACKS_DISALLOW_DUPLICATE_DATUMS ? datum.getValue().first.removeDuplicateDatums() : datum.getValue().first;
+        group.packedFeatures();  // (pack the complete group once, here, rather than in whichever classifier scores it first)
+        groups.add(group);
         sentences.put(datum.getKey(), datum.getValue().second.toArray(new CoreMap[datum.getValue().second.size()]));
       }
     }
     return Pair.makePair(groups, sentences);
   }
 
+  /**
+   * The same as the IR and processing in {@link SimpleSlotFiller#queryAndProcessSentences(KBPOfficialEntity, int)},
+   * but run as a staged pipeline: batches of retrieved sentences are annotated (CoreNLP + PostIR), their mentions
+   * are annotated, and the sentences are featurized, each stage on its own threads, with bounded queues between them.
+   * Featurized sentences are grouped by KBPair in the same order as a serial run would group them.
+   *
+   * @return The datums grouped by KBPair, along with the sentence each came from; or Nothing if IR found nothing for the entity.
+   */
+  private Maybe<Map<KBPair, Pair<SentenceGroup, List<CoreMap>>>> queryAndProcessSentencesPipelined(final KBPOfficialEntity entity, int sentencesPerEntity) {
+    Maybe<List<VirtualIRBatch>> batches = virtualIRBatches(entity, sentencesPerEntity);
+    if (!batches.isDefined()) {
+      return Maybe.Nothing();
+    }
+    final PostIRAnnotator postirAnn = new PostIRAnnotator(entity, true);
+    final List<KBPSlotFill> knownSlotFills = process.knownSlotFills(entity);
+    StagedPipeline<Pair<CoreMap, List<SentenceGroup>>> pipeline
+        = StagedPipeline.from("process", batches.get().iterator(), Props.TEST_PIPELINE_QUEUE)
+        // (on a single thread: batches are annotated one at a time anyway; see annotateVirtualIRBatch())
+        .thenMap("ir", 1, Props.TEST_PIPELINE_QUEUE,
+            batch -> annotateVirtualIRBatch(batch, postirAnn))
+        .then("annotate", Props.TEST_PIPELINE_THREADS_ANNOTATE, Props.TEST_PIPELINE_QUEUE,
+            rawSentences -> process.annotateSentenceFeatures(entity, rawSentences, AnnotateMode.ALL_PAIRS, knownSlotFills))
+        .thenMap("featurize", Props.TEST_PIPELINE_THREADS_FEATURIZE, Props.TEST_PIPELINE_QUEUE,
+            sentence -> Pair.makePair(sentence, process.featurizeSentence(sentence, relationFilterForFeaturizer)));
+    startTrack("Pipeline for " + entity);
+    List<Pair<CoreMap, List<SentenceGroup>>> featurized = pipeline.run();
+    pipeline.logStats();
+    endTrack("Pipeline for " + entity);
+    // Group by KBPair (this has to wait on every sentence being featurized)
+    Map<KBPair, Pair<SentenceGroup, List<CoreMap>>> datums = new HashMap<>();
+    for (Pair<CoreMap, List<SentenceGroup>> sentence : featurized) {
+      Featurizer.addFeaturizedSentence(datums, sentence.first, sentence.second);
+    }
+    return Maybe.Just(datums);
+  }
+
 
 
   protected Maybe<KBPRelationProvenance> findBestProvenance(final KBPEntity entity, final KBPSlotFill fill) {
@@ -660,7 +759,7 @@ public class SimpleSlotFiller implements SlotFiller {
           @Override
           public void apply(Connection psql) throws SQLException {
             put(psql, Props.DB_TABLE_PROVENANCE_CACHE, keyToString(fill.key), bestProvenance.dereference().orCrash());
-            if (Props.KBP_EVALUATE && !psql.getAutoCommit()) { psql.commit(); }  // slower, but allows for stopping a run halfway through
+            if (Props.KBP_EVALUATE && psql != null && !psql.getAutoCommit()) { psql.commit(); }  // slower, but allows for stopping a run halfway through
           }
         });
       }
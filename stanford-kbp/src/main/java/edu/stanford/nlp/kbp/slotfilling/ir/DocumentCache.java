@@ -0,0 +1,195 @@
+package edu.stanford.nlp.kbp.slotfilling.ir;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.util.CoreMap;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe, size-bounded LRU cache of documents by docid.
+ *
+ * <p>The size of a document is estimated from its token count, and the least recently used documents are evicted
+ * once the cache exceeds its byte budget. The documents are held through soft references, so that the garbage
+ * collector can also reclaim them under memory pressure, before the budget is reached.
+ * Loads are single-flight: if two threads ask for the same missing docid at once, only one of them hits the index,
+ * and the other waits on its result.</p>
+ *
+ * @see StandardIR#fetchDocument(String, boolean)
+ */
+public class DocumentCache {
+
+  /** Loads a document which is not in the cache */
+  public static interface Loader {
+    public Annotation load(String docId) throws IOException;
+  }
+
+  /** A rough estimate of the memory taken by an annotated token, including its share of the parse and dependency graphs */
+  public static final long BYTES_PER_TOKEN = 1024;
+  /** A rough estimate of the memory taken by a document, outside of its tokens */
+  public static final long BYTES_PER_DOCUMENT = 4096;
+
+  /** The maximum number of bytes (estimated) to keep in the cache */
+  public final long maxBytes;
+
+  /** The cached documents, in access order; guarded by itself */
+  private final LinkedHashMap<String, SoftReference<Annotation>> documents = new LinkedHashMap<>(1024, 0.75f, true);
+  /** The estimated size of each cached document; guarded by documents */
+  private final Map<String, Long> sizes = new HashMap<>();
+  /** The estimated size of the cache; guarded by documents */
+  private long bytes = 0;
+  /** The documents currently being loaded */
+  private final ConcurrentHashMap<String, CompletableFuture<Annotation>> loading = new ConcurrentHashMap<>();
+
+  public final AtomicLong hits = new AtomicLong(0);
+  public final AtomicLong misses = new AtomicLong(0);
+  public final AtomicLong evictions = new AtomicLong(0);
+
+  public DocumentCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Get a document from the cache, loading it if it is not already there.
+   * @param docId The docid of the document to get.
+   * @param loader The function to load the document with, if it is not in the cache.
+   * @return The document.
+   * @throws IOException Passed on from the loader.
+   */
+  public Annotation get(String docId, Loader loader) throws IOException {
+    // Check cache
+    Annotation cached = getIfPresent(docId);
+    if (cached != null) { return cached; }
+
+    // Check for another thread loading the document
+    CompletableFuture<Annotation> mine = new CompletableFuture<>();
+    CompletableFuture<Annotation> theirs = loading.putIfAbsent(docId, mine);
+    if (theirs != null) {
+      hits.incrementAndGet();
+      return await(theirs);
+    }
+
+    // Load the document
+    try {
+      // (another thread may have finished loading it since we checked)
+      Annotation doc;
+      synchronized (documents) { doc = lookup(docId); }
+      if (doc == null) {
+        misses.incrementAndGet();
+        doc = loader.load(docId);
+        put(docId, doc);
+      } else {
+        hits.incrementAndGet();
+      }
+      mine.complete(doc);
+      return doc;
+    } catch (IOException | RuntimeException | Error e) {
+      mine.completeExceptionally(e);
+      throw e;
+    } finally {
+      loading.remove(docId, mine);
+    }
+  }
+
+  /**
+   * Get a document, if it is in the cache; this counts as a use of the document.
+   * @return The document, or null if it is not cached.
+   */
+  public Annotation getIfPresent(String docId) {
+    Annotation doc;
+    synchronized (documents) { doc = lookup(docId); }
+    if (doc != null) { hits.incrementAndGet(); }
+    return doc;
+  }
+
+  /** Get a cached document, dropping its entry if the garbage collector has reclaimed it; the caller holds the lock */
+  private Annotation lookup(String docId) {
+    SoftReference<Annotation> ref = documents.get(docId);
+    if (ref == null) { return null; }
+    Annotation doc = ref.get();
+    if (doc == null) {
+      documents.remove(docId);
+      bytes -= sizes.remove(docId);
+    }
+    return doc;
+  }
+
+  /** Add a document to the cache, evicting the least recently used documents if we are over budget */
+  public void put(String docId, Annotation doc) {
+    long size = estimateBytes(doc);
+    synchronized (documents) {
+      SoftReference<Annotation> previous = documents.put(docId, new SoftReference<>(doc));
+      if (previous != null) { bytes -= sizes.get(docId); }
+      sizes.put(docId, size);
+      bytes += size;
+      Iterator<Map.Entry<String, SoftReference<Annotation>>> iter = documents.entrySet().iterator();
+      while (bytes > maxBytes && iter.hasNext()) {
+        String victim = iter.next().getKey();
+        iter.remove();
+        bytes -= sizes.remove(victim);
+        evictions.incrementAndGet();
+      }
+    }
+  }
+
+  /** The number of documents in the cache (including any the garbage collector has reclaimed, but we have not yet noticed) */
+  public int size() {
+    synchronized (documents) { return documents.size(); }
+  }
+
+  /** The estimated size of the cache, in bytes */
+  public long bytes() {
+    synchronized (documents) { return bytes; }
+  }
+
+  /** The fraction of lookups which were served without going to the index */
+  public double hitRate() {
+    long hits = this.hits.get();
+    long total = hits + misses.get();
+    return total == 0 ? 0.0 : ((double) hits) / ((double) total);
+  }
+
+  /** Estimate the memory used by a document, from the number of tokens in it */
+  public static long estimateBytes(Annotation doc) {
+    long tokens = 0;
+    List<CoreLabel> docTokens = doc.get(CoreAnnotations.TokensAnnotation.class);
+    if (docTokens != null) {
+      tokens = docTokens.size();
+    } else if (doc.get(CoreAnnotations.SentencesAnnotation.class) != null) {
+      for (CoreMap sentence : doc.get(CoreAnnotations.SentencesAnnotation.class)) {
+        List<CoreLabel> sentenceTokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+        if (sentenceTokens != null) { tokens += sentenceTokens.size(); }
+      }
+    }
+    return BYTES_PER_DOCUMENT + tokens * BYTES_PER_TOKEN;
+  }
+
+  private static Annotation await(CompletableFuture<Annotation> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) { throw (IOException) e.getCause(); }
+      if (e.getCause() instanceof RuntimeException) { throw (RuntimeException) e.getCause(); }
+      if (e.getCause() instanceof Error) { throw (Error) e.getCause(); }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "DocumentCache{" +
+        "size=" + size() +
+        ", bytes=" + bytes() + "/" + maxBytes +
+        ", hits=" + hits.get() +
+        ", misses=" + misses.get() +
+        ", evictions=" + evictions.get() +
+        '}';
+  }
+}
@@ -10,6 +10,7 @@ import edu.stanford.nlp.stats.Counters;
 import edu.stanford.nlp.util.CoreMap;
 import edu.stanford.nlp.util.IterableIterator;
 import edu.stanford.nlp.util.Pair;
+import edu.stanford.nlp.util.Triple;
 import edu.stanford.nlp.util.logging.Redwood;
 
 import java.io.BufferedReader;
@@ -352,6 +353,30 @@ public abstract class KBPIR {
         relationName, Collections.EMPTY_SET, n, false);
   }
 
+  /**
+   * Hint that some queries are about to be run, so that they can be run together ahead of time.
+   * This does nothing by default; the results of a query are the same whether or not it was prefetched.
+   *
+   * @param queries The entities, slot values and relations to be queried for.
+   * @param maxDocuments The maximum number of documents each query will ask for.
+   */
+  public void prefetchQueries(List<Triple<KBPEntity, Maybe<KBPEntity>, Maybe<String>>> queries, int maxDocuments) {
+  }
+
+  /**
+   * Hint that the given entity, slot value and relation triples are about to be queried for, with
+   * {@link KBPIR#querySentences(String, String, Maybe, int)}.
+   * @see KBPIR#prefetchQueries(List, int)
+   */
+  public void prefetchSentences(Collection<Triple<String, String, Maybe<String>>> entitySlotValueAndRelations, int n) {
+    List<Triple<KBPEntity, Maybe<KBPEntity>, Maybe<String>>> queries = new ArrayList<>();
+    for (Triple<String, String, Maybe<String>> triple : entitySlotValueAndRelations) {
+      queries.add(Triple.makeTriple(KBPNew.entName(triple.first).entType(NERTag.PERSON).KBPEntity(),
+          Maybe.Just(KBPNew.entName(triple.second).entType(NERTag.MISC).KBPEntity()), triple.third));
+    }
+    prefetchQueries(queries, n);
+  }
+
   public List<String> queryDocIDs( String entityName, String slotValue, String reln, int n  ) {
     return queryDocIDs(entityName, Maybe.<NERTag>Nothing(),
         Maybe.Just(reln), Maybe.Just(slotValue),
@@ -323,6 +323,14 @@ public class KBPRelationProvenance implements Serializable {
     return indexName != null && indexName.toLowerCase().endsWith(Props.INDEX_OFFICIAL.getName().toLowerCase());
   }
 
+  /** A copy of this provenance, whose containing sentence can be set without changing this one */
+  public KBPRelationProvenance copy() {
+    KBPRelationProvenance copy = new KBPRelationProvenance(docId, indexName, sentenceIndex, entityMentionInSentence,
+        slotValueMentionInSentence, containingSentenceLossy, score);
+    copy.classifierClass = classifierClass;
+    return copy;
+  }
+
   public KBPRelationProvenance rewrite(double score) {
     return new KBPRelationProvenance(docId, indexName, sentenceIndex.get(), entityMentionInSentence.get(), slotValueMentionInSentence.get(), containingSentenceLossy.get(), Maybe.Just(score));
   }
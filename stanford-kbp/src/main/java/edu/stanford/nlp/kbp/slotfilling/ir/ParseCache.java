@@ -0,0 +1,229 @@
+package edu.stanford.nlp.kbp.slotfilling.ir;
+
+import edu.stanford.nlp.kbp.slotfilling.ir.index.KryoAnnotationSerializer;
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations.*;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations.*;
+import edu.stanford.nlp.semgraph.SemanticGraphEdge;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeCoreAnnotations.*;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.MappedSegmentStore;
+import edu.stanford.nlp.util.Pair;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A docid-keyed cache of the entity-independent annotations {@link PostIRAnnotator} adds to a document:
+ * the tweaked NER tags, the parse trees, and the dependency graphs of every sentence.
+ *
+ * <p>The same document is retrieved for many query entities and slot values in a run, and parsing it is by far
+ * the most expensive part of annotating it after IR; with this cache, only the entity-specific coref marking
+ * is redone for every query.</p>
+ *
+ * <p>An entry is a version stamp, followed by a Kryo serialized skeleton of the document: for each sentence,
+ * a token per token holding only its NER tag, the tree, and the dependency graphs.
+ * Entries with a different version stamp (e.g., from another parser model), or which do not line up with the
+ * tokens of the document they are restored onto, are ignored and overwritten.
+ * The entries live in a {@link MappedSegmentStore} on local disk.</p>
+ */
+public class ParseCache implements Closeable {
+  private static final Redwood.RedwoodChannels logger = Redwood.channels("ParseCache");
+
+  /** The dependency graphs the parser annotates, all of which are cached */
+  private static final List<Class<? extends CoreAnnotation<SemanticGraph>>> DEPENDENCIES = Arrays.<Class<? extends CoreAnnotation<SemanticGraph>>>asList(
+      BasicDependenciesAnnotation.class, CollapsedDependenciesAnnotation.class, CollapsedCCProcessedDependenciesAnnotation.class);
+
+  /** The version stamp of the annotators whose output is cached; entries with any other stamp are ignored */
+  public final String version;
+
+  private final MappedSegmentStore<String> store;
+  private final KryoAnnotationSerializer serializer = new KryoAnnotationSerializer(true, false, true);
+
+  private final AtomicLong hits = new AtomicLong(0);
+  private final AtomicLong misses = new AtomicLong(0);
+
+  /**
+   * Open a parse cache, creating it if it does not exist.
+   * @param directory The directory to keep the cache in.
+   * @param version The version stamp of the parser (and NER tweaks) filling this cache.
+   * @param segmentBytes The size of a single segment file of the underlying store.
+   * @throws IOException If the store could not be opened -- e.g., it is open in another process.
+   */
+  public ParseCache(File directory, String version, int segmentBytes) throws IOException {
+    this.version = version;
+    this.store = new MappedSegmentStore<>(directory, segmentBytes, MappedSegmentStore.UTF8);
+  }
+
+  /**
+   * Restore the cached parse of a document onto it, if there is one.
+   * @param document The document to annotate, which must have a docid.
+   * @return True if the document now has its cached NER tags, trees and dependencies; false if it was not cached
+   *         (in which case the document is unchanged).
+   */
+  public boolean restore(Annotation document) {
+    String docid = document.get(DocIDAnnotation.class);
+    List<CoreMap> sentences = document.get(SentencesAnnotation.class);
+    if (docid == null || sentences == null) { return false; }
+    try {
+      byte[] bytes = store.get(docid);
+      if (bytes == null) { misses.incrementAndGet(); return false; }
+      // Check version
+      ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+      if (!version.equals(new DataInputStream(in).readUTF())) { misses.incrementAndGet(); return false; }
+      // Read skeleton
+      Pair<Annotation, InputStream> read = serializer.read(in);
+      read.second.close();
+      List<CoreMap> cached = read.first.get(SentencesAnnotation.class);
+      // Check that it lines up with this document
+      if (cached == null || cached.size() != sentences.size()) { misses.incrementAndGet(); return false; }
+      for (int i = 0; i < sentences.size(); ++i) {
+        List<CoreLabel> tokens = sentences.get(i).get(TokensAnnotation.class);
+        List<CoreLabel> cachedTokens = cached.get(i).get(TokensAnnotation.class);
+        if (tokens == null || cachedTokens == null || tokens.size() != cachedTokens.size()) { misses.incrementAndGet(); return false; }
+      }
+      // Rebuild the dependency graphs over this document's tokens, before changing anything
+      List<List<SemanticGraph>> graphs = new ArrayList<>(sentences.size());
+      for (int i = 0; i < sentences.size(); ++i) {
+        List<SemanticGraph> sentenceGraphs = new ArrayList<>(DEPENDENCIES.size());
+        for (Class<? extends CoreAnnotation<SemanticGraph>> key : DEPENDENCIES) {
+          SemanticGraph graph = cached.get(i).get(key);
+          sentenceGraphs.add(graph == null ? null : relink(graph, sentences.get(i).get(TokensAnnotation.class)));
+        }
+        graphs.add(sentenceGraphs);
+      }
+      // Restore
+      for (int i = 0; i < sentences.size(); ++i) {
+        restoreSentence(cached.get(i), graphs.get(i), sentences.get(i));
+      }
+      hits.incrementAndGet();
+      return true;
+    } catch (IOException | ClassNotFoundException | RuntimeException e) {
+      logger.warn("could not read cached parse for " + docid + ": " + e.getClass().getSimpleName() + ": " + e.getMessage());
+      misses.incrementAndGet();
+      return false;
+    }
+  }
+
+  /**
+   * Save the NER tags, trees and dependencies of a document, once it has been parsed.
+   * Failures are logged, and otherwise ignored.
+   * @param document The parsed document, which must have a docid.
+   */
+  public void save(Annotation document) {
+    String docid = document.get(DocIDAnnotation.class);
+    List<CoreMap> sentences = document.get(SentencesAnnotation.class);
+    if (docid == null || sentences == null) { return; }
+    try {
+      // Create skeleton
+      List<CoreMap> skeletonSentences = new ArrayList<>(sentences.size());
+      for (CoreMap sentence : sentences) {
+        skeletonSentences.add(skeletonSentence(sentence));
+      }
+      Annotation skeleton = new Annotation("");
+      skeleton.set(SentencesAnnotation.class, skeletonSentences);
+      // Write it
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      new DataOutputStream(bytes).writeUTF(version);
+      serializer.write(skeleton, bytes).close();
+      store.put(docid, bytes.toByteArray());
+    } catch (IOException | RuntimeException e) {
+      logger.warn("could not cache parse for " + docid + ": " + e.getClass().getSimpleName() + ": " + e.getMessage());
+    }
+  }
+
+  /** The number of documents restored from the cache so far */
+  public long hits() { return hits.get(); }
+
+  /** The number of documents looked up, but not found in the cache so far */
+  public long misses() { return misses.get(); }
+
+  /** The number of documents in the cache */
+  public int size() { return store.size(); }
+
+  @Override
+  public void close() throws IOException {
+    store.close();
+  }
+
+  @Override
+  public String toString() {
+    return "ParseCache{" + store.size() + " documents, " + hits.get() + " hits, " + misses.get() + " misses}";
+  }
+
+  /** Copy the entity-independent annotations of a sentence into a bare sentence for caching */
+  private static CoreMap skeletonSentence(CoreMap sentence) {
+    CoreMap skeleton = new ArrayCoreMap();
+    List<CoreLabel> tokens = sentence.get(TokensAnnotation.class);
+    List<CoreLabel> skeletonTokens = new ArrayList<>(tokens.size());
+    for (CoreLabel token : tokens) {
+      CoreLabel skeletonToken = new CoreLabel();
+      if (token.ner() != null) { skeletonToken.setNER(token.ner()); }
+      skeletonTokens.add(skeletonToken);
+    }
+    skeleton.set(TokensAnnotation.class, skeletonTokens);
+    if (sentence.containsKey(TreeAnnotation.class)) { skeleton.set(TreeAnnotation.class, sentence.get(TreeAnnotation.class)); }
+    for (Class<? extends CoreAnnotation<SemanticGraph>> key : DEPENDENCIES) {
+      if (sentence.get(key) != null) { skeleton.set(key, sentence.get(key)); }
+    }
+    return skeleton;
+  }
+
+  /** Copy the annotations of a cached skeleton sentence onto the sentence it was made from */
+  private static void restoreSentence(CoreMap cached, List<SemanticGraph> graphs, CoreMap sentence) {
+    List<CoreLabel> tokens = sentence.get(TokensAnnotation.class);
+    List<CoreLabel> cachedTokens = cached.get(TokensAnnotation.class);
+    for (int k = 0; k < tokens.size(); ++k) {
+      String ner = cachedTokens.get(k).ner();
+      if (ner != null) { tokens.get(k).setNER(ner); }
+    }
+    Tree tree = cached.get(TreeAnnotation.class);
+    if (tree != null) { sentence.set(TreeAnnotation.class, tree); }
+    for (int k = 0; k < DEPENDENCIES.size(); ++k) {
+      if (graphs.get(k) != null) { sentence.set(DEPENDENCIES.get(k), graphs.get(k)); }
+    }
+  }
+
+  /**
+   * Rebuild a cached dependency graph over the tokens of the actual sentence, rather than those of the skeleton.
+   * Like the graphs the parser creates, the nodes of the graph wrap the sentence's tokens themselves.
+   */
+  private static SemanticGraph relink(SemanticGraph cached, List<CoreLabel> tokens) {
+    IndexedWord[] nodes = new IndexedWord[tokens.size() + 1];  // indices start at 1
+    SemanticGraph graph = new SemanticGraph();
+    for (IndexedWord node : cached.vertexSet()) {
+      graph.addVertex(node(nodes, tokens, node.index()));
+    }
+    for (SemanticGraphEdge edge : cached.edgeIterable()) {
+      graph.addEdge(node(nodes, tokens, edge.getSource().index()), node(nodes, tokens, edge.getTarget().index()),
+          edge.getRelation(), edge.getWeight(), edge.isExtra());
+    }
+    Collection<IndexedWord> roots = new ArrayList<>();
+    for (IndexedWord root : cached.getRoots()) {
+      roots.add(node(nodes, tokens, root.index()));
+    }
+    graph.setRoots(roots);
+    return graph;
+  }
+
+  private static IndexedWord node(IndexedWord[] nodes, List<CoreLabel> tokens, int index) {
+    if (index < 1 || index > tokens.size()) { throw new IllegalStateException("Dependency index out of bounds: " + index); }
+    if (nodes[index] == null) {
+      IndexedWord word = new IndexedWord(tokens.get(index - 1));
+      word.set(ValueAnnotation.class, word.get(TextAnnotation.class));
+      nodes[index] = word;
+    }
+    return nodes[index];
+  }
+}
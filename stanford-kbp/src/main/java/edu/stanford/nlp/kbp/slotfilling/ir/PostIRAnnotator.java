@@ -90,19 +90,35 @@ public class PostIRAnnotator implements Annotator {
 
   private boolean forceLink = false;
 
+  /** The lexical filter for the sentences worth parsing for this entity; see {@link PostIRAnnotator#annotatePrefiltered(Annotation)} */
+  private final SentencePrefilter prefilter;
+
 
   /**
    * A set of TokensRegex patterns to tweak NER to try to capture higher recall.
    */
   private static final CoreMapExpressionExtractor nerTweakPatterns;
   private static final ParserAnnotator srParser;
+  /**
+   * The version stamp of the two annotators above, for the parse cache.
+   * This changes if the NER tweaks or parser properties (including the model) change.
+   */
+  private static final String parseVersion;
+  /** The docid-keyed cache of parses; see {@link PostIRAnnotator#parseCache()} */
+  private static volatile Maybe<ParseCache> parseCache = null;
+  /**
+   * Held while annotating a document. The NER tweaks, the parser and the known aliases are static, shared by every
+   * instance, and not threadsafe; so documents are annotated one at a time, whichever thread (or instance) asks.
+   */
+  private static final Object annotationLock = new Object();
 
   static {
     CoreMapExpressionExtractor extractor = null;
+    List<String> lines = Collections.emptyList();
     try {
       File f = File.createTempFile("tokensregex", ".rules");
       f.deleteOnExit();
-      List<String> lines = new ArrayList<String>() {{
+      lines = new ArrayList<String>() {{
         add("ner = { type: \"CLASS\", value: \"edu.stanford.nlp.ling.CoreAnnotations$NamedEntityTagAnnotation\" }");
         add("{ result: \"matched\", pattern: (" +
             "([{lemma:/[Uu]niversity/}] [{lemma:/[Oo]f/}] [{ner:/ORGANIZATION|STATE_OR_PROVINCE|COUNTRY|CITY|LOCATION/}]+)" +
@@ -127,12 +143,51 @@ public class PostIRAnnotator implements Annotator {
     }
     nerTweakPatterns = extractor;
 
-    srParser = new ParserAnnotator("parse", new Properties() {{
+    Properties parserProps = new Properties() {{
       setProperty("annotators", "parse");
       setProperty("parse.model", "edu/stanford/nlp/models/srparser/englishSR.ser.gz");
       setProperty("parse.nosquash", "true");
       setProperty("parse.maxlen", "500");
-    }});
+    }};
+    srParser = new ParserAnnotator("parse", parserProps);
+    parseVersion = "parse" + new TreeMap<>(parserProps) + ";nertweaks=" + Integer.toHexString(lines.hashCode());
+  }
+
+  /**
+   * The shared cache of parses, if {@link Props#CACHE_PARSES_DO} is set.
+   * This is opened the first time it is needed, and closed when the JVM exits; if it cannot be opened
+   * (e.g., another process has it open), documents are simply parsed every time.
+   */
+  private static Maybe<ParseCache> parseCache() {
+    Maybe<ParseCache> cache = parseCache;
+    if (cache != null) { return cache; }
+    synchronized (PostIRAnnotator.class) {
+      if (parseCache != null) { return parseCache; }
+      cache = Maybe.Nothing();
+      if (Props.CACHE_PARSES_DO) {
+        File directory = Props.CACHE_PARSES_DIR != null ? Props.CACHE_PARSES_DIR : new File(Props.CACHE_LOCAL_DIR, "parses");
+        try {
+          final ParseCache opened = new ParseCache(directory, parseVersion, Props.CACHE_LOCAL_SEGMENTMB * 1024 * 1024);
+          logger.log("opened parse cache at " + directory + " with " + opened.size() + " documents");
+          Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+              try {
+                logger.log(opened);
+                opened.close();
+              } catch (Throwable t) {
+                logger.err(t);
+              }
+            }
+          });
+          cache = Maybe.Just(opened);
+        } catch (IOException e) {
+          logger.warn("could not open parse cache at " + directory + " (documents will be parsed every time): " + e.getMessage());
+        }
+      }
+      parseCache = cache;
+      return cache;
+    }
   }
 
 
@@ -240,6 +295,7 @@ public class PostIRAnnotator implements Annotator {
     this.entityType = Maybe.Just(entity.type.name);
     this.slotValueType = Maybe.Just(slotValue.type.name);
     this.doCoref = doCoref;
+    this.prefilter = new SentencePrefilter(entityName, this.slotValue);
   }
 
   public PostIRAnnotator(KBPOfficialEntity entity, boolean doCoref) {
@@ -253,6 +309,7 @@ public class PostIRAnnotator implements Annotator {
     this.entityType = Maybe.Just(entity.type.name);
     this.slotValueType = Maybe.Nothing();
     this.doCoref = doCoref;
+    this.prefilter = new SentencePrefilter(entityName, this.slotValue);
   }
 
   /** Create a PostIRAnnotator from an entity */
@@ -289,36 +346,83 @@ public class PostIRAnnotator implements Annotator {
 
   @Override
   public void annotate(final Annotation corpus) {
-    // Tweak Annotations
-    nerTweakPatterns.extractExpressions(corpus);
-    srParser.annotate(corpus);
-
-    // Compute stats
-    Lazy<CorpusStats> entityStats  = new Lazy<CorpusStats>(){
-      @Override
-      protected CorpusStats compute() {
-        return new CorpusStats(corpus, entityName);
-      }
-    };
-    Lazy<Maybe<CorpusStats>> slotValueStats = new Lazy<Maybe<CorpusStats>>() {
-      @Override
-      protected Maybe<CorpusStats> compute() {
-        return  slotValue.isDefined() ? Maybe.Just(new CorpusStats(corpus, slotValue.get())) : Maybe.<CorpusStats>Nothing();
+    annotate(corpus, Maybe.<BitSet>Nothing());
+  }
+
+  /**
+   * Annotate a document, but only parse the sentences which could mention the entity (and slot value),
+   * according to a cheap lexical {@link SentencePrefilter}. The other sentences are left unparsed, and
+   * may carry stale (or no) coref annotations; they should not be used.
+   * If no sentence is a candidate, the document is not annotated at all.
+   *
+   * <p>If the parse cache is enabled, the document is not prefiltered, and is annotated in full:
+   * a cached parse is useful to later queries only if it covers every sentence.</p>
+   *
+   * @param corpus The document to annotate.
+   * @return The sentences which were annotated, and may be used.
+   */
+  public BitSet annotatePrefiltered(final Annotation corpus) {
+    if (parseCache().isDefined()) {
+      annotate(corpus);
+      BitSet all = new BitSet();
+      all.set(0, corpus.get(SentencesAnnotation.class).size());
+      return all;
+    }
+    BitSet candidates = prefilter.candidates(corpus);
+    if (!candidates.isEmpty()) { annotate(corpus, Maybe.Just(candidates)); }
+    return candidates;
+  }
+
+  private void annotate(final Annotation corpus, Maybe<BitSet> sentencesToParse) {
+    synchronized (annotationLock) {
+      // Tweak Annotations
+      // These do not depend on the entity, and so are cached by docid if we can
+      Maybe<ParseCache> cache = parseCache();
+      if (!cache.isDefined() || !cache.get().restore(corpus)) {
+        nerTweakPatterns.extractExpressions(corpus);
+        if (!sentencesToParse.isDefined()) {
+          srParser.annotate(corpus);
+          for (ParseCache toSave : cache) { toSave.save(corpus); }
+        } else {
+          // Parse only the candidate sentences (annotated in place, as they are shared with the document)
+          List<CoreMap> sentences = corpus.get(SentencesAnnotation.class);
+          List<CoreMap> toParse = new ArrayList<>(sentencesToParse.get().cardinality());
+          for (int i = sentencesToParse.get().nextSetBit(0); i >= 0 && i < sentences.size(); i = sentencesToParse.get().nextSetBit(i + 1)) {
+            toParse.add(sentences.get(i));
+          }
+          Annotation window = new Annotation("");
+          window.set(SentencesAnnotation.class, toParse);
+          srParser.annotate(window);
+        }
       }
-    };
-    // Annotate coref chains
-    if (doCoref) { annotateCorefHighPrecision(corpus, entityStats, slotValueStats); }
-    // Annotate literal coref
-    try {
-      annotateLiteralCoref(corpus, entityName, entityType, entityTokens);
-      if (slotValue.isDefined() && slotValueTokens.isDefined()) {
-        annotateLiteralCoref(corpus, slotValue.get(), slotValueType, slotValueTokens.get());
+
+      // Compute stats
+      Lazy<CorpusStats> entityStats  = new Lazy<CorpusStats>(){
+        @Override
+        protected CorpusStats compute() {
+          return new CorpusStats(corpus, entityName);
+        }
+      };
+      Lazy<Maybe<CorpusStats>> slotValueStats = new Lazy<Maybe<CorpusStats>>() {
+        @Override
+        protected Maybe<CorpusStats> compute() {
+          return  slotValue.isDefined() ? Maybe.Just(new CorpusStats(corpus, slotValue.get())) : Maybe.<CorpusStats>Nothing();
+        }
+      };
+      // Annotate coref chains
+      if (doCoref) { annotateCorefHighPrecision(corpus, entityStats, slotValueStats); }
+      // Annotate literal coref
+      try {
+        annotateLiteralCoref(corpus, entityName, entityType, entityTokens);
+        if (slotValue.isDefined() && slotValueTokens.isDefined()) {
+          annotateLiteralCoref(corpus, slotValue.get(), slotValueType, slotValueTokens.get());
+        }
+      } catch (RuntimeException e) {
+        logger.err(e);
       }
-    } catch (RuntimeException e) {
-      logger.err(e);
+      // Annotate "other" coref (e.g., times)
+      annotateTimex(corpus);
     }
-    // Annotate "other" coref (e.g., times)
-    annotateTimex(corpus);
   }
 
   @SuppressWarnings("unchecked")
@@ -0,0 +1,146 @@
+package edu.stanford.nlp.kbp.slotfilling.ir;
+
+import edu.stanford.nlp.dcoref.CorefChain;
+import edu.stanford.nlp.dcoref.CorefCoreAnnotations;
+import edu.stanford.nlp.kbp.common.Maybe;
+import edu.stanford.nlp.kbp.common.Props;
+import edu.stanford.nlp.kbp.entitylinking.AcronymMatcher;
+import edu.stanford.nlp.ling.CoreAnnotations.*;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.util.CoreMap;
+
+import java.util.*;
+
+/**
+ * A cheap, lexical filter for which sentences of a document could possibly be returned for a query,
+ * run before the document is parsed.
+ *
+ * <p>A sentence is a candidate for an entity if any of its tokens matches (approximately) a main token of the
+ * entity's name or one of its known aliases, if any of its tokens is an acronym of the entity's name, or if it holds a
+ * mention of a (stored) coref chain which has such a mention somewhere in the document.
+ * If the document has no stored coref chains, the sentences around a matching sentence are candidates too
+ * (see {@link Props#INDEX_POSTIRANNOTATOR_PREFILTER_CONTEXT}), as they may refer to the entity only by a pronoun
+ * or a nominal, which the coref run after parsing could resolve.
+ * If there is a slot value, the sentence must also be a candidate for the slot value, by the same criteria.</p>
+ *
+ * <p>This is deliberately loose: it should keep every sentence the {@link PostIRAnnotator} could later
+ * attribute to the entity, and only throw away sentences which have nothing to do with it.</p>
+ */
+public class SentencePrefilter {
+
+  /** The keys of the entity (and slot value) to look for */
+  private final Matcher entity;
+  private final Maybe<Matcher> slotValue;
+
+  public SentencePrefilter(String entityName, Maybe<String> slotValue) {
+    this.entity = new Matcher(entityName);
+    this.slotValue = slotValue.isDefined() ? Maybe.Just(new Matcher(slotValue.get())) : Maybe.<Matcher>Nothing();
+  }
+
+  /**
+   * The sentences of a document which could mention both the entity, and the slot value if there is one.
+   * @param document The document to filter. It need not be parsed, but should have its stored coref chains, if any.
+   * @return The indices of the candidate sentences.
+   */
+  public BitSet candidates(Annotation document) {
+    BitSet candidates = entity.sentences(document);
+    for (Matcher slot : slotValue) {
+      if (!candidates.isEmpty()) { candidates.and(slot.sentences(document)); }
+    }
+    return candidates;
+  }
+
+  /** The lexical matching logic for a single name */
+  private static class Matcher {
+    /** The tokens to look for, upper cased: the main tokens of the name and its aliases */
+    private final Set<String> keys = new HashSet<>();
+    /** The tokenized name, and its aliases, for acronym matching */
+    private final List<String[]> names = new ArrayList<>();
+
+    private Matcher(String name) {
+      addName(name);
+      for (Map.Entry<String, String> alias : PostIRAnnotator.knownAliases.entrySet()) {
+        if (alias.getValue().equals(name)) { addName(alias.getKey()); }
+        if (alias.getKey().equals(name)) { addName(alias.getValue()); }
+      }
+    }
+
+    private void addName(String name) {
+      String[] tokens = name.trim().split("\\s+");
+      names.add(tokens);
+      List<String> mainTokens = AcronymMatcher.getMainStrs(Arrays.asList(tokens));
+      for (String token : (mainTokens.isEmpty() ? Arrays.asList(tokens) : mainTokens)) {
+        keys.add(normalize(token));
+      }
+    }
+
+    /** Strip the trailing period and plural (as approximate matching in the PostIRAnnotator allows them) */
+    private static String normalize(String token) {
+      String key = token.toUpperCase();
+      if (key.endsWith(".")) { key = key.substring(0, key.length() - 1); }
+      if (key.endsWith("ES") && key.length() > 4) { key = key.substring(0, key.length() - 2); }
+      else if (key.endsWith("S") && key.length() > 3) { key = key.substring(0, key.length() - 1); }
+      return key;
+    }
+
+    private boolean matches(String token) {
+      if (token == null || token.isEmpty()) { return false; }
+      if (keys.contains(normalize(token))) { return true; }
+      if (token.length() >= 2 && Character.isUpperCase(token.charAt(0))) {
+        for (String[] name : names) {
+          if (name.length >= 2 && AcronymMatcher.isAcronym(token, name)) { return true; }
+        }
+      }
+      return false;
+    }
+
+    private boolean matches(CoreLabel token) {
+      return matches(token.word()) || (token.originalText() != null && matches(token.originalText()));
+    }
+
+    /**
+     * The sentences of the document which lexically match this name, or are in a coref chain which does;
+     * or, without coref chains, which are near a sentence which matches.
+     */
+    private BitSet sentences(Annotation document) {
+      List<CoreMap> sentences = document.get(SentencesAnnotation.class);
+      BitSet matches = new BitSet(sentences.size());
+      for (int i = 0; i < sentences.size(); ++i) {
+        for (CoreLabel token : sentences.get(i).get(TokensAnnotation.class)) {
+          if (matches(token)) { matches.set(i); break; }
+        }
+      }
+      // Add the sentences of coref chains with a matching mention
+      Map<Integer, CorefChain> chains = document.get(CorefCoreAnnotations.CorefChainAnnotation.class);
+      if (chains != null) {
+        BitSet lexicalMatches = (BitSet) matches.clone();
+        for (CorefChain chain : chains.values()) {
+          boolean inChain = false;
+          for (CorefChain.CorefMention mention : chain.getMentionsInTextualOrder()) {
+            if (mention.sentNum >= 1 && lexicalMatches.get(mention.sentNum - 1) && mentionMatches(mention)) { inChain = true; break; }
+          }
+          if (inChain) {
+            for (CorefChain.CorefMention mention : chain.getMentionsInTextualOrder()) {
+              if (mention.sentNum >= 1 && mention.sentNum <= sentences.size()) { matches.set(mention.sentNum - 1); }
+            }
+          }
+        }
+      } else if (Props.INDEX_POSTIRANNOTATOR_PREFILTER_CONTEXT > 0) {
+        BitSet lexicalMatches = (BitSet) matches.clone();
+        for (int i = lexicalMatches.nextSetBit(0); i >= 0; i = lexicalMatches.nextSetBit(i + 1)) {
+          matches.set(Math.max(0, i - Props.INDEX_POSTIRANNOTATOR_PREFILTER_CONTEXT),
+              Math.min(sentences.size(), i + Props.INDEX_POSTIRANNOTATOR_PREFILTER_CONTEXT + 1));
+        }
+      }
+      return matches;
+    }
+
+    private boolean mentionMatches(CorefChain.CorefMention mention) {
+      for (String token : mention.mentionSpan.split("\\s+")) {
+        if (matches(token)) { return true; }
+      }
+      return false;
+    }
+  }
+}
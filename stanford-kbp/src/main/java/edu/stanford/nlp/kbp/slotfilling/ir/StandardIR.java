@@ -14,10 +14,12 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
-import java.lang.ref.SoftReference;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 import static edu.stanford.nlp.util.logging.Redwood.Util.*;
@@ -90,17 +92,19 @@ public class
   //
   private final Querier[] backends;
   public final LuceneQuerier officialIndex;
+  /** The threads to query backends on in parallel, if {@link Props#INDEX_FANOUT_DO} is set; null otherwise */
+  private final ExecutorService fanOutPool;
   private final AnnotationPipeline reannotatePipeline;
   public final AnnotationSerializer serializer = new KryoAnnotationSerializer();
 
   /**
    * A cache to avoid having to lookup a document every single time from Lucene in case we're
    * looking up the same document again and again.
-   * This will keep up to 10k documents in the cache, freeing them if memory becomes an issue.
+   * This is bounded by an estimate of the documents' size in memory; see {@link Props#CACHE_DOCUMENTS_MB}.
    *
    * @see StandardIR#fetchDocument(String, boolean)
    */
-  private final Map<String, SoftReference<Annotation>> cachedDocumentLookup = new HashMap<>();
+  private final DocumentCache cachedDocumentLookup = new DocumentCache(((long) Props.CACHE_DOCUMENTS_MB) * 1024L * 1024L);
 
   //
   // Constructor
@@ -155,6 +159,17 @@ public class
       officialIndex = official;
     }
     logger.log("official index is: " + officialIndex);
+
+    // Initialize fan-out threads
+    if (Props.INDEX_FANOUT_DO && backends.length > 1) {
+      fanOutPool = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "ir-fanout");
+        thread.setDaemon(true);
+        return thread;
+      });
+    } else {
+      fanOutPool = null;
+    }
   }
 
 
@@ -223,11 +238,125 @@ public class
   }
 
   public void close() throws IOException {
+    logger.log("document cache: " + cachedDocumentLookup);
+    if (fanOutPool != null) { fanOutPool.shutdownNow(); }
     for (Querier backend : backends) {
       backend.close();
     }
   }
 
+  /**
+   * Query every backend at once, on its own thread, and merge the results by score.
+   * Unlike {@link CollectionUtils#interleave(Iterator[])}, each backend's search, document fetch and deserialization
+   * run concurrently, so the latency of a query is close to that of the slowest backend rather than the sum of all of them.
+   * Once <code>maxDocuments</code> unique results have been collected the remaining backends are cancelled.
+   * A backend which throws is skipped, so long as the others return something: if every backend threw, or none
+   * returned any results and at least one threw, the (first) exception is rethrown.
+   *
+   * @param queriers The backends to query.
+   * @param query The query to run against a single backend.
+   * @param identity The key two results are duplicates under (e.g., the docid of a document).
+   * @param maxDocuments The number of unique results to stop after.
+   * @param <E> The type of result (a sentence or a document)
+   * @return The results from all the backends, sorted by score.
+   */
+  private <Q extends Querier, E extends CoreMap> IterableIterator<Pair<E, Double>> fanOut(
+      final Q[] queriers, final Function<Q, Iterator<Pair<E, Double>>> query, final Function<E, String> identity, final int maxDocuments) {
+    // Dispatch
+    final Object backendDone = new Object();
+    final BlockingQueue<Object> arrivals = new LinkedBlockingQueue<>();
+    final AtomicBoolean stop = new AtomicBoolean(false);
+    List<Future<?>> futures = new ArrayList<>();
+    for (final Q querier : queriers) {
+      futures.add(fanOutPool.submit(() -> {
+        try {
+          Iterator<Pair<E, Double>> results = query.apply(querier);
+          while (!stop.get() && results.hasNext()) {
+            arrivals.add(results.next());
+          }
+        } catch (Throwable t) {
+          arrivals.add(t);
+        } finally {
+          arrivals.add(backendDone);
+        }
+      }));
+    }
+
+    // Merge, as results arrive
+    List<Pair<E, Double>> merged = new ArrayList<>();
+    Set<String> seen = new HashSet<>();
+    int backendsRunning = queriers.length;
+    int backendsFailed = 0;
+    Throwable failure = null;
+    try {
+      while (backendsRunning > 0 && merged.size() < maxDocuments) {
+        Object arrival = arrivals.take();
+        if (arrival == backendDone) {
+          backendsRunning -= 1;
+        } else if (arrival instanceof Throwable) {
+          backendsFailed += 1;
+          if (failure == null) { failure = (Throwable) arrival; }
+          logger.err("IR backend threw an exception; ignoring its results");
+          logger.err((Throwable) arrival);
+        } else {
+          @SuppressWarnings("unchecked") Pair<E, Double> result = (Pair<E, Double>) arrival;
+          if (seen.add(identity.apply(result.first))) {
+            merged.add(result);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } finally {
+      // Cancel the stragglers.
+      // Note that we don't interrupt running backends: an interrupt closes Lucene's NIO file channels out from under every other reader.
+      stop.set(true);
+      for (Future<?> future : futures) { future.cancel(false); }
+    }
+    if (backendsRunning > 0) {
+      logger.debug("stopped querying after " + merged.size() + " results; cancelled " + backendsRunning + " backend(s)");
+    }
+    if (failure != null && (backendsFailed == queriers.length || merged.isEmpty())) {
+      if (failure instanceof RuntimeException) { throw (RuntimeException) failure; }
+      if (failure instanceof Error) { throw (Error) failure; }
+      throw new RuntimeException(failure);
+    }
+
+    // Sort by score
+    Collections.sort(merged, (a, b) -> Double.compare(b.second, a.second));
+    return new IterableIterator<>(merged.iterator());
+  }
+
+  /**
+   * Run the given queries against every Lucene backend together, {@link Props#INDEX_BATCH_SIZE} queries at a time;
+   * see {@link ParameterizedLuceneQuerier#prefetch(List)}.
+   * The queries are those {@link LuceneQuerier#queryDocument(KBPEntity, Maybe, Set, Maybe)} would run for them.
+   */
+  @Override
+  public void prefetchQueries(List<Triple<KBPEntity, Maybe<KBPEntity>, Maybe<String>>> queries, int maxDocuments) {
+    if (Props.INDEX_BATCH_SIZE <= 0 || queries.isEmpty()) { return; }
+    List<LuceneQuerier.QueryRequest> requests = new ArrayList<>();
+    for (Triple<KBPEntity, Maybe<KBPEntity>, Maybe<String>> query : queries) {
+      KBPEntity entity = query.first;
+      Maybe<KBPEntity> slotValue = query.second;
+      requests.add(new LuceneQuerier.QueryRequest(null, entity.name, Maybe.Just(entity.type), query.third,
+          slotValue.isDefined() ? Maybe.Just(slotValue.get().name) : Maybe.<String>Nothing(),
+          slotValue.isDefined() ? Maybe.Just(slotValue.get().type) : Maybe.<NERTag>Nothing(),
+          Maybe.Just(maxDocuments)));
+    }
+    for (LuceneQuerier backend : luceneBackends()) {
+      if (!(backend instanceof ParameterizedLuceneQuerier)) { continue; }
+      for (int start = 0; start < requests.size(); start += Props.INDEX_BATCH_SIZE) {
+        try {
+          ((ParameterizedLuceneQuerier) backend).prefetch(requests.subList(start, Math.min(requests.size(), start + Props.INDEX_BATCH_SIZE)));
+        } catch (IOException e) {
+          // (the queries will simply be run when they are asked for)
+          logger.warn("could not prefetch queries from " + backend + ": " + e.getMessage());
+        }
+      }
+    }
+  }
+
   private IterableIterator<Pair<CoreMap, Double>> queryImplementationSentence(
                                          final KBPEntity entity, final Maybe<KBPEntity> slotValue,
                                          final Maybe<String> relation,
@@ -235,6 +364,10 @@ public class
                                          final int maxDocuments, final boolean officialIndexOnly) {
     if (officialIndexOnly && Props.INDEX_MODE != Props.QueryMode.NOOP ) {
       return officialIndex.querySentences(entity, slotValue, relation, docidsToForce, Maybe.Just(maxDocuments));
+    } else if (fanOutPool != null && backends.length > 1) {
+      return fanOut(backends,
+          in -> in.querySentences(entity, slotValue, relation, docidsToForce, Maybe.Just(maxDocuments)),
+          CoreMapUtils::sentenceToMinimalString, maxDocuments);
     } else {
       return CollectionUtils.interleave(CollectionUtils.map(backends,
           in -> in.querySentences(entity, slotValue, relation, docidsToForce, Maybe.Just(maxDocuments))));
@@ -247,6 +380,11 @@ public class
       final int maxDocuments, final boolean officialIndexOnly) {
     if (officialIndexOnly && Props.INDEX_MODE != Props.QueryMode.NOOP ) {
       return officialIndex.queryDocument(entity, slotValue, docidsToForce, Maybe.Just(maxDocuments));
+    } else if (fanOutPool != null && luceneBackends().length > 1) {
+      return fanOut(luceneBackends(),
+          in -> in.queryDocument(entity, slotValue, docidsToForce, Maybe.Just(maxDocuments)),
+          doc -> doc.containsKey(CoreAnnotations.DocIDAnnotation.class) ? doc.get(CoreAnnotations.DocIDAnnotation.class) : CoreMapUtils.sentenceToMinimalString(doc),
+          maxDocuments);
     } else {
       return CollectionUtils.interleave(CollectionUtils.map(luceneBackends(),
           in -> in.queryDocument(entity, slotValue, docidsToForce, Maybe.Just(maxDocuments))));
@@ -338,7 +476,7 @@ public class
             toSave.get(0).set(CoreAnnotations.SentencesAnnotation.class, (List<CoreMap>) resultsAsList);
             put(psql, table, key, toSave);
           } else { throw new IllegalArgumentException("Unknown query target (class): " + expectedOutput); }
-          if (Props.KBP_EVALUATE && !psql.getAutoCommit()) { psql.commit(); }  // commit after every query -- slower, but can stop run in the middle
+          if (Props.KBP_EVALUATE && Props.PSQL_WRITEBEHIND_MS <= 0 && psql != null && !psql.getAutoCommit()) { psql.commit(); }  // commit after every query -- slower, but can stop run in the middle (the write-behind queue commits on its own)
         }
       }
     }});
@@ -367,47 +505,21 @@ public class
    * Queries all the indices to find the doc id, returning the first one
    * found.
    */
-  public Annotation fetchDocument(String docId, boolean officialIndexOnly) throws IllegalArgumentException {
-    // Check cache
-    SoftReference<Annotation> ref = cachedDocumentLookup.get(docId);
-    if (ref != null) {
-      Annotation cachedValue = ref.get();
-      if (cachedValue != null) {
-        return cachedValue;
-      }
-    }
-    try{
-      Annotation result;
-      // Run Query
-      if (officialIndexOnly && Props.INDEX_MODE != Props.QueryMode.NOOP ) {
-        result = officialIndex.fetchDocument(docId).orCrash("No such docid: " + docId);
-      } else {
-        Maybe<Annotation> doc = Maybe.Nothing();
-        for( LuceneQuerier querier : luceneBackends() ) {
-          doc = doc.orElse(querier.fetchDocument( docId ));
-          if (doc.isDefined()) { break; }
-        }
-        result =  doc.orCrash("No such docid: " + docId);
-      }
-      // Do cache
-      cachedDocumentLookup.put(docId, new SoftReference<>(result));
-      // Make sure the cache size stays reasonable
-      if (cachedDocumentLookup.size() > 10000) {
-        // (remove stale references)
-        Iterator<Map.Entry<String,SoftReference<Annotation>>> iter = cachedDocumentLookup.entrySet().iterator();
-        while (iter.hasNext()) {
-          if (iter.next().getValue().get() == null) { iter.remove(); }
-        }
-        // (make sure we're not storing too many things in the cache)
-        iter = cachedDocumentLookup.entrySet().iterator();
-        int originalSize = cachedDocumentLookup.size();
-        for (int i = 0; i < originalSize - 5000; ++i) {
-          iter.next();
-          iter.remove();
+  public Annotation fetchDocument(final String docId, final boolean officialIndexOnly) throws IllegalArgumentException {
+    try {
+      return cachedDocumentLookup.get(docId, id -> {
+        // Run Query
+        if (officialIndexOnly && Props.INDEX_MODE != Props.QueryMode.NOOP ) {
+          return officialIndex.fetchDocument(id).orCrash("No such docid: " + id);
+        } else {
+          Maybe<Annotation> doc = Maybe.Nothing();
+          for( LuceneQuerier querier : luceneBackends() ) {
+            doc = doc.orElse(querier.fetchDocument( id ));
+            if (doc.isDefined()) { break; }
+          }
+          return doc.orCrash("No such docid: " + id);
         }
-      }
-      // Return
-      return result;
+      });
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
@@ -12,6 +12,7 @@ import edu.stanford.nlp.dcoref.CorefChain;
 import edu.stanford.nlp.dcoref.CorefCoreAnnotations.*;
 import edu.stanford.nlp.dcoref.Dictionaries;
 import edu.stanford.nlp.ling.CoreAnnotations.*;
+import edu.stanford.nlp.kbp.common.Props;
 import edu.stanford.nlp.ling.IndexedWord;
 import edu.stanford.nlp.ling.Label;
 import edu.stanford.nlp.semgraph.SemanticGraph;
@@ -45,8 +46,17 @@ import static edu.stanford.nlp.util.logging.Redwood.Util.err;
 @SuppressWarnings("unchecked")
 public class KryoAnnotationSerializer extends AnnotationSerializer {
 
-  private final Kryo kryo;
+  /**
+   * Kryo is not thread-safe, but is expensive to construct; we keep one configured instance per thread,
+   * rather than synchronizing every read and write on a single instance.
+   */
+  private final ThreadLocal<Kryo> kryo = ThreadLocal.withInitial(this::createKryo);
+  /** A free {@link Input} buffer for each thread, or null if that thread's buffer is in use. */
+  private final ThreadLocal<PooledInput> freeInput = new ThreadLocal<>();
+  /** A free {@link Output} buffer for each thread, or null if that thread's buffer is in use. */
+  private final ThreadLocal<PooledOutput> freeOutput = new ThreadLocal<>();
   private final boolean compress;
+  private final boolean robustBackwardsCompatibility;
   private final boolean includeDependencyRoots;
 
   private static final boolean DEFAULT_COMPRESS  = true;
@@ -76,9 +86,17 @@ public class KryoAnnotationSerializer extends AnnotationSerializer {
   }
 
   public KryoAnnotationSerializer(boolean compress, boolean robustBackwardsCompatibility, final boolean includeDependencyRoots) {
-    this.kryo = new Kryo();
     this.compress = compress;
+    this.robustBackwardsCompatibility = robustBackwardsCompatibility;
     this.includeDependencyRoots = includeDependencyRoots;
+    this.kryo.get();  // fail fast if the configuration is broken
+  }
+
+  /**
+   * Create and configure a new Kryo instance. This is called once per thread that uses this serializer.
+   */
+  private Kryo createKryo() {
+    final Kryo kryo = new Kryo();
 
     // Trees are not really collections, and this causes Kryo to lose
     // its marbles: http://i.imgur.com/FSakhIy.gif.
@@ -504,31 +522,44 @@ public class KryoAnnotationSerializer extends AnnotationSerializer {
     if (robustBackwardsCompatibility) {
       kryo.setDefaultSerializer(CompatibleFieldSerializer.class);
     }
+    return kryo;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>This method is thread-safe. The returned stream reuses a per-thread buffer, which is returned to
+   * the pool when the stream is closed; it should not be used after it is closed.</p>
+   */
   @Override
-  public synchronized OutputStream write(Annotation corpus, OutputStream os) throws IOException {
+  public OutputStream write(Annotation corpus, OutputStream os) throws IOException {
     if (os instanceof Output) {
-      this.kryo.writeObject((Output) os, corpus);
+      this.kryo.get().writeObject((Output) os, corpus);
       return os;
     } else {
       OutputStream actualOutputStream = (compress && !(os instanceof GZIPOutputStream)) ? new GZIPOutputStream(os) : os;
-      Output output = new Output(actualOutputStream);
-      this.kryo.writeObject(output, corpus);
+      Output output = PooledOutput.borrow(freeOutput, actualOutputStream);
+      this.kryo.get().writeObject(output, corpus);
       return output;
     }
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>This method is thread-safe. The returned stream reuses a per-thread buffer, which is returned to
+   * the pool when the stream is closed; it should not be used after it is closed.</p>
+   */
   @Override
-  public synchronized Pair<Annotation, InputStream> read(InputStream is) throws IOException, ClassNotFoundException, ClassCastException {
+  public Pair<Annotation, InputStream> read(InputStream is) throws IOException, ClassNotFoundException, ClassCastException {
     // Read Annotation
     Input input;
     if (is instanceof Input) {
       input = (Input) is;
     } else {
-      input = new Input((compress && !(is instanceof GZIPInputStream)) ? new GZIPInputStream(is) : is);
+      input = PooledInput.borrow(freeInput, (compress && !(is instanceof GZIPInputStream)) ? new GZIPInputStream(is) : is);
     }
-    Annotation someObject = kryo.readObject(input, Annotation.class);
+    Annotation someObject = kryo.get().readObject(input, Annotation.class);
     // Fix Annotation
     fixAnnotation(someObject);
     // Return
@@ -537,62 +568,83 @@ public class KryoAnnotationSerializer extends AnnotationSerializer {
 
   /**
    * Create a new FileBackedCache over Annotations, using the Kryo serialization framework
-   * as a backend.
+   * as a backend. A new cache uses the storage engine of {@link Props#CACHE_STORAGE}.
    * @param directory The directory to use for the cache.
    * @param numFiles The maximum number of files to have in the cache
    * @param <KEY> The type of the key we are caching on
    * @return A new FileBackedCache, but with Kryo plugged into the backend
    */
   public <KEY extends Serializable> FileBackedCache<KEY, Annotation> createCache(File directory, int numFiles, final boolean doFileLock) {
-    return new FileBackedCache<KEY, Annotation>(directory, numFiles) {
+    return createCache(directory, numFiles, doFileLock, FileBackedCache.Storage.detect(directory, Props.CACHE_STORAGE));
+  }
+
+  /**
+   * Create a new FileBackedCache over Annotations, using the Kryo serialization framework
+   * as a backend, and the given storage engine.
+   * @param directory The directory to use for the cache.
+   * @param numFiles The maximum number of files to have in the cache
+   * @param storage The storage engine of the cache on disk
+   * @param <KEY> The type of the key we are caching on
+   * @return A new FileBackedCache, but with Kryo plugged into the backend
+   */
+  public <KEY extends Serializable> FileBackedCache<KEY, Annotation> createCache(File directory, int numFiles, final boolean doFileLock, FileBackedCache.Storage storage) {
+    return new FileBackedCache<KEY, Annotation>(directory, numFiles, storage) {
       @Override
       protected Pair<? extends InputStream, CloseAction> newInputStream(File f) throws IOException {
-        synchronized (kryo) {
-          final FileSemaphore lock = doFileLock ? acquireFileLock(f) : null;
-          final InputStream rtn = new Input(compress ? new GZIPInputStream(new BufferedInputStream(new FileInputStream(f))) : new BufferedInputStream(new FileInputStream(f)));
-          return new Pair<InputStream, CloseAction>(rtn,
-              () -> { synchronized (kryo) { if (lock != null) { lock.release(); } rtn.close(); } });
-        }
+        final FileSemaphore lock = doFileLock ? acquireFileLock(f) : null;
+        final InputStream rtn = new Input(compress ? new GZIPInputStream(new BufferedInputStream(new FileInputStream(f))) : new BufferedInputStream(new FileInputStream(f)));
+        return new Pair<InputStream, CloseAction>(rtn,
+            () -> { if (lock != null) { lock.release(); } rtn.close(); });
       }
 
       @Override
       protected Pair<? extends OutputStream, CloseAction> newOutputStream(File f, boolean isAppend) throws IOException {
-        synchronized (kryo) {
-          final FileSemaphore lock = doFileLock ? acquireFileLock(f) : null;
-          final FileOutputStream stream = new FileOutputStream(f, isAppend);
-          final OutputStream rtn = new Output(compress ? new GZIPOutputStream(new BufferedOutputStream(stream)) : new BufferedOutputStream(stream));
-          return new Pair<OutputStream, CloseAction>(rtn,
-              () -> { synchronized (kryo) { rtn.flush(); if (lock != null) { lock.release(); } rtn.close(); } });
-        }
+        final FileSemaphore lock = doFileLock ? acquireFileLock(f) : null;
+        final FileOutputStream stream = new FileOutputStream(f, isAppend);
+        final OutputStream rtn = new Output(compress ? new GZIPOutputStream(new BufferedOutputStream(stream)) : new BufferedOutputStream(stream));
+        return new Pair<OutputStream, CloseAction>(rtn,
+            () -> { rtn.flush(); if (lock != null) { lock.release(); } rtn.close(); });
       }
 
       @Override
       protected Pair<KEY, Annotation> readNextObjectOrNull(InputStream input) throws IOException, ClassNotFoundException {
-        synchronized (kryo) {
-          if ( ((Input) input).canReadInt() ) {
-            if ( ((Input) input).readInt() != 42 ) {
-              throw new IllegalStateException("Kryo cache doesn't have header for object");
-            }
-            try {
-              Pair<KEY, Annotation> pair = kryo.readObject((Input) input, Pair.class);
-              fixAnnotation(pair.second);
-              return pair;
-            } catch (KryoException e) {
-              err("caught exception; printing and returning null...");
-              err(e);
-              return null;
-            }
-          } else {
+        if ( ((Input) input).canReadInt() ) {
+          if ( ((Input) input).readInt() != 42 ) {
+            throw new IllegalStateException("Kryo cache doesn't have header for object");
+          }
+          try {
+            Pair<KEY, Annotation> pair = kryo.get().readObject((Input) input, Pair.class);
+            fixAnnotation(pair.second);
+            return pair;
+          } catch (KryoException e) {
+            err("caught exception; printing and returning null...");
+            err(e);
             return null;
           }
+        } else {
+          return null;
         }
       }
 
       @Override
       protected synchronized void writeNextObject(OutputStream output, Pair<KEY, Annotation> value) throws IOException {
-        synchronized (kryo) {
-          ((Output) output).writeInt(42);
-          kryo.writeObject((Output) output, value);
+        ((Output) output).writeInt(42);
+        kryo.get().writeObject((Output) output, value);
+      }
+
+      @Override
+      protected byte[] serializeEntry(Pair<KEY, Annotation> entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Output output = new Output(compress ? new GZIPOutputStream(bytes) : bytes);
+        writeNextObject(output, entry);
+        output.close();
+        return bytes.toByteArray();
+      }
+
+      @Override
+      protected Pair<KEY, Annotation> deserializeEntry(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (Input input = compress ? new Input(new GZIPInputStream(new ByteArrayInputStream(bytes))) : new Input(bytes)) {
+          return readNextObjectOrNull(input);
         }
       }
     };
@@ -600,56 +652,77 @@ public class KryoAnnotationSerializer extends AnnotationSerializer {
 
   /**
    * Create a new FileBackedCache over Annotations, using the Kryo serialization framework
-   * as a backend.
+   * as a backend. A new cache uses the storage engine of {@link Props#CACHE_STORAGE}.
    * @param directory The directory to use for the cache.
    * @param numFiles The maximum number of files to have in the cache
    * @param <KEY> The type of the key we are caching on
    * @return A new FileBackedCache, but with Kryo plugged into the backend
    */
   public <KEY extends Serializable> FileBackedCache<KEY, ArrayList<Annotation>> createDocumentCache(File directory, int numFiles, final boolean doFileLock) {
-    return new FileBackedCache<KEY, ArrayList<Annotation>>(directory, numFiles) {
+    return createDocumentCache(directory, numFiles, doFileLock, FileBackedCache.Storage.detect(directory, Props.CACHE_STORAGE));
+  }
+
+  /**
+   * Create a new FileBackedCache over documents, using the Kryo serialization framework
+   * as a backend, and the given storage engine.
+   * @param directory The directory to use for the cache.
+   * @param numFiles The maximum number of files to have in the cache
+   * @param storage The storage engine of the cache on disk
+   * @param <KEY> The type of the key we are caching on
+   * @return A new FileBackedCache, but with Kryo plugged into the backend
+   */
+  public <KEY extends Serializable> FileBackedCache<KEY, ArrayList<Annotation>> createDocumentCache(File directory, int numFiles, final boolean doFileLock, FileBackedCache.Storage storage) {
+    return new FileBackedCache<KEY, ArrayList<Annotation>>(directory, numFiles, storage) {
       @Override
       protected Pair<? extends InputStream, CloseAction> newInputStream(File f) throws IOException {
-        synchronized (kryo) {
-          final FileSemaphore lock = doFileLock ? acquireFileLock(f) : null;
-          final InputStream rtn = new Input(compress ? new GZIPInputStream(new BufferedInputStream(new FileInputStream(f))) : new BufferedInputStream(new FileInputStream(f)));
-          return new Pair<InputStream, CloseAction>(rtn,
-              () -> { synchronized (kryo) { if (lock != null) { lock.release(); } rtn.close(); } });
-        }
+        final FileSemaphore lock = doFileLock ? acquireFileLock(f) : null;
+        final InputStream rtn = new Input(compress ? new GZIPInputStream(new BufferedInputStream(new FileInputStream(f))) : new BufferedInputStream(new FileInputStream(f)));
+        return new Pair<InputStream, CloseAction>(rtn,
+            () -> { if (lock != null) { lock.release(); } rtn.close(); });
       }
 
       @Override
       protected Pair<? extends OutputStream, CloseAction> newOutputStream(File f, boolean isAppend) throws IOException {
-        synchronized (kryo) {
-          final FileSemaphore lock = doFileLock ? acquireFileLock(f) : null;
-          final FileOutputStream stream = new FileOutputStream(f, isAppend);
-          final OutputStream rtn = new Output(compress ? new GZIPOutputStream(new BufferedOutputStream(stream)) : new BufferedOutputStream(stream));
-          return new Pair<OutputStream, CloseAction>(rtn,
-              () -> { synchronized (kryo) { rtn.flush(); if (lock != null) { lock.release(); } rtn.close(); } });
-        }
+        final FileSemaphore lock = doFileLock ? acquireFileLock(f) : null;
+        final FileOutputStream stream = new FileOutputStream(f, isAppend);
+        final OutputStream rtn = new Output(compress ? new GZIPOutputStream(new BufferedOutputStream(stream)) : new BufferedOutputStream(stream));
+        return new Pair<OutputStream, CloseAction>(rtn,
+            () -> { rtn.flush(); if (lock != null) { lock.release(); } rtn.close(); });
       }
 
       @Override
       protected Pair<KEY, ArrayList<Annotation>> readNextObjectOrNull(InputStream input) throws IOException, ClassNotFoundException {
-        synchronized (kryo) {
-          if ( ((Input) input).canReadInt() ) {
-            if ( ((Input) input).readInt() != 42 ) {
-              throw new IllegalStateException("Kryo cache doesn't have header for object");
-            }
-            Pair<KEY, ArrayList<Annotation>> pair = kryo.readObject((Input) input, Pair.class);
-            for( Annotation ann : pair.second ) fixAnnotation(ann);
-            return pair;
-          } else {
-            return null;
+        if ( ((Input) input).canReadInt() ) {
+          if ( ((Input) input).readInt() != 42 ) {
+            throw new IllegalStateException("Kryo cache doesn't have header for object");
           }
+          Pair<KEY, ArrayList<Annotation>> pair = kryo.get().readObject((Input) input, Pair.class);
+          for( Annotation ann : pair.second ) fixAnnotation(ann);
+          return pair;
+        } else {
+          return null;
         }
       }
 
       @Override
       protected synchronized void writeNextObject(OutputStream output, Pair<KEY, ArrayList<Annotation>> value) throws IOException {
-        synchronized (kryo) {
-          ((Output) output).writeInt(42);
-          kryo.writeObject((Output) output, value);
+        ((Output) output).writeInt(42);
+        kryo.get().writeObject((Output) output, value);
+      }
+
+      @Override
+      protected byte[] serializeEntry(Pair<KEY, ArrayList<Annotation>> entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Output output = new Output(compress ? new GZIPOutputStream(bytes) : bytes);
+        writeNextObject(output, entry);
+        output.close();
+        return bytes.toByteArray();
+      }
+
+      @Override
+      protected Pair<KEY, ArrayList<Annotation>> deserializeEntry(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (Input input = compress ? new Input(new GZIPInputStream(new ByteArrayInputStream(bytes))) : new Input(bytes)) {
+          return readNextObjectOrNull(input);
         }
       }
     };
@@ -761,6 +834,86 @@ public class KryoAnnotationSerializer extends AnnotationSerializer {
     return graph;
   }
 
+  /**
+   * A Kryo {@link Input} which returns itself to a per-thread pool when it is closed,
+   * so that the (comparatively large) read buffer is not reallocated for every document.
+   */
+  private static class PooledInput extends Input {
+    private final ThreadLocal<PooledInput> pool;
+    private boolean released = false;
+
+    private PooledInput(ThreadLocal<PooledInput> pool) {
+      super(4096);
+      this.pool = pool;
+    }
+
+    /** Take the current thread's free input from the pool (or create one), and point it at the given stream */
+    private static PooledInput borrow(ThreadLocal<PooledInput> pool, InputStream is) {
+      PooledInput input = pool.get();
+      if (input == null) {
+        input = new PooledInput(pool);
+      } else {
+        pool.set(null);
+      }
+      input.released = false;
+      input.setInputStream(is);
+      return input;
+    }
+
+    @Override
+    public void close() throws KryoException {
+      try {
+        super.close();
+      } finally {
+        if (!released) {
+          released = true;
+          setInputStream(null);
+          if (pool.get() == null) { pool.set(this); }
+        }
+      }
+    }
+  }
+
+  /**
+   * A Kryo {@link Output} which returns itself to a per-thread pool when it is closed,
+   * so that the write buffer is not reallocated for every document.
+   */
+  private static class PooledOutput extends Output {
+    private final ThreadLocal<PooledOutput> pool;
+    private boolean released = false;
+
+    private PooledOutput(ThreadLocal<PooledOutput> pool) {
+      super(4096);
+      this.pool = pool;
+    }
+
+    /** Take the current thread's free output from the pool (or create one), and point it at the given stream */
+    private static PooledOutput borrow(ThreadLocal<PooledOutput> pool, OutputStream os) {
+      PooledOutput output = pool.get();
+      if (output == null) {
+        output = new PooledOutput(pool);
+      } else {
+        pool.set(null);
+      }
+      output.released = false;
+      output.setOutputStream(os);
+      return output;
+    }
+
+    @Override
+    public void close() throws KryoException {
+      try {
+        super.close();
+      } finally {
+        if (!released) {
+          released = true;
+          setOutputStream(null);
+          if (pool.get() == null) { pool.set(this); }
+        }
+      }
+    }
+  }
+
   public static class IntermediateSemanticGraph extends SemanticGraph {
     final List<IntermediateNode> nodes;
     final List<IntermediateEdge> edges;
@@ -9,6 +9,8 @@ import org.apache.lucene.search.BooleanClause;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A querier which tries increasingly loose queries until it has
@@ -43,46 +45,137 @@ public class BackoffLuceneQuerier extends ParameterizedLuceneQuerier {
 
   @Override
   protected IterableIterator<Pair<Integer, Double>> queryImplementation(String entityName, Maybe<NERTag> entityType, Maybe<String> relation, Maybe<String> slotValue, Maybe<NERTag> slotValueType, Maybe<Integer> maxDocuments) throws IOException {
-    return queryImplementation(backoffOrder, null, entityName, entityType, relation, slotValue, slotValueType, maxDocuments);
+    return queryImplementation(backoffOrder, new QueryStats(), entityName, entityType, relation, slotValue, slotValueType, maxDocuments);
+  }
+
+  @Override
+  protected LuceneQuerierParams firstParams(String entityName, Maybe<NERTag> entityType, Maybe<String> relation,
+                                           Maybe<String> slotValue, Maybe<NERTag> slotValueType) {
+    return backoffOrder[0];
+  }
+
+  /**
+   * The threads speculative backoff stages run on; see {@link Props#INDEX_BACKOFF_SPECULATIVE}.
+   * The stages share this querier's {@link org.apache.lucene.search.IndexSearcher}, which is thread-safe.
+   */
+  private static final ExecutorService speculativePool = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable, "backoff-speculative");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /** A backoff query which has been started ahead of time, and may yet be cancelled */
+  private static class SpeculativeStage {
+    public final QueryStats stats = new QueryStats();
+    public final AtomicBoolean cancelled = new AtomicBoolean(false);
+    public Future<IterableIterator<Pair<Integer, Double>>> result;
+
+    public IterableIterator<Pair<Integer, Double>> await() throws IOException {
+      try {
+        return result.get();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) { throw (IOException) e.getCause(); }
+        if (e.getCause() instanceof Error) { throw (Error) e.getCause(); }
+        if (e.getCause() instanceof RuntimeException) { throw (RuntimeException) e.getCause(); }
+        throw new RuntimeException(e.getCause());
+      }
+    }
+
+    public void cancel() {
+      // Don't interrupt: that would close the index's file channels for every other reader
+      cancelled.set(true);
+      result.cancel(false);
+    }
+  }
+
+  /** Register the statistics from a single backoff stage with the statistics for the whole query */
+  private static void registerStage(QueryStats queryStats, int stage, QueryStats stageStats) {
+    if (queryStats == null) { return; }
+    queryStats.lastQueryHits = stageStats.lastQueryHits;
+    queryStats.lastQueryTotalHits = stageStats.lastQueryTotalHits;
+    queryStats.lastQueryElapsedMs = stageStats.lastQueryElapsedMs;
+    queryStats.totalElapsedMs += stageStats.lastQueryElapsedMs;
+    queryStats.timedOutQueries += stageStats.timedOutQueries;
+    queryStats.cancelledQueries += stageStats.cancelledQueries;
+    queryStats.backoffStageElapsedMs.put(stage, stageStats.lastQueryElapsedMs);
   }
 
   protected IterableIterator<Pair<Integer, Double>> queryImplementation(LuceneQuerierParams[] backoff,
                                                                         QueryStats queryStats,
-                                                                        String entityName, Maybe<NERTag> entityType, Maybe<String> relation, Maybe<String> slotValue, Maybe<NERTag> slotValueType, Maybe<Integer> maxDocuments) throws IOException {
+                                                                        final String entityName, final Maybe<NERTag> entityType, final Maybe<String> relation, final Maybe<String> slotValue, final Maybe<NERTag> slotValueType, final Maybe<Integer> maxDocuments) throws IOException {
     // Overhead
     if (!maxDocuments.isDefined()) { throw new IllegalArgumentException("Cannot run backoff querier without max documents defined!"); }
     Set<Integer> seenDocuments = new HashSet<Integer>();
+    // The stages started ahead of time, if we are speculatively running stages in parallel
+    int window = Math.max(1, Props.INDEX_BACKOFF_SPECULATIVE);
+    SpeculativeStage[] speculativeStages = new SpeculativeStage[backoff.length];
     // Run Queries
     List<Pair<Integer, Double>> responses = new ArrayList<Pair<Integer, Double>>(maxDocuments.get());
-    OUT: for (int i = 0; i < backoff.length; ++i) {
-      LuceneQuerierParams param = backoff[i];
-      logger.log("backoff: got " + responses.size() + "/" + maxDocuments.get() + " so far");
-      // Run query
-      IterableIterator<Pair<Integer, Double>> candidateResponse;
-      try {
-        candidateResponse = super.queryImplementation(param, queryStats, entityName, entityType, relation, slotValue, slotValueType, maxDocuments);
-      } catch (OutOfMemoryError e) {
-        // If we out of memory, backoff gracefully
-        logger.warn(e);
-        continue;
-      }
-      // Register responses
-      for (Pair<Integer, Double> response : candidateResponse) { // for each response from this query
-        if (seenDocuments.contains(response.first)) {
+    try {
+      OUT: for (int i = 0; i < backoff.length; ++i) {
+        LuceneQuerierParams param = backoff[i];
+        logger.log("backoff: got " + responses.size() + "/" + maxDocuments.get() + " so far");
+        // Start the next few stages, if running speculatively
+        if (window > 1) {
+          for (int k = i; k < Math.min(backoff.length, i + window); ++k) {
+            if (speculativeStages[k] == null) {
+              final SpeculativeStage stage = new SpeculativeStage();
+              final LuceneQuerierParams stageParam = backoff[k];
+              stage.result = speculativePool.submit(() -> super.queryImplementation(stageParam, stage.stats, stage.cancelled,
+                  entityName, entityType, relation, slotValue, slotValueType, maxDocuments));
+              speculativeStages[k] = stage;
+            }
+          }
+        }
+        // Run query
+        IterableIterator<Pair<Integer, Double>> candidateResponse;
+        QueryStats stageStats;
+        try {
+          if (speculativeStages[i] != null) {
+            candidateResponse = speculativeStages[i].await();
+            stageStats = speculativeStages[i].stats;
+          } else {
+            stageStats = new QueryStats();
+            candidateResponse = super.queryImplementation(param, stageStats, entityName, entityType, relation, slotValue, slotValueType, maxDocuments);
+          }
+        } catch (OutOfMemoryError e) {
+          // If we out of memory, backoff gracefully
+          logger.warn(e);
           continue;
         }
-        seenDocuments.add(response.first);
-        responses.add(response);
-        if (responses.size() >= maxDocuments.get()) {
-          break OUT;
+        registerStage(queryStats, i, stageStats);
+        // Register responses
+        for (Pair<Integer, Double> response : candidateResponse) { // for each response from this query
+          if (seenDocuments.contains(response.first)) {
+            continue;
+          }
+          seenDocuments.add(response.first);
+          responses.add(response);
+          if (responses.size() >= maxDocuments.get()) {
+            break OUT;
+          }
+        }
+        if (responses.size() == 0 && i < backoff.length / 2 && backoff.length > (i + Props.INDEX_LUCENE_SKIPPINGBACKOFF + 2)) {
+          // Cancel the stages we're skipping now, rather than letting them run on until the query is done
+          for (int k = i + 1; k <= i + Props.INDEX_LUCENE_SKIPPINGBACKOFF; ++k) {
+            if (speculativeStages[k] != null) {
+              speculativeStages[k].cancel();
+              speculativeStages[k] = null;
+            }
+          }
+          i += Props.INDEX_LUCENE_SKIPPINGBACKOFF; // "No no no, go past this. Past this part." http://www.youtube.com/watch?v=qzO4BSTnkgg#t=0m30s
         }
       }
-      if (responses.size() == 0 && i < backoff.length / 2 && backoff.length > (i + Props.INDEX_LUCENE_SKIPPINGBACKOFF + 2)) {
-        i += Props.INDEX_LUCENE_SKIPPINGBACKOFF; // "No no no, go past this. Past this part." http://www.youtube.com/watch?v=qzO4BSTnkgg#t=0m30s
+    } finally {
+      // Cancel any stages still running which we no longer need (e.g., once we have enough documents)
+      for (SpeculativeStage stage : speculativeStages) {
+        if (stage != null) { stage.cancel(); }
       }
     }
     logger.log("backoff: got " + responses.size() + "/" + maxDocuments.get() + " total" +
-            ((queryStats != null)? (" in " + queryStats.totalElapsedMs + " msecs"):""));
+            ((queryStats != null)? (" in " + queryStats.totalElapsedMs + " msecs; per stage: " + queryStats.backoffStageElapsedMs):""));
     // Return
     return new IterableIterator<Pair<Integer, Double>>(responses.iterator());
   }
@@ -126,6 +126,8 @@ public class HeuristicBackoffLuceneQuerier extends BackoffLuceneQuerier {
           if (overallQueryStats != null) {
             overallQueryStats.lastQueryElapsedMs = queryStats.lastQueryElapsedMs;
             overallQueryStats.totalElapsedMs += queryStats.totalElapsedMs;
+            overallQueryStats.timedOutQueries += queryStats.timedOutQueries;
+            overallQueryStats.cancelledQueries += queryStats.cancelledQueries;
           }
         } else {
           queryStats = queryResults[index].first;
@@ -172,10 +174,8 @@ public class HeuristicBackoffLuceneQuerier extends BackoffLuceneQuerier {
   }
 
 
-  @Override
-  protected IterableIterator<Pair<Integer, Double>> queryImplementation(String entityName, Maybe<NERTag> entityType, Maybe<String> relation, Maybe<String> slotValue, Maybe<NERTag> slotValueType, Maybe<Integer> maxDocuments) throws IOException {
-    // TODO: can start in the middle of the backoff chain to get more results faster (loses some ordering)
-    //   check queryStats to see if too many results (> some threshold) if too many, try normal backoff...
+  /** The backoff order to use for a query, and the stage to start at */
+  private Pair<LuceneQuerierParams[], Integer> selectBackoff(Maybe<String> relation, Maybe<String> slotValue, Maybe<NERTag> slotValueType) {
     Pair<LuceneQuerierParams[], Integer> selectedBackoff;
     if (slotValue.isDefined()) {
       // We have the slot fill defined
@@ -193,8 +193,21 @@ public class HeuristicBackoffLuceneQuerier extends BackoffLuceneQuerier {
     } else {
       selectedBackoff = backoffs.get(BackoffCondition.DEFAULT);
     }
-    QueryStats queryStats = new QueryStats();
-    return queryImplementation(selectedBackoff.first, selectedBackoff.second, queryStats,
+    return selectedBackoff;
+  }
+
+  @Override
+  protected LuceneQuerierParams firstParams(String entityName, Maybe<NERTag> entityType, Maybe<String> relation,
+                                           Maybe<String> slotValue, Maybe<NERTag> slotValueType) {
+    Pair<LuceneQuerierParams[], Integer> selectedBackoff = selectBackoff(relation, slotValue, slotValueType);
+    return selectedBackoff.first[Math.max(0, selectedBackoff.second)];
+  }
+
+  @Override
+  protected IterableIterator<Pair<Integer, Double>> queryImplementation(String entityName, Maybe<NERTag> entityType, Maybe<String> relation, Maybe<String> slotValue, Maybe<NERTag> slotValueType, Maybe<Integer> maxDocuments) throws IOException {
+    Pair<LuceneQuerierParams[], Integer> selectedBackoff = selectBackoff(relation, slotValue, slotValueType);
+    // (no one reads the overall stats of a query through this entry point)
+    return queryImplementation(selectedBackoff.first, selectedBackoff.second, null,
             entityName, entityType, relation, slotValue, slotValueType, maxDocuments);
   }
 
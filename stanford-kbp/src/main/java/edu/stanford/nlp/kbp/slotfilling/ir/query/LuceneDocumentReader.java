@@ -14,7 +14,6 @@ import org.apache.lucene.util.BytesRef;
 
 import java.io.*;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Simple interface to get fields from a Lucene document
@@ -63,8 +62,25 @@ public interface LuceneDocumentReader {
 
   // New KBP index 2013 Reader
   public static class Kbp2013LuceneReader implements LuceneDocumentReader {
-    // Serializer has to match what ever was used to serialize the annotations
-    Map<Long, AnnotationSerializer> serializerMap = new ConcurrentHashMap<>();
+    // Serializer has to match what ever was used to serialize the annotations.
+    // This is created lazily, as the reader is constructed before Props are initialized.
+    // The serializer is thread-safe, so a single instance is shared across threads.
+    private volatile AnnotationSerializer serializer = null;
+
+    private AnnotationSerializer serializer() {
+      AnnotationSerializer serializer = this.serializer;
+      if (serializer == null) {
+        synchronized (this) {
+          serializer = this.serializer;
+          if (serializer == null) {
+            LuceneQuerier.logger.log("creating Kryo serializer");
+            serializer = new KryoAnnotationSerializer(true, false, !Props.HACKS_OLDINDEXSERIALIZATION);
+            this.serializer = serializer;
+          }
+        }
+      }
+      return serializer;
+    }
 
     public String getDocidField() {
       return KBPField.DOCID.fieldName();
@@ -75,15 +91,7 @@ public interface LuceneDocumentReader {
     }
 
     public Maybe<Annotation> getAnnotation(Document doc) throws ClassNotFoundException, IOException  {
-      if (serializerMap.size() > 100) {
-        serializerMap.clear();
-      }
-      AnnotationSerializer serializer = serializerMap.get(Thread.currentThread().getId());
-      if (serializer == null) {
-        LuceneQuerier.logger.log("creating Kryo serializer on thread " + Thread.currentThread().getId());
-        serializer = new KryoAnnotationSerializer(true, false, !Props.HACKS_OLDINDEXSERIALIZATION);
-        serializerMap.put(Thread.currentThread().getId(), serializer);
-      }
+      AnnotationSerializer serializer = serializer();
       if (doc == null) { return Maybe.Nothing(); }
       String coreMapVersion = doc.get(KBPField.COREMAP_VERSION.fieldName());
       if (coreMapVersion == null) {
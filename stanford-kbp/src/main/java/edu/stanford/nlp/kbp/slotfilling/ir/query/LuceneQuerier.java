@@ -13,6 +13,7 @@ import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.MultiFields;
@@ -32,10 +33,12 @@ import static edu.stanford.nlp.util.logging.Redwood.Util.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.text.DecimalFormat;
 import java.util.*;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -128,6 +131,108 @@ public abstract class LuceneQuerier implements Querier {
                                                            Maybe<NERTag> slotValueType,
                                                            Maybe<Integer> maxDocuments) throws IOException;
 
+  /**
+   * A single query to run as part of a batch; see {@link LuceneQuerier#queryBatch(List)}.
+   * The fields mirror the arguments to
+   * {@link LuceneQuerier#queryImplementation(String, Maybe, Maybe, Maybe, Maybe, Maybe) queryImplementation()}.
+   */
+  public static class QueryRequest {
+    /** The parameters to build the query with, or null for whatever the querier would use on its own */
+    public final LuceneQuerierParams params;
+    public final String entityName;
+    public final Maybe<NERTag> entityType;
+    public final Maybe<String> relation;
+    public final Maybe<String> slotValue;
+    public final Maybe<NERTag> slotValueType;
+    public final Maybe<Integer> maxDocuments;
+
+    public QueryRequest(LuceneQuerierParams params, String entityName, Maybe<NERTag> entityType, Maybe<String> relation,
+                        Maybe<String> slotValue, Maybe<NERTag> slotValueType, Maybe<Integer> maxDocuments) {
+      this.params = params;
+      this.entityName = entityName;
+      this.entityType = entityType;
+      this.relation = relation;
+      this.slotValue = slotValue;
+      this.slotValueType = slotValueType;
+      this.maxDocuments = maxDocuments;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof QueryRequest)) return false;
+      QueryRequest that = (QueryRequest) o;
+      return (params == null ? that.params == null : params.equals(that.params)) &&
+          entityName.equals(that.entityName) && entityType.equals(that.entityType) && relation.equals(that.relation) &&
+          slotValue.equals(that.slotValue) && slotValueType.equals(that.slotValueType) && maxDocuments.equals(that.maxDocuments);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = params != null ? params.hashCode() : 0;
+      result = 31 * result + entityName.hashCode();
+      result = 31 * result + slotValue.hashCode();
+      result = 31 * result + relation.hashCode();
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "QueryRequest{" + entityName + ", " + slotValue.orNull() + ", " + relation.orNull() + ", max=" + maxDocuments.orNull() + "}";
+    }
+  }
+
+  /**
+   * The Lucene query {@link LuceneQuerier#queryImplementation(String, Maybe, Maybe, Maybe, Maybe, Maybe) queryImplementation()}
+   * would run for a request, if it runs a single query.
+   * Requests with a query are searched together in {@link LuceneQuerier#queryBatch(List)}; by default there is none,
+   * and every request in a batch is run on its own.
+   */
+  protected Maybe<Query> buildQuery(QueryRequest request) {
+    return Maybe.Nothing();
+  }
+
+  /**
+   * Run many queries at once -- e.g., the queries for every entity of an evaluation, or for a block of training tuples.
+   * Rather than searching the index once per query, the queries are run together segment by segment (see
+   * {@link LuceneQuerier#queryBatchWithTimeout(List, List, int)}), and identical queries are only run once.
+   * Each query is subject to its own {@link Props#INDEX_LUCENE_TIMEOUTMS}.
+   *
+   * @param requests The queries to run.
+   * @return The top documents for each request, in the same order as the requests.
+   * @throws IOException Passed from Lucene.
+   */
+  public List<TopDocs> queryBatch(List<QueryRequest> requests) throws IOException {
+    // -- Build Queries
+    List<Query> queries = new ArrayList<>();
+    List<Maybe<Integer>> maxDocuments = new ArrayList<>();
+    int[] batchIndex = new int[requests.size()];
+    for (int i = 0; i < requests.size(); ++i) {
+      Maybe<Query> query = buildQuery(requests.get(i));
+      if (query.isDefined()) {
+        batchIndex[i] = queries.size();
+        queries.add(query.get());
+        maxDocuments.add(requests.get(i).maxDocuments);
+      } else {
+        batchIndex[i] = -1;
+      }
+    }
+    // -- Run Queries
+    List<TopDocs> batched = queryBatchWithTimeout(queries, maxDocuments, Props.INDEX_LUCENE_TIMEOUTMS);
+    List<TopDocs> results = new ArrayList<>(requests.size());
+    for (int i = 0; i < requests.size(); ++i) {
+      if (batchIndex[i] >= 0) {
+        results.add(batched.get(batchIndex[i]));
+      } else {
+        // (this querier doesn't run a single query per request; run it on its own)
+        QueryRequest request = requests.get(i);
+        results.add(asTopDocs(queryImplementation(request.entityName, request.entityType, request.relation,
+            request.slotValue, request.slotValueType, request.maxDocuments)));
+      }
+    }
+    return results;
+  }
+
   /**
    * Get the total number of documents containing a set of search terms.
    * The semantics of the search is always that every term in the collection must occur as an exact phrase.
@@ -234,11 +339,25 @@ public abstract class LuceneQuerier implements Querier {
         Maybe<String> relationName,
         Set<String> docidsToForce,
         Maybe<Integer> maxDocuments) {
+    return querySentences(entity, slotValue, relationName, docidsToForce, maxDocuments, new QueryStats());
+  }
+
+  /**
+   * Query sentences (as CoreMaps), registering the number of sentences seen and skipped by the
+   * sentence pre-filter with the given statistics as the returned sentences are read.
+   * @see LuceneQuerier#querySentences(KBPEntity, Maybe, Maybe, Set, Maybe)
+   */
+  public IterableIterator<Pair<CoreMap, Double>> querySentences(KBPEntity entity,
+        Maybe<KBPEntity> slotValue,
+        Maybe<String> relationName,
+        Set<String> docidsToForce,
+        Maybe<Integer> maxDocuments,
+        QueryStats queryStats) {
     final AtomicInteger docsSeen = new AtomicInteger(0);
     startTrack("Query Sentences");
     try {
       return CollectionUtils.flatMapIgnoreNull(queryDocument(entity, slotValue, docidsToForce, maxDocuments),
-          fetchSentences(entity, slotValue, maxDocuments, docsSeen));
+          fetchSentences(entity, slotValue, maxDocuments, docsSeen, queryStats));
     } finally {
       endTrack("Query Sentences");
     }
@@ -304,51 +423,191 @@ public abstract class LuceneQuerier implements Querier {
   //  UTILITIES FOR SUBCLASSES
   //
 
+  /**
+   * The clock driving every query timeout. This is a single Lucene {@link Counter}, ticked in milliseconds
+   * by one shared daemon thread, rather than a new ticker thread for every query.
+   */
+  private static final Counter queryClock;
+  static {
+    queryClock = TimeLimitingCollector.getGlobalCounter();
+    TimeLimitingCollector.getGlobalTimerThread().setResolution(10);
+  }
+
+  /** Thrown from within a search to abort it, if the query was cancelled */
+  private static class QueryCancelledException extends RuntimeException {
+    private QueryCancelledException() { super("query cancelled"); }
+  }
+
+  /** A collector which aborts the search once the given flag is set. */
+  private static class CancellableCollector extends Collector {
+    private final Collector impl;
+    private final AtomicBoolean cancelled;
+    private CancellableCollector(Collector impl, AtomicBoolean cancelled) {
+      this.impl = impl;
+      this.cancelled = cancelled;
+    }
+    @Override public void setScorer(Scorer scorer) throws IOException { impl.setScorer(scorer); }
+    @Override public void collect(int doc) throws IOException {
+      if (cancelled.get()) { throw new QueryCancelledException(); }
+      impl.collect(doc);
+    }
+    @Override public void setNextReader(AtomicReaderContext context) throws IOException {
+      if (cancelled.get()) { throw new QueryCancelledException(); }
+      impl.setNextReader(context);
+    }
+    @Override public boolean acceptsDocsOutOfOrder() { return impl.acceptsDocsOutOfOrder(); }
+  }
+
+  /**
+   * @see LuceneQuerier#queryWithTimeout(Query, Maybe, int, QueryStats, AtomicBoolean)
+   */
+  protected TopDocs queryWithTimeout(Query query, Maybe<Integer> maxDocuments, int timeoutInMS) throws IOException {
+    return queryWithTimeout(query, maxDocuments, timeoutInMS, null, null);
+  }
+
   /**
    * <p>Run the specified query with a timeout in place. This is recommended to avoid runaway query times,
    * especially at datum caching time.</p>
    *
-   * <p>If the query time is exceeded, the results which are available at the timeout are returned; though this may
-   * be an imcomplete list.</p>
+   * <p>If the query time is exceeded (or the query is cancelled), the results which are available at that point are returned;
+   * though this may be an imcomplete list.</p>
    *
    * @param query The query to run
    * @param maxDocuments The maximum number of documents to query (Maybe.Nothing() for no limit)
-   * @param timeoutInMS The timeout, in milliseconds. This is guaranteed to be in real time, but limited by
-   *                    whether the timer thread gets focus; thus, the query will run for a maximum of
+   * @param timeoutInMS The timeout, in milliseconds. This is measured against a shared clock with a resolution
+   *                    of around 10 milliseconds; thus, the query will run for a maximum of
    *                    at least this amount of time, and hopefully not much more.
+   * @param queryStats If not null, the statistics to register a timeout or cancellation with.
+   * @param cancelled If not null, a flag which will abort the query once set, e.g., if another query made this one redundant.
    * @return The result of the query
    * @throws IOException Passed from searcher.search()
    */
-  protected TopDocs queryWithTimeout(Query query, Maybe<Integer> maxDocuments, int timeoutInMS) throws IOException {
-    // -- Setup Timeout
-    final Counter ticks = Counter.newCounter();
+  protected TopDocs queryWithTimeout(Query query, Maybe<Integer> maxDocuments, int timeoutInMS,
+                                     QueryStats queryStats, AtomicBoolean cancelled) throws IOException {
+    // -- Setup Collectors
     TopScoreDocCollector scoreCollector =  TopScoreDocCollector.create(maxDocuments.getOrElse(Integer.MAX_VALUE), true);
-    TimeLimitingCollector timedCollector = new TimeLimitingCollector(scoreCollector, ticks, timeoutInMS);
-    final long searchStart = System.currentTimeMillis();
-    if (Props.INDEX_LUCENE_TIMEOUTMS < Integer.MAX_VALUE) {
-      Thread ticker = new Thread() {
-        @Override public void run() {
-          while (ticks.addAndGet(System.currentTimeMillis() - searchStart) < Props.INDEX_LUCENE_TIMEOUTMS) {
-            //noinspection EmptyCatchBlock
-            try { Thread.sleep(10); } catch (InterruptedException e) { }
-            ticks.addAndGet(System.currentTimeMillis() - searchStart);
-          }
-        }
-      };
-      ticker.setDaemon(true);
-      ticker.start();
+    Collector collector = scoreCollector;
+    if (cancelled != null) {
+      collector = new CancellableCollector(collector, cancelled);
+    }
+    if (timeoutInMS < Integer.MAX_VALUE) {
+      TimeLimitingCollector timedCollector = new TimeLimitingCollector(collector, queryClock, timeoutInMS);
+      timedCollector.setBaseline();
+      collector = timedCollector;
     }
 
     // -- Run Query
     try {
-      this.searcher.search(query, Props.INDEX_LUCENE_TIMEOUTMS < Integer.MAX_VALUE ? timedCollector : scoreCollector);
+      this.searcher.search(query, collector);
     } catch (TimeLimitingCollector.TimeExceededException e) {
-      logger.warn("query timed out!");
+      logger.warn("query timed out after " + timeoutInMS + "ms!");
+      QueryStats.globalTimedOutQueries.incrementAndGet();
+      if (queryStats != null) { queryStats.timedOutQueries += 1; }
+    } catch (QueryCancelledException e) {
+      logger.debug("query cancelled");
+      QueryStats.globalCancelledQueries.incrementAndGet();
+      if (queryStats != null) { queryStats.cancelledQueries += 1; }
     }
 
     return scoreCollector.topDocs();
   }
 
+  /**
+   * <p>Run a number of queries together, with a timeout in place for each; see
+   * {@link LuceneQuerier#queryWithTimeout(Query, Maybe, int, QueryStats, AtomicBoolean)}.</p>
+   *
+   * <p>Lucene has no way of answering several queries with one pass over a posting list, but running the queries
+   * one after another reads the term dictionary and postings of every segment once per query; when the index
+   * is larger than the page cache, a query finds little of what the previous query read still in memory.
+   * Instead, this runs the queries segment by segment -- every query over the first segment, then every query
+   * over the second, and so forth -- so that queries sharing terms (e.g., entities with the same surname)
+   * read a segment's postings while they are still warm.
+   * Each query has its own collector; identical queries share their weight and collector, and are searched once.</p>
+   *
+   * @param queries The queries to run.
+   * @param maxDocuments The maximum number of documents to return for each query (Maybe.Nothing() for no limit).
+   * @param timeoutInMS The timeout for each query, in milliseconds. This counts only the time spent running that query;
+   *                    a query which times out stops being run, and its results so far are returned.
+   * @return The result of each query, in the same order as the queries.
+   * @throws IOException Passed from Lucene.
+   */
+  protected List<TopDocs> queryBatchWithTimeout(List<Query> queries, List<Maybe<Integer>> maxDocuments, int timeoutInMS) throws IOException {
+    // -- Setup Searches
+    // (identical queries are searched once, for as many documents as the most demanding of them)
+    Map<Query, Integer> searchIndex = new HashMap<>();
+    List<Query> searchQueries = new ArrayList<>();
+    List<Integer> searchMaxDocuments = new ArrayList<>();
+    int[] searchOfQuery = new int[queries.size()];
+    for (int i = 0; i < queries.size(); ++i) {
+      int maxDocs = maxDocuments.get(i).getOrElse(Integer.MAX_VALUE);
+      Integer search = searchIndex.get(queries.get(i));
+      if (search == null) {
+        search = searchQueries.size();
+        searchIndex.put(queries.get(i), search);
+        searchQueries.add(queries.get(i));
+        searchMaxDocuments.add(maxDocs);
+      } else {
+        searchMaxDocuments.set(search, Math.max(maxDocs, searchMaxDocuments.get(search)));
+      }
+      searchOfQuery[i] = search;
+    }
+    int numSearches = searchQueries.size();
+    Weight[] weights = new Weight[numSearches];
+    TopScoreDocCollector[] collectors = new TopScoreDocCollector[numSearches];
+    long[] remainingMS = new long[numSearches];
+    boolean[] running = new boolean[numSearches];
+    for (int k = 0; k < numSearches; ++k) {
+      weights[k] = searcher.createNormalizedWeight(searchQueries.get(k));
+      collectors[k] = TopScoreDocCollector.create(searchMaxDocuments.get(k), true);
+      remainingMS[k] = timeoutInMS;
+      running[k] = true;
+    }
+
+    // -- Run Queries
+    for (AtomicReaderContext segment : searcher.getTopReaderContext().leaves()) {
+      Bits liveDocs = segment.reader().getLiveDocs();
+      for (int k = 0; k < numSearches; ++k) {
+        if (!running[k]) { continue; }
+        long startTime = System.currentTimeMillis();
+        Collector collector = collectors[k];
+        if (timeoutInMS < Integer.MAX_VALUE) {
+          TimeLimitingCollector timedCollector = new TimeLimitingCollector(collector, queryClock, Math.max(1, remainingMS[k]));
+          timedCollector.setBaseline();
+          collector = timedCollector;
+        }
+        try {
+          // (as IndexSearcher#search(List, Weight, Collector))
+          collector.setNextReader(segment);
+          Scorer scorer = weights[k].scorer(segment, !collector.acceptsDocsOutOfOrder(), true, liveDocs);
+          if (scorer != null) { scorer.score(collector); }
+        } catch (TimeLimitingCollector.TimeExceededException e) {
+          remainingMS[k] = 0;
+        }
+        remainingMS[k] -= System.currentTimeMillis() - startTime;
+        if (timeoutInMS < Integer.MAX_VALUE && remainingMS[k] <= 0) {
+          logger.warn("query timed out after " + timeoutInMS + "ms!");
+          QueryStats.globalTimedOutQueries.incrementAndGet();
+          running[k] = false;
+        }
+      }
+    }
+
+    // -- Collect Results
+    // (a collector can only be read once)
+    TopDocs[] searchResults = new TopDocs[numSearches];
+    for (int k = 0; k < numSearches; ++k) { searchResults[k] = collectors[k].topDocs(); }
+    List<TopDocs> results = new ArrayList<>(queries.size());
+    for (int i = 0; i < queries.size(); ++i) {
+      TopDocs docs = searchResults[searchOfQuery[i]];
+      int maxDocs = maxDocuments.get(i).getOrElse(Integer.MAX_VALUE);
+      if (docs.scoreDocs.length > maxDocs) {
+        docs = new TopDocs(docs.totalHits, Arrays.copyOf(docs.scoreDocs, maxDocs), docs.getMaxScore());
+      }
+      results.add(docs);
+    }
+    return results;
+  }
+
   private static boolean acceptWord(String word) {
     // Filter empty words
     if (word.isEmpty()) return false;
@@ -540,6 +799,18 @@ public abstract class LuceneQuerier implements Querier {
     });
   }
 
+  /** The inverse of {@link LuceneQuerier#asIterator(TopDocs)}; the documents are assumed to be sorted by score already */
+  protected static TopDocs asTopDocs(Iterator<Pair<Integer, Double>> results) {
+    List<ScoreDoc> scoreDocs = new ArrayList<>();
+    float maxScore = Float.NaN;
+    while (results.hasNext()) {
+      Pair<Integer, Double> result = results.next();
+      scoreDocs.add(new ScoreDoc(result.first, result.second.floatValue()));
+      if (Float.isNaN(maxScore) || result.second.floatValue() > maxScore) { maxScore = result.second.floatValue(); }
+    }
+    return new TopDocs(scoreDocs.size(), scoreDocs.toArray(new ScoreDoc[scoreDocs.size()]), maxScore);
+  }
+
   @Override
   public String toString() {
     return this.getClass().getSimpleName() + "(" + this.indexDirectory.getOrElse(new File("<unknown location>")).getPath() + ")";
@@ -625,7 +896,8 @@ public abstract class LuceneQuerier implements Querier {
   private static Function<Pair<Annotation, Double>, Iterator<Pair<CoreMap, Double>>>
   fetchSentences(final KBPEntity entity, final Maybe<KBPEntity> slotValue,
                  final Maybe<Integer> maxDocuments,
-                 final AtomicInteger docsSeen) {
+                 final AtomicInteger docsSeen,
+                 final QueryStats queryStats) {
     final PostIRAnnotator postIRAnnotator;
     if (slotValue.isDefined()) {
       postIRAnnotator = new PostIRAnnotator(
@@ -647,9 +919,17 @@ public abstract class LuceneQuerier implements Querier {
 
           if (Props.INDEX_POSTIRANNOTATOR_DO) {
             // Annotate document
-            postIRAnnotator.annotate(document);
+            BitSet candidates;
+            if (Props.INDEX_POSTIRANNOTATOR_PREFILTER) {
+              candidates = postIRAnnotator.annotatePrefiltered(document);
+            } else {
+              postIRAnnotator.annotate(document);
+              candidates = new BitSet(sentences.size());
+              candidates.set(0, sentences.size());
+            }
+            queryStats.registerSentences(sentences.size(), sentences.size() - candidates.cardinality());
             // Select relevant sentences
-            for (int i = 0; i < sentences.size(); i++) {
+            for (int i = candidates.nextSetBit(0); i >= 0 && i < sentences.size(); i = candidates.nextSetBit(i + 1)) {
               CoreMap sentence = sentences.get(i);
               if (!sentence.containsKey(KBPAnnotations.AllAntecedentsAnnotation.class)) { continue; }
               Set<String> antecedents = sentence.get(KBPAnnotations.AllAntecedentsAnnotation.class);
@@ -662,7 +942,8 @@ public abstract class LuceneQuerier implements Querier {
           }
 
           // Map good sentences back to their CoreMaps
-          logger.debug("[" + docsSeen.incrementAndGet() + " / " + maxDocuments.getOrElse(-1) + "] " + goodSentences.size() + " sentences found: " + docPair.first.get(DocIDAnnotation.class));
+          logger.debug("[" + docsSeen.incrementAndGet() + " / " + maxDocuments.getOrElse(-1) + "] " + goodSentences.size() + " sentences found: " + docPair.first.get(DocIDAnnotation.class) +
+              " (" + new DecimalFormat("0.0%").format(queryStats.skippedSentenceFraction()) + " of sentences skipped for this query so far)");
           return CollectionUtils.mapIgnoreNull(goodSentences.iterator(), in -> {
             if (in == null) { logger.warn("null sentence index"); return null; }
             if (in >= sentences.size() || in < 0) { logger.warn("sentence index is out of bounds"); return null; }
@@ -13,6 +13,7 @@ import org.apache.lucene.store.FSDirectory;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A general class for running a wide range of Lucene query types.
@@ -43,17 +44,71 @@ public class ParameterizedLuceneQuerier extends LuceneQuerier {
     return queryImplementation(params, null, entityName, entityType, relation, slotValue, slotValueType, maxDocuments);
   }
 
-  @SuppressWarnings("ConstantConditions")
   protected IterableIterator<Pair<Integer, Double>> queryImplementation(LuceneQuerierParams params,
                                                                         QueryStats queryStats,
                                                                         String entityName, Maybe<NERTag> entityType,
                                                                         Maybe<String> relation,
                                                                         Maybe<String> slotValue, Maybe<NERTag> slotValueType,
                                                                         Maybe<Integer> maxDocuments) throws IOException {
+    return queryImplementation(params, queryStats, null, entityName, entityType, relation, slotValue, slotValueType, maxDocuments);
+  }
+
+  /**
+   * Run a query with the given parameters.
+   * If the query has been prefetched (see {@link ParameterizedLuceneQuerier#prefetch(List)}), the prefetched results
+   * are returned rather than searching again.
+   * @param cancelled If not null, a flag which aborts the Lucene search once it is set; the results found so far are returned.
+   */
+  protected IterableIterator<Pair<Integer, Double>> queryImplementation(LuceneQuerierParams params,
+                                                                        QueryStats queryStats,
+                                                                        AtomicBoolean cancelled,
+                                                                        String entityName, Maybe<NERTag> entityType,
+                                                                        Maybe<String> relation,
+                                                                        Maybe<String> slotValue, Maybe<NERTag> slotValueType,
+                                                                        Maybe<Integer> maxDocuments) throws IOException {
     long startTime = 0;
     if (queryStats != null) {
       startTime = queryStats.timing.report();
     }
+    Query query = buildQuery(params, entityName, entityType, relation, slotValue, slotValueType);
+
+    // -- Collect Results
+    TopDocs docs = takePrefetched(query, maxDocuments);
+    if (docs == null) {
+      docs = queryWithTimeout(query, maxDocuments, Props.INDEX_LUCENE_TIMEOUTMS, queryStats, cancelled);
+    }
+    if (queryStats != null) {
+      queryStats.lastQueryHits = docs.scoreDocs.length;
+      queryStats.lastQueryTotalHits = docs.totalHits;
+      queryStats.lastQueryElapsedMs = queryStats.timing.report() - startTime;
+      queryStats.totalElapsedMs += queryStats.lastQueryElapsedMs;
+    }
+    logger.log("query: " + query + " got: " + docs.scoreDocs.length + "/" + docs.totalHits);
+    return asIterator(docs);
+  }
+
+  /**
+   * The parameters {@link ParameterizedLuceneQuerier#queryImplementation(String, Maybe, Maybe, Maybe, Maybe, Maybe) queryImplementation()}
+   * would query with first, for the given query; this is the query worth prefetching.
+   */
+  protected LuceneQuerierParams firstParams(String entityName, Maybe<NERTag> entityType, Maybe<String> relation,
+                                           Maybe<String> slotValue, Maybe<NERTag> slotValueType) {
+    return params;
+  }
+
+  @Override
+  protected Maybe<Query> buildQuery(QueryRequest request) {
+    LuceneQuerierParams params = request.params != null ? request.params
+        : firstParams(request.entityName, request.entityType, request.relation, request.slotValue, request.slotValueType);
+    return Maybe.Just(buildQuery(params, request.entityName, request.entityType, request.relation, request.slotValue, request.slotValueType));
+  }
+
+  /** Build the Lucene query for the given parameters */
+  @SuppressWarnings("ConstantConditions")
+  protected Query buildQuery(LuceneQuerierParams params,
+                             String entityName, Maybe<NERTag> entityType,
+                             Maybe<String> relation,
+                             Maybe<String> slotValue, Maybe<NERTag> slotValueType) {
     List<Query> andClauses = new LinkedList<>();
 
     // -- Query Components
@@ -142,18 +197,63 @@ public class ParameterizedLuceneQuerier extends LuceneQuerier {
     for (Query clause : andClauses) {
       query.add(clause, params.conjunctionMode);
     }
+    return query;
+  }
 
+  /**
+   * The results of queries run ahead of time, waiting to be asked for; see {@link ParameterizedLuceneQuerier#prefetch(List)}.
+   * This is bounded, in case the queries are never asked for; the oldest are dropped first.
+   */
+  private final Map<Query, TopDocs> prefetched = Collections.synchronizedMap(new LinkedHashMap<Query, TopDocs>() {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Query, TopDocs> eldest) {
+      return size() > Math.max(1000, 4 * Props.INDEX_BATCH_SIZE);
+    }
+  });
 
-    // -- Collect Results
-    TopDocs docs = queryWithTimeout(query, maxDocuments, Props.INDEX_LUCENE_TIMEOUTMS);
-    if (queryStats != null) {
-      queryStats.lastQueryHits = docs.scoreDocs.length;
-      queryStats.lastQueryTotalHits = docs.totalHits;
-      queryStats.lastQueryElapsedMs = queryStats.timing.report() - startTime;
-      queryStats.totalElapsedMs += queryStats.lastQueryElapsedMs;
+  /**
+   * Run a batch of queries which will be asked for shortly -- e.g., by the next few tuples to be harvested --
+   * together, with {@link LuceneQuerier#queryBatch(List)}.
+   * The results are kept until the same query is run through this querier, which then returns them
+   * rather than searching again; they are returned at most once.
+   * Requests without parameters are run with the parameters this querier would query with first.
+   *
+   * @param requests The queries to run.
+   * @throws IOException Passed from Lucene.
+   */
+  public void prefetch(List<QueryRequest> requests) throws IOException {
+    List<Query> queries = new ArrayList<>();
+    List<Maybe<Integer>> maxDocuments = new ArrayList<>();
+    for (QueryRequest request : requests) {
+      Query query = buildQuery(request).get();
+      if (!prefetched.containsKey(query)) {
+        queries.add(query);
+        maxDocuments.add(request.maxDocuments);
+      }
     }
-    logger.log("query: " + query + " got: " + docs.scoreDocs.length + "/" + docs.totalHits);
-    return asIterator(docs);
+    if (queries.isEmpty()) { return; }
+    List<TopDocs> results = queryBatchWithTimeout(queries, maxDocuments, Props.INDEX_LUCENE_TIMEOUTMS);
+    for (int i = 0; i < queries.size(); ++i) {
+      prefetched.put(queries.get(i), results.get(i));
+    }
+    logger.debug("prefetched " + queries.size() + " queries for " + requests.size() + " requests");
+  }
+
+  /**
+   * The prefetched results for a query, if it has been prefetched for at least the given number of documents; or null.
+   */
+  private TopDocs takePrefetched(Query query, Maybe<Integer> maxDocuments) {
+    if (prefetched.isEmpty()) { return null; }
+    TopDocs docs = prefetched.remove(query);
+    if (docs == null) { return null; }
+    int maxDocs = maxDocuments.getOrElse(Integer.MAX_VALUE);
+    if (docs.scoreDocs.length < Math.min(maxDocs, docs.totalHits)) {
+      return null;  // prefetched for fewer documents than we want now
+    }
+    if (docs.scoreDocs.length > maxDocs) {
+      docs = new TopDocs(docs.totalHits, Arrays.copyOf(docs.scoreDocs, maxDocs), docs.getMaxScore());
+    }
+    return docs;
   }
 
   // Utility functions for querying different fields
@@ -2,6 +2,10 @@ package edu.stanford.nlp.kbp.slotfilling.ir.query;
 
 import edu.stanford.nlp.util.Timing;
 
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  *
  * Statistics about how the query is going
@@ -14,4 +18,39 @@ public class QueryStats {
   public long totalElapsedMs;
   public long lastQueryElapsedMs;
   public Timing timing = new Timing();
+  /** The number of queries which hit {@link edu.stanford.nlp.kbp.common.Props#INDEX_LUCENE_TIMEOUTMS} */
+  public int timedOutQueries;
+  /** The number of queries which were cancelled before they finished */
+  public int cancelledQueries;
+
+  /** The time taken by each backoff stage which was run, keyed by the stage's index in the backoff order */
+  public final Map<Integer, Long> backoffStageElapsedMs = new TreeMap<>();
+
+  /** The number of sentences in the documents retrieved for this query */
+  public final AtomicLong sentencesSeen = new AtomicLong(0);
+  /** The number of those sentences which were skipped by the sentence pre-filter, without being parsed */
+  public final AtomicLong sentencesSkipped = new AtomicLong(0);
+
+  /** The number of queries which have timed out, over the lifetime of the program */
+  public static final AtomicLong globalTimedOutQueries = new AtomicLong(0);
+  /** The number of queries which have been cancelled, over the lifetime of the program */
+  public static final AtomicLong globalCancelledQueries = new AtomicLong(0);
+  /** The number of sentences retrieved, over the lifetime of the program */
+  public static final AtomicLong globalSentencesSeen = new AtomicLong(0);
+  /** The number of sentences skipped by the sentence pre-filter, over the lifetime of the program */
+  public static final AtomicLong globalSentencesSkipped = new AtomicLong(0);
+
+  /** Register the sentences of a retrieved document, and how many of them were skipped by the pre-filter */
+  public void registerSentences(int seen, int skipped) {
+    sentencesSeen.addAndGet(seen);
+    sentencesSkipped.addAndGet(skipped);
+    globalSentencesSeen.addAndGet(seen);
+    globalSentencesSkipped.addAndGet(skipped);
+  }
+
+  /** The fraction of the sentences retrieved for this query which were skipped by the pre-filter */
+  public double skippedSentenceFraction() {
+    long seen = sentencesSeen.get();
+    return seen == 0 ? 0.0 : ((double) sentencesSkipped.get()) / ((double) seen);
+  }
 }
@@ -0,0 +1,108 @@
+package edu.stanford.nlp.kbp.slotfilling.process;
+
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphEdge;
+import edu.stanford.nlp.util.Pair;
+
+import java.util.*;
+
+/**
+ * Shortest undirected dependency paths within a single sentence, for the dependency path features of
+ * {@link FeatureFactory}.
+ *
+ * <p>Every relation mention in a sentence asks for the path between its two argument heads, and then for the
+ * paths from each verb on that path to both heads; the mentions of a sentence share heads, and so ask for many of
+ * the same paths, and build the same path strings over and over.
+ * This memoizes both, so that every path is only searched for once per sentence.</p>
+ *
+ * <p>The paths themselves always come from {@link SemanticGraph#getShortestUndirectedPathEdges(IndexedWord, IndexedWord)}
+ * and {@link SemanticGraph#getShortestUndirectedPathNodes(IndexedWord, IndexedWord)}, searching from the source:
+ * where there are several shortest paths, which one is found depends on the search, and the features
+ * (and so the trained models, and the {@link FeatureCache}) depend on which one it is.</p>
+ *
+ * <p>An index is built for a single graph, which must not be modified while the index is in use.
+ * {@link DependencyPathIndex#of(SemanticGraph)} keeps the index of the last graph asked for on each thread,
+ * so that consecutive mentions of the same sentence share it.
+ * An index is not threadsafe.</p>
+ */
+public class DependencyPathIndex {
+
+  /** The index of the last graph asked for on this thread */
+  private static final ThreadLocal<DependencyPathIndex> last = new ThreadLocal<>();
+
+  /** The graph this is an index over */
+  public final SemanticGraph graph;
+  /** The number of edges in the graph when the index was built, as a sanity check that it has not been modified */
+  private final int numEdges;
+
+  /** The memoized paths; see {@link DependencyPathIndex#edges(IndexedWord, IndexedWord)} */
+  private final Map<Pair<IndexedWord, IndexedWord>, List<SemanticGraphEdge>> paths = new HashMap<>();
+  /** The memoized path nodes; see {@link DependencyPathIndex#nodes(IndexedWord, IndexedWord)} */
+  private final Map<Pair<IndexedWord, IndexedWord>, List<IndexedWord>> pathNodes = new HashMap<>();
+  /** The memoized path strings; see {@link DependencyPathIndex#path(IndexedWord, IndexedWord, boolean)} */
+  private final Map<Pair<IndexedWord, IndexedWord>, String> pathStrings = new HashMap<>();
+  private final Map<Pair<IndexedWord, IndexedWord>, String> generalizedPathStrings = new HashMap<>();
+
+  public DependencyPathIndex(SemanticGraph graph) {
+    this.graph = graph;
+    this.numEdges = graph.edgeCount();
+  }
+
+  /** The index for a graph; this is the index last built on this thread, if it was for the same graph */
+  public static DependencyPathIndex of(SemanticGraph graph) {
+    DependencyPathIndex index = last.get();
+    if (index == null || index.graph != graph || index.numEdges != graph.edgeCount()) {
+      index = new DependencyPathIndex(graph);
+      last.set(index);
+    }
+    return index;
+  }
+
+  /**
+   * The edges on a shortest undirected path between two nodes, from the first to the second; exactly
+   * {@link SemanticGraph#getShortestUndirectedPathEdges(IndexedWord, IndexedWord)}.
+   * @return The path; or null, if there is no path.
+   */
+  public List<SemanticGraphEdge> edges(IndexedWord source, IndexedWord target) {
+    Pair<IndexedWord, IndexedWord> key = Pair.makePair(source, target);
+    if (paths.containsKey(key)) { return paths.get(key); }
+    List<SemanticGraphEdge> path = graph.getShortestUndirectedPathEdges(source, target);
+    if (path != null) { path = Collections.unmodifiableList(path); }
+    paths.put(key, path);
+    return path;
+  }
+
+  /**
+   * The nodes on a shortest undirected path between two nodes, including both endpoints; exactly
+   * {@link SemanticGraph#getShortestUndirectedPathNodes(IndexedWord, IndexedWord)}.
+   * @return The path; or null, if there is no path.
+   */
+  public List<IndexedWord> nodes(IndexedWord source, IndexedWord target) {
+    Pair<IndexedWord, IndexedWord> key = Pair.makePair(source, target);
+    if (pathNodes.containsKey(key)) { return pathNodes.get(key); }
+    List<IndexedWord> path = graph.getShortestUndirectedPathNodes(source, target);
+    if (path != null) { path = Collections.unmodifiableList(path); }
+    pathNodes.put(key, path);
+    return path;
+  }
+
+  /**
+   * The dependency path between two nodes, as a string.
+   * @param generalize If true, as {@link FeatureFactory#generalizedDependencyPath(List, IndexedWord)};
+   *                   otherwise, as {@link FeatureFactory#dependencyPath(List, IndexedWord)}.
+   * @return The path, or null if there is no path between the nodes.
+   */
+  public String path(IndexedWord source, IndexedWord target, boolean generalize) {
+    Map<Pair<IndexedWord, IndexedWord>, String> memo = generalize ? generalizedPathStrings : pathStrings;
+    Pair<IndexedWord, IndexedWord> key = Pair.makePair(source, target);
+    String path = memo.get(key);
+    if (path == null) {
+      List<SemanticGraphEdge> edges = edges(source, target);
+      if (edges == null) { return null; }
+      path = generalize ? FeatureFactory.generalizedDependencyPath(edges, source) : FeatureFactory.dependencyPath(edges, source);
+      memo.put(key, path);
+    }
+    return path;
+  }
+}
@@ -0,0 +1,318 @@
+package edu.stanford.nlp.kbp.slotfilling.process;
+
+import edu.stanford.nlp.ie.machinereading.structure.EntityMention;
+import edu.stanford.nlp.ie.machinereading.structure.MachineReadingAnnotations;
+import edu.stanford.nlp.ie.machinereading.structure.RelationMention;
+import edu.stanford.nlp.ie.machinereading.structure.Span;
+import edu.stanford.nlp.kbp.common.FeatureInterner;
+import edu.stanford.nlp.kbp.common.KBPAnnotations;
+import edu.stanford.nlp.kbp.common.Maybe;
+import edu.stanford.nlp.kbp.common.Murmur128;
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
+import edu.stanford.nlp.semgraph.SemanticGraphEdge;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeCoreAnnotations;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.MappedSegmentStore;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A content-addressed cache of the features of a relation mention; see {@link KBPProcess#featurize(RelationMention)}.
+ *
+ * <p>The same sentence, with the same entity and slot value mentions, is featurized again in every training,
+ * evaluation and validation run; and featurizing it -- dependency paths, lexical windows, cluster lookups -- costs
+ * far more than hashing it. An entry is keyed by a hash of everything the featurizers read: the tokens, tree and
+ * dependency graphs of the sentence, and its mentions (see {@link FeatureCache#sentenceHash(CoreMap)}); the two
+ * arguments and type of the relation mention; and the signature of the feature set
+ * (see {@link FeatureFactory#signature()}). So, an entry never goes stale -- a different input is simply a different key.</p>
+ *
+ * <p>There are two tiers. In memory, a bounded LRU map holds the features as canonical strings (see {@link FeatureInterner}),
+ * shared with the datums built from them.
+ * On local disk, a {@link MappedSegmentStore} holds them as ids into a dictionary of feature strings kept in the same
+ * store, so that the cache is shared across runs. The dictionary is read into memory when the cache is opened.</p>
+ */
+public class FeatureCache implements Closeable {
+  private static final Redwood.RedwoodChannels logger = Redwood.channels("FeatureCache");
+
+  /** The version of the cache's keys; bump this if a featurizer changes the features it creates for the same input */
+  public static final int VERSION = 1;
+
+  /** The dependency graphs read by the featurizers */
+  @SuppressWarnings("unchecked")
+  private static final List<Class<? extends CoreAnnotation<SemanticGraph>>> DEPENDENCIES = Arrays.<Class<? extends CoreAnnotation<SemanticGraph>>>asList(
+      SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class,
+      SemanticGraphCoreAnnotations.CollapsedDependenciesAnnotation.class,
+      SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class);
+
+  /** The prefix of the keys in the store holding the dictionary of feature strings */
+  private static final String FEATURE_PREFIX = "#feature:";
+
+  /** The in-memory tier: key -&gt; canonical feature strings. Synchronized on itself. */
+  private final LinkedHashMap<String, String[]> memory;
+  /** The on-disk tier, if there is one */
+  private final Maybe<MappedSegmentStore<String>> store;
+  /** The id of every feature string in the on-disk dictionary */
+  private final ConcurrentHashMap<String, Integer> diskIds = new ConcurrentHashMap<>();
+  /** The (canonical) feature string of every id in the on-disk dictionary; guarded by diskIds */
+  private final ArrayList<String> diskNames = new ArrayList<>();
+
+  private final AtomicLong memoryHits = new AtomicLong(0);
+  private final AtomicLong diskHits = new AtomicLong(0);
+  private final AtomicLong misses = new AtomicLong(0);
+
+  /**
+   * Open a feature cache.
+   * @param directory The directory of the on-disk tier, or Nothing to keep the cache only in memory.
+   * @param memoryCapacity The number of relation mentions to keep the features of in memory.
+   * @param segmentBytes The size of a single segment file of the on-disk store.
+   * @throws IOException If the store could not be opened -- e.g., it is open in another process.
+   */
+  public FeatureCache(Maybe<File> directory, final int memoryCapacity, int segmentBytes) throws IOException {
+    this.memory = new LinkedHashMap<String, String[]>(1024, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+        return size() > memoryCapacity;
+      }
+    };
+    if (directory.isDefined()) {
+      MappedSegmentStore<String> store = new MappedSegmentStore<>(directory.get(), segmentBytes, MappedSegmentStore.UTF8);
+      // Read the dictionary
+      for (String key : store.keySet()) {
+        if (!key.startsWith(FEATURE_PREFIX)) { continue; }
+        int id = Integer.parseInt(key.substring(FEATURE_PREFIX.length()));
+        while (diskNames.size() <= id) { diskNames.add(null); }
+        String feature = FeatureInterner.canonical(new String(store.get(key), StandardCharsets.UTF_8));
+        diskNames.set(id, feature);
+        diskIds.put(feature, id);
+      }
+      this.store = Maybe.Just(store);
+    } else {
+      this.store = Maybe.Nothing();
+    }
+  }
+
+  /**
+   * Get the features of a relation mention, if they are cached.
+   * @param key The key of the relation mention; see {@link FeatureCache#key(String, RelationMention, String)}.
+   * @return The features, as canonical strings (see {@link FeatureInterner}), in the order they were saved.
+   */
+  public Maybe<List<String>> get(String key) {
+    // Check memory
+    String[] features;
+    synchronized (memory) { features = memory.get(key); }
+    if (features != null) {
+      memoryHits.incrementAndGet();
+      return Maybe.<List<String>>Just(new ArrayList<>(Arrays.asList(features)));
+    }
+    // Check disk
+    for (MappedSegmentStore<String> store : this.store) {
+      byte[] bytes = store.get(key);
+      if (bytes != null) {
+        try {
+          features = decode(bytes);
+          if (features != null) {
+            synchronized (memory) { memory.put(key, features); }
+            diskHits.incrementAndGet();
+            return Maybe.<List<String>>Just(new ArrayList<>(Arrays.asList(features)));
+          }
+        } catch (IOException | RuntimeException e) {
+          logger.warn("could not read cached features for " + key + ": " + e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+      }
+    }
+    misses.incrementAndGet();
+    return Maybe.Nothing();
+  }
+
+  /**
+   * Save the features of a relation mention.
+   * Failures to write to disk are logged, and otherwise ignored.
+   * @param key The key of the relation mention; see {@link FeatureCache#key(String, RelationMention, String)}.
+   * @param features The features, in order; these should be canonical (see {@link FeatureInterner}), as the
+   *                 featurizer's are, so that the cache shares them with the datums.
+   */
+  public void put(String key, Collection<String> features) {
+    String[] copy = features.toArray(new String[features.size()]);
+    synchronized (memory) { memory.put(key, copy); }
+    for (MappedSegmentStore<String> store : this.store) {
+      try {
+        store.put(key, encode(store, features));
+      } catch (IOException | RuntimeException e) {
+        logger.warn("could not cache features for " + key + ": " + e.getClass().getSimpleName() + ": " + e.getMessage());
+      }
+    }
+  }
+
+  /** The number of lookups answered from memory so far */
+  public long memoryHits() { return memoryHits.get(); }
+
+  /** The number of lookups answered from disk so far */
+  public long diskHits() { return diskHits.get(); }
+
+  /** The number of lookups which missed the cache so far */
+  public long misses() { return misses.get(); }
+
+  @Override
+  public void close() throws IOException {
+    for (MappedSegmentStore<String> store : this.store) { store.close(); }
+  }
+
+  @Override
+  public String toString() {
+    int inMemory;
+    synchronized (memory) { inMemory = memory.size(); }
+    return "FeatureCache{" + inMemory + " in memory" +
+        (store.isDefined() ? ", " + (store.get().size() - diskNames.size()) + " on disk" : "") +
+        ", " + memoryHits.get() + " memory hits, " + diskHits.get() + " disk hits, " + misses.get() + " misses}";
+  }
+
+  /** The on-disk dictionary id of a feature, adding it to the dictionary if it is new */
+  private int diskId(MappedSegmentStore<String> store, String feature) throws IOException {
+    Integer id = diskIds.get(feature);
+    if (id != null) { return id; }
+    synchronized (diskIds) {
+      id = diskIds.get(feature);
+      if (id != null) { return id; }
+      int newId = diskNames.size();
+      store.put(FEATURE_PREFIX + newId, feature.getBytes(StandardCharsets.UTF_8));  // (before any entry refers to it)
+      feature = FeatureInterner.canonical(feature);
+      diskNames.add(feature);
+      diskIds.put(feature, newId);
+      return newId;
+    }
+  }
+
+  private byte[] encode(MappedSegmentStore<String> store, Collection<String> features) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + 3 * features.size());
+    DataOutputStream out = new DataOutputStream(bytes);
+    writeVarInt(out, features.size());
+    for (String feature : features) { writeVarInt(out, diskId(store, feature)); }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  /** Read the features of an entry on disk, or null if it refers to features missing from the dictionary */
+  private String[] decode(byte[] bytes) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    String[] features = new String[readVarInt(in)];
+    for (int i = 0; i < features.length; ++i) {
+      int diskId = readVarInt(in);
+      String feature;
+      synchronized (diskIds) { feature = diskId < diskNames.size() ? diskNames.get(diskId) : null; }
+      if (feature == null) { return null; }
+      features[i] = feature;
+    }
+    return features;
+  }
+
+  private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7f) != 0) {
+      out.writeByte((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  private static int readVarInt(DataInputStream in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) { return value; }
+    }
+    throw new IOException("Malformed variable length integer");
+  }
+
+  /**
+   * A hash of everything about a sentence the featurizers read: its tokens (and their tags, NER and gender),
+   * its tree, its dependency graphs, its entity and slot value mentions, and whether it is coreferent with the entity.
+   * This should be computed once per sentence, and reused for every relation mention in it.
+   */
+  public static String sentenceHash(CoreMap sentence) {
+    Murmur128 hash = new Murmur128().add(VERSION);
+    // Tokens
+    List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+    hash.add(tokens == null ? -1 : tokens.size());
+    for (CoreLabel token : tokens == null ? Collections.<CoreLabel>emptyList() : tokens) {
+      hash.add(token.word()).add(token.value()).add(token.tag()).add(token.ner())
+          .add(token.get(MachineReadingAnnotations.GenderAnnotation.class))
+          .add(token.get(MachineReadingAnnotations.TriggerAnnotation.class));
+    }
+    // Tree
+    Tree tree = sentence.get(TreeCoreAnnotations.TreeAnnotation.class);
+    hash.add(tree == null ? "" : tree.toString());
+    // Dependencies
+    for (Class<? extends CoreAnnotation<SemanticGraph>> key : DEPENDENCIES) {
+      SemanticGraph graph = sentence.get(key);
+      if (graph == null) { hash.add(-1); continue; }
+      List<String> edges = new ArrayList<>();  // (sorted, so that the hash doesn't depend on the graph's iteration order)
+      for (SemanticGraphEdge edge : graph.edgeIterable()) {
+        edges.add(edge.getSource().index() + " " + edge.getRelation() + " " + edge.getTarget().index() + (edge.isExtra() ? " extra" : ""));
+      }
+      Collections.sort(edges);
+      hash.add(edges.size());
+      for (String edge : edges) { hash.add(edge); }
+      List<Integer> roots = new ArrayList<>();
+      for (IndexedWord root : graph.getRoots()) { roots.add(root.index()); }
+      Collections.sort(roots);
+      hash.add(roots.size());
+      for (int root : roots) { hash.add(root); }
+    }
+    // Mentions
+    for (List<EntityMention> mentions : Arrays.asList(sentence.get(MachineReadingAnnotations.EntityMentionsAnnotation.class),
+                                                        sentence.get(KBPAnnotations.SlotMentionsAnnotation.class))) {
+      hash.add(mentions == null ? -1 : mentions.size());
+      for (EntityMention mention : mentions == null ? Collections.<EntityMention>emptyList() : mentions) {
+        addMention(hash, mention);
+      }
+    }
+    // Coref
+    hash.add(Boolean.TRUE.equals(sentence.get(KBPAnnotations.IsCoreferentAnnotation.class)) ? 1 : 0);
+    return hash.hex();
+  }
+
+  /**
+   * The key of a relation mention.
+   * @param sentenceHash The hash of the sentence of the relation mention; see {@link FeatureCache#sentenceHash(CoreMap)}.
+   * @param rel The relation mention.
+   * @param signature The signature of the featurizer; see {@link FeatureFactory#signature()}.
+   */
+  public static String key(String sentenceHash, RelationMention rel, String signature) {
+    Murmur128 hash = new Murmur128().add(sentenceHash).add(signature).add(rel.getType());
+    hash.add(rel.getArgs().size());
+    for (int i = 0; i < rel.getArgs().size(); ++i) {
+      if (rel.getArg(i) instanceof EntityMention) {
+        addMention(hash, (EntityMention) rel.getArg(i));
+      } else {
+        hash.add(-1);
+      }
+    }
+    return hash.hex();
+  }
+
+  private static void addMention(Murmur128 hash, EntityMention mention) {
+    addSpan(hash, mention.getExtent());
+    addSpan(hash, mention.getHead());
+    hash.add(mention.getSyntacticHeadTokenPosition())
+        .add(mention.getType()).add(mention.getSubType()).add(mention.getValue());
+  }
+
+  private static void addSpan(Murmur128 hash, Span span) {
+    if (span == null) {
+      hash.add(-1).add(-1);
+    } else {
+      hash.add(span.start()).add(span.end());
+    }
+  }
+}
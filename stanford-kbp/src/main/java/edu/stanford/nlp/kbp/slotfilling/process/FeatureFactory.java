@@ -33,6 +33,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 public class FeatureFactory implements Serializable {
@@ -92,6 +93,12 @@ public class FeatureFactory implements Serializable {
     this.doNotLexicalizeFirstArg = doNotLexicalizeFirstArg;
   }
 
+  /** A string identifying the features this factory creates for a given relation mention; see {@link FeatureCache} */
+  public String signature() {
+    return "features=" + StringUtils.join(featureList, ",") + ";dependencies=" + dependencyType +
+        ";doNotLexicalizeFirstArg=" + doNotLexicalizeFirstArg;
+  }
+
   public Datum<String,String> createDatum(RelationMention rel) {
     if (rel.getArgs().size() != 2) {
       return null;
@@ -100,7 +107,7 @@ public class FeatureFactory implements Serializable {
     Collection<String> features = new ArrayList<>();
     addFeatures(features, rel, featureList);
     String labelString = rel.getType();
-    return new BasicDatum<>(features, labelString);
+    return new BasicDatum<>(FeatureInterner.canonical(features), labelString);
   }
 
   public Datum<String,String> createDatum(RelationMention rel, String positiveLabel) {
@@ -112,7 +119,7 @@ public class FeatureFactory implements Serializable {
     addFeatures(features, rel, featureList);
     String labelString = rel.getType();
     if(! labelString.equals(positiveLabel)) labelString = RelationMention.UNRELATED;
-    return new BasicDatum<>(features, labelString);
+    return new BasicDatum<>(FeatureInterner.canonical(features), labelString);
   }
 
   // BEGIN GRAFT
@@ -679,7 +686,8 @@ public class FeatureFactory implements Serializable {
   		return;
   	}
 
-  	List<SemanticGraphEdge> edgePath = graph.getShortestUndirectedPathEdges(node0, node1);
+  	DependencyPathIndex paths = DependencyPathIndex.of(graph);
+  	List<SemanticGraphEdge> edgePath = paths.edges(node0, node1);
     LinkedList<IndexedWord> pathNodes = null;
     if (edgePath != null) {
       pathNodes = new LinkedList<>();
@@ -710,9 +718,9 @@ public class FeatureFactory implements Serializable {
   	// dependency_path_lowlevel: Same but with finer-grained syntactic relations
   	// e.g. "nsubj->  <-prep_in  <-nn"
   	if (usingFeature(types, checklist, "dependency_path")) {
-  		features.add(generalizedDependencyPath(edgePath, node0));
+  		features.add(paths.path(node0, node1, true));
   	}
-  	String pathDescription = dependencyPath(edgePath, node0);
+  	String pathDescription = paths.path(node0, node1, false);
     if (usingFeature(types, checklist, "dependency_path_lowlevel")) {
   		features.add(pathDescription);
   	}
@@ -756,8 +764,8 @@ public class FeatureFactory implements Serializable {
   					continue;
   				}
   				String lemma = Morphology.lemmaStatic(node.value(), node.tag(), true);
-  				String node1Path = generalizedDependencyPath(graph.getShortestUndirectedPathEdges(node, node1), node);
-  				String node0Path = generalizedDependencyPath(graph.getShortestUndirectedPathEdges(node0, node), node0);
+  				String node1Path = paths.path(node, node1, true);
+  				String node0Path = paths.path(node0, node, true);
   				features.add(node0Path + " " + lemma);
   				features.add(lemma + " " + node1Path);
   				features.add(node0Path + " " + lemma + " " + node1Path);
@@ -805,8 +813,8 @@ public class FeatureFactory implements Serializable {
   				if (node.equals(node0) || node.equals(node1)) {
   					continue;
   				}
-  				SemanticGraphEdge rightEdge = graph.getShortestUndirectedPathEdges(node, node1).get(0);
-  				SemanticGraphEdge leftEdge = graph.getShortestUndirectedPathEdges(node, node0).get(0);
+  				SemanticGraphEdge rightEdge = paths.edges(node, node1).get(0);
+  				SemanticGraphEdge leftEdge = paths.edges(node, node0).get(0);
   				String rightRelation, leftRelation;
   				boolean governsLeft = false, governsRight = false;
   				if (node.equals(rightEdge.getGovernor())) {
@@ -996,16 +1004,24 @@ public class FeatureFactory implements Serializable {
     return types.contains(type) || types.contains("all");
   }
 
+  private static final GrammaticalRelation[] GENERAL_RELATIONS = new GrammaticalRelation[] { EnglishGrammaticalRelations.SUBJECT,
+      EnglishGrammaticalRelations.COMPLEMENT, EnglishGrammaticalRelations.CONJUNCT,
+      EnglishGrammaticalRelations.MODIFIER, };
+  /** The memoized results of {@link FeatureFactory#generalizeRelation(GrammaticalRelation)}; there are only so many relations */
+  private static final Map<GrammaticalRelation, GrammaticalRelation> generalizedRelations = new ConcurrentHashMap<>();
+
   private static GrammaticalRelation generalizeRelation(GrammaticalRelation gr) {
-    final GrammaticalRelation[] GENERAL_RELATIONS = new GrammaticalRelation[] { EnglishGrammaticalRelations.SUBJECT,
-        EnglishGrammaticalRelations.COMPLEMENT, EnglishGrammaticalRelations.CONJUNCT,
-        EnglishGrammaticalRelations.MODIFIER, };
+    GrammaticalRelation generalized = generalizedRelations.get(gr);
+    if (generalized != null) { return generalized; }
+    generalized = gr;
     for (GrammaticalRelation generalGR : GENERAL_RELATIONS) {
       if (generalGR.isAncestor(gr)) {
-        return generalGR;
+        generalized = generalGR;
+        break;
       }
     }
-    return gr;
+    generalizedRelations.put(gr, generalized);
+    return generalized;
   }
 
   /*
@@ -128,7 +128,7 @@ public class FeatureProviders {
       }
       // Populate features
       Collection<String> features = new HashSet<>();
-      List<IndexedWord> path = factory.dependencies.getShortestUndirectedPathNodes(subjNode, objNode);
+      List<IndexedWord> path = DependencyPathIndex.of(factory.dependencies).nodes(subjNode, objNode);
       if (path != null) {
         for (IndexedWord word : path) {
           if (((word.index() > factory.subj.end() || word.index() <= factory.subj.start())) &&
@@ -35,20 +35,33 @@ public abstract class Featurizer {
   public Map<KBPair, Pair<SentenceGroup, List<CoreMap>>> featurizeWithSentences(Annotation annotation, Maybe<RelationFilter> relationFilter) {
     HashMap<KBPair,Pair<SentenceGroup,List<CoreMap>>> datums = new HashMap<>();
     for (CoreMap sentence : annotation.get(SentencesAnnotation.class)) {
-      for(SentenceGroup sg : featurizeSentence(sentence, relationFilter)) {
-        KBPair key = sg.key;
-        if (!datums.containsKey(key)) {
-          datums.put(key, new Pair<SentenceGroup, List<CoreMap>>(SentenceGroup.empty(key), new ArrayList<CoreMap>()));
-        }
-        Pair<SentenceGroup, List<CoreMap>> pair = datums.get(key);
-        pair.first.merge(sg);
-        //noinspection ForLoopReplaceableByForEach
-        for (int i = 0; i < sg.size(); ++i) { pair.second.add(sentence); }
-        assert pair.first.size() == pair.second.size();
-      }
+      addFeaturizedSentence(datums, sentence, featurizeSentence(sentence, relationFilter));
     }
     return datums;
   }
+
+  /**
+   * Merge the sentence groups featurized from a single sentence into the datums grouped by KBPair,
+   * as {@link Featurizer#featurizeWithSentences(Annotation, Maybe)} does.
+   * This is useful if sentences are featurized elsewhere (e.g., in parallel), but should be grouped the same way.
+   *
+   * @param datums The datums so far, keyed by KBPair, along with the sentence each datum came from. This is mutated.
+   * @param sentence The sentence which was featurized.
+   * @param featurized The output of {@link Featurizer#featurizeSentence(CoreMap, Maybe)} on that sentence.
+   */
+  public static void addFeaturizedSentence(Map<KBPair, Pair<SentenceGroup, List<CoreMap>>> datums, CoreMap sentence, List<SentenceGroup> featurized) {
+    for(SentenceGroup sg : featurized) {
+      KBPair key = sg.key;
+      if (!datums.containsKey(key)) {
+        datums.put(key, new Pair<SentenceGroup, List<CoreMap>>(SentenceGroup.empty(key), new ArrayList<CoreMap>()));
+      }
+      Pair<SentenceGroup, List<CoreMap>> pair = datums.get(key);
+      pair.first.merge(sg);
+      //noinspection ForLoopReplaceableByForEach
+      for (int i = 0; i < sg.size(); ++i) { pair.second.add(sentence); }
+      assert pair.first.size() == pair.second.size();
+    }
+  }
   
   /**
    * Build datums for relations found in |sentence| and headed by |entity|.
@@ -2,6 +2,8 @@ package edu.stanford.nlp.kbp.slotfilling.process;
 
 import static edu.stanford.nlp.util.logging.Redwood.Util.err;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.*;
@@ -23,6 +25,7 @@ import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
 import edu.stanford.nlp.stats.ClassicCounter;
 import edu.stanford.nlp.stats.Counter;
 import edu.stanford.nlp.stats.Counters;
+import edu.stanford.nlp.util.ArrayCoreMap;
 import edu.stanford.nlp.util.CoreMap;
 import edu.stanford.nlp.util.logging.Redwood;
 
@@ -56,6 +59,8 @@ public class KBPProcess extends Featurizer implements DocumentAnnotator {
   public static final AnnotationSerializer sentenceGlossSerializer = new KryoAnnotationSerializer();
   private final Properties props;  // needed to create a StanfordCoreNLP down the line
   private final Lazy<KBPIR> querier;
+  /** @see KBPProcess#sentenceGlossSink() */
+  private static volatile SentenceGlossSink sentenceGlossSink = null;
 
   public enum AnnotateMode { 
                               NORMAL,   // do normal relation annotation for main entity
@@ -70,8 +75,41 @@ public class KBPProcess extends Featurizer implements DocumentAnnotator {
     rff.setDoNotLexicalizeFirstArgument(true);
   }
 
-  @SuppressWarnings("unchecked")
+  /**
+   * Featurize a single relation mention, looking its features up in the feature cache first
+   * if {@link Props#CACHE_FEATURES_DO} is set.
+   */
   public Maybe<Datum<String,String>> featurize( RelationMention rel ) {
+    return featurize(rel, Maybe.<String>Nothing());
+  }
+
+  /**
+   * @see KBPProcess#featurize(RelationMention)
+   * @param sentenceHash The hash of the relation mention's sentence (see {@link FeatureCache#sentenceHash(CoreMap)}),
+   *                     if it has been computed already.
+   */
+  private Maybe<Datum<String,String>> featurize( RelationMention rel, Maybe<String> sentenceHash ) {
+    Maybe<FeatureCache> cache = featureCache();
+    if (!cache.isDefined()) { return featurizeUncached(rel); }
+    String key = FeatureCache.key(sentenceHash.isDefined() ? sentenceHash.get() : FeatureCache.sentenceHash(rel.getSentence()),
+        rel, featureSignature());
+    for (List<String> features : cache.get().get(key)) {
+      return Maybe.<Datum<String, String>>Just(new BasicDatum<>(features, rel.getType()));
+    }
+    Maybe<Datum<String,String>> datum = featurizeUncached(rel);
+    for (Datum<String, String> d : datum) {
+      if (d != null) { cache.get().put(key, d.asFeatures()); }
+    }
+    return datum;
+  }
+
+  /** The signature of the featurizer in use; see {@link FeatureFactory#signature()} */
+  private String featureSignature() {
+    return Props.PROCESS_NEWFEATURIZER ? "featurizable" : rff.signature();
+  }
+
+  @SuppressWarnings("unchecked")
+  private Maybe<Datum<String,String>> featurizeUncached( RelationMention rel ) {
     try {
       if (!Props.PROCESS_NEWFEATURIZER) {
         // Case: Old featurizer
@@ -88,7 +126,7 @@ public class KBPProcess extends Featurizer implements DocumentAnnotator {
           feat.provider.apply(factory, features);
         }
         // Return
-        return Maybe.<Datum<String, String>>Just(new BasicDatum<>(Counters.toSortedList(features), rel.getType()));
+        return Maybe.<Datum<String, String>>Just(new BasicDatum<>(FeatureInterner.canonical(Counters.toSortedList(features)), rel.getType()));
       }
     } catch (RuntimeException e) {
       err(e);
@@ -131,13 +169,16 @@ public class KBPProcess extends Featurizer implements DocumentAnnotator {
   private List<SentenceGroup> featurizeRelations(List<RelationMention> relationMentions, CoreMap sentence) {
     List<SentenceGroup> datums = new ArrayList<>();
     if (relationMentions == null) { return datums; }
+    // Hash the sentence once for all of its relation mentions
+    Maybe<String> sentenceHash = featureCache().isDefined() && !relationMentions.isEmpty()
+        ? Maybe.Just(FeatureCache.sentenceHash(sentence)) : Maybe.<String>Nothing();
 
     for (RelationMention rel : relationMentions) {
       assert rel instanceof NormalizedRelationMention;
       NormalizedRelationMention normRel = (NormalizedRelationMention) rel;
       assert normRel.getEntityMentionArgs().get(0).getSyntacticHeadTokenPosition() >= 0;
       assert normRel.getEntityMentionArgs().get(1).getSyntacticHeadTokenPosition() >= 0;
-      for (Datum<String, String> d : featurize(rel)) {
+      for (Datum<String, String> d : featurize(rel, sentenceHash)) {
 
 
         // Pull out the arguments to construct the entity pair this
@@ -168,7 +209,7 @@ public class KBPProcess extends Featurizer implements DocumentAnnotator {
                 : new KBPRelationProvenance(docId, indexName, sentenceIndex, entitySpan, slotFillSpan, sentence);
 
         // Handle Sentence Gloss Caching
-        String hexKey = CoreMapUtils.getSentenceGlossKey(sentence.get(CoreAnnotations.TokensAnnotation.class), leftArg.getExtent(), rightArg.getExtent());
+        String hexKey = CoreMapUtils.getSentenceGlossKey(sentence, leftArg.getExtent(), rightArg.getExtent());
         saveSentenceGloss(hexKey, sentence, Maybe.Just(entitySpan), Maybe.Just(slotFillSpan));
 
         // Construct singleton sentence group; group by slotValue entity
@@ -186,6 +227,21 @@ public class KBPProcess extends Featurizer implements DocumentAnnotator {
   
   public List<CoreMap> annotateSentenceFeatures( KBPEntity entity,
                                                  List<CoreMap> sentences, AnnotateMode annotateMode) {
+    return annotateSentenceFeatures(entity, sentences, annotateMode, knownSlotFills(entity));
+  }
+
+  /** The known slot fills for an entity, from the IR component, as used to annotate its relation mentions */
+  public List<KBPSlotFill> knownSlotFills(KBPEntity entity) {
+    return querier.get().getKnownSlotFillsForEntity(entity);
+  }
+
+  /**
+   * As {@link KBPProcess#annotateSentenceFeatures(KBPEntity, List, AnnotateMode)}, with the known slot fills for the
+   * entity looked up already -- e.g., once for every batch of sentences for the entity.
+   */
+  public List<CoreMap> annotateSentenceFeatures( KBPEntity entity,
+                                                 List<CoreMap> sentences, AnnotateMode annotateMode,
+                                                 List<KBPSlotFill> knownSlotFills) {
     // Check if PostIR was run
     for (CoreMap sentence : sentences) {
       if (!sentence.containsKey(KBPAnnotations.AllAntecedentsAnnotation.class) && !Props.JUNIT) {
@@ -197,7 +253,7 @@ public class KBPProcess extends Featurizer implements DocumentAnnotator {
     AnnotationPipeline pipeline = new AnnotationPipeline();
     pipeline.addAnnotator(new EntityMentionAnnotator(entity));
     pipeline.addAnnotator(new SlotMentionAnnotator());
-    pipeline.addAnnotator(new RelationMentionAnnotator(entity, querier.get().getKnownSlotFillsForEntity(entity), annotateMode));
+    pipeline.addAnnotator(new RelationMentionAnnotator(entity, knownSlotFills, annotateMode));
     pipeline.addAnnotator(new PreFeaturizerAnnotator(props));
     // Annotate
     Annotation ann = new Annotation(sentences);
@@ -217,20 +273,22 @@ public class KBPProcess extends Featurizer implements DocumentAnnotator {
     return ann.get(SentencesAnnotation.class);
   }
 
-  public void saveSentenceGloss(final String hexKey, CoreMap sentence, Maybe<Span> entitySpanMaybe, Maybe<Span> slotFillSpanMaybe) {
+  /**
+   * Save the gloss of a sentence to the cache, so that it can be recovered later from its sentence gloss key.
+   * The entity and slot value spans are saved along with the sentence, on a copy of it; the sentence itself is not modified.
+   * If {@link Props#CACHE_SENTENCEGLOSS_WRITEBEHIND} is set, the gloss is buffered (see {@link SentenceGlossSink}) rather than
+   * written right away.
+   */
+  public void saveSentenceGloss(final String hexKey, final CoreMap sentence, final Maybe<Span> entitySpanMaybe, final Maybe<Span> slotFillSpanMaybe) {
     if (Props.CACHE_SENTENCEGLOSS_DO) {
       assert (!hexKey.isEmpty());
-      // Create annotation
-      final Annotation ann = new Annotation("");
-      ann.set(SentencesAnnotation.class, new ArrayList<>(Arrays.asList(sentence)));
-      // Set extra annotations
-      for (Span entitySpan : entitySpanMaybe) {
-        sentence.set(KBPAnnotations.EntitySpanAnnotation.class, entitySpan);  // include entity and slot value spans
-      }
-      for (Span slotFillSpan : slotFillSpanMaybe) {
-        sentence.set(KBPAnnotations.SlotValueSpanAnnotation.class, slotFillSpan);
+      // Buffer the gloss, if writing behind
+      for (SentenceGlossSink sink : sentenceGlossSink()) {
+        sink.offer(hexKey, () -> sentenceGloss(sentence, entitySpanMaybe, slotFillSpanMaybe));
+        return;
       }
       // Do caching
+      final Annotation ann = sentenceGloss(sentence, entitySpanMaybe, slotFillSpanMaybe);
       PostgresUtils.withKeyAnnotationTable(Props.DB_TABLE_SENTENCEGLOSS_CACHE, new PostgresUtils.KeyAnnotationCallback(sentenceGlossSerializer) {
         @Override
         public void apply(Connection psql) throws SQLException {
@@ -241,14 +299,36 @@ public class KBPProcess extends Featurizer implements DocumentAnnotator {
           }
         }
       });
-      // Clear extra annotations
-      sentence.remove(KBPAnnotations.EntitySpanAnnotation.class);  // don't keep these around indefinitely -- they're datum not sentence specific
-      sentence.remove(KBPAnnotations.SlotValueSpanAnnotation.class);
     }
   }
 
+  /** The annotation to save as the gloss of a sentence: a copy of the sentence, with the entity and slot value spans set */
+  private static Annotation sentenceGloss(CoreMap sentence, Maybe<Span> entitySpanMaybe, Maybe<Span> slotFillSpanMaybe) {
+    // Copy the sentence
+    // (these spans are datum, not sentence specific, so they shouldn't be kept on the sentence itself)
+    CoreMap gloss = new ArrayCoreMap(sentence);
+    gloss.remove(KBPAnnotations.SentenceGlossHashAnnotation.class);  // (recomputed from the tokens if needed)
+    // Set extra annotations
+    for (Span entitySpan : entitySpanMaybe) {
+      gloss.set(KBPAnnotations.EntitySpanAnnotation.class, entitySpan);  // include entity and slot value spans
+    }
+    for (Span slotFillSpan : slotFillSpanMaybe) {
+      gloss.set(KBPAnnotations.SlotValueSpanAnnotation.class, slotFillSpan);
+    }
+    // Create annotation
+    Annotation ann = new Annotation("");
+    ann.set(SentencesAnnotation.class, new ArrayList<>(Arrays.asList(gloss)));
+    return ann;
+  }
+
   /** Recovers the original sentence, given a short hash pointing to the sentence */
   public Maybe<CoreMap> recoverSentenceGloss(final String hexKey) {
+    // Check the glosses not yet written
+    for (SentenceGlossSink sink : sentenceGlossSink()) {
+      Maybe<CoreMap> pending = sink.lookup(hexKey);
+      if (pending.isDefined()) { return pending; }
+    }
+    // Check the cache
     final Pointer<CoreMap> sentence = new Pointer<>();
     PostgresUtils.withKeyAnnotationTable(Props.DB_TABLE_SENTENCEGLOSS_CACHE, new PostgresUtils.KeyAnnotationCallback(sentenceGlossSerializer) {
       @Override
@@ -263,4 +343,90 @@ public class KBPProcess extends Featurizer implements DocumentAnnotator {
     return sentence.dereference();
   }
 
+  /** Write out any sentence glosses still buffered by the write-behind sink, if there is one */
+  public static void flushSentenceGlosses() {
+    for (SentenceGlossSink sink : sentenceGlossSink()) {
+      sink.flush();
+    }
+  }
+
+  /** The cache of relation mention features; see {@link KBPProcess#featureCache()} */
+  private static volatile Maybe<FeatureCache> featureCache = null;
+
+  /**
+   * The cache of relation mention features, if {@link Props#CACHE_FEATURES_DO} is set.
+   * This is opened on first use, and closed (logging its hit rate) on shutdown.
+   */
+  private static Maybe<FeatureCache> featureCache() {
+    Maybe<FeatureCache> cache = featureCache;
+    if (cache != null) { return cache; }
+    synchronized (KBPProcess.class) {
+      if (featureCache != null) { return featureCache; }
+      cache = Maybe.Nothing();
+      if (Props.CACHE_FEATURES_DO) {
+        File directory = Props.CACHE_FEATURES_DIR != null ? Props.CACHE_FEATURES_DIR : new File(Props.CACHE_LOCAL_DIR, "features");
+        FeatureCache opened;
+        try {
+          opened = new FeatureCache(Maybe.Just(directory), Props.CACHE_FEATURES_MEMORY, Props.CACHE_LOCAL_SEGMENTMB * 1024 * 1024);
+          logger.log("opened feature cache at " + directory);
+        } catch (IOException e) {
+          logger.warn("could not open feature cache at " + directory + " (caching features in memory only): " + e.getMessage());
+          try {
+            opened = new FeatureCache(Maybe.<File>Nothing(), Props.CACHE_FEATURES_MEMORY, 0);
+          } catch (IOException impossible) {
+            throw new RuntimeException(impossible);
+          }
+        }
+        final FeatureCache toClose = opened;
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+          @Override
+          public void run() {
+            try {
+              logger.log(toClose);
+              toClose.close();
+            } catch (Throwable t) {
+              logger.err(t);
+            }
+          }
+        });
+        cache = Maybe.Just(opened);
+      }
+      featureCache = cache;
+      return cache;
+    }
+  }
+
+  /** The buffer sentence glosses are written through, if {@link Props#CACHE_SENTENCEGLOSS_WRITEBEHIND} is set */
+  private static Maybe<SentenceGlossSink> sentenceGlossSink() {
+    if (!Props.CACHE_SENTENCEGLOSS_WRITEBEHIND) { return Maybe.Nothing(); }
+    SentenceGlossSink sink = sentenceGlossSink;
+    if (sink != null) { return Maybe.Just(sink); }
+    return createSentenceGlossSink();
+  }
+
+  private static synchronized Maybe<SentenceGlossSink> createSentenceGlossSink() {
+    if (sentenceGlossSink == null) {
+      final String table = Props.DB_TABLE_SENTENCEGLOSS_CACHE;
+      final SentenceGlossSink sink = new SentenceGlossSink(glosses -> {
+        final Map<String, List<Annotation>> values = new HashMap<>();
+        for (Map.Entry<String, Annotation> entry : glosses.entrySet()) {
+          values.put(entry.getKey(), Collections.singletonList(entry.getValue()));
+        }
+        PostgresUtils.withKeyAnnotationTable(table, new PostgresUtils.KeyAnnotationCallback(sentenceGlossSerializer) {
+          @Override
+          public void apply(Connection psql) throws SQLException {
+            putAll(psql, table, values);
+          }
+        });
+      }, Props.CACHE_SENTENCEGLOSS_BATCH, Props.CACHE_SENTENCEGLOSS_MAXPENDING);
+      sink.startFlushing(Props.CACHE_SENTENCEGLOSS_FLUSHMS);
+      PostgresUtils.flushOnShutdown(() -> {
+        sink.flush();
+        logger.log(sink);
+      });
+      sentenceGlossSink = sink;
+    }
+    return Maybe.Just(sentenceGlossSink);
+  }
+
 }
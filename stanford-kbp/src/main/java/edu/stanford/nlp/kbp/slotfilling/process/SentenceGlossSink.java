@@ -0,0 +1,183 @@
+package edu.stanford.nlp.kbp.slotfilling.process;
+
+import edu.stanford.nlp.kbp.common.Maybe;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A write-behind buffer for sentence glosses; see {@link KBPProcess#saveSentenceGloss(String, CoreMap, Maybe, Maybe)}.
+ *
+ * <p>Featurizing a sentence saves a gloss for every relation mention in it, and many of these are the same
+ * sentence gloss key, seen again in another query or another document. Rather than writing each one to the cache
+ * as it is featurized, glosses are accepted into an in-memory buffer (dropping any key which is already pending,
+ * or has been written recently), and written out in batches by a background thread.
+ * Lookups should go through {@link SentenceGlossSink#lookup(String)} first, so that a gloss can be recovered
+ * before it is written.</p>
+ *
+ * <p>By default, every key written is remembered, so that it is never written twice, and the buffer is only bounded
+ * by how fast it is written. In bounded-memory mode (a positive maxPending), at most that many glosses are pending,
+ * and at most that many written keys are remembered; a thread which offers a gloss to a full buffer writes out
+ * a batch itself before it continues.</p>
+ *
+ * <p>The sentences are serialized when they are written, not when they are offered, so a sentence should not
+ * be modified once its gloss has been saved.</p>
+ */
+public class SentenceGlossSink {
+  private static final Redwood.RedwoodChannels logger = Redwood.channels("Gloss");
+
+  /** Writes a batch of glosses to the cache */
+  public static interface BatchWriter {
+    public void write(Map<String, Annotation> glosses);
+  }
+
+  private final BatchWriter writer;
+  private final int batchSize;
+  private final int maxPending;
+
+  /** The glosses accepted, but not yet written */
+  private final ConcurrentHashMap<String, Annotation> pending = new ConcurrentHashMap<>();
+  /** The keys which have been written, and so do not need to be written again */
+  private final Set<String> written;
+  /** Only one batch is written at a time, so that a batch is not written twice */
+  private final Object writeLock = new Object();
+  private Thread flusher = null;
+
+  private final AtomicLong numOffered = new AtomicLong(0);
+  private final AtomicLong numDuplicate = new AtomicLong(0);
+  private final AtomicLong numWritten = new AtomicLong(0);
+  private final AtomicLong numBatches = new AtomicLong(0);
+  private final AtomicLong numForcedBatches = new AtomicLong(0);
+
+  /**
+   * Create a new sink.
+   * @param writer The function to write a batch of glosses to the cache with. This is only called from one thread at a time.
+   * @param batchSize The largest number of glosses to write in a single batch.
+   * @param maxPending If positive, the bound on the number of glosses held in memory; see the class comment.
+   */
+  public SentenceGlossSink(BatchWriter writer, int batchSize, final int maxPending) {
+    this.writer = writer;
+    this.batchSize = Math.max(1, batchSize);
+    this.maxPending = maxPending;
+    if (maxPending > 0) {
+      this.written = Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<String, Boolean>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+          return size() > maxPending;
+        }
+      }));
+    } else {
+      this.written = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    }
+  }
+
+  /**
+   * Start a background thread writing out the pending glosses every given number of milliseconds.
+   * This does nothing if the thread has been started already.
+   */
+  public synchronized SentenceGlossSink startFlushing(final long intervalMillis) {
+    if (flusher == null) {
+      flusher = new Thread("gloss-writebehind") {
+        @Override
+        public void run() {
+          while (true) {
+            try {
+              Thread.sleep(Math.max(1, intervalMillis));
+            } catch (InterruptedException e) {
+              return;
+            }
+            try {
+              flush();
+            } catch (Throwable t) {
+              logger.err(t);
+            }
+          }
+        }
+      };
+      flusher.setDaemon(true);
+      flusher.start();
+    }
+    return this;
+  }
+
+  /**
+   * Offer a gloss to be written.
+   * @param hexKey The sentence gloss key.
+   * @param gloss The gloss to write; this is only created if the key is not pending or written already.
+   * @return True if the gloss was accepted; false if it was a duplicate.
+   */
+  public boolean offer(String hexKey, Supplier<Annotation> gloss) {
+    numOffered.incrementAndGet();
+    if (pending.containsKey(hexKey) || written.contains(hexKey)) {
+      numDuplicate.incrementAndGet();
+      return false;
+    }
+    if (pending.putIfAbsent(hexKey, gloss.get()) != null) {
+      numDuplicate.incrementAndGet();
+      return false;
+    }
+    // Bound memory, if we're asked to
+    if (maxPending > 0 && pending.size() >= maxPending) {
+      numForcedBatches.incrementAndGet();
+      writeBatch();
+    }
+    return true;
+  }
+
+  /** The sentence for a gloss which has been accepted but not yet written, if there is one */
+  public Maybe<CoreMap> lookup(String hexKey) {
+    Annotation ann = pending.get(hexKey);
+    if (ann == null) { return Maybe.Nothing(); }
+    List<CoreMap> sentences = ann.get(CoreAnnotations.SentencesAnnotation.class);
+    return (sentences == null || sentences.isEmpty()) ? Maybe.<CoreMap>Nothing() : Maybe.Just(sentences.get(0));
+  }
+
+  /** The number of glosses accepted, but not yet written */
+  public int numPending() {
+    return pending.size();
+  }
+
+  /** Write out every pending gloss, blocking until they have been written */
+  public void flush() {
+    while (!pending.isEmpty()) {
+      if (writeBatch() == 0) { break; }
+    }
+  }
+
+  /**
+   * Write up to one batch of pending glosses.
+   * A gloss stays pending until its batch has been written, so that it can be looked up in the meantime.
+   * @return The number of glosses written.
+   */
+  private int writeBatch() {
+    synchronized (writeLock) {
+      Map<String, Annotation> batch = new HashMap<>();
+      for (Map.Entry<String, Annotation> entry : pending.entrySet()) {
+        if (batch.size() >= batchSize) { break; }
+        batch.put(entry.getKey(), entry.getValue());
+      }
+      if (batch.isEmpty()) { return 0; }
+      writer.write(batch);
+      for (Map.Entry<String, Annotation> entry : batch.entrySet()) {
+        written.add(entry.getKey());
+        pending.remove(entry.getKey(), entry.getValue());
+      }
+      numWritten.addAndGet(batch.size());
+      numBatches.incrementAndGet();
+      return batch.size();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "SentenceGlossSink{offered=" + numOffered.get() + ", duplicates=" + numDuplicate.get() +
+        ", written=" + numWritten.get() + " in " + numBatches.get() + " batches (" + numForcedBatches.get() + " forced)" +
+        ", pending=" + pending.size() + "}";
+  }
+}
@@ -0,0 +1,146 @@
+package edu.stanford.nlp.kbp.slotfilling.scripts;
+
+import edu.stanford.nlp.kbp.common.PostgresUtils;
+import edu.stanford.nlp.kbp.common.Props;
+import edu.stanford.nlp.kbp.slotfilling.SlotfillingSystem;
+import edu.stanford.nlp.kbp.slotfilling.ir.index.KryoAnnotationSerializer;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.util.Execution;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static edu.stanford.nlp.util.logging.Redwood.Util.*;
+
+/**
+ * Measure the throughput (operations / second) of putting and getting annotated sentences through
+ * the key/value cache, for each cache backend (see {@link Props#CACHE_BACKEND}).
+ * The values are Kryo-serialized annotations, as in the sentence and gloss caches.
+ * Postgres is configured with the usual psql.* options; it is skipped if it cannot be reached.
+ */
+public class CacheBackendBenchmark {
+  protected static final Redwood.RedwoodChannels logger = Redwood.channels("Bench");
+
+  @Execution.Option(name="benchmark.backends", gloss="The cache backends to benchmark")
+  private static Props.CacheBackend[] backends = new Props.CacheBackend[]{ Props.CacheBackend.POSTGRES, Props.CacheBackend.LOCAL };
+  @Execution.Option(name="benchmark.threads", gloss="The thread counts to benchmark gets at")
+  private static int[] threads = new int[]{ 1, 4, 16 };
+  @Execution.Option(name="benchmark.keys", gloss="The number of distinct keys to put, and then get")
+  private static int keys = 10000;
+  @Execution.Option(name="benchmark.documents", gloss="The number of distinct documents to use as values")
+  private static int documents = 64;
+  @Execution.Option(name="benchmark.table", gloss="The (scratch) table to benchmark against; this is dropped afterwards")
+  private static String table = "benchmark_cache";
+
+  private static Annotation makeDocument(StanfordCoreNLP pipeline, Random rand) {
+    String[] words = { "Barack", "Obama", "was", "born", "in", "Hawaii", "and", "served", "as", "president",
+        "of", "the", "United", "States", "from", "2009", "to", "2017", "He", "married", "Michelle" };
+    StringBuilder text = new StringBuilder();
+    int length = 8 + rand.nextInt(25);
+    for (int w = 0; w < length; ++w) {
+      text.append(words[rand.nextInt(words.length)]).append(" ");
+    }
+    text.append(".");
+    Annotation ann = new Annotation(text.toString());
+    pipeline.annotate(ann);
+    return ann;
+  }
+
+  /** Put every key once, from a single thread; return the elapsed time in ms */
+  private static long put(final List<Annotation> docs) {
+    final long[] elapsed = new long[]{ 0 };
+    PostgresUtils.withKeyAnnotationTable(table, new PostgresUtils.KeyAnnotationCallback(new KryoAnnotationSerializer()) {
+      @Override
+      public void apply(Connection psql) throws SQLException {
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < keys; ++i) {
+          putSingle(psql, table, "key" + i, docs.get(i % docs.size()));
+        }
+        flush(psql, table);
+        elapsed[0] = System.currentTimeMillis() - startTime;
+      }
+    });
+    return elapsed[0];
+  }
+
+  /** Get every key once, split across the given number of threads; return the elapsed time in ms */
+  private static long get(int numThreads) throws InterruptedException {
+    ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+    final AtomicInteger next = new AtomicInteger(0);
+    final AtomicInteger misses = new AtomicInteger(0);
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(numThreads);
+    for (int t = 0; t < numThreads; ++t) {
+      pool.submit(() -> {
+        try {
+          start.await();
+          PostgresUtils.withKeyAnnotationTable(table, new PostgresUtils.KeyAnnotationCallback(new KryoAnnotationSerializer()) {
+            @Override
+            public void apply(Connection psql) throws SQLException {
+              int i;
+              while ((i = next.getAndIncrement()) < keys) {
+                if (!getSingle(psql, table, "key" + i).isDefined()) { misses.incrementAndGet(); }
+              }
+            }
+          });
+        } catch (InterruptedException | RuntimeException e) {
+          logger.err(e);
+        } finally {
+          done.countDown();
+        }
+        return null;
+      });
+    }
+    long startTime = System.currentTimeMillis();
+    start.countDown();
+    done.await();
+    long elapsed = System.currentTimeMillis() - startTime;
+    pool.shutdown();
+    if (misses.get() > 0) { logger.warn(misses.get() + " keys were missing from the cache"); }
+    return elapsed;
+  }
+
+  public static void main(String[] args) {
+    SlotfillingSystem.exec(in -> {
+      // Create documents
+      forceTrack("Creating " + documents + " documents");
+      Properties props = new Properties();
+      props.setProperty("annotators", "tokenize,ssplit");
+      StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
+      Random rand = new Random(42);
+      List<Annotation> docs = new ArrayList<>();
+      for (int i = 0; i < documents; ++i) {
+        docs.add(makeDocument(pipeline, rand));
+      }
+      endTrack("Creating " + documents + " documents");
+
+      // Run benchmark
+      for (Props.CacheBackend backend : backends) {
+        Props.CACHE_BACKEND = backend;
+        forceTrack("Benchmark [" + backend + "]");
+        try {
+          PostgresUtils.dropTable(table, true);
+          long putElapsed = Math.max(1, put(docs));
+          logger.log(BLUE, "put: " + (keys * 1000L / putElapsed) + " ops/sec [" + putElapsed + "ms]");
+          for (int numThreads : threads) {
+            long getElapsed = Math.max(1, get(numThreads));
+            logger.log(BLUE, "get (" + numThreads + " threads): " + (keys * 1000L / getElapsed) + " ops/sec [" + getElapsed + "ms]");
+          }
+          PostgresUtils.dropTable(table, true);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+          logger.err("could not benchmark " + backend + ": " + e.getMessage());
+        } finally {
+          endTrack("Benchmark [" + backend + "]");
+        }
+      }
+      return null;
+    }, args);
+  }
+}
@@ -0,0 +1,156 @@
+package edu.stanford.nlp.kbp.slotfilling.scripts;
+
+import edu.stanford.nlp.kbp.slotfilling.process.DependencyPathIndex;
+import edu.stanford.nlp.kbp.slotfilling.process.FeatureFactory;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphEdge;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+import edu.stanford.nlp.util.Execution;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.util.*;
+
+import static edu.stanford.nlp.util.logging.Redwood.Util.*;
+
+/**
+ * Measure the throughput (sentences / second) of computing the dependency path features' paths for every pair of
+ * mentions in a sentence, with a single {@link DependencyPathIndex} per sentence, against a fresh shortest path
+ * search per path (as {@link FeatureFactory} used to do).
+ *
+ * <p>The sentences are random dependency trees, with some extra edges (as in collapsed, CC-processed dependencies).
+ * For every ordered pair of mention heads, this gets the path between them, its plain and generalized strings,
+ * and the generalized paths from every node on it to both heads -- the searches of the dependency path
+ * features when every node on the path is a verb.</p>
+ */
+public class DependencyPathBenchmark {
+  protected static final Redwood.RedwoodChannels logger = Redwood.channels("Bench");
+
+  @Execution.Option(name="benchmark.sentences", gloss="The number of distinct sentences to featurize")
+  private static int sentences = 200;
+  @Execution.Option(name="benchmark.length", gloss="The number of tokens in a sentence")
+  private static int length = 40;
+  @Execution.Option(name="benchmark.mentions", gloss="The numbers of mentions per sentence to benchmark at")
+  private static int[] mentionCounts = new int[]{ 2, 5, 10, 20 };
+  @Execution.Option(name="benchmark.extra", gloss="The fraction of tokens with an extra (non-tree) edge")
+  private static double extraEdges = 0.1;
+  @Execution.Option(name="benchmark.warmup", gloss="The number of untimed runs before timing")
+  private static int warmup = 2;
+  @Execution.Option(name="benchmark.iterations", gloss="The number of timed runs, which are averaged")
+  private static int iterations = 5;
+
+  private static final String[] relations = { "nsubj", "dobj", "prep_in", "prep_of", "amod", "nn", "poss", "appos", "conj_and", "xcomp" };
+
+  /** A random sentence: a dependency graph, and the heads of its mentions */
+  private static class Sentence {
+    public final SemanticGraph graph = new SemanticGraph();
+    public final List<IndexedWord> heads = new ArrayList<>();
+  }
+
+  private static Sentence makeSentence(Random rand, int numMentions) {
+    Sentence sentence = new Sentence();
+    List<IndexedWord> nodes = new ArrayList<>();
+    for (int i = 1; i <= length; ++i) {
+      CoreLabel token = new CoreLabel();
+      token.setWord("w" + i);
+      token.setValue("w" + i);
+      token.setTag(i % 3 == 0 ? "VBD" : "NN");
+      token.setIndex(i);
+      IndexedWord node = new IndexedWord(token);
+      sentence.graph.addVertex(node);
+      nodes.add(node);
+    }
+    sentence.graph.setRoot(nodes.get(0));
+    for (int i = 1; i < nodes.size(); ++i) {
+      sentence.graph.addEdge(nodes.get(rand.nextInt(i)), nodes.get(i),
+          GrammaticalRelation.valueOf(relations[rand.nextInt(relations.length)]), 1.0, false);
+    }
+    for (int i = 0; i < (int) (extraEdges * length); ++i) {
+      IndexedWord gov = nodes.get(rand.nextInt(nodes.size()));
+      IndexedWord dep = nodes.get(rand.nextInt(nodes.size()));
+      if (!gov.equals(dep) && !sentence.graph.containsEdge(gov, dep)) {
+        sentence.graph.addEdge(gov, dep, GrammaticalRelation.valueOf(relations[rand.nextInt(relations.length)]), 1.0, true);
+      }
+    }
+    List<IndexedWord> shuffled = new ArrayList<>(nodes);
+    Collections.shuffle(shuffled, rand);
+    sentence.heads.addAll(shuffled.subList(0, Math.min(numMentions, shuffled.size())));
+    return sentence;
+  }
+
+  /** Somewhere to put the path strings, so that the JIT can't optimize them away */
+  private static volatile int sink = 0;
+
+  /** The paths of one mention pair, searching afresh every time; returns the total number of edges on them */
+  private static long searchEveryTime(SemanticGraph graph, IndexedWord node0, IndexedWord node1) {
+    List<SemanticGraphEdge> edgePath = graph.getShortestUndirectedPathEdges(node0, node1);
+    if (edgePath == null) { return 0; }
+    long numEdges = edgePath.size();
+    sink += FeatureFactory.generalizedDependencyPath(edgePath, node0).length() + FeatureFactory.dependencyPath(edgePath, node0).length();
+    for (IndexedWord node : graph.getShortestUndirectedPathNodes(node0, node1)) {
+      if (node.equals(node0) || node.equals(node1)) { continue; }
+      List<SemanticGraphEdge> right = graph.getShortestUndirectedPathEdges(node, node1);
+      List<SemanticGraphEdge> left = graph.getShortestUndirectedPathEdges(node0, node);
+      numEdges += right.size() + left.size();
+      sink += FeatureFactory.generalizedDependencyPath(right, node).length() + FeatureFactory.generalizedDependencyPath(left, node0).length();
+    }
+    return numEdges;
+  }
+
+  /** The paths of one mention pair, from the sentence's index; returns the total number of edges on them */
+  private static long searchIndex(DependencyPathIndex index, IndexedWord node0, IndexedWord node1) {
+    List<SemanticGraphEdge> edgePath = index.edges(node0, node1);
+    if (edgePath == null) { return 0; }
+    long numEdges = edgePath.size();
+    sink += index.path(node0, node1, true).length() + index.path(node0, node1, false).length();
+    for (IndexedWord node : index.nodes(node0, node1)) {
+      if (node.equals(node0) || node.equals(node1)) { continue; }
+      numEdges += index.edges(node, node1).size() + index.edges(node0, node).size();
+      sink += index.path(node, node1, true).length() + index.path(node0, node, true).length();
+    }
+    return numEdges;
+  }
+
+  /** Featurize every pair of mentions in every sentence, the given number of times; return the average time in ms and the total number of edges */
+  private static double[] time(List<Sentence> corpus, boolean useIndex, int runs) {
+    long elapsed = 0;
+    long numEdges = 0;
+    for (int run = 0; run < runs; ++run) {
+      numEdges = 0;
+      long startTime = System.nanoTime();
+      for (Sentence sentence : corpus) {
+        DependencyPathIndex index = useIndex ? new DependencyPathIndex(sentence.graph) : null;
+        for (IndexedWord node0 : sentence.heads) {
+          for (IndexedWord node1 : sentence.heads) {
+            if (node0.equals(node1)) { continue; }
+            numEdges += useIndex ? searchIndex(index, node0, node1) : searchEveryTime(sentence.graph, node0, node1);
+          }
+        }
+      }
+      elapsed += System.nanoTime() - startTime;
+    }
+    return new double[]{ ((double) elapsed) / 1e6 / ((double) Math.max(1, runs)), numEdges };
+  }
+
+  public static void main(String[] args) {
+    Execution.fillOptions(DependencyPathBenchmark.class, args);
+    forceTrack("Benchmark [" + sentences + " sentences; " + length + " tokens]");
+    for (int numMentions : mentionCounts) {
+      Random rand = new Random(42);
+      List<Sentence> corpus = new ArrayList<>();
+      for (int i = 0; i < sentences; ++i) { corpus.add(makeSentence(rand, numMentions)); }
+      forceTrack("Mentions: " + numMentions);
+      time(corpus, false, warmup);
+      double[] search = time(corpus, false, iterations);
+      time(corpus, true, warmup);
+      double[] index = time(corpus, true, iterations);
+      logger.log(BLUE, "search every path: " + ((long) (sentences * 1000.0 / Math.max(1e-3, search[0]))) + " sentences/sec [" + ((long) search[0]) + "ms]");
+      logger.log(BLUE, "DependencyPathIndex: " + ((long) (sentences * 1000.0 / Math.max(1e-3, index[0]))) + " sentences/sec [" + ((long) index[0]) + "ms]");
+      // (both find shortest paths, so the path lengths -- if not always the paths -- must agree)
+      if (search[1] != index[1]) { logger.warn("paths differ in length: " + ((long) search[1]) + " vs " + ((long) index[1]) + " edges"); }
+      endTrack("Mentions: " + numMentions);
+    }
+    endTrack("Benchmark [" + sentences + " sentences; " + length + " tokens]");
+  }
+}
@@ -0,0 +1,57 @@
+package edu.stanford.nlp.kbp.slotfilling.scripts;
+
+import edu.stanford.nlp.kbp.common.Maybe;
+import edu.stanford.nlp.kbp.common.Props;
+import edu.stanford.nlp.kbp.slotfilling.classify.BinaryModel;
+import edu.stanford.nlp.kbp.slotfilling.classify.ModelType;
+import edu.stanford.nlp.kbp.slotfilling.classify.RelationClassifier;
+import edu.stanford.nlp.util.Execution;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+import static edu.stanford.nlp.util.logging.Redwood.Util.*;
+
+/**
+ * Export a serialized relation classifier (e.g., <code>kbp_relation_model.JOINT_BAYES.50.ser</code>) as a
+ * {@link BinaryModel}, which loads by memory mapping rather than deserializing.
+ * By default, the binary model is written next to the serialized one, where
+ * {@link edu.stanford.nlp.kbp.slotfilling.SlotfillingSystem#getTrainedClassifier()} looks for it
+ * (see {@link Props#TEST_MODEL_BINARY}).
+ * The exported model is loaded back, as a sanity check.
+ */
+public class ExportBinaryModel {
+  protected static final Redwood.RedwoodChannels logger = Redwood.channels("Export");
+
+  @Execution.Option(name="export.model", gloss="The serialized model to export", required=true)
+  private static String model;
+  @Execution.Option(name="export.type", gloss="The type of the model to export")
+  private static ModelType type = ModelType.JOINT_BAYES;
+  @Execution.Option(name="export.output", gloss="The path to write the binary model to; by default, next to the serialized model")
+  private static String output = null;
+
+  public static void main(String[] args) throws IOException {
+    Execution.fillOptions(ExportBinaryModel.class, args);
+    if (output == null) { output = BinaryModel.pathFor(model); }
+    if (output.equals(model)) { fatal("refusing to overwrite the model being exported: " + model); }
+    Properties props = new Properties();
+
+    forceTrack("Exporting " + model + " to " + output);
+    RelationClassifier classifier = type.load(model, props);
+    classifier.saveBinary(output, new File(model).isFile() ? Maybe.Just(new File(model)) : Maybe.<File>Nothing());
+    logger.log(BLUE, "wrote " + new File(output).length() + " bytes [serialized model: " + new File(model).length() + " bytes]");
+    endTrack("Exporting " + model + " to " + output);
+
+    // Sanity check that the export loads
+    forceTrack("Loading " + output);
+    long startTime = System.currentTimeMillis();
+    RelationClassifier exported = type.load(output, props);
+    logger.log("loaded in " + (System.currentTimeMillis() - startTime) + "ms");
+    if (exported.getClass() != classifier.getClass()) {
+      fatal("exported model loaded as " + exported.getClass().getSimpleName() + ", not " + classifier.getClass().getSimpleName());
+    }
+    endTrack("Loading " + output);
+  }
+}
@@ -0,0 +1,151 @@
+package edu.stanford.nlp.kbp.slotfilling.scripts;
+
+import edu.stanford.nlp.classify.LinearClassifier;
+import edu.stanford.nlp.ie.machinereading.structure.RelationMention;
+import edu.stanford.nlp.kbp.common.*;
+import edu.stanford.nlp.kbp.slotfilling.classify.CompiledJointBayes;
+import edu.stanford.nlp.kbp.slotfilling.classify.JointBayesRelationExtractor;
+import edu.stanford.nlp.kbp.slotfilling.ir.KBPRelationProvenance;
+import edu.stanford.nlp.ling.BasicDatum;
+import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.Execution;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+import edu.stanford.nlp.util.Pair;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.io.*;
+import java.util.*;
+
+import static edu.stanford.nlp.util.logging.Redwood.Util.*;
+
+/**
+ * Measure the throughput (sentence groups / second) of MIML-RE inference with the model compiled into flat
+ * arrays ({@link CompiledJointBayes}), against classifying through its classifiers, and the largest difference
+ * between the probabilities the two predict.
+ *
+ * <p>The model is random, with the shape of a trained one: a Z classifier per fold over every relation, and a
+ * Y classifier per relation over the Y features. It is loaded through
+ * {@link JointBayesRelationExtractor#load(ObjectInputStream)}, as a serialized model would be.</p>
+ */
+public class JointBayesBenchmark {
+  protected static final Redwood.RedwoodChannels logger = Redwood.channels("Bench");
+
+  @Execution.Option(name="benchmark.groups", gloss="The number of sentence groups to classify")
+  private static int groups = 2000;
+  @Execution.Option(name="benchmark.sentences", gloss="The maximum number of sentences in a group")
+  private static int maxSentences = 20;
+  @Execution.Option(name="benchmark.features", gloss="The number of features the Z classifiers know")
+  private static int features = 20000;
+  @Execution.Option(name="benchmark.features.sentence", gloss="The number of features of a sentence")
+  private static int featuresPerSentence = 30;
+  @Execution.Option(name="benchmark.relations", gloss="The number of relations (not counting NIL)")
+  private static int relations = 41;
+  @Execution.Option(name="benchmark.folds", gloss="The number of folds (Z classifiers)")
+  private static int folds = 3;
+  @Execution.Option(name="benchmark.warmup", gloss="The number of untimed runs before timing")
+  private static int warmup = 2;
+  @Execution.Option(name="benchmark.iterations", gloss="The number of timed runs, which are averaged")
+  private static int iterations = 5;
+
+  private static LinearClassifier<String, String> randomClassifier(Random rand, Index<String> featureIndex, Index<String> labelIndex) {
+    double[][] weights = new double[featureIndex.size()][labelIndex.size()];
+    for (double[] row : weights) {
+      for (int i = 0; i < row.length; ++i) { row[i] = rand.nextGaussian(); }
+    }
+    return new LinearClassifier<>(weights, featureIndex, labelIndex);
+  }
+
+  /** A random model, serialized in the format of {@link JointBayesRelationExtractor#save(ObjectOutputStream)} */
+  private static byte[] randomModel(Random rand) throws IOException {
+    Index<String> zLabels = new HashIndex<>();
+    zLabels.add(RelationMention.UNRELATED);
+    for (int r = 0; r < relations; ++r) { zLabels.add("rel" + r); }
+    Index<String> featureIndex = new HashIndex<>();
+    for (int f = 0; f < features; ++f) { featureIndex.add("f" + f); }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(new HashSet<String>());
+    out.writeObject(zLabels);
+    out.writeInt(folds);
+    for (int fold = 0; fold < folds; ++fold) { out.writeObject(randomClassifier(rand, featureIndex, zLabels)); }
+    out.writeObject(null);  // the single Z classifier is unused
+    out.writeInt(relations);
+    for (int r = 0; r < relations; ++r) {
+      String relation = "rel" + r;
+      Index<String> yFeatures = new HashIndex<>(Arrays.asList("none", "atleastonce"));
+      for (int other = 0; other < relations; ++other) {
+        if (other != r) { yFeatures.add("co:s|" + relation + "|d|rel" + other + "|"); }
+      }
+      out.writeObject(relation);
+      out.writeObject(randomClassifier(rand, yFeatures, new HashIndex<>(Arrays.asList(RelationMention.UNRELATED, relation))));
+    }
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  private static List<SentenceGroup> randomGroups(Random rand) {
+    List<SentenceGroup> corpus = new ArrayList<>();
+    for (int g = 0; g < groups; ++g) {
+      SentenceGroup group = SentenceGroup.empty(KBPNew.entName("entity" + g).entType(NERTag.PERSON).slotValue("slot" + g).KBPair());
+      int numSentences = 1 + rand.nextInt(maxSentences);
+      for (int s = 0; s < numSentences; ++s) {
+        List<String> sentence = new ArrayList<>();
+        for (int f = 0; f < featuresPerSentence; ++f) { sentence.add("f" + rand.nextInt(features)); }
+        group.add(new BasicDatum<String, String>(sentence), new KBPRelationProvenance("doc" + g + "." + s, "index"), "key" + g + "." + s);
+      }
+      corpus.add(group);
+    }
+    return corpus;
+  }
+
+  /** Classify every group, the given number of times; return the average time in ms, and the predictions of the last run */
+  private static Pair<Double, List<Counter<Pair<String, Maybe<KBPRelationProvenance>>>>> time(
+      JointBayesRelationExtractor extractor, List<SentenceGroup> corpus, boolean compiled, int runs) {
+    Props.TEST_JOINTBAYES_COMPILED = compiled;
+    long elapsed = 0;
+    List<Counter<Pair<String, Maybe<KBPRelationProvenance>>>> predictions = new ArrayList<>();
+    for (int run = 0; run < runs; ++run) {
+      predictions.clear();
+      long startTime = System.nanoTime();
+      for (SentenceGroup group : corpus) {
+        predictions.add(extractor.classifyRelations(group, Maybe.<CoreMap[]>Nothing()));
+      }
+      elapsed += System.nanoTime() - startTime;
+    }
+    return Pair.makePair(((double) elapsed) / 1e6 / ((double) Math.max(1, runs)), predictions);
+  }
+
+  public static void main(String[] args) throws IOException, ClassNotFoundException {
+    Execution.fillOptions(JointBayesBenchmark.class, args);
+    Random rand = new Random(42);
+    forceTrack("Benchmark [" + groups + " groups; " + features + " features; " + relations + " relations; " + folds + " folds]");
+    JointBayesRelationExtractor extractor = new JointBayesRelationExtractor(new Properties());
+    extractor.load(new ObjectInputStream(new ByteArrayInputStream(randomModel(rand))));
+    List<SentenceGroup> corpus = randomGroups(rand);
+
+    time(extractor, corpus, false, warmup);
+    Pair<Double, List<Counter<Pair<String, Maybe<KBPRelationProvenance>>>>> classifiers = time(extractor, corpus, false, iterations);
+    time(extractor, corpus, true, warmup);
+    Pair<Double, List<Counter<Pair<String, Maybe<KBPRelationProvenance>>>>> compiled = time(extractor, corpus, true, iterations);
+    logger.log(BLUE, "classifiers: " + ((long) (groups * 1000.0 / Math.max(1e-3, classifiers.first))) + " groups/sec [" + classifiers.first.longValue() + "ms]");
+    logger.log(BLUE, "compiled: " + ((long) (groups * 1000.0 / Math.max(1e-3, compiled.first))) + " groups/sec [" + compiled.first.longValue() + "ms]");
+
+    // Check that the two agree
+    double maxDifference = 0.0;
+    int disagreements = 0;
+    for (int g = 0; g < corpus.size(); ++g) {
+      Counter<Pair<String, Maybe<KBPRelationProvenance>>> expected = classifiers.second.get(g);
+      Counter<Pair<String, Maybe<KBPRelationProvenance>>> actual = compiled.second.get(g);
+      if (!expected.keySet().equals(actual.keySet())) { disagreements += 1; }
+      for (Pair<String, Maybe<KBPRelationProvenance>> key : expected.keySet()) {
+        maxDifference = Math.max(maxDifference, Math.abs(expected.getCount(key) - actual.getCount(key)));
+      }
+    }
+    logger.log("max probability difference: " + maxDifference);
+    if (disagreements > 0) { logger.warn("predicted relations differ for " + disagreements + " groups"); }
+    endTrack("Benchmark [" + groups + " groups; " + features + " features; " + relations + " relations; " + folds + " folds]");
+  }
+}
@@ -0,0 +1,118 @@
+package edu.stanford.nlp.kbp.slotfilling.scripts;
+
+import edu.stanford.nlp.kbp.slotfilling.ir.index.KryoAnnotationSerializer;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.util.Execution;
+import edu.stanford.nlp.util.Pair;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static edu.stanford.nlp.util.logging.Redwood.Util.*;
+
+/**
+ * Measure the throughput (documents / second) of reading and writing annotated documents with a single,
+ * shared {@link KryoAnnotationSerializer} at varying numbers of threads.
+ * This is the access pattern of the IR layer, where many threads pull serialized documents out of Lucene
+ * and the Postgres caches at once.
+ */
+public class KryoSerializerBenchmark {
+  protected static final Redwood.RedwoodChannels logger = Redwood.channels("Bench");
+
+  @Execution.Option(name="benchmark.threads", gloss="The thread counts to benchmark at")
+  private static int[] threads = new int[]{ 1, 4, 16, 32 };
+  @Execution.Option(name="benchmark.documents", gloss="The number of distinct documents to serialize")
+  private static int documents = 64;
+  @Execution.Option(name="benchmark.roundtrips", gloss="The number of read+write round trips per thread count")
+  private static int roundtrips = 20000;
+  @Execution.Option(name="benchmark.warmup", gloss="The number of warmup round trips before timing")
+  private static int warmup = 5000;
+
+  private static Annotation makeDocument(StanfordCoreNLP pipeline, Random rand) {
+    String[] words = { "Barack", "Obama", "was", "born", "in", "Hawaii", "and", "served", "as", "president",
+        "of", "the", "United", "States", "from", "2009", "to", "2017", "He", "married", "Michelle" };
+    StringBuilder text = new StringBuilder();
+    int numSentences = 5 + rand.nextInt(20);
+    for (int s = 0; s < numSentences; ++s) {
+      int length = 8 + rand.nextInt(25);
+      for (int w = 0; w < length; ++w) {
+        text.append(words[rand.nextInt(words.length)]).append(" ");
+      }
+      text.append(". ");
+    }
+    Annotation ann = new Annotation(text.toString());
+    pipeline.annotate(ann);
+    return ann;
+  }
+
+  /** Run the given number of round trips split across the given number of threads; return the elapsed time in ms */
+  private static long run(final KryoAnnotationSerializer serializer, final List<Annotation> docs, final List<byte[]> serialized,
+                          int numThreads, final int numRoundtrips) throws InterruptedException {
+    ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+    final AtomicInteger next = new AtomicInteger(0);
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(numThreads);
+    for (int t = 0; t < numThreads; ++t) {
+      pool.submit(() -> {
+        try {
+          start.await();
+          int i;
+          while ((i = next.getAndIncrement()) < numRoundtrips) {
+            // Read
+            Pair<Annotation, InputStream> read = serializer.read(new ByteArrayInputStream(serialized.get(i % serialized.size())));
+            read.second.close();
+            // Write
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            serializer.write(docs.get(i % docs.size()), bytes).close();
+          }
+        } catch (IOException | ClassNotFoundException | InterruptedException e) {
+          logger.err(e);
+        } finally {
+          done.countDown();
+        }
+        return null;
+      });
+    }
+    long startTime = System.currentTimeMillis();
+    start.countDown();
+    done.await();
+    long elapsed = System.currentTimeMillis() - startTime;
+    pool.shutdown();
+    return elapsed;
+  }
+
+  public static void main(String[] args) throws IOException, ClassNotFoundException, InterruptedException {
+    Execution.fillOptions(KryoSerializerBenchmark.class, args);
+
+    // Create documents
+    forceTrack("Creating " + documents + " documents");
+    Properties props = new Properties();
+    props.setProperty("annotators", "tokenize,ssplit");
+    StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
+    Random rand = new Random(42);
+    KryoAnnotationSerializer serializer = new KryoAnnotationSerializer(true, false, true);
+    List<Annotation> docs = new ArrayList<>();
+    List<byte[]> serialized = new ArrayList<>();
+    for (int i = 0; i < documents; ++i) {
+      Annotation doc = makeDocument(pipeline, rand);
+      docs.add(doc);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      serializer.write(doc, bytes).close();
+      serialized.add(bytes.toByteArray());
+    }
+    endTrack("Creating " + documents + " documents");
+
+    // Run benchmark
+    forceTrack("Benchmark");
+    for (int numThreads : threads) {
+      run(serializer, docs, serialized, numThreads, warmup);
+      long elapsed = Math.max(1, run(serializer, docs, serialized, numThreads, roundtrips));
+      logger.log(BLUE, numThreads + " threads: " + (roundtrips * 1000L / elapsed) + " documents/sec [" + elapsed + "ms]");
+    }
+    endTrack("Benchmark");
+  }
+}
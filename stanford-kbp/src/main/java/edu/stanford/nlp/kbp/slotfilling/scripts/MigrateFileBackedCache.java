@@ -0,0 +1,77 @@
+package edu.stanford.nlp.kbp.slotfilling.scripts;
+
+import edu.stanford.nlp.kbp.slotfilling.ir.index.KryoAnnotationSerializer;
+import edu.stanford.nlp.kbp.slotfilling.train.KryoDatumCache;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.util.Execution;
+import edu.stanford.nlp.util.FileBackedCache;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+
+import static edu.stanford.nlp.util.logging.Redwood.Util.*;
+
+/**
+ * Copy a {@link FileBackedCache} from one storage engine to another -- usually, from the block layout
+ * (one <code>*.block.ser.gz</code> file per hash bucket) to memory-mapped segments.
+ * The source cache is left untouched; once the migration is done, the destination directory can be swapped in for it.
+ */
+public class MigrateFileBackedCache {
+  protected static final Redwood.RedwoodChannels logger = Redwood.channels("Migrate");
+
+  /** The kinds of cache there are, distinguished by how they are serialized */
+  public static enum CacheType { DATUMS, ANNOTATIONS, DOCUMENTS }
+
+  @Execution.Option(name="migrate.source", gloss="The directory of the cache to migrate", required=true)
+  private static File source;
+  @Execution.Option(name="migrate.destination", gloss="The directory to write the migrated cache to; this should not exist yet", required=true)
+  private static File destination;
+  @Execution.Option(name="migrate.type", gloss="The type of cache being migrated: DATUMS (KryoDatumCache), ANNOTATIONS, or DOCUMENTS (KryoAnnotationSerializer caches)")
+  private static CacheType type = CacheType.DATUMS;
+  @Execution.Option(name="migrate.storage", gloss="The storage engine to migrate to")
+  private static FileBackedCache.Storage storage = FileBackedCache.Storage.SEGMENTS;
+  @Execution.Option(name="migrate.numfiles", gloss="The number of files (hash buckets) of the caches, where they use blocks")
+  private static int numFiles = 10000;
+  @Execution.Option(name="migrate.compress", gloss="Whether the annotation caches are compressed")
+  private static boolean compress = true;
+
+  public static void main(String[] args) {
+    Execution.fillOptions(MigrateFileBackedCache.class, args);
+    if (!source.isDirectory()) { fatal("no cache to migrate at " + source); }
+    File[] existing = destination.listFiles();
+    if (existing != null && existing.length > 0) { fatal("destination is not empty: " + destination); }
+    FileBackedCache.Storage sourceStorage = FileBackedCache.Storage.detect(source);
+    if (sourceStorage == storage) { logger.warn("source is already stored as " + storage + "; copying it anyways"); }
+
+    int count;
+    KryoAnnotationSerializer serializer = new KryoAnnotationSerializer(compress, true);
+    switch (type) {
+      case DATUMS:
+        KryoDatumCache datumsIn = new KryoDatumCache(source, numFiles, sourceStorage);
+        KryoDatumCache datumsOut = new KryoDatumCache(destination, numFiles, storage);
+        count = FileBackedCache.migrate(datumsIn, datumsOut);
+        datumsIn.close();
+        datumsOut.close();
+        break;
+      case ANNOTATIONS:
+        FileBackedCache<Serializable, Annotation> annotationsIn = serializer.createCache(source, numFiles, true, sourceStorage);
+        FileBackedCache<Serializable, Annotation> annotationsOut = serializer.createCache(destination, numFiles, false, storage);
+        count = FileBackedCache.migrate(annotationsIn, annotationsOut);
+        annotationsIn.close();
+        annotationsOut.close();
+        break;
+      case DOCUMENTS:
+        FileBackedCache<Serializable, ArrayList<Annotation>> documentsIn = serializer.createDocumentCache(source, numFiles, true, sourceStorage);
+        FileBackedCache<Serializable, ArrayList<Annotation>> documentsOut = serializer.createDocumentCache(destination, numFiles, false, storage);
+        count = FileBackedCache.migrate(documentsIn, documentsOut);
+        documentsIn.close();
+        documentsOut.close();
+        break;
+      default:
+        throw new IllegalStateException("Unknown cache type: " + type);
+    }
+    logger.log(BLUE, "migrated " + count + " entries from " + source + " [" + sourceStorage + "] to " + destination + " [" + storage + "]");
+  }
+}
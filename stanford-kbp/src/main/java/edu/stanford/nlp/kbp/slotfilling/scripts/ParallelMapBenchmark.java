@@ -0,0 +1,206 @@
+package edu.stanford.nlp.kbp.slotfilling.scripts;
+
+import edu.stanford.nlp.kbp.common.CollectionUtils;
+import edu.stanford.nlp.kbp.common.Maybe;
+import edu.stanford.nlp.kbp.common.ParallelMapper;
+import edu.stanford.nlp.kbp.common.SimpleLock;
+import edu.stanford.nlp.util.Execution;
+import edu.stanford.nlp.util.IterableIterator;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import static edu.stanford.nlp.util.logging.Redwood.Util.*;
+
+/**
+ * Measure the throughput (elements / second) of mapping over a stream in parallel with {@link ParallelMapper},
+ * against the thread-per-result implementation it replaced in CollectionUtils#parMapIgnoreNull
+ * (copied below), and against a serial map.
+ * The mapped function does a configurable amount of busy work per element, so that both the overhead of
+ * the map (little work) and its scaling (more work) can be measured.
+ */
+public class ParallelMapBenchmark {
+  protected static final Redwood.RedwoodChannels logger = Redwood.channels("Bench");
+
+  @Execution.Option(name="benchmark.elements", gloss="The number of elements in the stream to map over")
+  private static int elements = 100000;
+  @Execution.Option(name="benchmark.work", gloss="The amounts of busy work (hash iterations) per element to benchmark at")
+  private static int[] workLevels = new int[]{ 0, 100, 10000 };
+  @Execution.Option(name="benchmark.warmup", gloss="The number of untimed runs before timing")
+  private static int warmup = 2;
+  @Execution.Option(name="benchmark.iterations", gloss="The number of timed runs, which are averaged")
+  private static int iterations = 5;
+  @Execution.Option(name="benchmark.legacy", gloss="Also benchmark the old implementation (which leaks a thread pool per run)")
+  private static boolean legacy = true;
+
+  /** Some busy work, which the JIT can't optimize away */
+  private static Integer work(Integer in, int iterations) {
+    int hash = in;
+    for (int i = 0; i < iterations; ++i) { hash = hash * 31 + i; }
+    return (hash == 42 && in < 0) ? null : in;  // never null, but the compiler can't know that
+  }
+
+  /** Consume the given map over the input stream the given number of times; return the average elapsed time in ms */
+  private static double time(Function<Iterator<Integer>, Iterator<Integer>> map, int runs) {
+    long elapsed = 0;
+    for (int run = 0; run < runs; ++run) {
+      Iterator<Integer> input = new Iterator<Integer>() {
+        int next = 0;
+        @Override public boolean hasNext() { return next < elements; }
+        @Override public Integer next() { return next++; }
+        @Override public void remove() { throw new UnsupportedOperationException(); }
+      };
+      long startTime = System.currentTimeMillis();
+      Iterator<Integer> output = map.apply(input);
+      int count = 0;
+      int expected = 0;
+      while (output.hasNext()) {
+        if (output.next() != expected) { throw new IllegalStateException("Output out of order at " + expected); }
+        count += 1;
+        expected += 1;
+      }
+      elapsed += System.currentTimeMillis() - startTime;
+      if (count != elements) { throw new IllegalStateException("Expected " + elements + " elements; got " + count); }
+    }
+    return ((double) elapsed) / ((double) Math.max(1, runs));
+  }
+
+  private static void benchmark(String name, Function<Iterator<Integer>, Iterator<Integer>> map) {
+    time(map, warmup);
+    double elapsed = Math.max(1.0, time(map, iterations));
+    logger.log(BLUE, name + ": " + ((long) (elements * 1000.0 / elapsed)) + " elements/sec [" + ((long) elapsed) + "ms]");
+  }
+
+  public static void main(String[] args) {
+    Execution.fillOptions(ParallelMapBenchmark.class, args);
+    ParallelMapper mapper = new ParallelMapper(Math.max(1, Execution.threads));
+    forceTrack("Benchmark [" + elements + " elements; " + mapper.threads + " threads]");
+    for (final int iterationsPerElement : workLevels) {
+      forceTrack("Work: " + iterationsPerElement);
+      final Function<Integer, Integer> fn = in -> work(in, iterationsPerElement);
+      benchmark("serial", in -> CollectionUtils.mapIgnoreNull(in, fn));
+      benchmark("ParallelMapper (ordered)", in -> mapper.mapIgnoreNull(in, fn));
+      benchmark("ParallelMapper (ordered, 16x look-ahead)", in -> mapper.mapIgnoreNull(in, fn, 16 * mapper.threads));
+      if (legacy) {
+        benchmark("legacy parMapIgnoreNull", in -> legacyParMapIgnoreNull(in, fn));
+      }
+      endTrack("Work: " + iterationsPerElement);
+    }
+    endTrack("Benchmark [" + elements + " elements; " + mapper.threads + " threads]");
+    mapper.close();
+    System.exit(0);  // the legacy implementation never shuts down its pools
+  }
+
+  /**
+   * The old implementation of CollectionUtils#parMapIgnoreNull, for comparison:
+   * a new pool per call, and a new thread per result to enforce the output order.
+   */
+  private static <T1,T2> IterableIterator<T2> legacyParMapIgnoreNull(Iterator<T1> lst, final Function<T1,T2> mapper) {
+    final BlockingQueue<Maybe<T1>> workQueue = new ArrayBlockingQueue<>(3 * Execution.threads);
+    final BlockingQueue<Maybe<T2>> resultQueue = new ArrayBlockingQueue<>(3 * Execution.threads);
+    final Iterator<T1> iter = CollectionUtils.mapIgnoreNull(lst, in -> in);
+    // Worker thread
+    Thread worker = new Thread() {
+      ExecutorService exec = Executors.newFixedThreadPool(Execution.threads);
+      @Override
+      public void run() {
+        // Run jobs
+        try {
+          Maybe<T1> task;
+          SimpleLock mutableLastTaskDone = new SimpleLock();
+          while ( (task = workQueue.take()).isDefined() ) {
+            // Ensure synchronous writes
+            final SimpleLock lastTaskDone = mutableLastTaskDone;
+            final SimpleLock thisTaskDone = new SimpleLock();
+            thisTaskDone.acquire();
+            mutableLastTaskDone = thisTaskDone;
+            // Get the task
+            final T1 input = task.get();
+            // Run the mapper
+            exec.submit(() -> {
+              try {
+                // Run the computation
+                final T2 result = mapper.apply(input);
+                // Free this thread, and add the elements in a new thread
+                Thread adder = new Thread() {
+                  @Override
+                  public void run() {
+                    lastTaskDone.acquire();  // make sure the last task has finished
+                    try {
+                      resultQueue.put(Maybe.Just(result));
+                    } catch (InterruptedException e) {
+                      e.printStackTrace();
+                    } finally {
+                      lastTaskDone.release();  // (release last task, just so everything ends unlocked)
+                      thisTaskDone.release();  // release this task
+                    }
+                  }
+                };
+                adder.setDaemon(true);
+                adder.start();
+              } catch (Throwable t) {
+                t.printStackTrace();
+              }
+            });
+          }
+          // Signal end-of-jobs
+          mutableLastTaskDone.acquire();
+          mutableLastTaskDone.release();
+          resultQueue.put(Maybe.<T2>Nothing());
+        } catch (InterruptedException ignored) { }
+      }
+    };
+    worker.setDaemon(true);  // Kill on program termination
+    worker.start();
+
+    // The iterator interface returned
+    return new IterableIterator<>(new Iterator<T2>(){
+      // Nothing means no cached element; null means no more elements ever
+      private Maybe<T2> next = Maybe.Nothing();
+
+      @Override
+      public boolean hasNext() {
+        if (next == null) { return false; }
+        if (next.isDefined()) { return true; }
+
+        // Fill up the work queue
+        while (workQueue.remainingCapacity() > 0) {
+          if (iter.hasNext()) {
+            workQueue.add(Maybe.Just(iter.next()));
+          } else {
+            workQueue.add(Maybe.<T1>Nothing());
+            break;
+          }
+        }
+
+        // Poll from the queue
+        try {
+          Maybe<T2> result = resultQueue.take();
+          if (result.isDefined()) {
+            next = result;
+          } else {
+            next = null;
+          }
+        } catch (InterruptedException ignored) { }
+        return next != null;
+      }
+      @Override
+      public T2 next() {
+        if (!hasNext()) { throw new NoSuchElementException(); }
+        T2 rtn = next.orCrash();
+        assert rtn != null;
+        next = Maybe.Nothing();
+        return rtn;
+      }
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    });
+  }
+}
@@ -677,7 +677,7 @@ public class TextOps {
                 relationMention.second.spanInSentence,
                 sentence);
             // (sentence gloss key)
-            String hexKey = CoreMapUtils.getSentenceGlossKey(sentence.get(CoreAnnotations.TokensAnnotation.class), relationMention.first.spanInSentence, relationMention.second.spanInSentence);
+            String hexKey = CoreMapUtils.getSentenceGlossKey(sentence, relationMention.first.spanInSentence, relationMention.second.spanInSentence);
             // (create)
             final SentenceGroup group = new SentenceGroup(key, datum, provenance, hexKey);
 
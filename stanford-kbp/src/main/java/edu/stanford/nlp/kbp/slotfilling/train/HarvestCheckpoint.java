@@ -0,0 +1,135 @@
+package edu.stanford.nlp.kbp.slotfilling.train;
+
+import edu.stanford.nlp.kbp.common.*;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The progress of harvesting training datums for a list of tuples (see {@link KBPTrainer#findDatumsFromSeedQueries(java.util.Collection)}),
+ * saved as it goes, so that an interrupted harvest can resume where it stopped.
+ *
+ * <p>For every tuple harvested, in order, this saves the sentence groups that were returned for it.
+ * A resumed harvest replays these, rather than querying and featurizing the tuples again, and then carries on
+ * from the first tuple which was not finished.
+ * The checkpoint is tied to the exact list of tuples it was made for; a checkpoint for any other list is discarded.</p>
+ *
+ * <p>The checkpoint lives in a {@link LogStructuredStore} on local disk, and so only one process may use it at a time.</p>
+ */
+public class HarvestCheckpoint implements Closeable {
+  private static final Redwood.RedwoodChannels logger = Redwood.channels("Harvest");
+
+  private static final String META_KEY = "__meta__";
+
+  /** The store holding the checkpoint */
+  private final LogStructuredStore store;
+  /** A fingerprint of the tuples being harvested */
+  private final long fingerprint;
+  /** The number of tuples (from the start of the list) which are done */
+  private int completed;
+
+  /**
+   * Open a checkpoint for harvesting the given tuples, creating it if it does not exist.
+   * @param directory The directory to keep the checkpoint in.
+   * @param tuples The tuples being harvested, in the order they are harvested.
+   * @throws IOException If the checkpoint could not be opened -- e.g., it is open in another process.
+   */
+  public HarvestCheckpoint(File directory, List<? extends KBPair> tuples) throws IOException {
+    this.store = new LogStructuredStore(directory, 64 * 1024 * 1024);
+    this.fingerprint = fingerprint(tuples);
+    // Read progress
+    int completed = 0;
+    for (byte[] meta : store.get(META_KEY)) {
+      String[] fields = new String(meta, StandardCharsets.UTF_8).split(":");
+      if (fields.length == 2 && Long.parseLong(fields[0]) == fingerprint) {
+        completed = Integer.parseInt(fields[1]);
+      } else {
+        logger.warn("checkpoint in " + directory + " is for a different list of tuples; starting over");
+      }
+    }
+    this.completed = Math.min(completed, tuples.size());
+    writeMeta();
+  }
+
+  /** The number of tuples, from the start of the list, which have been harvested already */
+  public int completed() {
+    return completed;
+  }
+
+  /**
+   * The sentence groups returned for a tuple which has already been harvested.
+   * @param index The index of the tuple in the list; this must be less than {@link HarvestCheckpoint#completed()}.
+   */
+  public List<SentenceGroup> get(int index) throws IOException {
+    if (index >= completed) { throw new IllegalArgumentException("Tuple " + index + " has not been harvested yet"); }
+    Maybe<byte[]> bytes = store.get(key(index));
+    if (!bytes.isDefined()) { return Collections.emptyList(); }
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.get()));
+      int numGroups = in.readInt();
+      List<SentenceGroup> groups = new ArrayList<>(numGroups);
+      for (int i = 0; i < numGroups; ++i) {
+        byte[] group = new byte[in.readInt()];
+        in.readFully(group);
+        groups.add(KryoDatumCache.load(new ByteArrayInputStream(group)));
+      }
+      return groups;
+    } catch (ClassNotFoundException | ClassCastException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Record the sentence groups returned for the next tuple, marking it as done.
+   * @param index The index of the tuple in the list; this must be equal to {@link HarvestCheckpoint#completed()}.
+   * @param groups The sentence groups returned for the tuple.
+   */
+  public void record(int index, List<SentenceGroup> groups) throws IOException {
+    if (index != completed) { throw new IllegalArgumentException("Tuples must be recorded in order: expected " + completed + " but got " + index); }
+    if (!groups.isEmpty()) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(groups.size());
+      for (SentenceGroup group : groups) {
+        ByteArrayOutputStream groupBytes = new ByteArrayOutputStream();
+        KryoDatumCache.save(group, groupBytes);
+        out.writeInt(groupBytes.size());
+        groupBytes.writeTo(out);
+      }
+      out.flush();
+      store.put(key(index), bytes.toByteArray());
+    } else {
+      store.remove(key(index));  // in case it is left over from an earlier harvest
+    }
+    completed += 1;
+    writeMeta();
+  }
+
+  @Override
+  public void close() throws IOException {
+    store.close();
+  }
+
+  private void writeMeta() throws IOException {
+    store.put(META_KEY, (Long.toString(fingerprint) + ":" + completed).getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String key(int index) {
+    return Integer.toString(index);
+  }
+
+  /** A hash of the keys of every tuple, in order */
+  private static long fingerprint(List<? extends KBPair> tuples) {
+    long hash = 1125899906842597L;
+    for (KBPair tuple : tuples) {
+      String key = PostgresUtils.KeyValueCallback.keyToString(tuple);
+      for (int i = 0; i < key.length(); ++i) { hash = 31 * hash + key.charAt(i); }
+      hash = 31 * hash + '\n';
+    }
+    return hash;
+  }
+}
@@ -43,6 +43,8 @@ public class KBPTrainer {
    * A map from sentence gloss key to annotated label, as collected from active learning
    */
   private final Map<String, String> annotationForSentence = new LinkedHashMap<>();
+  /** The keys in annotationForSentence which were translated from another gloss key scheme; see {@link KBPTrainer#translateLegacyGlossKeys()} */
+  private final Set<String> translatedGlossKeys = new HashSet<>();
 
   /**
    * Create a new KBPTrainer -- the entry point for training a classifier.
@@ -85,7 +87,34 @@ public class KBPTrainer {
         }
       }
       logger.log("read " + annotationForSentence.size() + " labelled sentence annotations");
+      // (translate keys made with the original gloss key scheme)
+      if (Props.CACHE_SENTENCEGLOSS_KEYS != Props.GlossKeyScheme.SHA256 && Props.CACHE_SENTENCEGLOSS_KEYS_LEGACY) {
+        translateLegacyGlossKeys();
+      }
+    }
+  }
+
+  /**
+   * The annotated sentences are keyed by sentence gloss keys, which were made with the original (SHA256) scheme.
+   * If the datums are keyed with another scheme, these keys would never match; so, recover each sentence from the
+   * sentence gloss cache (where it is still stored under its original key), and annotate its key under the
+   * current scheme as well.
+   */
+  private void translateLegacyGlossKeys() {
+    int numTranslated = 0;
+    for (Map.Entry<String, String> entry : new ArrayList<>(annotationForSentence.entrySet())) {
+      if (!SentenceGlossKeys.isLegacy(entry.getKey())) { continue; }
+      for (CoreMap gloss : process.recoverSentenceGloss(entry.getKey())) {
+        for (String key : SentenceGlossKeys.rekey(gloss)) {
+          if (!annotationForSentence.containsKey(key)) {
+            annotationForSentence.put(key, entry.getValue());
+            translatedGlossKeys.add(key);
+            numTranslated += 1;
+          }
+        }
+      }
     }
+    logger.log("translated " + numTranslated + " annotated sentence keys to the " + Props.CACHE_SENTENCEGLOSS_KEYS + " gloss key scheme");
   }
 
   /**
@@ -104,7 +133,12 @@ public class KBPTrainer {
    * @return - classifier
    */
   public Pair<RelationClassifier, TrainingStatistics> trainOnTuples( List<KBPair> tuples ) {
-    return trainOnData(makeDataset(findDatumsFromSeedQueries(tuples)));
+    Iterator<SentenceGroup> datums = findDatumsFromSeedQueries(tuples);
+    try {
+      return trainOnData(makeDataset(datums));
+    } finally {
+      if (datums instanceof Closeable) { IOUtils.closeIgnoringExceptions((Closeable) datums); }
+    }
   }
 
   /**
@@ -115,6 +149,8 @@ public class KBPTrainer {
    * @param tuples The tuples to query
    * @return A lazy iterator of {@link SentenceGroup}s corresponding to the datums for that query.
    *         Note that this includes both positive and negative datums.
+   *         If the datums are harvested in parallel, this is also {@link Closeable}; a consumer which stops before
+   *         exhausting it should close it.
    */
   public Iterator<SentenceGroup> findDatumsFromSeedQueries(final Collection<? extends KBPair> tuples) {
     // Shortcut if we're reading only cached data
@@ -139,9 +175,37 @@ public class KBPTrainer {
     final boolean redoCache = Props.CACHE_DATUMS_REDO;
     final boolean doSentenceCache;
     synchronized (Props.PROPERTY_CHANGE_LOCK) { doSentenceCache = Props.CACHE_SENTENCES_DO; }
+    final List<? extends KBPair> tupleList = new ArrayList<>(tuples);
+    if (Props.TRAIN_HARVEST_THREADS > 1 || Props.TRAIN_HARVEST_CHECKPOINT != null) {
+      return harvest(tupleList, doCache, redoCache, doSentenceCache);
+    }
     return CollectionUtils.iteratorFromMaybeIterableFactory(new Factory<Maybe<Iterable<SentenceGroup>>>() {
       /** The tuples to iterate over */
-      Iterator<? extends KBPair> iter = tuples.iterator();
+      Iterator<? extends KBPair> iter = tupleList.iterator();
+      /** The index into tupleList of the next tuple to be returned by iter */
+      int nextIndex = 0;
+      /** The index into tupleList up to which we have prefetched cached datums */
+      int prefetchedUpTo = 0;
+      /** Cached datums we have prefetched, but not yet returned */
+      final Map<String, SentenceGroup> prefetched = new HashMap<>();
+
+      /** Fetch the cached datums for the next few tuples from the cache, in a single round trip */
+      private void prefetch() {
+        final List<String> keys = new ArrayList<>();
+        int end = Math.min(tupleList.size(), prefetchedUpTo + Math.max(1, Props.PSQL_PREFETCH));
+        for (int i = prefetchedUpTo; i < end; ++i) {
+          keys.add(PostgresUtils.KeyValueCallback.keyToString(tupleList.get(i)));
+        }
+        int start = prefetchedUpTo;
+        prefetchedUpTo = end;
+        PostgresUtils.withKeyDatumTable(Props.DB_TABLE_DATUM_CACHE, new PostgresUtils.KeyDatumCallback() {
+          @Override
+          public void apply(Connection psql) throws SQLException {
+            prefetched.putAll(getAll(psql, Props.DB_TABLE_DATUM_CACHE, keys));
+          }
+        });
+        prefetchQueries(tupleList.subList(start, end), prefetched);
+      }
       /**
        * Pedantic detail: we need to make sure that we don't return the same mention (datum in a {@link SentenceGroup})
        * multiple times.
@@ -158,97 +222,53 @@ public class KBPTrainer {
       public Maybe<Iterable<SentenceGroup>> create() {
         if (iter.hasNext()) {
           final KBPair key = iter.next();
+          nextIndex += 1;
           final Pointer<Set<SentenceGroup>> datums = new Pointer<>();
 
           // Try Cache
           if (doCache && !redoCache) {
-            PostgresUtils.withKeyDatumTable(Props.DB_TABLE_DATUM_CACHE, new PostgresUtils.KeyDatumCallback() {
-              @Override
-              public void apply(Connection psql) throws SQLException {
-                final Maybe<SentenceGroup> cachedValue = get(psql, Props.DB_TABLE_DATUM_CACHE, keyToString(key));
-                if (cachedValue.isDefined()) {
-                  datums.set(new HashSet<SentenceGroup>() {{
-                    add(cachedValue.get());
-                  }});
+            if (nextIndex > prefetchedUpTo) { prefetch(); }
+            final SentenceGroup prefetchedValue = prefetched.remove(PostgresUtils.KeyValueCallback.keyToString(key));
+            if (prefetchedValue != null) {
+              datums.set(new HashSet<SentenceGroup>() {{
+                add(prefetchedValue);
+              }});
+            } else {
+              // (the datum may have been cached since we prefetched, as a side effect of featurizing another tuple)
+              PostgresUtils.withKeyDatumTable(Props.DB_TABLE_DATUM_CACHE, new PostgresUtils.KeyDatumCallback() {
+                @Override
+                public void apply(Connection psql) throws SQLException {
+                  final Maybe<SentenceGroup> cachedValue = get(psql, Props.DB_TABLE_DATUM_CACHE, keyToString(key));
+                  if (cachedValue.isDefined()) {
+                    datums.set(new HashSet<SentenceGroup>() {{
+                      add(cachedValue.get());
+                    }});
+                  }
                 }
-              }
-            });
+              });
+            }
           }
 
           // Run Featurizer, if cache missed
           if (!datums.dereference().isDefined()) {
             startTrack(key.toString());
-            KBPEntity entity1 = key.getEntity();
-            String entity2 = key.slotValue;
-
-            // ----- REAL WORK DONE HERE -----
-            // vv (1) Query Sentence In Lucene vv
-            // Query just for entity1 and entity2 without reln (
-            // so we don't bias the training data with what we think is indicative of the relation)
-            List<CoreMap> sentences;
-            synchronized (Props.PROPERTY_CHANGE_LOCK) {
-              boolean saveDoSentenceCache = Props.CACHE_SENTENCES_DO;
-              Props.CACHE_SENTENCES_DO = doSentenceCache;
-              sentences = querier.querySentences(entity1.name, entity2,
-                  (key instanceof KBTriple ? Maybe.Just(((KBTriple) key).relationName) : Maybe.<String>Nothing()),
-                  Props.TRAIN_SENTENCES_PER_ENTITY);
-              Props.CACHE_SENTENCES_DO = saveDoSentenceCache;
-            }
-            // ^^
-            logger.logf("Found %d sentences for %s", sentences.size(), key);
-            // vv (2) Annotate Sentence vv
-            sentences = process.annotateSentenceFeatures(entity1, sentences);
-            // ^^
-            logger.logf("Keeping %d sentences after annotation", sentences.size());
-            HashMap<KBPair, SentenceGroup> featurized;
-            if (sentences.size() > 0) {
-              try {
-                // Get datums from sentences.
-                Annotation annotation = new Annotation("");
-                annotation.set(CoreAnnotations.SentencesAnnotation.class, sentences);
-                // vv (3) Featurize Sentence vv
-                featurized = process.featurize(annotation);
-                // ^^
-                datums.set(new HashSet<>(featurized.values()));
-              } catch (RuntimeException e) {
-                logger.warn(e);
-              }
-            }
-            // ----- DONE WITH REAL WORK -----
-
+            Maybe<Set<SentenceGroup>> featurized = featurizeTuple(key, doSentenceCache);
+            for (Set<SentenceGroup> value : featurized) { datums.set(value); }
             // Cache
             if (doCache) {
-              PostgresUtils.withKeyDatumTable(Props.DB_TABLE_DATUM_CACHE, new PostgresUtils.KeyDatumCallback() {
-                @Override
-                public void apply(Connection psql) throws SQLException {
-                  int numCached = 0;
-                  if (datums.dereference().isDefined()) {
-                    for (SentenceGroup group : datums.dereference().get()) {
-                      append(psql, Props.DB_TABLE_DATUM_CACHE, keyToString(group.key), group);
-                      numCached += 1;
-                    }
-                  } else {
-                    append(psql, Props.DB_TABLE_DATUM_CACHE, keyToString(key), SentenceGroup.empty(key));
-                  }
-                  if (numCached > 0) {
-                    logger.logf("cached %d non-empty sentence groups", numCached);
-                  }
+              cacheDatums(key, featurized);
+              for (Set<SentenceGroup> groups : featurized) {
+                for (SentenceGroup group : groups) {
+                  prefetched.remove(PostgresUtils.KeyValueCallback.keyToString(group.key));  // this prefetched value is now stale
                 }
-              });
+              }
             }
             endTrack(key.toString());
           }
 
           // Return
           if (datums.dereference().isDefined()) {
-            ArrayList<SentenceGroup> values = new ArrayList<>();
-            for (SentenceGroup datum : datums.dereference().get()) {
-              if (keysToNotDuplicate.add(datum.key)) {
-                values.add(datum.removeDuplicateDatums());
-              }
-            }
-            Collections.sort(values);
-            return Maybe.Just((Iterable<SentenceGroup>) values);
+            return Maybe.Just((Iterable<SentenceGroup>) notDuplicated(datums.dereference().get(), keysToNotDuplicate));
           } else {
             return Maybe.Nothing();
           }
@@ -259,6 +279,335 @@ public class KBPTrainer {
     });
   }
 
+  /** A tuple being harvested, along with its cached datums if there were any */
+  private static class HarvestTask {
+    public final int index;
+    public final KBPair key;
+    public final Maybe<SentenceGroup> cached;
+    private HarvestTask(int index, KBPair key, Maybe<SentenceGroup> cached) {
+      this.index = index;
+      this.key = key;
+      this.cached = cached;
+    }
+  }
+
+  /** A tuple which has been harvested */
+  private static class HarvestResult {
+    public final HarvestTask task;
+    /** The datums for the tuple, if any were found */
+    public final Maybe<Set<SentenceGroup>> datums;
+    /** If true, the datums were featurized here, rather than read from the cache */
+    public final boolean featurized;
+    private HarvestResult(HarvestTask task, Maybe<Set<SentenceGroup>> datums, boolean featurized) {
+      this.task = task;
+      this.datums = datums;
+      this.featurized = featurized;
+    }
+  }
+
+  /**
+   * The datums returned by a parallel harvest. The harvesting threads and the checkpoint are closed once it is
+   * exhausted, or when it is closed, whichever comes first.
+   */
+  private static class HarvestIterator implements Iterator<SentenceGroup>, Closeable {
+    private final Iterator<SentenceGroup> datums;
+    private final ParallelMapper pool;
+    private final Maybe<HarvestCheckpoint> checkpoint;
+    private boolean closed = false;
+
+    private HarvestIterator(Iterator<SentenceGroup> datums, ParallelMapper pool, Maybe<HarvestCheckpoint> checkpoint) {
+      this.datums = datums;
+      this.pool = pool;
+      this.checkpoint = checkpoint;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (closed) { return false; }
+      boolean hasNext;
+      try {
+        hasNext = datums.hasNext();
+      } catch (RuntimeException | Error e) {
+        close();
+        throw e;
+      }
+      if (!hasNext) { close(); }
+      return hasNext;
+    }
+
+    @Override
+    public SentenceGroup next() {
+      if (!hasNext()) { throw new NoSuchElementException(); }
+      return datums.next();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public synchronized void close() {
+      if (closed) { return; }
+      closed = true;
+      pool.close();
+      for (HarvestCheckpoint c : checkpoint) {
+        try { c.close(); } catch (IOException e) { logger.err(e); }
+      }
+    }
+  }
+
+  /**
+   * The parallel (and checkpointed) variant of {@link KBPTrainer#findDatumsFromSeedQueries(Collection)}.
+   * Cached datums are prefetched in batches of {@link Props#PSQL_PREFETCH} tuples, and the tuples which missed the
+   * cache are queried and featurized concurrently, on {@link Props#TRAIN_HARVEST_THREADS} threads.
+   * The results are consumed (and cached) in the order of the tuples, so that the datums returned are the same
+   * as in a serial harvest -- in particular, no key is returned twice (see keysToNotDuplicate).
+   * If {@link Props#TRAIN_HARVEST_CHECKPOINT} is set, the datums returned for every tuple are saved there, and an
+   * interrupted harvest of the same tuples replays them and resumes from the first tuple it had not finished.
+   * @return The datums harvested; see {@link HarvestIterator}.
+   */
+  private HarvestIterator harvest(final List<? extends KBPair> tupleList,
+                                          final boolean doCache, final boolean redoCache, final boolean doSentenceCache) {
+    // Open the checkpoint
+    Maybe<HarvestCheckpoint> checkpointOrNothing = Maybe.Nothing();
+    if (Props.TRAIN_HARVEST_CHECKPOINT != null) {
+      try {
+        checkpointOrNothing = Maybe.Just(new HarvestCheckpoint(Props.TRAIN_HARVEST_CHECKPOINT, tupleList));
+        logger.log("resuming harvest from checkpoint: " + checkpointOrNothing.get().completed() + " of " + tupleList.size() + " tuples done");
+      } catch (IOException e) {
+        logger.err("could not open harvest checkpoint at " + Props.TRAIN_HARVEST_CHECKPOINT + "; harvesting without it: " + e.getMessage());
+      }
+    }
+    final Maybe<HarvestCheckpoint> checkpoint = checkpointOrNothing;
+    final int resumeFrom = checkpoint.isDefined() ? checkpoint.get().completed() : 0;
+    final boolean readCache = doCache && !redoCache;
+    // The keys which have been cached by this harvest, and so would be read from the cache rather than featurized again
+    final Set<KBPair> cachedByThisHarvest = Collections.newSetFromMap(new java.util.concurrent.ConcurrentHashMap<KBPair, Boolean>());
+
+    // The tuples left to harvest, with their prefetched cached datums
+    final Iterator<HarvestTask> tasks = new Iterator<HarvestTask>() {
+      int nextIndex = resumeFrom;
+      int prefetchedUpTo = resumeFrom;
+      final Map<String, SentenceGroup> prefetched = new HashMap<>();
+      @Override
+      public boolean hasNext() {
+        return nextIndex < tupleList.size();
+      }
+      @Override
+      public HarvestTask next() {
+        if (!hasNext()) { throw new NoSuchElementException(); }
+        if (nextIndex >= prefetchedUpTo) {
+          int start = prefetchedUpTo;
+          int end = Math.min(tupleList.size(), prefetchedUpTo + Math.max(1, Props.PSQL_PREFETCH));
+          prefetchedUpTo = end;
+          if (readCache) {
+            final List<String> keys = new ArrayList<>();
+            for (int i = start; i < end; ++i) {
+              keys.add(PostgresUtils.KeyValueCallback.keyToString(tupleList.get(i)));
+            }
+            PostgresUtils.withKeyDatumTable(Props.DB_TABLE_DATUM_CACHE, new PostgresUtils.KeyDatumCallback() {
+              @Override
+              public void apply(Connection psql) throws SQLException {
+                prefetched.putAll(getAll(psql, Props.DB_TABLE_DATUM_CACHE, keys));
+              }
+            });
+          }
+          prefetchQueries(tupleList.subList(start, end), prefetched);
+        }
+        KBPair key = tupleList.get(nextIndex);
+        HarvestTask task = new HarvestTask(nextIndex, key, Maybe.fromNull(prefetched.remove(PostgresUtils.KeyValueCallback.keyToString(key))));
+        nextIndex += 1;
+        return task;
+      }
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+
+    // Featurize the cache misses in parallel
+    final ParallelMapper pool = new ParallelMapper(Math.max(1, Props.TRAIN_HARVEST_THREADS));
+    final Iterator<HarvestResult> results = pool.mapIgnoreNull(tasks, task -> {
+      if (task.cached.isDefined()) {
+        return new HarvestResult(task, Maybe.Just((Set<SentenceGroup>) new HashSet<>(Collections.singleton(task.cached.get()))), false);
+      } else if (readCache && cachedByThisHarvest.contains(task.key)) {
+        return new HarvestResult(task, Maybe.<Set<SentenceGroup>>Nothing(), false);  // cached since we prefetched; see below
+      } else {
+        return new HarvestResult(task, featurizeTuple(task.key, doSentenceCache), true);
+      }
+    }, Math.max(Props.PSQL_PREFETCH, 4 * pool.threads));
+
+    return new HarvestIterator(CollectionUtils.iteratorFromMaybeIterableFactory(new Factory<Maybe<Iterable<SentenceGroup>>>() {
+      /** The index of the next tuple to replay from the checkpoint */
+      int replayIndex = 0;
+      /** @see KBPTrainer#findDatumsFromSeedQueries(Collection) */
+      final Set<KBPair> keysToNotDuplicate = new HashSet<>();
+
+      @Override
+      public Maybe<Iterable<SentenceGroup>> create() {
+        // Replay the checkpoint
+        if (replayIndex < resumeFrom) {
+          try {
+            List<SentenceGroup> values = checkpoint.get().get(replayIndex);
+            replayIndex += 1;
+            for (SentenceGroup value : values) { keysToNotDuplicate.add(value.key); }
+            return Maybe.Just((Iterable<SentenceGroup>) values);
+          } catch (IOException e) {
+            throw new RuntimeException("could not replay harvest checkpoint for tuple " + replayIndex, e);
+          }
+        }
+        // Harvest
+        if (!results.hasNext()) { return null; }
+        HarvestResult result = results.next();
+        Maybe<Set<SentenceGroup>> datums = result.datums;
+        if (result.featurized || !datums.isDefined()) {
+          if (readCache && cachedByThisHarvest.contains(result.task.key)) {
+            // A serial harvest would have found this key in the cache, as a side effect of harvesting an earlier tuple,
+            // and would not cache anything for this tuple. If the key was cached with datums, it has been returned
+            // already; otherwise, it was cached as an empty sentence group.
+            datums = Maybe.Just((Set<SentenceGroup>) new HashSet<>(Collections.singleton(SentenceGroup.empty(result.task.key))));
+          } else if (doCache) {
+            cacheDatums(result.task.key, datums);
+            if (datums.isDefined()) {
+              for (SentenceGroup group : datums.get()) { cachedByThisHarvest.add(group.key); }
+            } else {
+              cachedByThisHarvest.add(result.task.key);
+            }
+          }
+        }
+        List<SentenceGroup> values = datums.isDefined() ? notDuplicated(datums.get(), keysToNotDuplicate) : Collections.<SentenceGroup>emptyList();
+        for (HarvestCheckpoint c : checkpoint) {
+          try {
+            c.record(result.task.index, values);
+          } catch (IOException e) {
+            throw new RuntimeException("could not write harvest checkpoint for tuple " + result.task.index, e);
+          }
+        }
+        return datums.isDefined() ? Maybe.Just((Iterable<SentenceGroup>) values) : Maybe.<Iterable<SentenceGroup>>Nothing();
+      }
+    }), pool, checkpoint);
+  }
+
+  /**
+   * Run the Lucene queries of a block of tuples about to be harvested together, ahead of time;
+   * see {@link Props#INDEX_BATCH_SIZE}. Tuples whose datums were found in the cache won't be queried for, and are skipped.
+   * @param tuples The tuples about to be harvested.
+   * @param cached The cached datums prefetched for (some of) these tuples, keyed by their cache key.
+   */
+  private void prefetchQueries(List<? extends KBPair> tuples, Map<String, SentenceGroup> cached) {
+    if (Props.INDEX_BATCH_SIZE <= 0) { return; }
+    List<Triple<String, String, Maybe<String>>> queries = new ArrayList<>();
+    for (KBPair key : tuples) {
+      if (!cached.containsKey(PostgresUtils.KeyValueCallback.keyToString(key))) {
+        // (with the same relation featurizeTuple() will query with, so that the prefetched query is the one asked for)
+        queries.add(Triple.makeTriple(key.getEntity().name, key.slotValue, queryRelation(key)));
+      }
+    }
+    querier.prefetchSentences(queries, Props.TRAIN_SENTENCES_PER_ENTITY);
+  }
+
+  /** The relation the sentences for a tuple are queried with: its relation, if it has one */
+  private static Maybe<String> queryRelation(KBPair key) {
+    return key instanceof KBTriple ? Maybe.Just(((KBTriple) key).relationName) : Maybe.<String>Nothing();
+  }
+
+  /**
+   * Query, annotate and featurize the sentences for a single tuple -- the real work of harvesting its datums.
+   * This is safe to call from multiple threads: the queries and featurization run concurrently, but the
+   * {@link edu.stanford.nlp.kbp.slotfilling.ir.PostIRAnnotator} run on the retrieved documents annotates them one at a time.
+   * @param key The tuple to find datums for.
+   * @param doSentenceCache Whether to use the sentence cache when querying.
+   * @return The sentence groups found, or Nothing if no sentences were found (or featurizing them failed).
+   */
+  private Maybe<Set<SentenceGroup>> featurizeTuple(KBPair key, boolean doSentenceCache) {
+    KBPEntity entity1 = key.getEntity();
+    String entity2 = key.slotValue;
+
+    // ----- REAL WORK DONE HERE -----
+    // vv (1) Query Sentence In Lucene vv
+    // Query just for entity1 and entity2 without reln (
+    // so we don't bias the training data with what we think is indicative of the relation)
+    Maybe<String> relation = queryRelation(key);
+    List<CoreMap> sentences;
+    boolean sentenceCacheMatches;
+    synchronized (Props.PROPERTY_CHANGE_LOCK) { sentenceCacheMatches = Props.CACHE_SENTENCES_DO == doSentenceCache; }
+    if (sentenceCacheMatches) {
+      // (don't hold the lock for the whole query, so that queries can run concurrently)
+      sentences = querier.querySentences(entity1.name, entity2, relation, Props.TRAIN_SENTENCES_PER_ENTITY);
+    } else {
+      synchronized (Props.PROPERTY_CHANGE_LOCK) {
+        boolean saveDoSentenceCache = Props.CACHE_SENTENCES_DO;
+        Props.CACHE_SENTENCES_DO = doSentenceCache;
+        sentences = querier.querySentences(entity1.name, entity2, relation, Props.TRAIN_SENTENCES_PER_ENTITY);
+        Props.CACHE_SENTENCES_DO = saveDoSentenceCache;
+      }
+    }
+    // ^^
+    logger.logf("Found %d sentences for %s", sentences.size(), key);
+    // vv (2) Annotate Sentence vv
+    sentences = process.annotateSentenceFeatures(entity1, sentences);
+    // ^^
+    logger.logf("Keeping %d sentences after annotation", sentences.size());
+    Maybe<Set<SentenceGroup>> datums = Maybe.Nothing();
+    if (sentences.size() > 0) {
+      try {
+        // Get datums from sentences.
+        Annotation annotation = new Annotation("");
+        annotation.set(CoreAnnotations.SentencesAnnotation.class, sentences);
+        // vv (3) Featurize Sentence vv
+        HashMap<KBPair, SentenceGroup> featurized = process.featurize(annotation);
+        // ^^
+        datums = Maybe.Just((Set<SentenceGroup>) new HashSet<>(featurized.values()));
+      } catch (RuntimeException e) {
+        logger.warn(e);
+      }
+    }
+    // ----- DONE WITH REAL WORK -----
+    return datums;
+  }
+
+  /**
+   * Append the datums featurized for a tuple to the datum cache; or, if none were found, an empty sentence group
+   * (so that we don't look for them again).
+   */
+  private static void cacheDatums(final KBPair key, final Maybe<Set<SentenceGroup>> datums) {
+    PostgresUtils.withKeyDatumTable(Props.DB_TABLE_DATUM_CACHE, new PostgresUtils.KeyDatumCallback() {
+      @Override
+      public void apply(Connection psql) throws SQLException {
+        int numCached = 0;
+        if (datums.isDefined()) {
+          for (SentenceGroup group : datums.get()) {
+            append(psql, Props.DB_TABLE_DATUM_CACHE, keyToString(group.key), group);
+            numCached += 1;
+          }
+        } else {
+          append(psql, Props.DB_TABLE_DATUM_CACHE, keyToString(key), SentenceGroup.empty(key));
+        }
+        if (numCached > 0) {
+          logger.logf("cached %d non-empty sentence groups", numCached);
+        }
+      }
+    });
+  }
+
+  /**
+   * The sentence groups to return for a tuple, leaving out any whose key has been returned already.
+   * @param datums The datums found for the tuple.
+   * @param keysToNotDuplicate The keys returned so far; this is updated with the keys returned now.
+   * @return The sentence groups to return, sorted.
+   */
+  private static List<SentenceGroup> notDuplicated(Set<SentenceGroup> datums, Set<KBPair> keysToNotDuplicate) {
+    ArrayList<SentenceGroup> values = new ArrayList<>();
+    for (SentenceGroup datum : datums) {
+      if (keysToNotDuplicate.add(datum.key)) {
+        values.add(datum.removeDuplicateDatums());
+      }
+    }
+    Collections.sort(values);
+    return values;
+  }
+
   /**
    * Get only the supervised data from the sentence gloss cache;
    * This will featurize the data on the fly.
@@ -270,6 +619,7 @@ public class KBPTrainer {
     ArrayList<SentenceGroup> supervisedData = new ArrayList<>();
     OUTER: for (Map.Entry<String, String> datum : annotationForSentence.entrySet()) {
       if (supervisedData.size() == numDatums) { break; }
+      if (translatedGlossKeys.contains(datum.getKey())) { continue; }  // (the same sentence as its original key)
       for (CoreMap sentence : this.process.recoverSentenceGloss(datum.getKey())) {
         // Create the mock "sentences" array
         List<CoreMap> sentences = new ArrayList<>();
@@ -128,7 +128,11 @@ public class KryoDatumCache extends FileBackedCache<KBTriple, Map<KBPair, Senten
   }
 
   public KryoDatumCache(File directoryToCacheIn, int maxFiles) {
-    super(directoryToCacheIn, maxFiles);
+    super(directoryToCacheIn, maxFiles, Storage.detect(directoryToCacheIn, Props.CACHE_STORAGE));
+  }
+
+  public KryoDatumCache(File directoryToCacheIn, int maxFiles, Storage storage) {
+    super(directoryToCacheIn, maxFiles, storage);
   }
 
   @Override
@@ -196,6 +200,22 @@ public class KryoDatumCache extends FileBackedCache<KBTriple, Map<KBPair, Senten
     }
   }
 
+  @Override
+  protected byte[] serializeEntry(Pair<KBTriple, Map<KBPair, SentenceGroup>> entry) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    Output output = new Output(new GZIPOutputStream(bytes));
+    writeNextObject(output, entry);
+    output.close();
+    return bytes.toByteArray();
+  }
+
+  @Override
+  protected Pair<KBTriple, Map<KBPair, SentenceGroup>> deserializeEntry(byte[] bytes) throws IOException, ClassNotFoundException {
+    try (Input input = new Input(new GZIPInputStream(new ByteArrayInputStream(bytes)))) {
+      return readNextObjectOrNull(input);
+    }
+  }
+
   public static void save(Map<KBPair, SentenceGroup> datums, OutputStream os) throws IOException {
     Output output = new Output(new GZIPOutputStream(os));
     synchronized (globalLock) {
@@ -60,8 +60,21 @@ import static edu.stanford.nlp.util.logging.Redwood.Util.*;
  *     <li>@See FileBackedCache#newOutputStream</li>
  *     <li>@See FileBackedCache#writeNextObject</li>
  *     <li>@See FileBackedCache#readNextObject</li>
+ *     <li>@See FileBackedCache#serializeEntry</li>
+ *     <li>@See FileBackedCache#deserializeEntry</li>
  *   </ul>
  *
+ * <p>
+ *   There are two storage engines, chosen with {@link FileBackedCache.Storage}.
+ *   The original engine stores each hash bucket as a block file, which is read in its entirety to find a key,
+ *   and rewritten in its entirety to update one.
+ *   The segment engine instead appends every write to fixed-size memory-mapped segment files, with an in-memory
+ *   index from each key to its latest value (see {@link MappedSegmentStore}): a get is a single read, and a put
+ *   never rewrites existing data. The segment engine does not need consistent hash codes, but only one process
+ *   may open a segment cache at a time. Existing block caches can be copied over with
+ *   {@link FileBackedCache#migrate(FileBackedCache, FileBackedCache)}.
+ * </p>
+ *
  * @param <KEY> The key to cache by
  * @param <T> The object to cache
  *
@@ -69,6 +82,35 @@ import static edu.stanford.nlp.util.logging.Redwood.Util.*;
  */
 
 public class FileBackedCache<KEY extends Serializable, T> implements Map<KEY, T>, Iterable <Map.Entry<KEY,T>> {
+  /** The storage engine of a cache on disk */
+  public static enum Storage {
+    /** One (Java serialized) file per hash bucket, rewritten on every update */
+    BLOCKS,
+    /** Append-only, memory-mapped segment files, indexed in memory */
+    SEGMENTS;
+
+    /** The storage engine of the cache in the given directory; new caches default to {@link Storage#BLOCKS} */
+    public static Storage detect(File directory) {
+      return detect(directory, BLOCKS);
+    }
+
+    /**
+     * The storage engine of the cache in the given directory.
+     * A directory which already holds a cache keeps its engine; an empty (or missing) directory gets the given engine.
+     */
+    public static Storage detect(File directory, Storage forNewCache) {
+      if (MappedSegmentStore.isStore(directory)) { return SEGMENTS; }
+      File[] children = directory.listFiles();
+      for (File child : children == null ? new File[0] : children) {
+        if (child.getName().endsWith(".block.ser.gz")) { return BLOCKS; }
+      }
+      return forNewCache;
+    }
+  }
+
+  /** The size of a segment file, for caches using {@link Storage#SEGMENTS} */
+  public static final int SEGMENT_BYTES = 64 * 1024 * 1024;
+
   //
   // Variables
   //
@@ -78,6 +120,12 @@ public class FileBackedCache<KEY extends Serializable, T> implements Map<KEY, T>
   /** The maximum number of files to create in that directory ('buckets' in the hash map) */
   public final int maxFiles;
 
+  /** The storage engine of this cache */
+  public final Storage storage;
+
+  /** The segment store, if this cache is using {@link Storage#SEGMENTS}; null otherwise */
+  private final MappedSegmentStore<KEY> segments;
+
   /** The implementation of the mapping */
   private final Map<KEY, SoftReference<T>> mapping = new ConcurrentHashMap<KEY, SoftReference<T>>();
 
@@ -114,6 +162,18 @@ public class FileBackedCache<KEY extends Serializable, T> implements Map<KEY, T>
    * @param maxFiles The maximum number of files to store on disk
    */
   public FileBackedCache(File directoryToCacheIn, int maxFiles) {
+    this(directoryToCacheIn, maxFiles, Storage.detect(directoryToCacheIn));
+  }
+
+  /**
+   * Create a file backed cache in a particular directory, with a particular storage engine; either inheriting
+   * the elements in the directory or starting with an empty cache.
+   * This constructor may exception, and will create the directory in question if it does not exist.
+   * @param directoryToCacheIn The directory to create the cache in
+   * @param maxFiles The maximum number of files to store on disk (ignored for {@link Storage#SEGMENTS})
+   * @param storage The storage engine to use. This should match the engine of any cache already in the directory.
+   */
+  public FileBackedCache(File directoryToCacheIn, int maxFiles, Storage storage) {
     // Ensure directory exists
     if (!directoryToCacheIn.exists()) {
       if (!directoryToCacheIn.mkdirs()) {
@@ -131,6 +191,15 @@ public class FileBackedCache<KEY extends Serializable, T> implements Map<KEY, T>
     // Save cache directory
     this.cacheDir = directoryToCacheIn;
     this.maxFiles = maxFiles;
+    // Open segments
+    this.storage = storage;
+    try {
+      this.segments = storage == Storage.SEGMENTS
+          ? new MappedSegmentStore<>(directoryToCacheIn, SEGMENT_BYTES, MappedSegmentStore.<KEY>javaSerialization())
+          : null;
+    } catch (IOException e) {
+      throw throwSafe(e);
+    }
     // Start cache cleaner
     /*
     Occasionally clean up the cache, removing keys which have been garbage collected.
@@ -253,6 +322,7 @@ public class FileBackedCache<KEY extends Serializable, T> implements Map<KEY, T>
    */
   @Override
   public int size() {
+    if (segments != null) { return segments.size(); }
     return readCache();
   }
 
@@ -287,6 +357,7 @@ public class FileBackedCache<KEY extends Serializable, T> implements Map<KEY, T>
     // Early exits
     if (mapping.containsKey(key)) return true;
     if (!tryFile(key)) return false;
+    if (segments != null) return true;  // the index is exact
     // Read the block for this key
     Collection<Pair<KEY, T>> elementsRead = readBlock(key);
     for (Pair<KEY, T> pair : elementsRead) {
@@ -314,7 +385,7 @@ public class FileBackedCache<KEY extends Serializable, T> implements Map<KEY, T>
    * Get a cached value based on a key.
    * If the key is in memory, this is a constant time operation.
    * Else, this requires a single disk access, of undeterminable size but roughly correlated with the
-   * quality of the key's hash code.
+   * quality of the key's hash code (or, with {@link Storage#SEGMENTS}, of the size of this one value).
    */
   @SuppressWarnings({"SuspiciousMethodCalls", "unchecked"})
   @Override
@@ -324,6 +395,7 @@ public class FileBackedCache<KEY extends Serializable, T> implements Map<KEY, T>
     if (likelyReferenceOrNull == null) {
       // Case: We don't know about this element being in the cache
       if (!tryFile(key)) { return null; }  // Case: there's no hope of finding this element
+      if (segments != null) { return readSegment(key); }  // Case: the index knows exactly where it is
       Collection<Pair<KEY, T>> elemsRead = readBlock(key);  // Read the block for this key
       for (Pair<KEY, T> pair : elemsRead) {
         if (pair.first.equals(key)) { return pair.second; }
@@ -406,6 +478,7 @@ public class FileBackedCache<KEY extends Serializable, T> implements Map<KEY, T>
    */
   @Override
   public Set<KEY> keySet() {
+    if (segments != null) { return segments.keySet(); }
     readCache();
     return mapping.keySet();
   }
@@ -473,6 +546,7 @@ public class FileBackedCache<KEY extends Serializable, T> implements Map<KEY, T>
    */
   @Override
   public Iterator<Entry<KEY,T>> iterator() {
+    if (segments != null) { return segmentIterator(); }
     final File[] files = cacheDir.listFiles();
     if (files == null || files.length == 0) return Generics.<Entry<KEY,T>>newLinkedList().iterator();
     for (int i = 0; i < files.length; ++i) {
@@ -539,6 +613,34 @@ public class FileBackedCache<KEY extends Serializable, T> implements Map<KEY, T>
     return mapping.remove(key) != null;
   }
 
+  /**
+   * Make sure everything written to the cache so far is on disk.
+   * Block caches are always written through, so this only matters for {@link Storage#SEGMENTS}.
+   */
+  public void flush() {
+    if (segments != null) {
+      try {
+        segments.flush();
+      } catch (IOException e) {
+        throw throwSafe(e);
+      }
+    }
+  }
+
+  /**
+   * Flush and release the cache on disk, so that another process can open it.
+   * The cache should not be used after this.
+   */
+  public void close() {
+    if (segments != null) {
+      try {
+        segments.close();
+      } catch (IOException e) {
+        throw throwSafe(e);
+      }
+    }
+  }
+
   /**
    * Get the list of files on which this JVM holds a lock.
    * @return A collection of files on which the JVM holds a file lock.
@@ -563,6 +665,10 @@ public class FileBackedCache<KEY extends Serializable, T> implements Map<KEY, T>
   //
   /** Reads the cache in its entirely -- this is potentially very slow */
   private int readCache() {
+    if (segments != null) {
+      for (KEY key : segments.keySet()) { readSegment(key); }
+      return segments.size();
+    }
     File[] files = cacheDir.listFiles();
     if (files == null) { return 0; }
     for (int i = 0; i < files.length; ++i) {
@@ -586,6 +692,7 @@ public class FileBackedCache<KEY extends Serializable, T> implements Map<KEY, T>
 
   /** Checks for the existence of the block associated with the key */
   private boolean tryFile(Object key) {
+    if (segments != null) { return segments.containsKey(key); }
     try {
       return hash2file(key.hashCode(), false).exists();
     } catch (IOException e) {
@@ -606,6 +713,10 @@ public class FileBackedCache<KEY extends Serializable, T> implements Map<KEY, T>
   /** Appends a value to the block specified by the key */
   @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
   private void appendBlock(KEY key, T value) {
+    if (segments != null) {
+      writeSegment(key, value);
+      return;
+    }
     boolean haveTakenLock = false;
     Pair<? extends OutputStream, CloseAction> writer = null;
     try {
@@ -632,6 +743,20 @@ public class FileBackedCache<KEY extends Serializable, T> implements Map<KEY, T>
   /** Updates a block with the specified value; or deletes the block if the value is null */
   @SuppressWarnings({"unchecked", "SynchronizationOnLocalVariableOrMethodParameter"})
   private T updateBlockOrDelete(KEY key, T valueOrNull) {
+    if (segments != null) {
+      T existingValue = readSegment(key);
+      if (valueOrNull != null) {
+        writeSegment(key, valueOrNull);
+      } else {
+        try {
+          segments.remove(key);
+        } catch (IOException e) {
+          throw throwSafe(e);
+        }
+        mapping.remove(key);
+      }
+      return existingValue;
+    }
     Pair<? extends InputStream, CloseAction> reader = null;
     Pair<? extends OutputStream, CloseAction> writer = null;
     boolean haveClosedReader = false;
@@ -757,6 +882,70 @@ public class FileBackedCache<KEY extends Serializable, T> implements Map<KEY, T>
     }
   }
 
+  /**
+   * Reads a single value out of the segment store, or returns null if it is not there.
+   * A record which cannot be deserialized is treated as corrupt: it is removed from the store, and this returns null.
+   */
+  @SuppressWarnings("unchecked")
+  private T readSegment(Object key) {
+    byte[] bytes = segments.get(key);
+    if (bytes == null) { return null; }
+    try {
+      Pair<KEY, T> entry = deserializeEntry(bytes);
+      if (entry == null) {
+        // Case: the record could not be read back (e.g., a torn or truncated write); drop it, so it is recomputed
+        warn("Corrupt record for " + key + " in " + cacheDir + "; removing it");
+        try {
+          segments.remove((KEY) key);  // (the store found a record for it, so it is a KEY)
+        } catch (IOException e) { warn(e); }
+        return null;
+      }
+      mapping.put(entry.first, new SoftReference<T>(entry.second, this.reaper));
+      return entry.second;
+    } catch (IOException | ClassNotFoundException e) {
+      err("Could not read " + key + " from " + cacheDir + ": " + e.getMessage());
+      throw throwSafe(e);
+    }
+  }
+
+  /** Appends a value to the segment store */
+  private void writeSegment(KEY key, T value) {
+    try {
+      segments.put(key, serializeEntry(Pair.makePair(key, value)));
+    } catch (IOException e) {
+      throw throwSafe(e);
+    }
+  }
+
+  /** Iterates over a snapshot of the keys in the segment store, reading each value as it is reached */
+  private Iterator<Entry<KEY,T>> segmentIterator() {
+    final Iterator<KEY> keys = new ArrayList<>(segments.keySet()).iterator();
+    return new Iterator<Entry<KEY,T>>() {
+      Entry<KEY, T> next = null;
+
+      @Override
+      public boolean hasNext() {
+        while (next == null && keys.hasNext()) {
+          KEY key = keys.next();
+          T value = readSegment(key);  // null if removed since the snapshot
+          if (value != null) { next = new AbstractMap.SimpleImmutableEntry<>(key, value); }
+        }
+        return next != null;
+      }
+      @Override
+      public Entry<KEY, T> next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Entry<KEY, T> rtn = next;
+        next = null;
+        return rtn;
+      }
+      @Override
+      public void remove() {
+        throw new RuntimeException("Remove not implemented");
+      }
+    };
+  }
+
   /** Returns a file corresponding to a hash code, ensuring it exists first */
   private File hash2file(int hashCode, boolean create) throws IOException {
     File candidate =  canonicalFile.intern(new File(cacheDir.getCanonicalPath() + File.separator + fileRoot(hashCode) + ".block.ser.gz").getCanonicalFile());
@@ -940,6 +1129,63 @@ public class FileBackedCache<KEY extends Serializable, T> implements Map<KEY, T>
     ((ObjectOutputStream) output).writeObject(value);
   }
 
+  /**
+   * Serialize a single (key, value) pair, as a record for {@link Storage#SEGMENTS}.
+   * This method may be overwritten, but should match the implementation of deserializeEntry().
+   * @param entry The (key, value) pair to serialize.
+   * @return The serialized bytes.
+   * @throws IOException
+   */
+  protected byte[] serializeEntry(Pair<KEY, T> entry) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream output = new ObjectOutputStream(new GZIPOutputStream(bytes));
+    writeNextObject(output, entry);
+    output.close();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Deserialize a single (key, value) pair, as written by serializeEntry().
+   * This method may be overwritten, but should match the implementation of serializeEntry().
+   * @param bytes The serialized record.
+   * @return The (key, value) pair.
+   * @throws IOException
+   * @throws ClassNotFoundException
+   */
+  protected Pair<KEY, T> deserializeEntry(byte[] bytes) throws IOException, ClassNotFoundException {
+    try (ObjectInputStream input = new ObjectInputStream(new GZIPInputStream(new ByteArrayInputStream(bytes)))) {
+      return readNextObjectOrNull(input);
+    }
+  }
+
+  /**
+   * Copy every entry of one cache into another -- usually, from a cache using {@link Storage#BLOCKS} into
+   * an (empty) cache using {@link Storage#SEGMENTS}.
+   * Entries are streamed a block at a time, so this does not need to hold the source cache in memory.
+   * The source cache is not modified.
+   *
+   * @param source The cache to copy from.
+   * @param destination The cache to copy into. Entries already in it are overwritten by those in the source.
+   * @return The number of entries copied.
+   */
+  public static <KEY extends Serializable, T> int migrate(FileBackedCache<KEY, T> source, FileBackedCache<KEY, T> destination) {
+    forceTrack("Migrating " + source.cacheDir + " [" + source.storage + "] -> " + destination.cacheDir + " [" + destination.storage + "]");
+    int count = 0;
+    for (Entry<KEY, T> entry : source) {
+      destination.put(entry.getKey(), entry.getValue());
+      count += 1;
+      if (count % 10000 == 0) {
+        log("migrated " + count + " entries [" + (Runtime.getRuntime().freeMemory() / 1000000) + "MB free memory]");
+        source.clear();
+        destination.clear();
+      }
+    }
+    destination.flush();
+    log("migrated " + count + " entries");
+    endTrack("Migrating " + source.cacheDir + " [" + source.storage + "] -> " + destination.cacheDir + " [" + destination.storage + "]");
+    return count;
+  }
+
   /**
    * <p>Merge a number of caches together. This could be useful for creating large caches,
    * as (1) it can bypass NFS for local caching, and (2) it can allow for many small caches
@@ -962,6 +1208,19 @@ public class FileBackedCache<KEY extends Serializable, T> implements Map<KEY, T>
       FileBackedCache<KEY, T> destination, FileBackedCache<? extends KEY, ? extends T>[] constituents) {
     startTrack("Merging Caches");
 
+    // (0) Segment caches can simply be appended to
+    if (destination.segments != null) {
+      for (FileBackedCache<? extends KEY, ? extends T> constituent : constituents) {
+        for (Entry<? extends KEY, ? extends T> entry : constituent) {
+          destination.put(entry.getKey(), entry.getValue());
+        }
+        constituent.clear();
+      }
+      destination.flush();
+      endTrack("Merging Caches");
+      return;
+    }
+
     // (1) Read everything into memory
     forceTrack("Reading Constituents");
     Map<String, Map<KEY, T>> combinedMapping = Generics.newHashMap();
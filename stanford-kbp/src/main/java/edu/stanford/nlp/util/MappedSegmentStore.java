@@ -0,0 +1,634 @@
+package edu.stanford.nlp.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import static edu.stanford.nlp.util.logging.Redwood.Util.*;
+
+/**
+ * <p>
+ * An append-only store of binary values on local disk, kept in fixed-size memory-mapped segment files.
+ * An in-memory index maps every live key to the segment and offset of its latest value, so that a read is a
+ * hash lookup and a single copy out of a mapped segment, and a write is a single append.
+ * Existing data is never rewritten: overwriting a key appends a new record, and removing a key appends a tombstone.
+ * </p>
+ *
+ * <p>
+ * A record is laid out as <code>[int crc][int keyLength][int valueLength][key][value]</code>, where the checksum
+ * covers everything after it, and a value length of -1 marks a tombstone.
+ * Segment files are allocated at their full size up front, so the (zeroed) unused tail of a segment, or a record
+ * torn by a crash, fails its checksum and ends the replay of that segment.
+ * Once a segment is full it is sealed, and an index file is written next to it, listing the key and offset of every
+ * record in the segment; on open, sealed segments are indexed from these files rather than by reading every record.
+ * </p>
+ *
+ * <p>
+ * Once at least a segment's worth, and more than half, of what is on disk is dead (overwritten or removed),
+ * the live records in the sealed segments are copied into fresh segments on a background thread, and the old
+ * segments are deleted. Readers and writers carry on while this happens.
+ * Segments are named by a (generation, sequence) pair: new segments start a new generation, and the output of
+ * compacting segments up to (g, s) is numbered (g, s+1), (g, s+2), ...; replaying segments in name order therefore
+ * always yields the latest value of a key, even if a compaction is interrupted.
+ * </p>
+ *
+ * <p>
+ * Any number of threads may read at once; writes are serialized.
+ * Only one process may have a store open at a time; this is enforced with a lock file in the directory.
+ * </p>
+ *
+ * @param <K> The type of key in the store.
+ *
+ * @see FileBackedCache
+ */
+public class MappedSegmentStore<K> implements Closeable {
+
+  /**
+   * Converts keys to and from bytes, for the records on disk.
+   * Decoding an encoded key must give back a key equal to it.
+   */
+  public static interface KeyCodec<K> {
+    public byte[] encode(K key) throws IOException;
+    public K decode(byte[] bytes) throws IOException;
+  }
+
+  /** Stores String keys as UTF-8 */
+  public static final KeyCodec<String> UTF8 = new KeyCodec<String>() {
+    @Override
+    public byte[] encode(String key) { return key.getBytes(StandardCharsets.UTF_8); }
+    @Override
+    public String decode(byte[] bytes) { return new String(bytes, StandardCharsets.UTF_8); }
+  };
+
+  /** Stores keys with Java serialization */
+  public static <K extends Serializable> KeyCodec<K> javaSerialization() {
+    return new KeyCodec<K>() {
+      @Override
+      public byte[] encode(K key) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+          out.writeObject(key);
+        }
+        return bytes.toByteArray();
+      }
+      @SuppressWarnings("unchecked")
+      @Override
+      public K decode(byte[] bytes) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+          return (K) in.readObject();
+        } catch (ClassNotFoundException e) {
+          throw new IOException(e);
+        }
+      }
+    };
+  }
+
+  /** The size of a record header: checksum, key length, and value length */
+  private static final int HEADER_BYTES = 12;
+  /** The value length marking the removal of a key */
+  private static final int TOMBSTONE = -1;
+  /** The number of sequence numbers in a generation of segments */
+  private static final long SEQUENCES = 1 << 16;
+  private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)-(\\d+)\\.log");
+
+  /** The thread running background compactions, shared by every store */
+  private static final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "segment-compactor");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /** The location of a value on disk */
+  private static class Location {
+    public final long segment;
+    public final int offset;
+    public final int length;
+    /** The size of the entire record, including the header and key */
+    public final int recordBytes;
+    private Location(long segment, int offset, int length, int recordBytes) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+      this.recordBytes = recordBytes;
+    }
+  }
+
+  /** A segment file, mapped into memory */
+  private static class Segment {
+    public final long id;
+    /** The mapped file; readers and writers always work on a duplicate, so that its position never changes */
+    public final MappedByteBuffer buffer;
+    /** The number of bytes written to this segment; only touched by its writer */
+    public int size = 0;
+    /** The index entries of the records in this segment, while it is still being written; null once sealed */
+    public ByteArrayOutputStream hints = null;
+    private Segment(long id, MappedByteBuffer buffer) {
+      this.id = id;
+      this.buffer = buffer;
+    }
+  }
+
+  /** The directory the segments live in */
+  public final File directory;
+  /** The size of a segment file */
+  public final int segmentBytes;
+  private final KeyCodec<K> codec;
+
+  /** The location of the latest value of every live key */
+  private final ConcurrentHashMap<K, Location> index = new ConcurrentHashMap<>();
+  /** The segments of this store, by id */
+  private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+  /** Held by readers, and by compaction while it removes segments out from under them */
+  private final ReentrantReadWriteLock segmentLock = new ReentrantReadWriteLock();
+  /** Held for the duration of a compaction; always taken before the lock on this */
+  private final Object compactionLock = new Object();
+  /** Whether a background compaction is queued or running */
+  private final AtomicBoolean compacting = new AtomicBoolean(false);
+  /** The lock file, ensuring that only one process writes to this store */
+  private final RandomAccessFile lockFile;
+  private final FileLock processLock;
+
+  /** The segment being appended to; guarded by this */
+  private Segment active = null;
+  /** The generation of the next new segment; guarded by this */
+  private long nextGeneration = 0;
+  /** The number of bytes of records on disk; guarded by this */
+  private long totalBytes = 0;
+  /** The number of bytes of records on disk which are still live; guarded by this */
+  private long liveBytes = 0;
+  private volatile boolean closed = false;
+
+  /**
+   * Open a store, creating it if it does not exist.
+   * @param directory The directory holding the segment files of the store.
+   * @param segmentBytes The size of a segment file. A single record larger than this gets a segment of its own.
+   * @param codec The encoding of keys on disk.
+   * @throws IOException If the store could not be opened, or is already open in another process.
+   */
+  public MappedSegmentStore(File directory, int segmentBytes, KeyCodec<K> codec) throws IOException {
+    this.directory = directory;
+    this.segmentBytes = Math.max(HEADER_BYTES, segmentBytes);
+    this.codec = codec;
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new IOException("Could not create directory: " + directory);
+    }
+    // Lock the store
+    this.lockFile = new RandomAccessFile(new File(directory, "LOCK"), "rw");
+    this.processLock = lockFile.getChannel().tryLock();
+    if (processLock == null) {
+      lockFile.close();
+      throw new IOException("Store is open in another process: " + directory);
+    }
+    // Index segments
+    TreeSet<Long> ids = new TreeSet<>();
+    File[] children = directory.listFiles();
+    for (File child : children == null ? new File[0] : children) {
+      Matcher matcher = SEGMENT_NAME.matcher(child.getName());
+      if (matcher.matches()) { ids.add(Long.parseLong(matcher.group(1)) * SEQUENCES + Long.parseLong(matcher.group(2))); }
+    }
+    for (long id : ids) {
+      Segment segment = openSegment(id, 0);
+      boolean isLast = id == ids.last();
+      if (!isLast && hintFile(id).exists()) {
+        loadHints(segment);
+      } else {
+        replay(segment);
+        if (!isLast) { writeHints(segment); }  // a compaction was interrupted before it could index this segment
+      }
+      segments.put(id, segment);
+      nextGeneration = Math.max(nextGeneration, id / SEQUENCES + 1);
+    }
+    // Continue appending to the last segment
+    if (!segments.isEmpty()) { active = segments.lastEntry().getValue(); }
+  }
+
+  /**
+   * Returns whether the given directory holds a segment store.
+   */
+  public static boolean isStore(File directory) {
+    File[] children = directory.listFiles();
+    for (File child : children == null ? new File[0] : children) {
+      if (SEGMENT_NAME.matcher(child.getName()).matches()) { return true; }
+    }
+    return false;
+  }
+
+  private File segmentFile(long id) {
+    return new File(directory, String.format("segment-%08d-%05d.log", id / SEQUENCES, id % SEQUENCES));
+  }
+
+  private File hintFile(long id) {
+    return new File(directory, String.format("segment-%08d-%05d.idx", id / SEQUENCES, id % SEQUENCES));
+  }
+
+  /** Map a segment file, creating it (or growing it) to at least the given size */
+  private Segment openSegment(long id, int minBytes) throws IOException {
+    File file = segmentFile(id);
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      long length = Math.max(raf.length(), minBytes);
+      if (length > Integer.MAX_VALUE) { throw new IOException("Segment is too large to map: " + file); }
+      if (raf.length() < length) { raf.setLength(length); }
+      // (the mapping remains valid once the file is closed)
+      return new Segment(id, raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length));
+    }
+  }
+
+  /** Register a record read back from disk in the index */
+  private void indexRecord(Segment segment, byte[] keyBytes, int offset, int valueLength, int recordBytes) throws IOException {
+    K key = codec.decode(keyBytes);
+    Location previous;
+    if (valueLength == TOMBSTONE) {
+      previous = index.remove(key);
+    } else {
+      previous = index.put(key, new Location(segment.id, offset, valueLength, recordBytes));
+      liveBytes += recordBytes;
+    }
+    if (previous != null) { liveBytes -= previous.recordBytes; }
+    totalBytes += recordBytes;
+  }
+
+  /** Read every valid record in a segment into the index */
+  private void replay(Segment segment) throws IOException {
+    ByteBuffer in = segment.buffer.duplicate();
+    segment.hints = new ByteArrayOutputStream();
+    CRC32 crc = new CRC32();
+    int position = 0;
+    while (position + HEADER_BYTES <= in.capacity()) {
+      // Read header
+      in.position(position);
+      int checksum = in.getInt();
+      int keyLength = in.getInt();
+      int valueLength = in.getInt();
+      if (keyLength < 0 || valueLength < TOMBSTONE) { break; }
+      long recordBytes = (long) HEADER_BYTES + keyLength + Math.max(0, valueLength);
+      if (position + recordBytes > in.capacity()) { break; }
+      // Verify checksum
+      crc.reset();
+      crc.update(ByteBuffer.allocate(8).putInt(keyLength).putInt(valueLength).array());
+      ByteBuffer body = in.slice();
+      body.limit(keyLength + Math.max(0, valueLength));
+      crc.update(body);
+      if (checksum != (int) crc.getValue()) { break; }
+      // Update index
+      byte[] keyBytes = new byte[keyLength];
+      in.get(keyBytes);
+      int offset = position + HEADER_BYTES + keyLength;
+      indexRecord(segment, keyBytes, offset, valueLength, (int) recordBytes);
+      addHint(segment, keyBytes, offset, valueLength, (int) recordBytes);
+      position += recordBytes;
+    }
+    segment.size = position;
+  }
+
+  /** Read the index file of a sealed segment into the index */
+  private void loadHints(Segment segment) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(hintFile(segment.id))))) {
+      while (true) {
+        int keyLength;
+        try {
+          keyLength = in.readInt();
+        } catch (EOFException e) {
+          break;
+        }
+        byte[] keyBytes = new byte[keyLength];
+        in.readFully(keyBytes);
+        int offset = in.readInt();
+        int valueLength = in.readInt();
+        int recordBytes = in.readInt();
+        indexRecord(segment, keyBytes, offset, valueLength, recordBytes);
+        segment.size = Math.max(segment.size, offset + Math.max(0, valueLength));
+      }
+    }
+  }
+
+  /** Note a record in the (pending) index file of a segment */
+  private static void addHint(Segment segment, byte[] keyBytes, int offset, int valueLength, int recordBytes) {
+    DataOutputStream out = new DataOutputStream(segment.hints);
+    try {
+      out.writeInt(keyBytes.length);
+      out.write(keyBytes);
+      out.writeInt(offset);
+      out.writeInt(valueLength);
+      out.writeInt(recordBytes);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);  // cannot happen writing to memory
+    }
+  }
+
+  /** Write the index file of a segment, which must not be written to again */
+  private void writeHints(Segment segment) throws IOException {
+    File hints = hintFile(segment.id);
+    File tmp = new File(directory, hints.getName() + ".tmp");
+    try (OutputStream out = new FileOutputStream(tmp)) {
+      segment.hints.writeTo(out);
+    }
+    Files.move(tmp.toPath(), hints.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    segment.hints = null;
+  }
+
+  /** Flush a full segment to disk, and write its index file */
+  private void seal(Segment segment) throws IOException {
+    segment.buffer.force();
+    writeHints(segment);
+  }
+
+  /** Create a new, empty segment */
+  private Segment createSegment(long id, int minBytes) throws IOException {
+    Segment segment = openSegment(id, Math.max(segmentBytes, minBytes));
+    segment.hints = new ByteArrayOutputStream();
+    return segment;
+  }
+
+  /** Returns whether a record of the given size fits at the end of the given segment */
+  private static boolean fits(Segment segment, int recordBytes) {
+    return segment != null && segment.size + (long) recordBytes <= segment.buffer.capacity();
+  }
+
+  /** Write a record at the end of a segment, which must have room for it */
+  private static Location append(Segment segment, byte[] keyBytes, byte[] value) {
+    int valueLength = value == null ? TOMBSTONE : value.length;
+    int recordBytes = HEADER_BYTES + keyBytes.length + Math.max(0, valueLength);
+    // Compute checksum
+    CRC32 crc = new CRC32();
+    crc.update(ByteBuffer.allocate(8).putInt(keyBytes.length).putInt(valueLength).array());
+    crc.update(keyBytes);
+    if (value != null) { crc.update(value); }
+    // Write
+    ByteBuffer out = segment.buffer.duplicate();
+    out.position(segment.size);
+    out.putInt((int) crc.getValue()).putInt(keyBytes.length).putInt(valueLength).put(keyBytes);
+    if (value != null) { out.put(value); }
+    int offset = segment.size + HEADER_BYTES + keyBytes.length;
+    addHint(segment, keyBytes, offset, valueLength, recordBytes);
+    segment.size += recordBytes;
+    return new Location(segment.id, offset, Math.max(0, valueLength), recordBytes);
+  }
+
+  /** Copy a live record, byte for byte, to the end of a segment which has room for it */
+  private Location copy(Location from, Segment to) {
+    int keyLength = from.recordBytes - HEADER_BYTES - from.length;
+    ByteBuffer in = segments.get(from.segment).buffer.duplicate();
+    in.position(from.offset - keyLength - HEADER_BYTES);
+    in.limit(from.offset + from.length);
+    byte[] keyBytes = new byte[keyLength];
+    ((ByteBuffer) in.duplicate().position(from.offset - keyLength)).get(keyBytes);
+    ByteBuffer out = to.buffer.duplicate();
+    out.position(to.size);
+    out.put(in);
+    int offset = to.size + HEADER_BYTES + keyLength;
+    addHint(to, keyBytes, offset, from.length, from.recordBytes);
+    to.size += from.recordBytes;
+    return new Location(to.id, offset, from.length, from.recordBytes);
+  }
+
+  /** Append a record to the active segment, starting a new segment if it does not fit; guarded by this */
+  private Location appendActive(byte[] keyBytes, byte[] value) throws IOException {
+    long recordBytes = (long) HEADER_BYTES + keyBytes.length + (value == null ? 0 : value.length);
+    if (recordBytes > Integer.MAX_VALUE) { throw new IOException("Record is too large: " + recordBytes + " bytes"); }
+    if (!fits(active, (int) recordBytes)) { roll((int) recordBytes); }
+    Location location = append(active, keyBytes, value);
+    totalBytes += location.recordBytes;
+    return location;
+  }
+
+  /** Seal the active segment, and start a new one; guarded by this */
+  private void roll(int minBytes) throws IOException {
+    if (active != null) { seal(active); }
+    active = createSegment(nextGeneration++ * SEQUENCES, minBytes);
+    segments.put(active.id, active);
+  }
+
+  /** Copy a value out of its segment */
+  private byte[] read(Location location) {
+    ByteBuffer in = segments.get(location.segment).buffer.duplicate();
+    in.position(location.offset);
+    byte[] value = new byte[location.length];
+    in.get(value);
+    return value;
+  }
+
+  private void ensureOpen() {
+    if (closed) { throw new IllegalStateException("Store is closed: " + directory); }
+  }
+
+  /**
+   * Get the value for a key.
+   * @return The value, or null if the key is not in the store.
+   */
+  public byte[] get(Object key) {
+    segmentLock.readLock().lock();
+    try {
+      ensureOpen();
+      Location location = index.get(key);
+      return location == null ? null : read(location);
+    } finally {
+      segmentLock.readLock().unlock();
+    }
+  }
+
+  /** Returns whether the store has a value for the given key */
+  public boolean containsKey(Object key) {
+    return index.containsKey(key);
+  }
+
+  /** Set the value for a key, overwriting any value already there */
+  public void put(K key, byte[] value) throws IOException {
+    byte[] keyBytes = codec.encode(key);
+    synchronized (this) {
+      ensureOpen();
+      Location location = appendActive(keyBytes, value);
+      Location previous = index.put(key, location);
+      liveBytes += location.recordBytes;
+      if (previous != null) { liveBytes -= previous.recordBytes; }
+    }
+    maybeCompact();
+  }
+
+  /**
+   * Remove a key from the store.
+   * @return True if the key was in the store.
+   */
+  public boolean remove(K key) throws IOException {
+    if (!index.containsKey(key)) { return false; }
+    byte[] keyBytes = codec.encode(key);
+    synchronized (this) {
+      ensureOpen();
+      Location previous = index.get(key);
+      if (previous == null) { return false; }
+      appendActive(keyBytes, null);
+      index.remove(key);
+      liveBytes -= previous.recordBytes;
+    }
+    maybeCompact();
+    return true;
+  }
+
+  /** A view of the keys in the store; this reflects concurrent writes on a best-effort basis */
+  public Set<K> keySet() {
+    return Collections.unmodifiableSet(index.keySet());
+  }
+
+  /** The number of keys in the store */
+  public int size() {
+    return index.size();
+  }
+
+  /** The number of bytes of records on disk, live or dead */
+  public synchronized long totalBytes() { return totalBytes; }
+
+  /** The number of bytes of records on disk which hold the latest value of some key */
+  public synchronized long liveBytes() { return liveBytes; }
+
+  /** Returns whether at least a segment's worth, and more than half, of what is on disk is dead */
+  private synchronized boolean needsCompaction() {
+    long deadBytes = totalBytes - liveBytes;
+    return deadBytes > segmentBytes && deadBytes > liveBytes;
+  }
+
+  /** Queue a background compaction, if one is warranted and none is queued already */
+  private void maybeCompact() {
+    if (needsCompaction() && compacting.compareAndSet(false, true)) {
+      compactor.submit(() -> {
+        try {
+          synchronized (compactionLock) {
+            if (!closed && needsCompaction()) { compactSealed(); }
+          }
+        } catch (IOException | RuntimeException e) {
+          warn("MappedSegmentStore", "could not compact " + directory + ": " + e);
+        } finally {
+          compacting.set(false);
+        }
+      });
+    }
+  }
+
+  /**
+   * Seal the active segment, and compact every segment.
+   * Compaction usually happens in the background as the store is written to; this forces it to happen now.
+   */
+  public void compact() throws IOException {
+    synchronized (compactionLock) {
+      compactSealed();
+    }
+  }
+
+  /**
+   * Copy the live records in the sealed segments into fresh segments, and delete the old segments.
+   * Readers and writers carry on against the index while the copy happens; a key written to in the meantime
+   * simply keeps pointing at its newer value.
+   * Must be called holding the compaction lock.
+   */
+  private void compactSealed() throws IOException {
+    // (1) Pick the segments to compact
+    List<Segment> inputs;
+    synchronized (this) {
+      ensureOpen();
+      if (active != null && active.size > 0) { roll(0); }
+      inputs = new ArrayList<>(active == null ? segments.values() : segments.headMap(active.id).values());
+    }
+    if (inputs.isEmpty()) { return; }
+    Set<Long> inputIds = new HashSet<>();
+    long inputBytes = 0;
+    for (Segment segment : inputs) {
+      inputIds.add(segment.id);
+      inputBytes += segment.size;
+    }
+    // (2) Copy the live records (nothing else removes the input segments while we hold the compaction lock)
+    long nextId = inputs.get(inputs.size() - 1).id + 1;
+    List<Segment> outputs = new ArrayList<>();
+    Map<K, Location[]> moved = new HashMap<>();
+    Segment output = null;
+    for (Map.Entry<K, Location> entry : index.entrySet()) {
+      Location from = entry.getValue();
+      if (!inputIds.contains(from.segment)) { continue; }
+      if (!fits(output, from.recordBytes)) {
+        if (output != null) { seal(output); }
+        if (nextId % SEQUENCES == 0) { throw new IOException("Too many compactions in one generation: " + directory); }
+        output = createSegment(nextId++, from.recordBytes);
+        outputs.add(output);
+      }
+      moved.put(entry.getKey(), new Location[]{ from, copy(from, output) });
+    }
+    if (output != null) { seal(output); }
+    long outputBytes = 0;
+    for (Segment segment : outputs) { outputBytes += segment.size; }
+    // (3) Swap in the new segments
+    synchronized (this) {
+      segmentLock.writeLock().lock();
+      try {
+        for (Segment segment : outputs) { segments.put(segment.id, segment); }
+        for (Map.Entry<K, Location[]> entry : moved.entrySet()) {
+          index.replace(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);  // unless overwritten since
+        }
+        for (Segment segment : inputs) { segments.remove(segment.id); }
+        totalBytes += outputBytes - inputBytes;
+      } finally {
+        segmentLock.writeLock().unlock();
+      }
+    }
+    // (4) Delete the old segments, oldest first (so that a crash cannot bring back a removed key)
+    for (Segment segment : inputs) {
+      File hints = hintFile(segment.id);
+      if (!segmentFile(segment.id).delete() || (hints.exists() && !hints.delete())) {
+        warn("MappedSegmentStore", "could not delete segment: " + segmentFile(segment.id));
+      }
+    }
+    log("MappedSegmentStore", "compacted " + directory + ": " + inputBytes + " -> " + outputBytes + " bytes");
+  }
+
+  /** Make sure everything written so far is on disk */
+  public synchronized void flush() throws IOException {
+    ensureOpen();
+    if (active != null) { active.buffer.force(); }
+  }
+
+  /**
+   * Flush and close the store, waiting for any compaction in progress.
+   * The mapped segments are released once they are garbage collected.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (compactionLock) {
+      synchronized (this) {
+        if (closed) { return; }
+        flush();
+        segmentLock.writeLock().lock();
+        try {
+          closed = true;
+          segments.clear();
+          index.clear();
+          active = null;
+        } finally {
+          segmentLock.writeLock().unlock();
+        }
+        processLock.release();
+        lockFile.close();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "MappedSegmentStore{" +
+        "directory=" + directory +
+        ", keys=" + size() +
+        ", segments=" + segments.size() +
+        ", bytes=" + liveBytes() + "/" + totalBytes() +
+        '}';
+  }
+}
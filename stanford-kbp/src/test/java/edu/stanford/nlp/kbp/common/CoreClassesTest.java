@@ -2,6 +2,7 @@ package edu.stanford.nlp.kbp.common;
 
 import edu.stanford.nlp.ie.machinereading.structure.Span;
 import edu.stanford.nlp.kbp.slotfilling.ir.KBPRelationProvenance;
+import edu.stanford.nlp.ling.BasicDatum;
 import edu.stanford.nlp.util.MetaClass;
 import org.junit.Test;
 
@@ -575,6 +576,21 @@ public class CoreClassesTest {
     }
   }
 
+  @Test
+  public void testSentenceGroupCopy() {
+    KBPair key = KBPNew.entName("Obama").entType(NERTag.PERSON).slotValue("Hawaii").KBPair();
+    SentenceGroup group = new SentenceGroup(key, new BasicDatum<String, String>(Arrays.asList("a", "b")), new KBPRelationProvenance("doc0", "index"), "key0");
+    SentenceGroup copy = group.copy();
+    copy.merge(new SentenceGroup(key, new BasicDatum<String, String>(Arrays.asList("c")), new KBPRelationProvenance("doc1", "index"), "key1"));
+    // Merging into the copy leaves the original alone
+    assertEquals(1, group.size());
+    assertEquals(1, group.provenances.size());
+    assertEquals(Arrays.asList("key0"), group.sentenceGlossKeys.get());
+    assertEquals(2, copy.size());
+    assertEquals(Arrays.asList("key0", "key1"), copy.sentenceGlossKeys.get());
+    assertSame(group.get(0), copy.get(0));
+  }
+
   private static void canSerialize(KBPSlotFill fill) {
     ByteArrayOutputStream os = new ByteArrayOutputStream();
     try {
@@ -5,12 +5,18 @@ import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.pipeline.Annotation;
 import edu.stanford.nlp.pipeline.StanfordCoreNLP;
 import edu.stanford.nlp.util.FileBackedCache;
+import edu.stanford.nlp.util.Pair;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.io.File;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.*;
 
@@ -130,4 +136,133 @@ public class KryoFileBackedCacheTest {
     assertEquals(sentence2, cache.get(sentence2).get(CoreAnnotations.TextAnnotation.class));
   }
 
+  private static void deleteRecursively(File dir) {
+    File[] files = dir.listFiles();
+    for (File file : files == null ? new File[0] : files) { assertTrue(file.delete()); }
+    assertTrue(dir.delete());
+  }
+
+  @Test
+  public void testSegmentStorage() throws IOException {
+    File segmentDir = File.createTempFile("cache", ".segments");
+    assertTrue(segmentDir.delete());
+    try {
+      KryoAnnotationSerializer serializer = new KryoAnnotationSerializer(true, true);
+      String sentence = "this is a test sentence. OK, maybe it's two sentences.";
+      String sentence2 = "Let's put another sentence in the cache. This is sentence 2.";
+      FileBackedCache<String, Annotation> segments = serializer.createCache(segmentDir, 2, false, FileBackedCache.Storage.SEGMENTS);
+      segments.put(sentence, annotate(sentence));
+      segments.put(sentence2, annotate(sentence2));
+      segments.put(sentence2, annotate(sentence));
+      assertEquals(sentence, segments.remove(sentence).get(CoreAnnotations.TextAnnotation.class));
+      segments.close();
+      // Reopen; the storage engine should be detected from the directory
+      FileBackedCache<String, Annotation> reopened = serializer.createCache(segmentDir, 2, false);
+      assertEquals(FileBackedCache.Storage.SEGMENTS, reopened.storage);
+      assertEquals(1, reopened.size());
+      assertFalse(reopened.containsKey(sentence));
+      assertEquals(sentence, reopened.get(sentence2).get(CoreAnnotations.TextAnnotation.class));
+      reopened.close();
+    } finally {
+      deleteRecursively(segmentDir);
+    }
+  }
+
+  @Test
+  public void testCorruptSegmentRecordIsDropped() throws IOException {
+    File segmentDir = File.createTempFile("cache", ".segments");
+    assertTrue(segmentDir.delete());
+    try {
+      KryoAnnotationSerializer serializer = new KryoAnnotationSerializer(true, true);
+      String sentence = "this is a test sentence. OK, maybe it's two sentences.";
+      FileBackedCache<String, Annotation> segments = serializer.createCache(segmentDir, 2, false, FileBackedCache.Storage.SEGMENTS);
+      segments.put(sentence, annotate(sentence));
+      segments.close();
+      // Reopen, with a reader which cannot read the record back (as when Kryo fails on a torn write)
+      FileBackedCache<String, Annotation> corrupt = new FileBackedCache<String, Annotation>(segmentDir, 2, FileBackedCache.Storage.SEGMENTS) {
+        @Override
+        protected Pair<String, Annotation> deserializeEntry(byte[] bytes) { return null; }
+      };
+      assertNull(corrupt.get(sentence));
+      assertFalse(corrupt.containsKey(sentence));
+      corrupt.close();
+      // The record stays removed
+      FileBackedCache<String, Annotation> reopened = serializer.createCache(segmentDir, 2, false);
+      assertEquals(0, reopened.size());
+      reopened.close();
+    } finally {
+      deleteRecursively(segmentDir);
+    }
+  }
+
+  @Test
+  public void testDetectStorage() throws IOException {
+    File dir = File.createTempFile("cache", ".dir");
+    assertTrue(dir.delete());
+    try {
+      // A new cache gets the requested engine
+      assertEquals(FileBackedCache.Storage.SEGMENTS, FileBackedCache.Storage.detect(dir, FileBackedCache.Storage.SEGMENTS));
+      assertEquals(FileBackedCache.Storage.BLOCKS, FileBackedCache.Storage.detect(dir));
+      // An existing cache keeps its engine
+      cache.put("key", annotate("A sentence."));
+      assertEquals(FileBackedCache.Storage.BLOCKS, FileBackedCache.Storage.detect(cache.cacheDir, FileBackedCache.Storage.SEGMENTS));
+      FileBackedCache<String, Annotation> segments = new KryoAnnotationSerializer(true, true)
+          .createCache(dir, 2, false, FileBackedCache.Storage.SEGMENTS);
+      segments.put("key", annotate("A sentence."));
+      segments.close();
+      assertEquals(FileBackedCache.Storage.SEGMENTS, FileBackedCache.Storage.detect(dir, FileBackedCache.Storage.BLOCKS));
+    } finally {
+      deleteRecursively(dir);
+    }
+  }
+
+  @Test
+  public void testMigrate() throws IOException {
+    String sentence = "this is a test sentence. OK, maybe it's two sentences.";
+    String sentence2 = "this is a test sentence. Well, no, it's another sentence actually. For kicks, let's make it three sentences!.";
+    cache.put(sentence, annotate(sentence));
+    cache.put(sentence2, annotate(sentence2));
+    File segmentDir = File.createTempFile("cache", ".segments");
+    assertTrue(segmentDir.delete());
+    try {
+      FileBackedCache<String, Annotation> segments = new KryoAnnotationSerializer(true, true)
+          .createCache(segmentDir, 2, false, FileBackedCache.Storage.SEGMENTS);
+      assertEquals(2, FileBackedCache.migrate(cache, segments));
+      assertEquals(2, cache.size());
+      assertEquals(2, segments.size());
+      assertEquals(sentence, segments.get(sentence).get(CoreAnnotations.TextAnnotation.class));
+      assertEquals(sentence2, segments.get(sentence2).get(CoreAnnotations.TextAnnotation.class));
+      segments.close();
+    } finally {
+      deleteRecursively(segmentDir);
+    }
+  }
+
+  @Test
+  public void testConcurrentSerialization() throws Exception {
+    final KryoAnnotationSerializer serializer = new KryoAnnotationSerializer(true, true);
+    final List<String> sentences = new ArrayList<>();
+    final List<Annotation> annotations = new ArrayList<>();
+    for (int i = 0; i < 8; ++i) {
+      sentences.add("This is test sentence number " + i + ". It has a friend, sentence " + (i + 1) + ".");
+      annotations.add(annotate(sentences.get(i)));
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<Boolean>> results = new ArrayList<>();
+    for (int task = 0; task < 256; ++task) {
+      final int i = task % sentences.size();
+      results.add(pool.submit(() -> {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        serializer.write(annotations.get(i), bytes).close();
+        Pair<Annotation, InputStream> read = serializer.read(new ByteArrayInputStream(bytes.toByteArray()));
+        read.second.close();
+        return sentences.get(i).equals(read.first.get(CoreAnnotations.TextAnnotation.class));
+      }));
+    }
+    for (Future<Boolean> result : results) {
+      assertTrue(result.get());
+    }
+    pool.shutdown();
+  }
+
 }
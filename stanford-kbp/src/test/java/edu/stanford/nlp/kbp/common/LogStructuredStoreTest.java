@@ -0,0 +1,153 @@
+package edu.stanford.nlp.kbp.common;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the embedded log-structured store behind the LOCAL cache backend.
+ */
+public class LogStructuredStoreTest {
+
+  private File directory;
+
+  @Before
+  public void createDirectory() throws IOException {
+    directory = Files.createTempDirectory("logstore").toFile();
+  }
+
+  @After
+  public void deleteDirectory() {
+    File[] files = directory.listFiles();
+    for (File file : files == null ? new File[0] : files) { assertTrue(file.delete()); }
+    assertTrue(directory.delete());
+  }
+
+  private static byte[] value(String text) {
+    return text.getBytes();
+  }
+
+  @Test
+  public void testPutGet() throws IOException {
+    try (LogStructuredStore store = new LogStructuredStore(directory, 1024)) {
+      assertFalse(store.get("a").isDefined());
+      store.put("a", value("alpha"));
+      store.put("b", value("beta"));
+      store.put("empty", new byte[0]);
+      assertArrayEquals(value("alpha"), store.get("a").get());
+      assertArrayEquals(value("beta"), store.get("b").get());
+      assertArrayEquals(new byte[0], store.get("empty").get());
+      assertTrue(store.containsKey("a"));
+      assertFalse(store.containsKey("c"));
+      assertEquals(3, store.size());
+      List<String> keys = new ArrayList<>();
+      store.keys().forEachRemaining(keys::add);
+      assertEquals(Arrays.asList("a", "b", "empty"), keys);
+    }
+  }
+
+  @Test
+  public void testOverwriteAndRemove() throws IOException {
+    try (LogStructuredStore store = new LogStructuredStore(directory, 1024)) {
+      store.put("a", value("alpha"));
+      store.put("a", value("aleph"));
+      assertArrayEquals(value("aleph"), store.get("a").get());
+      assertTrue(store.remove("a"));
+      assertFalse(store.remove("a"));
+      assertFalse(store.get("a").isDefined());
+      assertEquals(0, store.size());
+    }
+  }
+
+  @Test
+  public void testReopen() throws IOException {
+    try (LogStructuredStore store = new LogStructuredStore(directory, 64)) {
+      for (int i = 0; i < 100; ++i) { store.put("key" + i, value("value" + i)); }
+      store.put("key0", value("overwritten"));
+      store.remove("key1");
+    }
+    try (LogStructuredStore store = new LogStructuredStore(directory, 64)) {
+      assertEquals(99, store.size());
+      assertArrayEquals(value("overwritten"), store.get("key0").get());
+      assertFalse(store.get("key1").isDefined());
+      for (int i = 2; i < 100; ++i) { assertArrayEquals(value("value" + i), store.get("key" + i).get()); }
+    }
+  }
+
+  @Test
+  public void testTornRecordIsIgnored() throws IOException {
+    try (LogStructuredStore store = new LogStructuredStore(directory, 4096)) {
+      store.put("a", value("alpha"));
+      store.put("b", value("beta"));
+    }
+    // Corrupt the last byte of the last record
+    File segment = new File(directory, "segment-00000000-00000.log");
+    try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+      long offset = 2 * 12 + "a".length() + "alpha".length() + "b".length() + "beta".length() - 1;
+      raf.seek(offset);
+      raf.write('X');
+    }
+    try (LogStructuredStore store = new LogStructuredStore(directory, 4096)) {
+      assertArrayEquals(value("alpha"), store.get("a").get());
+      assertFalse(store.get("b").isDefined());
+      // ... and we can keep writing over it
+      store.put("c", value("gamma"));
+    }
+    try (LogStructuredStore store = new LogStructuredStore(directory, 4096)) {
+      assertEquals(2, store.size());
+      assertArrayEquals(value("gamma"), store.get("c").get());
+    }
+  }
+
+  @Test
+  public void testCompaction() throws IOException {
+    try (LogStructuredStore store = new LogStructuredStore(directory, 256)) {
+      for (int round = 0; round < 50; ++round) {
+        for (int i = 0; i < 10; ++i) { store.put("key" + i, value("value" + i + "@" + round)); }
+      }
+      store.compact();
+      assertEquals(store.liveBytes(), store.totalBytes());
+      for (int i = 0; i < 10; ++i) { assertArrayEquals(value("value" + i + "@49"), store.get("key" + i).get()); }
+    }
+    try (LogStructuredStore store = new LogStructuredStore(directory, 256)) {
+      assertEquals(10, store.size());
+      for (int i = 0; i < 10; ++i) { assertArrayEquals(value("value" + i + "@49"), store.get("key" + i).get()); }
+    }
+  }
+
+  @Test
+  public void testConcurrentReaders() throws Exception {
+    try (final LogStructuredStore store = new LogStructuredStore(directory, 1024)) {
+      for (int i = 0; i < 100; ++i) { store.put("key" + i, value("value" + i)); }
+      ExecutorService pool = Executors.newFixedThreadPool(8);
+      List<Future<Boolean>> results = new ArrayList<>();
+      // Readers
+      for (int t = 0; t < 8; ++t) {
+        results.add(pool.submit(() -> {
+          for (int round = 0; round < 100; ++round) {
+            for (int i = 0; i < 100; ++i) {
+              if (!Arrays.equals(value("value" + i), store.get("key" + i).get())) { return false; }
+            }
+          }
+          return true;
+        }));
+      }
+      // A writer, forcing compactions, on keys the readers do not read
+      for (int round = 0; round < 100; ++round) {
+        store.put("churn", value("churn" + round));
+      }
+      store.compact();
+      for (Future<Boolean> result : results) { assertTrue(result.get()); }
+      pool.shutdown();
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package edu.stanford.nlp.kbp.common;
+
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the interning and packing of datum features.
+ */
+public class PackedFeaturesTest {
+
+  @Test
+  public void testInternIsCanonical() {
+    String a = new String("packed:feature");
+    String b = new String("packed:feature");
+    assertNotSame(a, b);
+    assertSame(FeatureInterner.canonical(a), FeatureInterner.canonical(b));
+    assertEquals("packed:feature", FeatureInterner.canonical(a));
+    List<String> canonical = FeatureInterner.canonical(Arrays.asList(new String("packed:feature"), "packed:other"));
+    assertSame(FeatureInterner.canonical(a), canonical.get(0));
+  }
+
+  @Test
+  public void testPack() {
+    List<Collection<String>> datums = new ArrayList<>();
+    datums.add(Arrays.asList("packed:b", "packed:a"));
+    datums.add(new ArrayList<String>());
+    datums.add(Arrays.asList("packed:c"));
+    PackedFeatures packed = PackedFeatures.packFeatures(datums);
+
+    assertEquals(3, packed.size());
+    assertEquals(3, packed.numFeatures());
+    assertEquals(2, packed.end(0) - packed.start(0));
+    assertEquals(0, packed.end(1) - packed.start(1));
+    assertEquals(1, packed.end(2) - packed.start(2));
+    assertEquals("packed:c", packed.name(packed.feature(packed.start(2))));
+    assertEquals(3, packed.vocabularySize());
+    for (int i = 0; i < packed.numFeatures(); ++i) { assertEquals(1.0f, packed.value(i), 0.0f); }
+  }
+
+  @Test
+  public void testDuplicatesBecomeCounts() {
+    List<Collection<String>> datums = new ArrayList<>();
+    datums.add(Arrays.asList("packed:x", "packed:y", "packed:x"));
+    datums.add(Arrays.asList("packed:y"));
+    PackedFeatures packed = PackedFeatures.packFeatures(datums);
+
+    assertEquals(2, packed.end(0) - packed.start(0));
+    for (int i = packed.start(0); i < packed.end(0); ++i) {
+      assertEquals(packed.name(packed.feature(i)).equals("packed:x") ? 2.0f : 1.0f, packed.value(i), 0.0f);
+    }
+    assertEquals(1.0f, packed.value(packed.start(1)), 0.0f);
+  }
+
+  @Test
+  public void testDotAndToModel() {
+    Index<String> model = new HashIndex<>();
+    model.add("packed:y");
+    model.add("packed:x");
+    double[] weights = new double[]{ 0.5, 2.0 };
+
+    List<Collection<String>> datums = new ArrayList<>();
+    datums.add(Arrays.asList("packed:x", "packed:y", "packed:x", "packed:unknown"));
+    PackedFeatures packed = PackedFeatures.packFeatures(datums);
+    PackedFeatures.Translation translation = packed.translation(model);
+
+    assertEquals(2.0 * 2.0 + 0.5, packed.dot(0, translation, weights), 1e-10);
+    int[] features = packed.toModel(0, translation);
+    Arrays.sort(features);
+    assertArrayEquals(new int[]{ 0, 1, 1 }, features);
+    assertTrue(translation.isFor(model));
+    assertFalse(translation.isFor(new HashIndex<String>()));
+  }
+
+  @Test
+  public void testTranslationIsPerModel() {
+    Index<String> model = new HashIndex<>();
+    model.add("packed:known");
+    Index<String> otherModel = new HashIndex<>();
+    otherModel.add("packed:unknown");
+    otherModel.add("packed:known");
+
+    List<Collection<String>> datums = new ArrayList<>();
+    datums.add(Arrays.asList("packed:known", "packed:unknown"));
+    PackedFeatures packed = PackedFeatures.packFeatures(datums);
+    assertSame(packed.translation(model), packed.translation(model));
+    assertNotSame(packed.translation(model), packed.translation(otherModel));
+    assertArrayEquals(new int[]{ 0 }, packed.toModel(0, packed.translation(model)));
+    int[] features = packed.toModel(0, packed.translation(otherModel));
+    Arrays.sort(features);
+    assertArrayEquals(new int[]{ 0, 1 }, features);
+  }
+
+  @Test
+  public void testVocabularyIsPerPacking() {
+    List<Collection<String>> first = new ArrayList<>();
+    first.add(Arrays.asList("packed:p", "packed:q"));
+    List<Collection<String>> second = new ArrayList<>();
+    second.add(Arrays.asList("packed:r"));
+    // (the ids of one packing are not shared with another)
+    assertEquals(2, PackedFeatures.packFeatures(first).vocabularySize());
+    PackedFeatures packed = PackedFeatures.packFeatures(second);
+    assertEquals(1, packed.vocabularySize());
+    assertEquals("packed:r", packed.name(packed.feature(packed.start(0))));
+  }
+}
@@ -0,0 +1,120 @@
+package edu.stanford.nlp.kbp.common;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the pooled parallel map; see also the parMapIgnoreNull tests in {@link CollectionUtilsTest}.
+ */
+public class ParallelMapperTest {
+
+  private ParallelMapper mapper;
+
+  @Before
+  public void setUp() {
+    mapper = new ParallelMapper(4);
+  }
+
+  @After
+  public void tearDown() {
+    mapper.close();
+  }
+
+  private static List<Integer> range(int n) {
+    List<Integer> rtn = new ArrayList<>();
+    for (int i = 0; i < n; ++i) { rtn.add(i); }
+    return rtn;
+  }
+
+  @Test
+  public void testOrderedWithWaits() {
+    List<Integer> output = new ArrayList<>();
+    for (int x : mapper.mapIgnoreNull(range(200).iterator(), in -> {
+      try { Thread.sleep((in * 7) % 3); } catch (InterruptedException ignored) { }
+      return in * 2;
+    }, 5)) {
+      output.add(x);
+    }
+    List<Integer> expected = new ArrayList<>();
+    for (int x : range(200)) { expected.add(x * 2); }
+    assertEquals(expected, output);
+  }
+
+  @Test
+  public void testNullOutputsSkipped() {
+    List<Integer> output = new ArrayList<>();
+    for (int x : mapper.mapIgnoreNull(Arrays.asList(1, null, 2, 3, null, 4).iterator(), in -> in % 2 == 0 ? in : null)) {
+      output.add(x);
+    }
+    assertEquals(Arrays.asList(2, 4), output);
+  }
+
+  @Test
+  public void testUnordered() {
+    List<Integer> output = new ArrayList<>();
+    for (int x : mapper.mapIgnoreNullUnordered(range(200).iterator(), in -> in + 1, 7)) {
+      output.add(x);
+    }
+    assertEquals(200, output.size());
+    Collections.sort(output);
+    for (int i = 0; i < 200; ++i) { assertEquals(i + 1, (int) output.get(i)); }
+  }
+
+  @Test
+  public void testLookaheadIsBounded() {
+    final AtomicInteger read = new AtomicInteger(0);
+    Iterator<Integer> input = new Iterator<Integer>() {
+      @Override public boolean hasNext() { return read.get() < 1000; }
+      @Override public Integer next() { return read.getAndIncrement(); }
+    };
+    Iterator<Integer> output = mapper.mapIgnoreNull(input, in -> in, 10);
+    for (int i = 0; i < 50; ++i) {
+      assertEquals(i, (int) output.next());
+      assertTrue(read.get() <= i + 10);
+    }
+  }
+
+  @Test
+  public void testEmpty() {
+    assertFalse(mapper.mapIgnoreNull(Collections.<Integer>emptyIterator(), in -> in).hasNext());
+    assertFalse(mapper.mapIgnoreNullUnordered(Collections.<Integer>emptyIterator(), in -> in).hasNext());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testExceptionPropagates() {
+    Iterator<Integer> output = mapper.mapIgnoreNull(range(100).iterator(), in -> {
+      if (in == 42) { throw new IllegalStateException("failed on " + in); }
+      return in;
+    });
+    while (output.hasNext()) { output.next(); }
+  }
+
+  @Test
+  public void testSharedSkipsNullInputs() {
+    List<Integer> input = new ArrayList<>();
+    List<Integer> expected = new ArrayList<>();
+    Random rand = new Random(42);
+    for (int i = 0; i < 1000; ++i) {
+      if (rand.nextBoolean()) { input.add(i); expected.add(i + 1); } else { input.add(null); }
+    }
+    List<Integer> output = new ArrayList<>();
+    for (int x : ParallelMapper.shared().mapIgnoreNull(input.iterator(), in -> {
+      try { Thread.sleep(in % 3); } catch (InterruptedException ignored) { }
+      return in + 1;
+    })) {
+      output.add(x);
+    }
+    assertEquals(expected, output);
+  }
+
+  @Test
+  public void testSharedIsReused() {
+    assertSame(ParallelMapper.shared(), ParallelMapper.shared());
+  }
+}
@@ -0,0 +1,156 @@
+package edu.stanford.nlp.kbp.common;
+
+import edu.stanford.nlp.kbp.slotfilling.ir.KBPRelationProvenance;
+import edu.stanford.nlp.ling.BasicDatum;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests reads and writes of the key/value tables against an in-memory stand-in for Postgres,
+ * over more than one (pooled) connection.
+ */
+public class PostgresUtilsTest {
+
+  private Props.CacheBackend backendSaved;
+  private boolean batchSaved;
+  private int poolSizeSaved;
+  private int writeBehindSaved;
+
+  @Before
+  public void saveProps() {
+    backendSaved = Props.CACHE_BACKEND;
+    batchSaved = Props.PSQL_BATCH;
+    poolSizeSaved = Props.PSQL_POOLSIZE;
+    writeBehindSaved = Props.PSQL_WRITEBEHIND_MS;
+    Props.CACHE_BACKEND = Props.CacheBackend.POSTGRES;
+    Props.PSQL_WRITEBEHIND_MS = 0;
+  }
+
+  @After
+  public void restoreProps() {
+    Props.CACHE_BACKEND = backendSaved;
+    Props.PSQL_BATCH = batchSaved;
+    Props.PSQL_POOLSIZE = poolSizeSaved;
+    Props.PSQL_WRITEBEHIND_MS = writeBehindSaved;
+  }
+
+  /**
+   * A connection to a single (key, value) table held in the given map. It understands just the statements
+   * {@link PostgresUtils.KeyValueCallback} prepares; a batched write is only applied once its batch is executed.
+   */
+  private static Connection connection(final Map<String, byte[]> table) {
+    return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{ Connection.class },
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "prepareStatement":
+            case "prepareCall":
+              return statement(table, (String) args[0]);
+            case "getAutoCommit": return true;
+            case "hashCode": return System.identityHashCode(proxy);
+            case "equals": return proxy == args[0];
+            case "toString": return "connection@" + System.identityHashCode(proxy);
+            default: return null;
+          }
+        });
+  }
+
+  private static PreparedStatement statement(final Map<String, byte[]> table, final String sql) {
+    final Map<Integer, Object> params = new HashMap<>();
+    final List<Map<Integer, Object>> batch = new ArrayList<>();
+    return (PreparedStatement) Proxy.newProxyInstance(CallableStatement.class.getClassLoader(), new Class<?>[]{ CallableStatement.class },
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "setString":
+              params.put((Integer) args[0], args[1]);
+              return null;
+            case "setBinaryStream":
+              InputStream in = (InputStream) args[1];
+              byte[] bytes = new byte[((Number) args[2]).intValue()];
+              int read = 0;
+              while (read < bytes.length) { read += in.read(bytes, read, bytes.length - read); }
+              params.put((Integer) args[0], bytes);
+              return null;
+            case "addBatch":
+              batch.add(new HashMap<>(params));
+              return null;
+            case "clearBatch":
+              batch.clear();
+              return null;
+            case "execute":
+              write(table, sql, params);
+              return false;
+            case "executeBatch":
+              for (Map<Integer, Object> row : batch) { write(table, sql, row); }
+              return new int[batch.size()];
+            case "executeQuery":
+              return resultSet(sql.startsWith("SELECT value FROM") ? table.get((String) params.get(1)) : null);
+            case "hashCode": return System.identityHashCode(proxy);
+            case "equals": return proxy == args[0];
+            default: return null;
+          }
+        });
+  }
+
+  private static void write(Map<String, byte[]> table, String sql, Map<Integer, Object> row) {
+    if (sql.startsWith("SELECT _jdbc_set_")) { table.put((String) row.get(1), (byte[]) row.get(2)); }
+  }
+
+  private static ResultSet resultSet(final byte[] value) {
+    final boolean[] read = { false };
+    return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ ResultSet.class },
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "next":
+              boolean hasNext = value != null && !read[0];
+              read[0] = true;
+              return hasNext;
+            case "getBytes": return value;
+            default: return null;
+          }
+        });
+  }
+
+  private static SentenceGroup group(String... glossKeys) {
+    SentenceGroup group = SentenceGroup.empty(KBPNew.entName("Obama").entType(NERTag.PERSON).slotValue("Hawaii").KBPair());
+    for (String glossKey : glossKeys) {
+      group.add(new BasicDatum<String, String>(Collections.singletonList("feature_" + glossKey)),
+          new KBPRelationProvenance("doc_" + glossKey, "index"), glossKey);
+    }
+    return group;
+  }
+
+  @Test
+  public void testAppendAcrossPooledConnections() throws SQLException {
+    Props.PSQL_BATCH = true;
+    Props.PSQL_POOLSIZE = 2;
+    Map<String, byte[]> rows = new ConcurrentHashMap<>();
+    Connection first = connection(rows);
+    Connection second = connection(rows);
+    String table = "test_append_" + System.nanoTime();
+    PostgresUtils.KeyDatumCallback callback = new PostgresUtils.KeyDatumCallback() {
+      @Override
+      public void apply(Connection psql) throws SQLException { }
+    };
+
+    SentenceGroup a = group("a1", "a2");
+    SentenceGroup b = group("b1");
+    String key = PostgresUtils.KeyValueCallback.keyToString(a.key);
+    callback.append(first, table, key, a);
+    callback.append(second, table, key, b);
+
+    for (Connection psql : Arrays.asList(first, second)) {
+      Maybe<SentenceGroup> stored = callback.get(psql, table, key);
+      assertTrue(stored.isDefined());
+      assertEquals("datums appended on one connection were lost on the other", 3, stored.get().size());
+    }
+  }
+}
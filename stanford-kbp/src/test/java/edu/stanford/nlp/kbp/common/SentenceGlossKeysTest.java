@@ -0,0 +1,101 @@
+package edu.stanford.nlp.kbp.common;
+
+import edu.stanford.nlp.ie.machinereading.structure.Span;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.StringUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the sentence gloss key schemes; see also {@link edu.stanford.nlp.kbp.slotfilling.process.SentenceGlossCacheTest}
+ * for the keys of the original scheme.
+ */
+public class SentenceGlossKeysTest {
+
+  private static final String[] sentence = new String[]{"Julie", "named", "Julie", "was", "born", "in", "Canada"};
+  private static final Span entitySpan = new Span(0, 1);
+  private static final Span slotSpan = new Span(6, 7);
+  private static final String expectedLegacyKey = "200acf98ab1461ca7e98d7e495c23c64b573f845d2c5de850208afab607fb35b:0-1:6-7";
+
+  @After
+  public void resetScheme() {
+    Props.CACHE_SENTENCEGLOSS_KEYS = Props.GlossKeyScheme.SHA256;
+  }
+
+  private static List<CoreLabel> tokens(String... words) {
+    List<CoreLabel> tokens = new ArrayList<>();
+    for (String word : words) {
+      CoreLabel token = new CoreLabel();
+      token.setWord(word);
+      token.setOriginalText(word);
+      tokens.add(token);
+    }
+    return tokens;
+  }
+
+  private static CoreMap sentence(String... words) {
+    CoreMap sentence = new ArrayCoreMap();
+    sentence.set(CoreAnnotations.TokensAnnotation.class, tokens(words));
+    return sentence;
+  }
+
+  @Test
+  public void testLegacyByDefault() {
+    assertEquals(expectedLegacyKey, SentenceGlossKeys.key(sentence, entitySpan, slotSpan));
+    assertEquals(expectedLegacyKey, SentenceGlossKeys.key(tokens(sentence), entitySpan, slotSpan));
+    assertEquals(expectedLegacyKey, SentenceGlossKeys.key(sentence(sentence), entitySpan, slotSpan));
+    assertTrue(SentenceGlossKeys.isLegacy(expectedLegacyKey));
+  }
+
+  @Test
+  public void testMurmurKeys() {
+    Props.CACHE_SENTENCEGLOSS_KEYS = Props.GlossKeyScheme.MURMUR128;
+    String key = SentenceGlossKeys.key(sentence, entitySpan, slotSpan);
+    assertTrue(key.matches("[0-9a-f]{32}:0-1:6-7"));
+    assertFalse(SentenceGlossKeys.isLegacy(key));
+    assertEquals(key, SentenceGlossKeys.key(tokens(sentence), entitySpan, slotSpan));
+    assertEquals(key, SentenceGlossKeys.key(sentence(sentence), entitySpan, slotSpan));
+    assertEquals(expectedLegacyKey, SentenceGlossKeys.legacyKey(tokens(sentence), entitySpan, slotSpan));
+  }
+
+  @Test
+  public void testMurmurDistinguishesTokenization() {
+    Props.CACHE_SENTENCEGLOSS_KEYS = Props.GlossKeyScheme.MURMUR128;
+    assertFalse(SentenceGlossKeys.key(new String[]{"ab", "c"}, entitySpan, slotSpan).equals(
+        SentenceGlossKeys.key(new String[]{"a", "bc"}, entitySpan, slotSpan)));
+    assertFalse(SentenceGlossKeys.key(sentence, entitySpan, slotSpan).equals(
+        SentenceGlossKeys.key(StringUtils.join(Arrays.asList(sentence), " ").toLowerCase().split(" "), entitySpan, slotSpan)));
+  }
+
+  @Test
+  public void testHashSavedOnSentence() {
+    CoreMap sentence = sentence(SentenceGlossKeysTest.sentence);
+    String legacyKey = SentenceGlossKeys.key(sentence, entitySpan, slotSpan);
+    assertNotNull(sentence.get(KBPAnnotations.SentenceGlossHashAnnotation.class));
+    assertEquals("200acf98ab1461ca7e98d7e495c23c64b573f845d2c5de850208afab607fb35b:2-3:6-7", SentenceGlossKeys.key(sentence, new Span(2, 3), slotSpan));
+    // Changing the scheme recomputes the saved hash
+    Props.CACHE_SENTENCEGLOSS_KEYS = Props.GlossKeyScheme.MURMUR128;
+    String murmurKey = SentenceGlossKeys.key(sentence, entitySpan, slotSpan);
+    assertFalse(legacyKey.equals(murmurKey));
+    assertEquals(SentenceGlossKeys.key(tokens(SentenceGlossKeysTest.sentence), entitySpan, slotSpan), murmurKey);
+  }
+
+  @Test
+  public void testRekey() {
+    Props.CACHE_SENTENCEGLOSS_KEYS = Props.GlossKeyScheme.MURMUR128;
+    CoreMap gloss = sentence(sentence);
+    assertFalse(SentenceGlossKeys.rekey(gloss).isDefined());
+    gloss.set(KBPAnnotations.EntitySpanAnnotation.class, entitySpan);
+    gloss.set(KBPAnnotations.SlotValueSpanAnnotation.class, slotSpan);
+    assertEquals(SentenceGlossKeys.key(sentence, entitySpan, slotSpan), SentenceGlossKeys.rekey(gloss).get());
+  }
+}
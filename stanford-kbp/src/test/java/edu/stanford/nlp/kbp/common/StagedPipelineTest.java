@@ -0,0 +1,89 @@
+package edu.stanford.nlp.kbp.common;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the staged, back-pressured pipeline.
+ */
+public class StagedPipelineTest {
+
+  private static List<Integer> range(int n) {
+    List<Integer> rtn = new ArrayList<>();
+    for (int i = 0; i < n; ++i) { rtn.add(i); }
+    return rtn;
+  }
+
+  @Test
+  public void testNoStages() {
+    assertEquals(range(10), StagedPipeline.from("test", range(10).iterator(), 2).run());
+  }
+
+  @Test
+  public void testMapInOrder() {
+    StagedPipeline<Integer> pipeline = StagedPipeline.from("test", range(100).iterator(), 4)
+        .thenMap("sleep", 8, 4, x -> {
+          try { Thread.sleep((x * 7) % 5); } catch (InterruptedException e) { throw new RuntimeException(e); }
+          return x;
+        })
+        .thenMap("square", 3, 2, x -> x * x);
+    List<Integer> expected = new ArrayList<>();
+    for (int x : range(100)) { expected.add(x * x); }
+    assertEquals(expected, pipeline.run());
+    assertEquals(100, pipeline.stats().get(0).itemsIn.get());
+    assertEquals(100, pipeline.stats().get(1).itemsOut.get());
+  }
+
+  @Test
+  public void testFlatMapInOrder() {
+    List<String> result = StagedPipeline.from("test", Arrays.asList("a b", "", "c d e").iterator(), 1)
+        .then("split", 4, 1, x -> x.isEmpty() ? Collections.<String>emptyList() : Arrays.asList(x.split(" ")))
+        .then("double", 4, 1, x -> Arrays.asList(x, x.toUpperCase()))
+        .run();
+    assertEquals(Arrays.asList("a", "A", "b", "B", "c", "C", "d", "D", "e", "E"), result);
+  }
+
+  @Test
+  public void testNullsDropped() {
+    List<Integer> result = StagedPipeline.from("test", range(10).iterator(), 2)
+        .thenMap("evens", 2, 2, x -> x % 2 == 0 ? x : null)
+        .run();
+    assertEquals(Arrays.asList(0, 2, 4, 6, 8), result);
+  }
+
+  @Test
+  public void testBackPressure() {
+    final AtomicInteger inFlight = new AtomicInteger(0);
+    final AtomicInteger maxInFlight = new AtomicInteger(0);
+    StagedPipeline<Integer> pipeline = StagedPipeline.from("test", range(50).iterator(), 2)
+        .thenMap("fast", 1, 2, x -> {
+          int now = inFlight.incrementAndGet();
+          maxInFlight.accumulateAndGet(now, Math::max);
+          return x;
+        })
+        .thenMap("slow", 1, 2, x -> {
+          try { Thread.sleep(2); } catch (InterruptedException e) { throw new RuntimeException(e); }
+          inFlight.decrementAndGet();
+          return x;
+        });
+    assertEquals(range(50), pipeline.run());
+    // at most: the queue between the stages, the element being put, and the element being processed by the slow stage
+    assertTrue("Too many elements in flight: " + maxInFlight.get(), maxInFlight.get() <= 4);
+    assertTrue(pipeline.stats().get(0).stallNanos.get() > 0);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testExceptionPropagates() {
+    StagedPipeline.from("test", range(1000).iterator(), 2)
+        .thenMap("fail", 2, 2, x -> {
+          if (x == 17) { throw new IllegalStateException("failed on " + x); }
+          return x;
+        })
+        .thenMap("identity", 2, 2, x -> x)
+        .run();
+  }
+}
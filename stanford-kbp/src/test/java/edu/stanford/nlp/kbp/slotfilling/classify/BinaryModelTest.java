@@ -0,0 +1,130 @@
+package edu.stanford.nlp.kbp.slotfilling.classify;
+
+import edu.stanford.nlp.kbp.common.Maybe;
+import edu.stanford.nlp.kbp.common.SentenceGroup;
+import edu.stanford.nlp.kbp.slotfilling.ir.KBPRelationProvenance;
+import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.Pair;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the binary (memory mapped) model format, and the MIML-RE model's export to it.
+ */
+public class BinaryModelTest {
+
+  private static File tempFile(String suffix) throws IOException {
+    File file = File.createTempFile("model", suffix);
+    file.deleteOnExit();
+    return file;
+  }
+
+  @Test
+  public void testPathFor() {
+    assertEquals("models/kbp_relation_model.JOINT_BAYES.50.bin", BinaryModel.pathFor("models/kbp_relation_model.JOINT_BAYES.50.ser"));
+    assertEquals("model.bin.bin", BinaryModel.pathFor("model.bin"));
+  }
+
+  @Test
+  public void testSections() throws IOException {
+    File file = tempFile(BinaryModel.EXTENSION);
+    try (BinaryModel.Writer out = new BinaryModel.Writer(file.getPath(), JointBayesRelationExtractor.class)) {
+      out.writeStrings(Arrays.asList("alpha", "\u03b2", ""));
+      out.writeInt(42);
+      out.writeDoubles(new double[]{ 1.5, -2.0 });
+      out.writeBooleans(new boolean[]{ true, false, true });
+      out.writeFloats(FloatBuffer.wrap(new float[]{ 0.25f, -1.0f, 3.0f }));
+      out.writeString("end");
+    }
+    assertTrue(BinaryModel.isBinaryModel(file.getPath()));
+
+    ByteBuffer in = BinaryModel.map(file.getPath(), JointBayesRelationExtractor.class);
+    assertEquals(Arrays.asList("alpha", "\u03b2", ""), BinaryModel.readStrings(in));
+    assertEquals(42, in.getInt());
+    assertArrayEquals(new double[]{ 1.5, -2.0 }, BinaryModel.readDoubles(in), 0.0);
+    assertTrue(Arrays.equals(new boolean[]{ true, false, true }, BinaryModel.readBooleans(in)));
+    FloatBuffer floats = BinaryModel.viewFloats(in);
+    assertEquals(3, floats.capacity());
+    assertEquals(0.25f, floats.get(0), 0.0f);
+    assertEquals(-1.0f, floats.get(1), 0.0f);
+    assertEquals(3.0f, floats.get(2), 0.0f);
+    assertEquals("end", BinaryModel.readString(in));
+    assertFalse(in.hasRemaining());
+  }
+
+  @Test
+  public void testRejectsOtherFiles() throws IOException {
+    File serialized = tempFile(".ser");
+    try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(serialized))) {
+      out.writeObject("not a binary model");
+    }
+    assertFalse(BinaryModel.isBinaryModel(serialized.getPath()));
+    assertFalse(BinaryModel.isBinaryModel(serialized.getPath() + ".missing"));
+
+    File binary = tempFile(BinaryModel.EXTENSION);
+    new BinaryModel.Writer(binary.getPath(), JointBayesRelationExtractor.class).close();
+    try {
+      BinaryModel.map(binary.getPath(), PerceptronExtractor.class);
+      fail("Mapped a binary model for the wrong classifier");
+    } catch (IOException expected) { }
+  }
+
+  @Test
+  public void testJointBayesRoundTrip() throws IOException, ClassNotFoundException {
+    Random rand = new Random(42);
+    JointBayesRelationExtractor original = RandomModels.randomJointBayes(rand, 3, 40);
+    File file = tempFile(BinaryModel.EXTENSION);
+    original.saveBinary(file.getPath());
+
+    JointBayesRelationExtractor loaded = RelationClassifier.load(file.getPath(), new Properties(), JointBayesRelationExtractor.class);
+    for (int trial = 0; trial < 20; ++trial) {
+      SentenceGroup group = RandomModels.randomGroup(rand, 1 + rand.nextInt(6), 10, 40);
+      Counter<Pair<String, Maybe<KBPRelationProvenance>>> expected = original.classifyRelations(group, Maybe.<CoreMap[]>Nothing());
+      Counter<Pair<String, Maybe<KBPRelationProvenance>>> actual = loaded.classifyRelations(group, Maybe.<CoreMap[]>Nothing());
+      assertEquals(expected.keySet(), actual.keySet());
+      for (Pair<String, Maybe<KBPRelationProvenance>> key : expected.keySet()) {
+        assertEquals(key.first, expected.getCount(key), actual.getCount(key), 1e-9);
+      }
+    }
+
+    // A binary model can't be re-serialized, or do anything else which needs its classifiers
+    try {
+      loaded.save(new ObjectOutputStream(new ByteArrayOutputStream()));
+      fail("Saved a model loaded from a binary model");
+    } catch (IllegalStateException expected) { }
+    try {
+      loaded.classifyOracleMentions(Collections.<Collection<String>>singletonList(Arrays.asList("f1", "f2")), Collections.<String>emptySet());
+      fail("Classified oracle mentions with a model loaded from a binary model");
+    } catch (IllegalStateException expected) { }
+  }
+
+  @Test
+  public void testIsExportOf() throws IOException {
+    File serialized = tempFile(".ser");
+    try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(serialized))) {
+      out.writeObject("a serialized model");
+    }
+    File binary = tempFile(BinaryModel.EXTENSION);
+    new BinaryModel.Writer(binary.getPath(), JointBayesRelationExtractor.class, Maybe.Just(serialized)).close();
+    assertTrue(BinaryModel.isExportOf(binary.getPath(), serialized.getPath()));
+    BinaryModel.map(binary.getPath(), JointBayesRelationExtractor.class);
+
+    // The serialized model is retrained
+    try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(serialized))) {
+      out.writeObject("a serialized model, retrained");
+    }
+    assertFalse(BinaryModel.isExportOf(binary.getPath(), serialized.getPath()));
+
+    // A model not exported from a file is not an export of anything
+    new BinaryModel.Writer(binary.getPath(), JointBayesRelationExtractor.class).close();
+    assertFalse(BinaryModel.isExportOf(binary.getPath(), serialized.getPath()));
+    assertFalse(BinaryModel.isExportOf(binary.getPath(), serialized.getPath() + ".missing"));
+  }
+}
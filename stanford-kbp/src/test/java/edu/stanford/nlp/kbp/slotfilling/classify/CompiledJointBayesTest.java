@@ -0,0 +1,98 @@
+package edu.stanford.nlp.kbp.slotfilling.classify;
+
+import edu.stanford.nlp.kbp.common.*;
+import edu.stanford.nlp.kbp.slotfilling.ir.KBPRelationProvenance;
+import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.Pair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that classifying with the compiled MIML-RE model agrees with classifying through its classifiers.
+ */
+public class CompiledJointBayesTest {
+
+  private boolean compiledSaved;
+  private Set<Props.Y_FEATURE_CLASS> yFeaturesSaved;
+  private Props.TRAIN_JOINTBAYES_OUTDISTRIBUTION_TYPES outDistributionSaved;
+
+  @Before
+  public void saveProps() {
+    compiledSaved = Props.TEST_JOINTBAYES_COMPILED;
+    yFeaturesSaved = new HashSet<>(Props.TRAIN_JOINTBAYES_YFEATURES);
+    outDistributionSaved = Props.TRAIN_JOINTBAYES_OUTDISTRIBUTION;
+    Props.TRAIN_JOINTBAYES_YFEATURES.addAll(Arrays.asList(Props.Y_FEATURE_CLASS.values()));
+  }
+
+  @After
+  public void restoreProps() {
+    Props.TEST_JOINTBAYES_COMPILED = compiledSaved;
+    Props.TRAIN_JOINTBAYES_YFEATURES.clear();
+    Props.TRAIN_JOINTBAYES_YFEATURES.addAll(yFeaturesSaved);
+    Props.TRAIN_JOINTBAYES_OUTDISTRIBUTION = outDistributionSaved;
+  }
+
+  private static void assertAgrees(JointBayesRelationExtractor extractor, SentenceGroup group) {
+    Props.TEST_JOINTBAYES_COMPILED = false;
+    Counter<Pair<String, Maybe<KBPRelationProvenance>>> expected = extractor.classifyRelations(group, Maybe.<CoreMap[]>Nothing());
+    Props.TEST_JOINTBAYES_COMPILED = true;
+    Counter<Pair<String, Maybe<KBPRelationProvenance>>> actual = extractor.classifyRelations(group, Maybe.<CoreMap[]>Nothing());
+    assertEquals(expected.keySet(), actual.keySet());
+    for (Pair<String, Maybe<KBPRelationProvenance>> key : expected.keySet()) {
+      assertEquals(key.first, expected.getCount(key), actual.getCount(key), 1e-5);
+    }
+  }
+
+  @Test
+  public void testAgreesWithClassifiers() throws IOException, ClassNotFoundException {
+    Random rand = new Random(42);
+    JointBayesRelationExtractor extractor = RandomModels.randomJointBayes(rand, 3, 50);
+    for (Props.TRAIN_JOINTBAYES_OUTDISTRIBUTION_TYPES outputType : Props.TRAIN_JOINTBAYES_OUTDISTRIBUTION_TYPES.values()) {
+      Props.TRAIN_JOINTBAYES_OUTDISTRIBUTION = outputType;
+      for (int trial = 0; trial < 50; ++trial) {
+        assertAgrees(extractor, RandomModels.randomGroup(rand, 1 + rand.nextInt(8), 10, 50));
+      }
+    }
+  }
+
+  @Test
+  public void testLocalClassification() throws IOException, ClassNotFoundException {
+    Random rand = new Random(1337);
+    JointBayesRelationExtractor extractor = RandomModels.randomJointBayes(rand, 2, 20);
+    CompiledJointBayes model = CompiledJointBayes.compile(extractor.zClassifiers, extractor.zLabelIndex, extractor.yClassifiers);
+    SentenceGroup group = RandomModels.randomGroup(rand, 5, 10, 20);
+    PackedFeatures sentences = group.packedFeatures();
+    double[] probs = new double[model.zLabelIndex.size()];
+    for (int i = 0; i < sentences.size(); ++i) {
+      int label = model.classifyLocally(sentences, i, probs);
+      double sum = 0.0;
+      for (double prob : probs) {
+        assertTrue(prob >= 0.0 && prob <= probs[label]);
+        sum += prob;
+      }
+      assertEquals(1.0, sum, 1e-9);
+    }
+  }
+
+  @Test
+  public void testRecompiledOnLoad() throws IOException, ClassNotFoundException {
+    Random rand = new Random(7);
+    JointBayesRelationExtractor extractor = RandomModels.randomJointBayes(rand, 3, 30);
+    SentenceGroup group = RandomModels.randomGroup(rand, 6, 10, 30);
+    assertAgrees(extractor, group);
+    // Load a different model into the same extractor
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    RandomModels.randomJointBayes(rand, 2, 30).save(out);
+    out.close();
+    extractor.load(new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    assertAgrees(extractor, group);
+  }
+}
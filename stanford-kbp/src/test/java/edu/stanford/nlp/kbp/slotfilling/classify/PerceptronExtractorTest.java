@@ -0,0 +1,121 @@
+package edu.stanford.nlp.kbp.slotfilling.classify;
+
+import edu.stanford.nlp.ie.machinereading.structure.RelationMention;
+import edu.stanford.nlp.kbp.common.*;
+import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the perceptron's (lazily) averaged weights, and its classification with them.
+ */
+public class PerceptronExtractorTest {
+
+  private static final String[] relations = { "per:city_of_birth", "per:title", "org:founded_by" };
+
+  @Test
+  public void testLazyAverage() {
+    Random rand = new Random(42);
+    int numFeatures = 30;
+    PerceptronExtractor.LabelWeights lazy = new PerceptronExtractor.LabelWeights(numFeatures);
+    // The average as it was computed eagerly: every vector, weighted by the iterations it survived
+    double[] weights = new double[numFeatures];
+    double[] expected = new double[numFeatures];
+    int survived = 0;
+    for (int t = 0; t < 2000; ++t) {
+      if (rand.nextInt(3) == 0) {
+        int[] datum = new int[1 + rand.nextInt(5)];
+        for (int i = 0; i < datum.length; ++i) { datum[i] = rand.nextInt(numFeatures); }
+        double weight = rand.nextBoolean() ? 1.0 : -1.0;
+        for (int i = 0; i < numFeatures; ++i) { expected[i] += weights[i] * survived; }
+        for (int d : datum) { weights[d] += weight; }
+        survived = 0;
+        lazy.update(datum, weight);
+        assertEquals(0, lazy.survivalIterations);
+      } else {
+        survived += 1;
+        lazy.updateSurvivalIterations();
+      }
+    }
+    lazy.finishAverage();
+    assertArrayEquals(weights, lazy.weights, 0.0);
+    assertArrayEquals(expected, lazy.avgWeights, 0.0);
+  }
+
+  @Test
+  public void testDotProduct() {
+    PerceptronExtractor.LabelWeights labelWeights = new PerceptronExtractor.LabelWeights(4);
+    labelWeights.update(new int[]{ 0, 2, 2 }, 1.5);
+    // (a repeated feature counts once for every time it occurs)
+    assertEquals(3.0, labelWeights.dotProduct(new int[]{ 2 }), 1e-12);
+    assertEquals(7.5, labelWeights.dotProduct(new int[]{ 0, 2, 2 }), 1e-12);
+    assertEquals(0.0, labelWeights.dotProduct(new int[]{ 1, 3 }), 0.0);
+  }
+
+  private static PerceptronExtractor randomModel(Random rand, int numFeatures) throws IOException {
+    PerceptronExtractor extractor = new PerceptronExtractor(new Properties());
+    Index<String> labels = new HashIndex<>();
+    labels.add(RelationMention.UNRELATED);
+    labels.addAll(Arrays.asList(relations));
+    Index<String> features = new HashIndex<>();
+    for (int i = 0; i < numFeatures; ++i) { features.add("f" + i); }
+    extractor.labelIndex = labels;
+    extractor.nilIndex = labels.indexOf(RelationMention.UNRELATED);
+    extractor.zFeatureIndex = features;
+    extractor.zWeights = new PerceptronExtractor.LabelWeights[labels.size()];
+    for (int label = 0; label < labels.size(); ++label) {
+      extractor.zWeights[label] = new PerceptronExtractor.LabelWeights(numFeatures);
+      for (int i = 0; i < numFeatures; ++i) { extractor.zWeights[label].avgWeights[i] = rand.nextGaussian(); }
+    }
+    return extractor;
+  }
+
+  @Test
+  public void testClassifyMentions() throws IOException {
+    Random rand = new Random(1337);
+    int numFeatures = 20;
+    PerceptronExtractor extractor = randomModel(rand, numFeatures);
+    for (int trial = 0; trial < 50; ++trial) {
+      SentenceGroup group = RandomModels.randomGroup(rand, 1 + rand.nextInt(6), 8, numFeatures);
+
+      // The noisy or of each sentence's most probable (non-NIL) label, computed directly from the averaged weights
+      Map<String, Double> expected = new HashMap<>();
+      for (int s = 0; s < group.size(); ++s) {
+        Collection<String> sentence = group.get(s).asFeatures();
+        double[] scores = new double[extractor.labelIndex.size()];
+        double max = Double.NEGATIVE_INFINITY;
+        for (int label = 0; label < scores.length; ++label) {
+          for (String feature : sentence) {
+            int f = extractor.zFeatureIndex.indexOf(feature);
+            if (f >= 0) { scores[label] += extractor.zWeights[label].avgWeights[f]; }
+          }
+          scores[label] *= extractor.gamma;
+          max = Math.max(max, scores[label]);
+        }
+        double sum = 0.0;
+        int best = 0;
+        for (int label = 0; label < scores.length; ++label) {
+          sum += Math.exp(scores[label] - max);
+          if (scores[label] > scores[best]) { best = label; }
+        }
+        if (best != extractor.nilIndex) {
+          String relation = extractor.labelIndex.get(best);
+          double prob = Math.exp(scores[best] - max) / sum;
+          expected.put(relation, (expected.containsKey(relation) ? expected.get(relation) : 1.0) * (1.0 - prob));
+        }
+      }
+
+      Counter<String> actual = extractor.classifyMentions(group.packedFeatures());
+      assertEquals(expected.keySet(), actual.keySet());
+      for (Map.Entry<String, Double> entry : expected.entrySet()) {
+        assertEquals(entry.getKey(), 1.0 - entry.getValue(), actual.getCount(entry.getKey()), 1e-9);
+      }
+    }
+  }
+}
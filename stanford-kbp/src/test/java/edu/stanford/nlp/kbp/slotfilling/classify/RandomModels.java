@@ -0,0 +1,83 @@
+package edu.stanford.nlp.kbp.slotfilling.classify;
+
+import edu.stanford.nlp.classify.LinearClassifier;
+import edu.stanford.nlp.ie.machinereading.structure.RelationMention;
+import edu.stanford.nlp.kbp.common.KBPNew;
+import edu.stanford.nlp.kbp.common.NERTag;
+import edu.stanford.nlp.kbp.common.SentenceGroup;
+import edu.stanford.nlp.kbp.slotfilling.ir.KBPRelationProvenance;
+import edu.stanford.nlp.ling.BasicDatum;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Random models and datums over the features <code>f0 ... f(n-1)</code>, shared by the classifier tests.
+ */
+class RandomModels {
+
+  static final String[] relations = { "per:city_of_birth", "per:title", "org:founded_by", "per:spouse" };
+
+  private RandomModels() { }
+
+  static LinearClassifier<String, String> randomClassifier(Random rand, Index<String> features, Index<String> labels, double scale) {
+    double[][] weights = new double[features.size()][labels.size()];
+    for (double[] row : weights) {
+      for (int i = 0; i < row.length; ++i) { row[i] = rand.nextGaussian() * scale; }
+    }
+    return new LinearClassifier<>(weights, features, labels);
+  }
+
+  /** A random MIML-RE model, written as {@link JointBayesRelationExtractor#save(ObjectOutputStream)} would, and loaded back */
+  static JointBayesRelationExtractor randomJointBayes(Random rand, int numFolds, int numFeatures) throws IOException, ClassNotFoundException {
+    Index<String> zLabels = new HashIndex<>();
+    zLabels.add(RelationMention.UNRELATED);
+    zLabels.addAll(Arrays.asList(relations));
+    Index<String> features = new HashIndex<>();
+    for (int i = 0; i < numFeatures; ++i) { features.add("f" + i); }
+    // (the last fold never saw the last relation)
+    Index<String> partialLabels = new HashIndex<>(zLabels.objectsList().subList(0, zLabels.size() - 1));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(new HashSet<String>());
+    out.writeObject(zLabels);
+    out.writeInt(numFolds);
+    for (int fold = 0; fold < numFolds; ++fold) {
+      out.writeObject(randomClassifier(rand, features, fold == numFolds - 1 ? partialLabels : zLabels, 1.0));
+    }
+    out.writeObject(randomClassifier(rand, features, zLabels, 1.0));
+    out.writeInt(relations.length);
+    for (String relation : relations) {
+      Index<String> yFeatures = new HashIndex<>();
+      yFeatures.addAll(Arrays.asList(JointBayesRelationExtractor.NONE_FEAT, JointBayesRelationExtractor.ATLEASTONCE_FEAT,
+          JointBayesRelationExtractor.UNIQUE_FEAT, JointBayesRelationExtractor.SIGMOID_FEAT, "atleast_1", "atleast_2", "atleast_3"));
+      for (String other : relations) {
+        if (!other.equals(relation)) { yFeatures.add(JointBayesRelationExtractor.makeCoocurrenceFeature(relation, other)); }
+      }
+      Index<String> yLabels = new HashIndex<>(Arrays.asList(RelationMention.UNRELATED, relation));
+      out.writeObject(relation);
+      out.writeObject(randomClassifier(rand, yFeatures, yLabels, 2.0));
+    }
+    out.close();
+
+    JointBayesRelationExtractor extractor = new JointBayesRelationExtractor(new Properties());
+    extractor.load(new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    return extractor;
+  }
+
+  /** A random group of sentences, each with the given number of features; about one in ten of them is not one of the model's */
+  static SentenceGroup randomGroup(Random rand, int numSentences, int sentenceLength, int numFeatures) {
+    SentenceGroup group = SentenceGroup.empty(KBPNew.entName("Obama").entType(NERTag.PERSON).slotValue("Hawaii").KBPair());
+    for (int s = 0; s < numSentences; ++s) {
+      List<String> sentence = new ArrayList<>();
+      for (int i = 0; i < sentenceLength; ++i) {
+        sentence.add(rand.nextInt(10) == 0 ? "unk" + rand.nextInt(5) : "f" + rand.nextInt(numFeatures));
+      }
+      group.add(new BasicDatum<String, String>(sentence), new KBPRelationProvenance("doc" + s, "index"), "key" + s);
+    }
+    return group;
+  }
+}
@@ -128,4 +128,32 @@ public class EnsembleRelationExtractorTest {
     assertEquals(1.0, predictions.getCount(RelationType.PER_CITY_OF_BIRTH.canonicalName), 1e-5);
   }
 
+  @Test
+  public void testConcurrentScoringAgrees() {
+    int threadsSaved = Props.TEST_ENSEMBLE_THREADS;
+    EnsembleRelationExtractor weighted = new EnsembleRelationExtractor(
+        new AlwaysGuessOneRelationClassifier(RelationType.PER_CITY_OF_BIRTH, 0.9),
+        new AlwaysGuessOneRelationClassifier(RelationType.PER_CITY_OF_BIRTH, 0.4),
+        new AlwaysGuessOneRelationClassifier(RelationType.PER_STATE_OR_PROVINCES_OF_BIRTH, 0.7),
+        new AlwaysGuessOneRelationClassifier(RelationType.PER_CITY_OF_BIRTH, 0.6),
+        new AlwaysGuessOneRelationClassifier(RelationType.PER_STATE_OR_PROVINCES_OF_BIRTH, 0.2),
+        new AlwaysGuessOneRelationClassifier(RelationType.PER_CITY_OF_DEATH, 0.5)
+    );
+    try {
+      for (Props.EnsembleCombinationMethod combination : Props.EnsembleCombinationMethod.values()) {
+        Props.TEST_ENSEMBLE_COMBINATION = combination;
+        Props.TEST_ENSEMBLE_THREADS = 1;
+        Counter<String> serial = weighted.classifyRelationsNoProvenance(null, Maybe.<CoreMap[]>Nothing());
+        Props.TEST_ENSEMBLE_THREADS = 6;
+        Counter<String> concurrent = weighted.classifyRelationsNoProvenance(null, Maybe.<CoreMap[]>Nothing());
+        assertEquals(combination.toString(), serial.keySet(), concurrent.keySet());
+        for (String relation : serial.keySet()) {
+          assertEquals(relation, serial.getCount(relation), concurrent.getCount(relation), 0.0);
+        }
+      }
+    } finally {
+      Props.TEST_ENSEMBLE_THREADS = threadsSaved;
+    }
+  }
+
 }
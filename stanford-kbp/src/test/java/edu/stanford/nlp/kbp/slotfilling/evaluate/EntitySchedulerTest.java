@@ -0,0 +1,146 @@
+package edu.stanford.nlp.kbp.slotfilling.evaluate;
+
+import edu.stanford.nlp.kbp.common.*;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the parallel entity scheduler used at evaluation time.
+ */
+public class EntitySchedulerTest {
+
+  private static List<KBPOfficialEntity> entities(int count) {
+    List<KBPOfficialEntity> entities = new ArrayList<>();
+    for (int i = 0; i < count; ++i) {
+      entities.add(KBPNew.entName("Entity" + i).entType(NERTag.PERSON).entId("E000" + i).KBPOfficialEntity());
+    }
+    return entities;
+  }
+
+  private static KBPSlotFill fillFor(KBPOfficialEntity entity) {
+    return KBPNew.from(entity).slotValue("value of " + entity.name).rel(RelationType.PER_TITLE).score(1.0).KBPSlotFill();
+  }
+
+  @Test
+  public void testSerialMatchesInput() {
+    List<KBPOfficialEntity> entities = entities(5);
+    Map<KBPOfficialEntity, Collection<KBPSlotFill>> fills = new EntityScheduler(1, Integer.MAX_VALUE)
+        .fillSlots(entities, entity -> Collections.singletonList(fillFor(entity)));
+    assertEquals(entities, new ArrayList<>(fills.keySet()));
+    for (KBPOfficialEntity entity : entities) {
+      assertEquals(Collections.singletonList(fillFor(entity)), fills.get(entity));
+    }
+  }
+
+  @Test
+  public void testParallelPreservesOrder() {
+    List<KBPOfficialEntity> entities = entities(16);
+    final Random rand = new Random(42);
+    final long[] sleeps = new long[entities.size()];
+    for (int i = 0; i < sleeps.length; ++i) { sleeps[i] = rand.nextInt(20); }
+    Map<KBPOfficialEntity, Collection<KBPSlotFill>> fills = new EntityScheduler(4, Integer.MAX_VALUE)
+        .fillSlots(entities, entity -> {
+          try {
+            Thread.sleep(sleeps[Integer.parseInt(entity.name.substring("Entity".length()))]);
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+          return Collections.singletonList(fillFor(entity));
+        });
+    assertEquals(entities, new ArrayList<>(fills.keySet()));
+    for (KBPOfficialEntity entity : entities) {
+      assertEquals(Collections.singletonList(fillFor(entity)), fills.get(entity));
+    }
+  }
+
+  @Test
+  public void testTimeoutYieldsNoFills() {
+    List<KBPOfficialEntity> entities = entities(3);
+    final KBPOfficialEntity slow = entities.get(1);
+    Map<KBPOfficialEntity, Collection<KBPSlotFill>> fills = new EntityScheduler(2, 100)
+        .fillSlots(entities, entity -> {
+          if (entity.equals(slow)) {
+            try {
+              Thread.sleep(10000);
+            } catch (InterruptedException ignored) { }
+          }
+          return Collections.singletonList(fillFor(entity));
+        });
+    assertEquals(entities, new ArrayList<>(fills.keySet()));
+    assertTrue(fills.get(slow).isEmpty());
+    assertEquals(Collections.singletonList(fillFor(entities.get(0))), fills.get(entities.get(0)));
+    assertEquals(Collections.singletonList(fillFor(entities.get(2))), fills.get(entities.get(2)));
+  }
+
+  @Test
+  public void testSerialTimeout() {
+    List<KBPOfficialEntity> entities = entities(3);
+    final KBPOfficialEntity slow = entities.get(0);
+    Map<KBPOfficialEntity, Collection<KBPSlotFill>> fills = new EntityScheduler(1, 100)
+        .fillSlots(entities, entity -> {
+          if (entity.equals(slow)) {
+            try {
+              Thread.sleep(10000);
+            } catch (InterruptedException ignored) { }
+          }
+          return Collections.singletonList(fillFor(entity));
+        });
+    assertEquals(entities, new ArrayList<>(fills.keySet()));
+    assertTrue(fills.get(slow).isEmpty());
+    assertEquals(Collections.singletonList(fillFor(entities.get(1))), fills.get(entities.get(1)));
+    assertEquals(Collections.singletonList(fillFor(entities.get(2))), fills.get(entities.get(2)));
+  }
+
+  @Test
+  public void testTimeoutDoesNotInterruptNextEntity() {
+    // On one worker, the entity after a timed out one runs on the same thread; it must not see the interrupt
+    List<KBPOfficialEntity> entities = entities(2);
+    final KBPOfficialEntity slow = entities.get(0);
+    Map<KBPOfficialEntity, Collection<KBPSlotFill>> fills = new EntityScheduler(1, 100)
+        .fillSlots(entities, entity -> {
+          try {
+            Thread.sleep(entity.equals(slow) ? 10000 : 50);
+          } catch (InterruptedException e) {
+            return Collections.emptyList();
+          }
+          return Collections.singletonList(fillFor(entity));
+        });
+    assertTrue(fills.get(slow).isEmpty());
+    assertEquals(Collections.singletonList(fillFor(entities.get(1))), fills.get(entities.get(1)));
+  }
+
+  @Test
+  public void testTimeoutInterruptsEntity() throws InterruptedException {
+    List<KBPOfficialEntity> entities = entities(3);
+    final KBPOfficialEntity slow = entities.get(0);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    final long giveUp = System.currentTimeMillis() + 10000;
+    Map<KBPOfficialEntity, Collection<KBPSlotFill>> fills = new EntityScheduler(1, 100)
+        .fillSlots(entities, entity -> {
+          if (entity.equals(slow)) {
+            // (spin, rather than sleep, so that only the interrupt flag can stop this)
+            while (System.currentTimeMillis() < giveUp) {
+              if (Thread.interrupted()) {
+                interrupted.countDown();
+                return Collections.emptyList();
+              }
+            }
+          }
+          return Collections.singletonList(fillFor(entity));
+        });
+    assertTrue("the timed out entity was never interrupted", interrupted.await(5, TimeUnit.SECONDS));
+    assertTrue(fills.get(slow).isEmpty());
+    assertEquals(Collections.singletonList(fillFor(entities.get(1))), fills.get(entities.get(1)));
+    assertEquals(Collections.singletonList(fillFor(entities.get(2))), fills.get(entities.get(2)));
+  }
+
+  @Test
+  public void testNoEntities() {
+    assertTrue(new EntityScheduler(4, 100).fillSlots(Collections.<KBPOfficialEntity>emptyList(), entity -> null).isEmpty());
+  }
+}
@@ -0,0 +1,86 @@
+package edu.stanford.nlp.kbp.slotfilling.ir;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the bounded document cache used by StandardIR.
+ */
+public class DocumentCacheTest {
+
+  private static Annotation document(String docId, int numTokens) {
+    Annotation doc = new Annotation(docId);
+    List<CoreLabel> tokens = new ArrayList<>();
+    for (int i = 0; i < numTokens; ++i) {
+      CoreLabel token = new CoreLabel();
+      token.setWord("word" + i);
+      tokens.add(token);
+    }
+    doc.set(CoreAnnotations.TokensAnnotation.class, tokens);
+    doc.set(CoreAnnotations.DocIDAnnotation.class, docId);
+    return doc;
+  }
+
+  private static long sizeOf(int numTokens) {
+    return DocumentCache.BYTES_PER_DOCUMENT + numTokens * DocumentCache.BYTES_PER_TOKEN;
+  }
+
+  @Test
+  public void testHitAndMiss() throws Exception {
+    DocumentCache cache = new DocumentCache(sizeOf(10) * 10);
+    Annotation doc = cache.get("A", id -> document(id, 10));
+    assertEquals("A", doc.get(CoreAnnotations.DocIDAnnotation.class));
+    assertSame(doc, cache.get("A", id -> { throw new AssertionError("should be cached"); }));
+    assertEquals(1, cache.misses.get());
+    assertEquals(1, cache.hits.get());
+    assertEquals(sizeOf(10), cache.bytes());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() throws Exception {
+    DocumentCache cache = new DocumentCache(sizeOf(10) * 2);
+    cache.get("A", id -> document(id, 10));
+    cache.get("B", id -> document(id, 10));
+    cache.get("A", id -> document(id, 10));  // A is now more recent than B
+    cache.get("C", id -> document(id, 10));
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.evictions.get());
+    assertNotNull(cache.getIfPresent("A"));
+    assertNull(cache.getIfPresent("B"));
+    assertNotNull(cache.getIfPresent("C"));
+  }
+
+  @Test
+  public void testSingleFlight() throws Exception {
+    final DocumentCache cache = new DocumentCache(sizeOf(10) * 10);
+    final AtomicInteger loads = new AtomicInteger(0);
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<Annotation>> results = new ArrayList<>();
+    for (int i = 0; i < 8; ++i) {
+      results.add(pool.submit(() -> {
+        start.await();
+        return cache.get("A", id -> {
+          loads.incrementAndGet();
+          try { Thread.sleep(100); } catch (InterruptedException ignored) { }
+          return document(id, 10);
+        });
+      }));
+    }
+    start.countDown();
+    Annotation first = results.get(0).get();
+    for (Future<Annotation> result : results) {
+      assertSame(first, result.get());
+    }
+    pool.shutdown();
+    assertEquals(1, loads.get());
+  }
+}
@@ -0,0 +1,158 @@
+package edu.stanford.nlp.kbp.slotfilling.ir;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
+import edu.stanford.nlp.semgraph.SemanticGraphEdge;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeCoreAnnotations;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the docid-keyed cache of parses used by the PostIRAnnotator.
+ */
+public class ParseCacheTest {
+
+  private File directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("parsecache").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) { assertTrue(file.delete()); }
+    }
+    assertTrue(directory.delete());
+  }
+
+  /** A one sentence document: "Obama was born", without any parse */
+  private static Annotation document(String docId) {
+    Annotation doc = new Annotation("Obama was born");
+    List<CoreLabel> tokens = new ArrayList<>();
+    String[] words = new String[]{ "Obama", "was", "born" };
+    for (int i = 0; i < words.length; ++i) {
+      CoreLabel token = new CoreLabel();
+      token.setWord(words[i]);
+      token.setValue(words[i]);
+      token.setNER(i == 0 ? "PERSON" : "O");
+      token.setIndex(i + 1);
+      token.setSentIndex(0);
+      token.set(CoreAnnotations.DocIDAnnotation.class, docId);
+      tokens.add(token);
+    }
+    CoreMap sentence = new ArrayCoreMap();
+    sentence.set(CoreAnnotations.TokensAnnotation.class, tokens);
+    doc.set(CoreAnnotations.TokensAnnotation.class, tokens);
+    doc.set(CoreAnnotations.SentencesAnnotation.class, Collections.singletonList(sentence));
+    doc.set(CoreAnnotations.DocIDAnnotation.class, docId);
+    return doc;
+  }
+
+  /** Parse the document from {@link ParseCacheTest#document(String)}, by hand */
+  private static void parse(Annotation doc) {
+    CoreMap sentence = doc.get(CoreAnnotations.SentencesAnnotation.class).get(0);
+    List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+    tokens.get(0).setNER("ORGANIZATION");  // as if tweaked
+    sentence.set(TreeCoreAnnotations.TreeAnnotation.class, Tree.valueOf("(ROOT (S (NP (NNP Obama)) (VP (VBD was) (VP (VBN born)))))"));
+    SemanticGraph graph = new SemanticGraph();
+    IndexedWord obama = new IndexedWord(tokens.get(0));
+    IndexedWord was = new IndexedWord(tokens.get(1));
+    IndexedWord born = new IndexedWord(tokens.get(2));
+    graph.addVertex(obama);
+    graph.addVertex(was);
+    graph.addVertex(born);
+    graph.addEdge(born, obama, GrammaticalRelation.valueOf("nsubjpass"), 1.0, false);
+    graph.addEdge(born, was, GrammaticalRelation.valueOf("auxpass"), 1.0, false);
+    graph.setRoot(born);
+    sentence.set(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class, graph);
+  }
+
+  @Test
+  public void testMiss() throws IOException {
+    ParseCache cache = new ParseCache(directory, "v1", 1024 * 1024);
+    Annotation doc = document("doc1");
+    assertFalse(cache.restore(doc));
+    assertEquals(1, cache.misses());
+    assertNull(doc.get(CoreAnnotations.SentencesAnnotation.class).get(0).get(TreeCoreAnnotations.TreeAnnotation.class));
+    cache.close();
+  }
+
+  @Test
+  public void testSaveAndRestore() throws IOException {
+    ParseCache cache = new ParseCache(directory, "v1", 1024 * 1024);
+    Annotation parsed = document("doc1");
+    parse(parsed);
+    cache.save(parsed);
+
+    Annotation doc = document("doc1");
+    assertTrue(cache.restore(doc));
+    assertEquals(1, cache.hits());
+    CoreMap sentence = doc.get(CoreAnnotations.SentencesAnnotation.class).get(0);
+    List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+    // NER tweaks
+    assertEquals("ORGANIZATION", tokens.get(0).ner());
+    assertEquals("O", tokens.get(1).ner());
+    // Tree
+    assertEquals(parsed.get(CoreAnnotations.SentencesAnnotation.class).get(0).get(TreeCoreAnnotations.TreeAnnotation.class).toString(),
+        sentence.get(TreeCoreAnnotations.TreeAnnotation.class).toString());
+    // Dependencies, over this document's tokens
+    SemanticGraph graph = sentence.get(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class);
+    assertNotNull(graph);
+    assertEquals(3, graph.size());
+    assertEquals(3, graph.getFirstRoot().index());
+    assertSame(tokens.get(2), graph.getFirstRoot().backingLabel());
+    Set<String> edges = new HashSet<>();
+    for (SemanticGraphEdge edge : graph.edgeIterable()) {
+      edges.add(edge.getRelation() + "(" + edge.getSource().word() + "," + edge.getTarget().word() + ")");
+    }
+    assertEquals(new HashSet<>(Arrays.asList("nsubjpass(born,Obama)", "auxpass(born,was)")), edges);
+    cache.close();
+  }
+
+  @Test
+  public void testVersionMismatchIsMiss() throws IOException {
+    ParseCache cache = new ParseCache(directory, "v1", 1024 * 1024);
+    Annotation parsed = document("doc1");
+    parse(parsed);
+    cache.save(parsed);
+    cache.close();
+
+    cache = new ParseCache(directory, "v2", 1024 * 1024);
+    assertEquals(1, cache.size());
+    assertFalse(cache.restore(document("doc1")));
+    cache.close();
+  }
+
+  @Test
+  public void testMismatchedTokensIsMiss() throws IOException {
+    ParseCache cache = new ParseCache(directory, "v1", 1024 * 1024);
+    Annotation parsed = document("doc1");
+    parse(parsed);
+    cache.save(parsed);
+
+    Annotation doc = document("doc1");
+    doc.get(CoreAnnotations.SentencesAnnotation.class).get(0).get(CoreAnnotations.TokensAnnotation.class).remove(2);
+    assertFalse(cache.restore(doc));
+    assertEquals("PERSON", doc.get(CoreAnnotations.SentencesAnnotation.class).get(0).get(CoreAnnotations.TokensAnnotation.class).get(0).ner());
+    cache.close();
+  }
+}
@@ -0,0 +1,100 @@
+package edu.stanford.nlp.kbp.slotfilling.ir;
+
+import edu.stanford.nlp.kbp.common.Maybe;
+import edu.stanford.nlp.kbp.common.Props;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the lexical sentence filter run ahead of the PostIRAnnotator.
+ */
+public class SentencePrefilterTest {
+
+  private int contextSaved;
+
+  @Before
+  public void saveProps() {
+    contextSaved = Props.INDEX_POSTIRANNOTATOR_PREFILTER_CONTEXT;
+    // (match only lexically, unless a test says otherwise)
+    Props.INDEX_POSTIRANNOTATOR_PREFILTER_CONTEXT = 0;
+  }
+
+  @After
+  public void restoreProps() {
+    Props.INDEX_POSTIRANNOTATOR_PREFILTER_CONTEXT = contextSaved;
+  }
+
+  private static Annotation document(String... sentenceGlosses) {
+    Annotation doc = new Annotation(String.join(" ", sentenceGlosses));
+    List<CoreMap> sentences = new ArrayList<>();
+    for (String gloss : sentenceGlosses) {
+      List<CoreLabel> tokens = new ArrayList<>();
+      for (String word : gloss.split("\\s+")) {
+        CoreLabel token = new CoreLabel();
+        token.setWord(word);
+        token.setOriginalText(word);
+        tokens.add(token);
+      }
+      CoreMap sentence = new ArrayCoreMap();
+      sentence.set(CoreAnnotations.TokensAnnotation.class, tokens);
+      sentence.set(CoreAnnotations.TextAnnotation.class, gloss);
+      sentences.add(sentence);
+    }
+    doc.set(CoreAnnotations.SentencesAnnotation.class, sentences);
+    return doc;
+  }
+
+  private static Set<Integer> toSet(BitSet bits) {
+    Set<Integer> rtn = new HashSet<>();
+    for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) { rtn.add(i); }
+    return rtn;
+  }
+
+  @Test
+  public void testEntityTokens() {
+    Annotation doc = document("Barack Obama was born in Hawaii .", "The weather is nice .", "Obama was president .");
+    SentencePrefilter filter = new SentencePrefilter("Barack Obama", Maybe.<String>Nothing());
+    assertEquals(new HashSet<>(Arrays.asList(0, 2)), toSet(filter.candidates(doc)));
+  }
+
+  @Test
+  public void testAcronym() {
+    Annotation doc = document("He works at IBM .", "The weather is nice .");
+    SentencePrefilter filter = new SentencePrefilter("International Business Machines", Maybe.<String>Nothing());
+    assertEquals(Collections.singleton(0), toSet(filter.candidates(doc)));
+  }
+
+  @Test
+  public void testSlotValue() {
+    Annotation doc = document("Barack Obama was born in Hawaii .", "Obama was president .", "Hawaii is warm .");
+    SentencePrefilter filter = new SentencePrefilter("Barack Obama", Maybe.Just("Hawaii"));
+    assertEquals(Collections.singleton(0), toSet(filter.candidates(doc)));
+  }
+
+  @Test
+  public void testNoMatch() {
+    Annotation doc = document("The weather is nice .", "It is sunny .");
+    SentencePrefilter filter = new SentencePrefilter("Barack Obama", Maybe.<String>Nothing());
+    assertTrue(filter.candidates(doc).isEmpty());
+  }
+
+  @Test
+  public void testContextWithoutCoref() {
+    Props.INDEX_POSTIRANNOTATOR_PREFILTER_CONTEXT = 1;
+    Annotation doc = document("Barack Obama spoke .", "He was born in Hawaii .", "The weather is nice .", "It is sunny .");
+    SentencePrefilter filter = new SentencePrefilter("Barack Obama", Maybe.<String>Nothing());
+    assertEquals(new HashSet<>(Arrays.asList(0, 1)), toSet(filter.candidates(doc)));
+    filter = new SentencePrefilter("Barack Obama", Maybe.Just("Hawaii"));
+    assertEquals(new HashSet<>(Arrays.asList(0, 1)), toSet(filter.candidates(doc)));
+  }
+}
@@ -0,0 +1,130 @@
+package edu.stanford.nlp.kbp.slotfilling.ir.query;
+
+import edu.stanford.nlp.kbp.common.Maybe;
+import edu.stanford.nlp.kbp.common.NERTag;
+import edu.stanford.nlp.kbp.slotfilling.ir.index.KBPField;
+import edu.stanford.nlp.util.Pair;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests batched and prefetched queries against a small in-memory index.
+ */
+public class ParameterizedLuceneQuerierTest {
+
+  /** A querier which counts the queries it actually searches the index for */
+  private static class CountingQuerier extends ParameterizedLuceneQuerier {
+    int searches = 0;
+
+    CountingQuerier(DirectoryReader reader) {
+      // (without relation keywords, which need a keywords file)
+      super(reader, LuceneQuerierParams.strict().withRelation(false));
+    }
+
+    @Override
+    protected TopDocs queryWithTimeout(Query query, Maybe<Integer> maxDocuments, int timeoutInMS,
+                                       QueryStats queryStats, AtomicBoolean cancelled) throws IOException {
+      searches += 1;
+      return super.queryWithTimeout(query, maxDocuments, timeoutInMS, queryStats, cancelled);
+    }
+  }
+
+  private CountingQuerier querier;
+
+  @Before
+  public void buildIndex() throws IOException {
+    String[] texts = {
+        "obama was born in hawaii .",
+        "obama visited hawaii and chicago .",
+        "the senator from chicago , obama , spoke .",
+        "hawaii is a state .",
+    };
+    RAMDirectory directory = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(Version.LUCENE_42, new StandardAnalyzer(Version.LUCENE_42)));
+    for (int i = 0; i < texts.length; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField(KBPField.DOCID.fieldName(), "doc" + i, Field.Store.YES));
+      doc.add(new TextField(KBPField.TEXT.fieldName(), texts[i], Field.Store.YES));
+      writer.addDocument(doc);
+    }
+    writer.close();
+    querier = new CountingQuerier(DirectoryReader.open(directory));
+  }
+
+  private static LuceneQuerier.QueryRequest request(String entity, Maybe<String> relation, String slotValue, int maxDocuments) {
+    return new LuceneQuerier.QueryRequest(null, entity, Maybe.Just(NERTag.PERSON), relation,
+        Maybe.Just(slotValue), Maybe.Just(NERTag.MISC), Maybe.Just(maxDocuments));
+  }
+
+  private List<Pair<Integer, Double>> query(LuceneQuerier.QueryRequest request) throws IOException {
+    List<Pair<Integer, Double>> results = new ArrayList<>();
+    for (Pair<Integer, Double> result : querier.queryImplementation(request.entityName, request.entityType, request.relation,
+        request.slotValue, request.slotValueType, request.maxDocuments)) {
+      results.add(result);
+    }
+    return results;
+  }
+
+  private static List<Pair<Integer, Double>> asList(TopDocs docs) {
+    List<Pair<Integer, Double>> results = new ArrayList<>();
+    for (ScoreDoc doc : docs.scoreDocs) { results.add(Pair.makePair(doc.doc, (double) doc.score)); }
+    return results;
+  }
+
+  @Test
+  public void testQueryBatch() throws IOException {
+    List<LuceneQuerier.QueryRequest> requests = Arrays.asList(
+        request("obama", Maybe.Just("per:city_of_birth"), "hawaii", 10),
+        request("obama", Maybe.Just("per:cities_of_residence"), "chicago", 10),
+        request("obama", Maybe.Just("per:city_of_birth"), "hawaii", 1),
+        request("senator", Maybe.<String>Nothing(), "nowhere", 10));
+    List<TopDocs> batched = querier.queryBatch(requests);
+    assertEquals(requests.size(), batched.size());
+    for (int i = 0; i < requests.size(); ++i) {
+      assertEquals(requests.get(i).toString(), query(requests.get(i)), asList(batched.get(i)));
+    }
+    assertEquals(2, batched.get(0).scoreDocs.length);
+    assertEquals(1, batched.get(2).scoreDocs.length);
+    assertEquals(0, batched.get(3).scoreDocs.length);
+  }
+
+  @Test
+  public void testPrefetchedQueryIsTaken() throws IOException {
+    LuceneQuerier.QueryRequest request = request("obama", Maybe.Just("per:city_of_birth"), "hawaii", 10);
+    List<Pair<Integer, Double>> expected = query(request);
+    assertEquals(1, querier.searches);
+
+    querier.prefetch(Collections.singletonList(request));
+    assertEquals(expected, query(request));
+    assertEquals("the prefetched results should have been returned", 1, querier.searches);
+    // (prefetched results are only returned once)
+    assertEquals(expected, query(request));
+    assertEquals(2, querier.searches);
+  }
+
+  @Test
+  public void testPrefetchedForFewerDocumentsIsNotTaken() throws IOException {
+    querier.prefetch(Collections.singletonList(request("obama", Maybe.Just("per:city_of_birth"), "hawaii", 1)));
+    assertEquals(2, query(request("obama", Maybe.Just("per:city_of_birth"), "hawaii", 10)).size());
+    assertEquals(1, querier.searches);
+  }
+}
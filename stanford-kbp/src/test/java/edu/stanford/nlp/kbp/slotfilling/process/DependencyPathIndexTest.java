@@ -0,0 +1,151 @@
+package edu.stanford.nlp.kbp.slotfilling.process;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphEdge;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+import edu.stanford.nlp.util.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the per-sentence index of dependency paths used by the FeatureFactory.
+ */
+public class DependencyPathIndexTest {
+
+  private SemanticGraph graph;
+  private IndexedWord obama, was, born, hawaii, alone;
+
+  private static IndexedWord node(String word, int index) {
+    CoreLabel token = new CoreLabel();
+    token.setWord(word);
+    token.setValue(word);
+    token.setIndex(index);
+    return new IndexedWord(token);
+  }
+
+  /** "Obama was born in Hawaii alone", with "alone" unattached */
+  @Before
+  public void setUp() {
+    graph = new SemanticGraph();
+    obama = node("Obama", 1);
+    was = node("was", 2);
+    born = node("born", 3);
+    hawaii = node("Hawaii", 5);
+    alone = node("alone", 6);
+    for (IndexedWord node : Arrays.asList(obama, was, born, hawaii, alone)) { graph.addVertex(node); }
+    graph.addEdge(born, obama, GrammaticalRelation.valueOf("nsubjpass"), 1.0, false);
+    graph.addEdge(born, was, GrammaticalRelation.valueOf("auxpass"), 1.0, false);
+    graph.addEdge(born, hawaii, GrammaticalRelation.valueOf("prep_in"), 1.0, false);
+    graph.setRoot(born);
+  }
+
+  @Test
+  public void testEdges() {
+    DependencyPathIndex index = new DependencyPathIndex(graph);
+    List<SemanticGraphEdge> path = index.edges(obama, hawaii);
+    assertEquals(2, path.size());
+    assertEquals(obama, path.get(0).getDependent());
+    assertEquals(hawaii, path.get(1).getDependent());
+    assertEquals(Arrays.asList(obama, born, hawaii), index.nodes(obama, hawaii));
+    assertNull(index.edges(obama, alone));
+    assertNull(index.path(obama, alone, false));
+  }
+
+  /** Every path, asked for in the given order, is exactly the path the graph itself finds */
+  private static void assertSameAsGraph(SemanticGraph graph, List<Pair<IndexedWord, IndexedWord>> pairs) {
+    DependencyPathIndex index = new DependencyPathIndex(graph);
+    for (Pair<IndexedWord, IndexedWord> pair : pairs) {
+      assertEquals(pair.toString(), graph.getShortestUndirectedPathEdges(pair.first, pair.second), index.edges(pair.first, pair.second));
+      assertEquals(pair.toString(), graph.getShortestUndirectedPathNodes(pair.first, pair.second), index.nodes(pair.first, pair.second));
+    }
+  }
+
+  /**
+   * "Obama , the senator , met Biden", with "met" and "senator" both linked to "Obama" and "Biden":
+   * there are two shortest paths between the two names.
+   */
+  @Test
+  public void testTiedPaths() {
+    SemanticGraph tied = new SemanticGraph();
+    IndexedWord obama = node("Obama", 1);
+    IndexedWord senator = node("senator", 4);
+    IndexedWord met = node("met", 6);
+    IndexedWord biden = node("Biden", 7);
+    for (IndexedWord node : Arrays.asList(obama, senator, met, biden)) { tied.addVertex(node); }
+    tied.addEdge(met, obama, GrammaticalRelation.valueOf("nsubj"), 1.0, false);
+    tied.addEdge(met, biden, GrammaticalRelation.valueOf("dobj"), 1.0, false);
+    tied.addEdge(obama, senator, GrammaticalRelation.valueOf("appos"), 1.0, false);
+    tied.addEdge(senator, biden, GrammaticalRelation.valueOf("prep_with"), 1.0, false);
+    tied.setRoot(met);
+    List<IndexedWord> nodes = Arrays.asList(obama, senator, met, biden);
+    // (in both directions, and in either order, so that no search could be reused for the other)
+    List<Pair<IndexedWord, IndexedWord>> pairs = new ArrayList<>();
+    for (IndexedWord source : nodes) {
+      for (IndexedWord target : nodes) { pairs.add(Pair.makePair(source, target)); }
+    }
+    assertSameAsGraph(tied, pairs);
+    Collections.reverse(pairs);
+    assertSameAsGraph(tied, pairs);
+  }
+
+  @Test
+  public void testSameAsGraph() {
+    Random rand = new Random(42);
+    String[] relations = { "nsubj", "dobj", "prep_in", "amod", "nn", "conj_and" };
+    for (int trial = 0; trial < 50; ++trial) {
+      // A random tree, with some extra edges to make cycles (and so ties)
+      SemanticGraph random = new SemanticGraph();
+      List<IndexedWord> nodes = new ArrayList<>();
+      int length = 2 + rand.nextInt(15);
+      for (int i = 1; i <= length; ++i) {
+        IndexedWord node = node("w" + i, i);
+        random.addVertex(node);
+        if (!nodes.isEmpty()) {
+          random.addEdge(nodes.get(rand.nextInt(nodes.size())), node, GrammaticalRelation.valueOf(relations[rand.nextInt(relations.length)]), 1.0, false);
+        }
+        nodes.add(node);
+      }
+      random.setRoot(nodes.get(0));
+      for (int i = 0; i < length / 3; ++i) {
+        IndexedWord gov = nodes.get(rand.nextInt(length));
+        IndexedWord dep = nodes.get(rand.nextInt(length));
+        if (!gov.equals(dep) && random.getEdge(gov, dep) == null && random.getEdge(dep, gov) == null) {
+          random.addEdge(gov, dep, GrammaticalRelation.valueOf(relations[rand.nextInt(relations.length)]), 1.0, true);
+        }
+      }
+      List<Pair<IndexedWord, IndexedWord>> pairs = new ArrayList<>();
+      for (IndexedWord source : nodes) {
+        for (IndexedWord target : nodes) { pairs.add(Pair.makePair(source, target)); }
+      }
+      Collections.shuffle(pairs, rand);
+      assertSameAsGraph(random, pairs);
+    }
+  }
+
+  @Test
+  public void testPathStrings() {
+    DependencyPathIndex index = new DependencyPathIndex(graph);
+    List<SemanticGraphEdge> edges = index.edges(obama, hawaii);
+    assertEquals(FeatureFactory.dependencyPath(edges, obama), index.path(obama, hawaii, false));
+    assertEquals(FeatureFactory.generalizedDependencyPath(edges, obama), index.path(obama, hawaii, true));
+    assertEquals(" nsubjpass->  <-prep_in ", index.path(obama, hawaii, false));
+    assertSame(index.path(obama, hawaii, false), index.path(obama, hawaii, false));
+  }
+
+  @Test
+  public void testSharedPerThread() {
+    DependencyPathIndex index = DependencyPathIndex.of(graph);
+    assertSame(index, DependencyPathIndex.of(graph));
+    // A modified graph gets a new index
+    graph.addEdge(hawaii, alone, GrammaticalRelation.valueOf("advmod"), 1.0, false);
+    DependencyPathIndex updated = DependencyPathIndex.of(graph);
+    assertNotSame(index, updated);
+    assertEquals(3, updated.edges(obama, alone).size());
+  }
+}
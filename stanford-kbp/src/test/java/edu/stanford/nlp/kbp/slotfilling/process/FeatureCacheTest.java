@@ -0,0 +1,101 @@
+package edu.stanford.nlp.kbp.slotfilling.process;
+
+import edu.stanford.nlp.kbp.common.Maybe;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the content-addressed cache of relation mention features.
+ */
+public class FeatureCacheTest {
+
+  private static final List<String> features = Arrays.asList("dep:nsubj<-born->prep_in", "word:born", "word:born", "ner:PERSON_COUNTRY");
+
+  private File directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("featurecache").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = directory.listFiles();
+    for (File file : files == null ? new File[0] : files) { assertTrue(file.delete()); }
+    assertTrue(directory.delete());
+  }
+
+  private static CoreMap sentence(String... words) {
+    List<CoreLabel> tokens = new ArrayList<>();
+    for (String word : words) {
+      CoreLabel token = new CoreLabel();
+      token.setWord(word);
+      token.setValue(word);
+      tokens.add(token);
+    }
+    CoreMap sentence = new ArrayCoreMap();
+    sentence.set(CoreAnnotations.TokensAnnotation.class, tokens);
+    return sentence;
+  }
+
+  @Test
+  public void testMemoryOnly() throws IOException {
+    try (FeatureCache cache = new FeatureCache(Maybe.<File>Nothing(), 2, 0)) {
+      assertFalse(cache.get("a").isDefined());
+      cache.put("a", features);
+      assertEquals(features, cache.get("a").get());
+      cache.put("b", Collections.<String>emptyList());
+      cache.put("c", features);
+      // (least recently used entry is evicted)
+      assertFalse(cache.get("a").isDefined());
+      assertEquals(Collections.<String>emptyList(), cache.get("b").get());
+      assertEquals(2, cache.memoryHits());
+      assertEquals(2, cache.misses());
+    }
+  }
+
+  @Test
+  public void testAcrossRuns() throws IOException {
+    try (FeatureCache cache = new FeatureCache(Maybe.Just(directory), 10, 4096)) {
+      cache.put("a", features);
+      cache.put("b", Arrays.asList("word:born", "word:Canada"));
+    }
+    try (FeatureCache cache = new FeatureCache(Maybe.Just(directory), 10, 4096)) {
+      assertEquals(features, cache.get("a").get());
+      assertEquals(Arrays.asList("word:born", "word:Canada"), cache.get("b").get());
+      assertFalse(cache.get("c").isDefined());
+      assertEquals(2, cache.diskHits());
+      // (now in memory)
+      assertEquals(features, cache.get("a").get());
+      assertEquals(1, cache.memoryHits());
+      // The dictionary is extended, not rewritten
+      cache.put("c", Arrays.asList("word:Canada", "word:Julie"));
+    }
+    try (FeatureCache cache = new FeatureCache(Maybe.Just(directory), 0, 4096)) {
+      assertEquals(Arrays.asList("word:Canada", "word:Julie"), cache.get("c").get());
+      assertEquals(features, cache.get("a").get());
+    }
+  }
+
+  @Test
+  public void testSentenceHash() {
+    String hash = FeatureCache.sentenceHash(sentence("Julie", "was", "born", "in", "Canada"));
+    assertEquals(hash, FeatureCache.sentenceHash(sentence("Julie", "was", "born", "in", "Canada")));
+    assertFalse(hash.equals(FeatureCache.sentenceHash(sentence("Julie", "was", "born", "in", "France"))));
+    CoreMap tagged = sentence("Julie", "was", "born", "in", "Canada");
+    tagged.get(CoreAnnotations.TokensAnnotation.class).get(4).setNER("COUNTRY");
+    assertFalse(hash.equals(FeatureCache.sentenceHash(tagged)));
+  }
+}
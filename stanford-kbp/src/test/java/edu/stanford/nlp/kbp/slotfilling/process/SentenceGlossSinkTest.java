@@ -0,0 +1,107 @@
+package edu.stanford.nlp.kbp.slotfilling.process;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.util.CoreMap;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the write-behind buffer for sentence glosses.
+ */
+public class SentenceGlossSinkTest {
+
+  /** A writer which remembers every batch it is given */
+  private static class RecordingWriter implements SentenceGlossSink.BatchWriter {
+    public final List<Map<String, Annotation>> batches = Collections.synchronizedList(new ArrayList<Map<String, Annotation>>());
+    @Override
+    public void write(Map<String, Annotation> glosses) {
+      batches.add(new HashMap<>(glosses));
+    }
+    public Map<String, Annotation> all() {
+      Map<String, Annotation> all = new HashMap<>();
+      for (Map<String, Annotation> batch : batches) { all.putAll(batch); }
+      return all;
+    }
+  }
+
+  private static Annotation gloss(String text) {
+    Annotation sentence = new Annotation(text);
+    Annotation ann = new Annotation("");
+    ann.set(CoreAnnotations.SentencesAnnotation.class, new ArrayList<CoreMap>(Collections.singletonList(sentence)));
+    return ann;
+  }
+
+  @Test
+  public void testLookupBeforeFlush() {
+    RecordingWriter writer = new RecordingWriter();
+    SentenceGlossSink sink = new SentenceGlossSink(writer, 10, 0);
+    assertTrue(sink.offer("a", () -> gloss("Julie was born in Canada")));
+    assertTrue(writer.batches.isEmpty());
+    assertTrue(sink.lookup("a").isDefined());
+    assertEquals("Julie was born in Canada", sink.lookup("a").get().get(CoreAnnotations.TextAnnotation.class));
+    assertFalse(sink.lookup("b").isDefined());
+    sink.flush();
+    assertEquals(1, writer.batches.size());
+    assertFalse(sink.lookup("a").isDefined());
+    assertEquals(0, sink.numPending());
+  }
+
+  @Test
+  public void testDuplicatesDropped() {
+    RecordingWriter writer = new RecordingWriter();
+    SentenceGlossSink sink = new SentenceGlossSink(writer, 10, 0);
+    final AtomicInteger created = new AtomicInteger(0);
+    assertTrue(sink.offer("a", () -> { created.incrementAndGet(); return gloss("first"); }));
+    assertFalse(sink.offer("a", () -> { created.incrementAndGet(); return gloss("second"); }));
+    sink.flush();
+    assertFalse(sink.offer("a", () -> { created.incrementAndGet(); return gloss("third"); }));
+    assertEquals(1, created.get());
+    sink.flush();
+    assertEquals(1, writer.batches.size());
+  }
+
+  @Test
+  public void testBatches() {
+    RecordingWriter writer = new RecordingWriter();
+    SentenceGlossSink sink = new SentenceGlossSink(writer, 10, 0);
+    for (int i = 0; i < 25; ++i) {
+      final int index = i;
+      sink.offer(Integer.toString(i), () -> gloss("sentence " + index));
+    }
+    sink.flush();
+    assertEquals(3, writer.batches.size());
+    for (Map<String, Annotation> batch : writer.batches) { assertTrue(batch.size() <= 10); }
+    assertEquals(25, writer.all().size());
+  }
+
+  @Test
+  public void testBoundedMemory() {
+    RecordingWriter writer = new RecordingWriter();
+    SentenceGlossSink sink = new SentenceGlossSink(writer, 4, 8);
+    for (int i = 0; i < 100; ++i) {
+      final int index = i;
+      sink.offer(Integer.toString(i), () -> gloss("sentence " + index));
+      assertTrue(sink.numPending() < 8);
+    }
+    sink.flush();
+    assertEquals(100, writer.all().size());
+    // Only recent keys are remembered as written
+    assertFalse(sink.offer("99", () -> gloss("sentence 99")));
+    assertTrue(sink.offer("0", () -> gloss("sentence 0")));
+  }
+
+  @Test
+  public void testBackgroundFlush() throws InterruptedException {
+    RecordingWriter writer = new RecordingWriter();
+    SentenceGlossSink sink = new SentenceGlossSink(writer, 10, 0).startFlushing(5);
+    sink.offer("a", () -> gloss("Julie was born in Canada"));
+    for (int i = 0; i < 200 && sink.numPending() > 0; ++i) { Thread.sleep(10); }
+    assertEquals(0, sink.numPending());
+    assertTrue(writer.all().containsKey("a"));
+  }
+}
@@ -0,0 +1,87 @@
+package edu.stanford.nlp.kbp.slotfilling.train;
+
+import edu.stanford.nlp.kbp.common.KBPNew;
+import edu.stanford.nlp.kbp.common.KBPair;
+import edu.stanford.nlp.kbp.common.NERTag;
+import edu.stanford.nlp.kbp.common.SentenceGroup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests saving and resuming the progress of harvesting training datums.
+ */
+public class HarvestCheckpointTest {
+
+  private File directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("harvest").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) { assertTrue(file.delete()); }
+    }
+    assertTrue(directory.delete());
+  }
+
+  private static List<KBPair> tuples(String... slotValues) {
+    List<KBPair> tuples = new ArrayList<>();
+    for (String slotValue : slotValues) {
+      tuples.add(KBPNew.entName("Barack Obama").entType(NERTag.PERSON).slotValue(slotValue).KBPair());
+    }
+    return tuples;
+  }
+
+  @Test
+  public void testResume() throws IOException {
+    List<KBPair> tuples = tuples("Hawaii", "Michelle Obama", "Chicago");
+    HarvestCheckpoint checkpoint = new HarvestCheckpoint(directory, tuples);
+    assertEquals(0, checkpoint.completed());
+    checkpoint.record(0, Collections.singletonList(SentenceGroup.empty(tuples.get(0))));
+    checkpoint.record(1, Collections.<SentenceGroup>emptyList());
+    checkpoint.close();
+
+    checkpoint = new HarvestCheckpoint(directory, tuples);
+    assertEquals(2, checkpoint.completed());
+    List<SentenceGroup> replayed = checkpoint.get(0);
+    assertEquals(1, replayed.size());
+    assertEquals(tuples.get(0), replayed.get(0).key);
+    assertTrue(checkpoint.get(1).isEmpty());
+    checkpoint.record(2, Collections.singletonList(SentenceGroup.empty(tuples.get(2))));
+    assertEquals(3, checkpoint.completed());
+    checkpoint.close();
+  }
+
+  @Test
+  public void testOtherTuplesStartOver() throws IOException {
+    HarvestCheckpoint checkpoint = new HarvestCheckpoint(directory, tuples("Hawaii", "Chicago"));
+    checkpoint.record(0, Collections.<SentenceGroup>emptyList());
+    checkpoint.close();
+
+    checkpoint = new HarvestCheckpoint(directory, tuples("Chicago", "Hawaii"));
+    assertEquals(0, checkpoint.completed());
+    checkpoint.close();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOutOfOrder() throws IOException {
+    HarvestCheckpoint checkpoint = new HarvestCheckpoint(directory, tuples("Hawaii", "Chicago"));
+    try {
+      checkpoint.record(1, Collections.<SentenceGroup>emptyList());
+    } finally {
+      checkpoint.close();
+    }
+  }
+}